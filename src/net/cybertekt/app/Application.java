@@ -1,5 +1,6 @@
 package net.cybertekt.app;
 
+import net.cybertekt.asset.AssetManager;
 import net.cybertekt.display.Display;
 import static org.lwjgl.glfw.GLFW.glfwGetTime;
 import org.slf4j.Logger;
@@ -89,6 +90,9 @@ public abstract class Application {
             /* Poll */ 
             Display.poll(tpf);
 
+            /* Apply Asset Changes */
+            AssetManager.update();
+
             /* Update */
             update(tpf);
             
@@ -1,7 +1,13 @@
  package net.cybertekt.app;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import net.cybertekt.asset.AssetManager;
+import net.cybertekt.asset.AssetManifest;
 import net.cybertekt.asset.AssetType;
+import net.cybertekt.asset.font.FontLoader;
 import net.cybertekt.asset.image.ImageLoader;
 import net.cybertekt.asset.shader.ShaderLoader;
 import net.cybertekt.display.Display;
@@ -46,6 +52,17 @@ public class BasicApplication extends Application implements DisplayListener, In
         /* Register Basic Asset Loaders */
         AssetManager.registerLoader(ImageLoader.class, AssetType.getType("PNG"), AssetType.getType("JPG"));
         AssetManager.registerLoader(ShaderLoader.class, AssetType.getType("VERT"), AssetType.getType("FRAG"));
+        AssetManager.registerLoader(FontLoader.class, AssetType.getType("FNT"));
+
+        /* Map The Compiled Asset Manifest */
+        final Path manifest = Paths.get(AssetManager.rootDir, "Assets.bin");
+        if (Files.isRegularFile(manifest)) {
+            try {
+                AssetManager.setManifest(AssetManifest.open(manifest));
+            } catch (final IOException e) {
+                log.warn("Unable to map asset manifest - {}", e.getMessage());
+            }
+        }
 
         /* Initialize Display */
         display = Display.create(settings).setRenderer(new OGLRenderer());
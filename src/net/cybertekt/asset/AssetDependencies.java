@@ -0,0 +1,142 @@
+package net.cybertekt.asset;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Asset Dependencies - (C) Cybertekt Software
+ *
+ * Records which files each {@link Asset asset} was built from, such as the
+ * files a shader includes, so a change to one file can be traced to every
+ * asset that must be rebuilt. Dependencies are transitive: if a shader
+ * includes a header that includes another header, a change to the second
+ * header affects the shader.
+ *
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class AssetDependencies {
+
+    /**
+     * The files each asset depends on directly.
+     */
+    private final Map<AssetKey, Set<AssetKey>> dependencies = new HashMap<>();
+
+    /**
+     * The assets that depend directly on each file.
+     */
+    private final Map<AssetKey, Set<AssetKey>> dependents = new HashMap<>();
+
+    /**
+     * Replaces the direct dependencies of an asset. An asset that is reloaded
+     * should set its dependencies again, since they may have changed.
+     *
+     * @param asset the {@link AssetKey key} of the asset.
+     * @param files the keys of the files the asset depends on directly.
+     */
+    public synchronized void set(final AssetKey asset, final Collection<AssetKey> files) {
+        remove(asset);
+        if (files.isEmpty()) {
+            return;
+        }
+        final Set<AssetKey> set = new LinkedHashSet<>(files);
+        set.remove(asset);
+        dependencies.put(asset, set);
+        for (final AssetKey file : set) {
+            dependents.computeIfAbsent(file, (k) -> new LinkedHashSet<>()).add(asset);
+        }
+    }
+
+    /**
+     * Removes the direct dependencies of an asset. Assets that depend on it
+     * are unaffected.
+     *
+     * @param asset the {@link AssetKey key} of the asset.
+     */
+    public synchronized void remove(final AssetKey asset) {
+        final Set<AssetKey> old = dependencies.remove(asset);
+        if (old == null) {
+            return;
+        }
+        for (final AssetKey file : old) {
+            final Set<AssetKey> set = dependents.get(file);
+            set.remove(asset);
+            if (set.isEmpty()) {
+                dependents.remove(file);
+            }
+        }
+    }
+
+    /**
+     * Returns the files an asset depends on directly.
+     *
+     * @param asset the {@link AssetKey key} of the asset.
+     * @return a copy of the direct dependencies of the asset.
+     */
+    public synchronized Set<AssetKey> getDependencies(final AssetKey asset) {
+        final Set<AssetKey> set = dependencies.get(asset);
+        return set == null ? Collections.emptySet() : new LinkedHashSet<>(set);
+    }
+
+    /**
+     * Returns the assets that depend directly on a file.
+     *
+     * @param file the {@link AssetKey key} of the file.
+     * @return a copy of the direct dependents of the file.
+     */
+    public synchronized Set<AssetKey> getDependents(final AssetKey file) {
+        final Set<AssetKey> set = dependents.get(file);
+        return set == null ? Collections.emptySet() : new LinkedHashSet<>(set);
+    }
+
+    /**
+     * Returns the changed files together with every asset that depends on
+     * them, directly or through other files.
+     *
+     * @param changed the {@link AssetKey keys} of the changed files.
+     * @return the changed files followed by the affected assets.
+     */
+    public synchronized Set<AssetKey> getAffected(final Collection<AssetKey> changed) {
+        final Set<AssetKey> affected = new LinkedHashSet<>(changed);
+        final Deque<AssetKey> queue = new ArrayDeque<>(changed);
+        while (!queue.isEmpty()) {
+            final Set<AssetKey> set = dependents.get(queue.poll());
+            if (set != null) {
+                for (final AssetKey asset : set) {
+                    if (affected.add(asset)) {
+                        queue.add(asset);
+                    }
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Removes every recorded dependency.
+     */
+    public synchronized void clear() {
+        dependencies.clear();
+        dependents.clear();
+    }
+
+    /**
+     * Returns the number of assets with recorded dependencies.
+     *
+     * @return the number of assets with dependencies.
+     */
+    public synchronized int size() {
+        return dependencies.size();
+    }
+}
@@ -1,5 +1,6 @@
 package net.cybertekt.asset;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import net.cybertekt.util.HashCache;
 import net.cybertekt.util.HashCache.CacheMode;
 import net.cybertekt.util.HashCache.MapMode;
@@ -35,7 +36,7 @@ public final class AssetKey {
      * keys created by the {@link #getKey(java.lang.String)} static utility
      * method.
      */
-    private static final HashCache<String, AssetKey> keyCache = new HashCache(CacheMode.Weak, MapMode.Hash);
+    private static final HashCache<String, AssetKey> keyCache = new HashCache<>(CacheMode.Weak, MapMode.Concurrent);
 
     /**
      * Tracks the total number of constructed keys which is incremented and used
@@ -43,14 +44,16 @@ public final class AssetKey {
      * never hash code collisions between keys and optimizes them for use with
      * {@link java.util.HashMap}.
      */
-    private static int hashCount = 1;
+    private static final AtomicInteger hashCount = new AtomicInteger(1);
 
     /**
      * Static utility method for retrieving the asset key for the external
      * resource located at the specified case-sensitive file path relative to
      * the root assets directory as defined within the
      * {@link AssetManager asset manager}. A new key will be constructed if one
-     * does not already exists within the {@link #keyCache}.
+     * does not already exists within the {@link #keyCache}. Keys may be
+     * requested from any thread, and concurrent requests for the same path
+     * receive the same key.
      *
      * @param path the location of the file for which to retrieve and asset key.
      * File path locations are relative to the root asset directory as defined
@@ -62,11 +65,7 @@ public final class AssetKey {
         if (path.contains("\\")) {
             path = path.replace('\\', '/');
         }
-        AssetKey key = keyCache.get(path);
-        if (key == null) {
-            keyCache.put(path, (key = new AssetKey(path)));
-        }
-        return key;
+        return keyCache.computeIfAbsent(path, AssetKey::new);
     }
 
     /**
@@ -154,7 +153,7 @@ public final class AssetKey {
      */
     private AssetKey(final String assetPath) {
         path = assetPath;
-        hashCode = AssetKey.hashCount++;
+        hashCode = AssetKey.hashCount.getAndIncrement();
         if (path.lastIndexOf('.') > -1) {
             type = AssetType.getType(path.substring(path.lastIndexOf('.') + 1, path.length()));
         } else {
@@ -2,13 +2,22 @@ package net.cybertekt.asset;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Array;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -16,6 +25,7 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import net.cybertekt.util.HashCache;
 import net.cybertekt.util.HashCache.CacheMode;
 import net.cybertekt.util.HashCache.MapMode;
@@ -43,6 +53,31 @@ import org.slf4j.LoggerFactory;
  * </p>
  *
  * <p>
+ * During development the root assets directory can be {@link #watch() watched}
+ * for changes. Changed files are collected by a background
+ * {@link AssetWatcher watcher} and applied by {@link #update()} on the main
+ * thread, which invalidates the changed files together with every asset that
+ * was built from them, as recorded by {@link #getDependencies()}, and notifies
+ * the {@link #addReloadListener(java.util.function.Consumer) reload listeners}
+ * so they can rebuild whatever depends on those assets.
+ * </p>
+ *
+ * <p>
+ * When a {@link #setManifest(AssetManifest) manifest} is installed and
+ * {@link #setDeduplication(boolean) deduplication} is enabled, paths whose
+ * files had identical content when the manifest was compiled share a single
+ * decoded asset. Such an asset keeps the {@link Asset#getKey() key} of the
+ * path it was decoded from. Assets that record
+ * {@link #getDependencies() dependencies} are never shared, since the same
+ * content may resolve its dependencies differently under another path.
+ * </p>
+ *
+ * <p>
+ * Load times, cache hits and evictions of each asset type are recorded by the
+ * {@link #getMetrics() metrics} once they are enabled.
+ * </p>
+ *
+ * <p>
  * This class also defines three types of
  * {@link java.lang.RuntimeException runtime exceptions} that may be thrown when
  * attempting to load external assets.
@@ -111,6 +146,15 @@ public final class AssetManager {
      */
     private static final HashCache<AssetKey, Asset> cachedAssets = new HashCache<>(CacheMode.Soft, MapMode.Concurrent);
 
+    /**
+     * Number of {@link #cachedAssets cached assets} of each
+     * {@link AssetType type}, updated as assets are cached, removed and
+     * evicted. Assets are cached and removed while holding the
+     * {@link #cachedAssets cache} lock, since the loader threads cache the
+     * assets they complete.
+     */
+    private static final Map<AssetType, AtomicInteger> cacheCounts = new ConcurrentHashMap<>();
+
     /**
      * Stores fallback {@link Asset assets} to be used in the event that an
      * asset of a specified type is unable to be loaded or initialized. This can
@@ -137,6 +181,65 @@ public final class AssetManager {
      */
     private static final AtomicInteger failed = new AtomicInteger(0);
 
+    /**
+     * Records which files each {@link Asset asset} was built from, so changes
+     * to those files invalidate the asset.
+     */
+    private static final AssetDependencies dependencies = new AssetDependencies();
+
+    /**
+     * Files reported as changed by the {@link #watcher} and not yet applied by
+     * {@link #update()}.
+     */
+    private static final Queue<String> changedFiles = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Listeners notified on the main thread of the {@link AssetKey keys}
+     * invalidated by each {@link #update()}.
+     */
+    private static final List<Consumer<Set<AssetKey>>> reloadListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Watches the {@link #rootDir root assets directory}, null if not watching.
+     */
+    private static AssetWatcher watcher;
+
+    /**
+     * The compiled {@link AssetManifest manifest} used to resolve asset ids,
+     * null if none is installed.
+     */
+    private static volatile AssetManifest manifest;
+
+    /**
+     * Indicates if assets with identical content are shared.
+     */
+    private static volatile boolean deduplicate;
+
+    /**
+     * The assets shared by each content group of the installed
+     * {@link #manifest}, null unless deduplication is enabled and a manifest
+     * is installed.
+     */
+    private static volatile SharedAssets sharedAssets;
+
+    /**
+     * {@link AtomicInteger Atomic integer} that tracks the number of requests
+     * served with an {@link Asset asset} decoded for another path.
+     */
+    private static final AtomicInteger shared = new AtomicInteger(0);
+
+    /**
+     * Telemetry of each {@link AssetType asset type}, disabled by default.
+     */
+    private static final AssetMetrics metrics = new AssetMetrics();
+
+    static {
+        cachedAssets.setEvictionListener((key) -> {
+            cacheCount(key.getType()).decrementAndGet();
+            metrics.evicted(key.getType());
+        });
+    }
+
     /**
      * Private constructor that prohibits the construction of other instances of
      * AssetManager. This class is designed for static access only. Creating
@@ -152,12 +255,13 @@ public final class AssetManager {
      * and returns the corresponding {@link AssetKey asset key}.
      *
      * @param path the location of the file from which to load the
-     * {@link Asset asset}.
+     * {@link Asset asset}, or its id in the installed
+     * {@link AssetManifest manifest}.
      * @return the {@link AssetKey asset key} associated with the
      * {@link Asset asset}.
      */
     public static final AssetKey load(final String path) {
-        return load(AssetKey.getKey(path));
+        return load(resolve(path));
     }
 
     /**
@@ -176,7 +280,7 @@ public final class AssetManager {
      * {@link Asset asset}.
      */
     public static final AssetKey load(final String path, final boolean reload) {
-        return load(AssetKey.getKey(path), reload);
+        return load(resolve(path), reload);
     }
 
     /**
@@ -240,19 +344,32 @@ public final class AssetManager {
      * {@link Asset asset} to be loaded.
      */
     public static final AssetKey load(final AssetKey key, final boolean reload) {
-        if (!reload && pendingAssets.containsKey(key) || cachedAssets.containsKey(key)) {
+        if (!reload && pendingAssets.containsKey(key)) {
+            return key;
+        } else if (cachedAssets.containsKey(key)) {
+            metrics.hit(key.getType());
+            return key;
+        }
+        metrics.miss(key.getType());
+        final SharedAssets sharing = sharedAssets;
+        if (sharing != null && reload) {
+            sharing.release(key);
+        } else if (share(key) != null) {
             return key;
         }
         requested.incrementAndGet();
         AssetLoader loader = assetLoaders.get(key.getType());
         if (loader != null) {
             try {
-                pendingAssets.put(key, (Future<Asset>) threadPool.submit(loader.newTask(key, stream(key))));
+                final InputStream stream = stream(key);
+                pendingAssets.put(key, (Future<Asset>) threadPool.submit(metrics.isEnabled() ? metrics.newTask(loader, key, stream) : loader.newTask(key, stream)));
                 return key;
             } catch (final AssetNotFoundException e) {
                 failed.incrementAndGet();
+                metrics.failed(key.getType());
                 if (getFallback(key.getType()) != null) {
-                    cachedAssets.put(key, getFallback(key.getType()));
+                    metrics.fallback(key.getType());
+                    store(key, getFallback(key.getType()));
                     return key;
                 } else {
                     throw e;
@@ -260,8 +377,10 @@ public final class AssetManager {
             }
         } else {
             failed.incrementAndGet();
+            metrics.failed(key.getType());
             if (getFallback(key.getType()) != null) {
-                cachedAssets.put(key, getFallback(key.getType()));
+                metrics.fallback(key.getType());
+                store(key, getFallback(key.getType()));
                 return key;
             } else {
                 throw new UnsupportedAssetTypeException(key);
@@ -282,13 +401,14 @@ public final class AssetManager {
      * will be thrown.
      *
      * @param path the file path location of the {@link Asset asset} to retrieve
-     * relative to the {@link #rootDir root assets directory}.
+     * relative to the {@link #rootDir root assets directory}, or its id in the
+     * installed {@link AssetManifest manifest}.
      * @return the requested {@link Asset asset}. If an asset does not exist a
      * fallback asset will be used instead or a runtime exception thrown if no
      * fallback asset exists.
      */
     public static final Asset get(final String path) {
-        return get(AssetKey.getKey(path));
+        return get(resolve(path));
     }
 
     /**
@@ -417,43 +537,51 @@ public final class AssetManager {
     public static final Asset get(final AssetKey key) {
         Asset asset = cachedAssets.get(key);
         if (asset != null) {
+            metrics.hit(key.getType());
             return asset;
         }
 
+        /* Pending Loads Were Counted When They Were Requested */
         final Future<? extends Asset> future = pendingAssets.get(key);
+        if (future == null) {
+            metrics.miss(key.getType());
+        }
         if (future != null) {
             try {
-                asset = future.get();
-                cachedAssets.put(key, asset);
+                asset = cache(key, future.get());
                 pendingAssets.remove(key);
             } catch (final InterruptedException | ExecutionException e) {
                 pendingAssets.remove(key);
                 if (getFallback(key.getType()) != null) {
-                    cachedAssets.put(key, getFallback(key.getType()));
-                    return cachedAssets.get(key);
+                    metrics.fallback(key.getType());
+                    return store(key, getFallback(key.getType()));
                 } else {
                     throw new RuntimeException(e.getMessage());
                 }
             }
-        } else {
+        } else if ((asset = share(key)) == null) {
             requested.incrementAndGet();
             AssetLoader loader = assetLoaders.get(key.getType());
             if (loader != null) {
                 try {
-                    asset = loader.loadInline(key, stream(key));
-                    cachedAssets.put(key, asset);
+                    final InputStream stream = stream(key);
+                    asset = cache(key, metrics.isEnabled() ? metrics.load(loader, key, stream, -1) : loader.loadInline(key, stream));
                     loaded.incrementAndGet();
                 } catch (final AssetNotFoundException | AssetInitializationException e) {
                     failed.incrementAndGet();
+                    if (e instanceof AssetNotFoundException) {
+                        metrics.failed(key.getType());
+                    }
                     if (getFallback(key.getType()) != null) {
-                        cachedAssets.put(key, getFallback(key.getType()));
-                        return cachedAssets.get(key);
+                        metrics.fallback(key.getType());
+                        return store(key, getFallback(key.getType()));
                     } else {
                         throw e;
                     }
                 }
             } else {
                 failed.incrementAndGet();
+                metrics.failed(key.getType());
                 throw new UnsupportedAssetTypeException(key);
             }
         }
@@ -470,7 +598,7 @@ public final class AssetManager {
      * specified path.
      */
     public static final InputStream stream(final String path) throws AssetNotFoundException {
-        return stream(AssetKey.getKey(path));
+        return stream(resolve(path));
     }
 
     /**
@@ -509,6 +637,353 @@ public final class AssetManager {
         }
     }
 
+    /**
+     * Starts watching the {@link #rootDir root assets directory} for changes
+     * with the {@link AssetWatcher#DEFAULT_DEBOUNCE default debounce period}.
+     * Changes are applied by {@link #update()}.
+     *
+     * @throws IOException if the directory cannot be watched.
+     */
+    public static final void watch() throws IOException {
+        watch(AssetWatcher.DEFAULT_DEBOUNCE);
+    }
+
+    /**
+     * Starts watching the {@link #rootDir root assets directory} for changes.
+     * Changes are applied by {@link #update()}. Calling this method while
+     * already watching has no effect.
+     *
+     * @param debounce how long in milliseconds changes must settle before they
+     * are reported, so a file saved several times in quick succession is only
+     * reloaded once.
+     * @throws IOException if the directory cannot be watched.
+     */
+    public static final void watch(final long debounce) throws IOException {
+        if (watcher == null) {
+            final AssetWatcher w = new AssetWatcher(Paths.get(rootDir), debounce, TimeUnit.MILLISECONDS, changedFiles::addAll);
+            w.start();
+            watcher = w;
+            log.info("Watching {} for changes", rootDir);
+        }
+    }
+
+    /**
+     * Stops watching the {@link #rootDir root assets directory}. Changes that
+     * have already been reported remain queued for {@link #update()}.
+     */
+    public static final void unwatch() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
+    }
+
+    /**
+     * Indicates if the {@link #rootDir root assets directory} is being
+     * watched.
+     *
+     * @return true if changes are being watched for.
+     */
+    public static final boolean isWatching() {
+        return watcher != null;
+    }
+
+    /**
+     * Applies the changes reported since the last update. Each changed file
+     * and every asset that depends on it is {@link #invalidate(java.util.Collection) invalidated}
+     * and the {@link #addReloadListener(java.util.function.Consumer) reload listeners}
+     * are notified. This method should be called once per frame from the main
+     * application thread and does nothing if there are no changes, other than
+     * logging the {@link #getMetrics() metrics} when they are due.
+     *
+     * @return the invalidated {@link AssetKey keys}, empty if there were no
+     * changes.
+     */
+    public static final Set<AssetKey> update() {
+        metrics.poll();
+        if (changedFiles.isEmpty()) {
+            return Collections.emptySet();
+        }
+        final List<AssetKey> changed = new ArrayList<>();
+        for (String path = changedFiles.poll(); path != null; path = changedFiles.poll()) {
+            /* Editors Write Temporary Files Without Extensions */
+            if (path.lastIndexOf('.') > path.lastIndexOf('/')) {
+                changed.add(AssetKey.getKey(path));
+            }
+        }
+        if (changed.isEmpty()) {
+            return Collections.emptySet();
+        }
+        final Set<AssetKey> affected = invalidate(changed);
+        for (final Consumer<Set<AssetKey>> listener : reloadListeners) {
+            listener.accept(affected);
+        }
+        return affected;
+    }
+
+    /**
+     * Removes the specified {@link Asset assets} and every asset that depends
+     * on them from the cache and cancels any pending loads, so the next
+     * request loads them again.
+     *
+     * @param keys the {@link AssetKey keys} of the changed assets or files.
+     * @return the invalidated keys, the specified keys followed by the keys of
+     * the assets that depend on them.
+     */
+    public static final Set<AssetKey> invalidate(final Collection<AssetKey> keys) {
+        final Set<AssetKey> affected = Collections.unmodifiableSet(dependencies.getAffected(keys));
+        final SharedAssets sharing = sharedAssets;
+        for (final AssetKey key : affected) {
+            if (discard(key)) {
+                metrics.invalidated(key.getType());
+            }
+            if (sharing != null) {
+                sharing.release(key);
+            }
+            final Future<? extends Asset> future = pendingAssets.remove(key);
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        /* Changed Files No Longer Match The Content Recorded In The Manifest */
+        if (sharing != null) {
+            keys.forEach(sharing::detach);
+        }
+        log.info("{} changed asset(s) invalidated {} asset(s)", keys.size(), affected.size());
+        return affected;
+    }
+
+    /**
+     * Installs a compiled {@link AssetManifest manifest}. Once installed, the
+     * id of an asset in the manifest, such as <code>Textures.RGBA08</code>,
+     * may be used in place of its path when loading or retrieving assets.
+     * Strings that are not ids in the manifest are treated as paths.
+     *
+     * @param assets the manifest to install, or null to remove it.
+     */
+    public static final void setManifest(final AssetManifest assets) {
+        manifest = assets;
+        sharedAssets = deduplicate && assets != null ? new SharedAssets(assets) : null;
+        if (assets != null) {
+            log.info("Installed asset manifest with {} assets", assets.size());
+        }
+    }
+
+    /**
+     * Enables or disables sharing of {@link Asset assets} between paths whose
+     * files have identical content, as recorded by the
+     * {@link AssetManifest#getContentGroup(int) content groups} of the
+     * installed manifest. Disabled by default. Assets that are already cached
+     * remain cached; changing the setting only affects assets loaded
+     * afterwards.
+     *
+     * <p>
+     * A shared asset is held by every path that was served it, and evicting or
+     * {@link #invalidate(java.util.Collection) invalidating} one path releases
+     * only that path. A path whose file changes is loaded on its own from then
+     * on, until a new manifest is installed.
+     * </p>
+     *
+     * @param enabled true to share assets with identical content.
+     */
+    public static final void setDeduplication(final boolean enabled) {
+        deduplicate = enabled;
+        final AssetManifest assets = manifest;
+        sharedAssets = enabled && assets != null ? new SharedAssets(assets) : null;
+    }
+
+    /**
+     * Indicates if {@link Asset assets} with identical content are shared.
+     *
+     * @return true if deduplication is enabled.
+     */
+    public static final boolean isDeduplicating() {
+        return deduplicate;
+    }
+
+    /**
+     * Returns the number of paths holding the shared {@link Asset asset} of a
+     * key, including the key itself.
+     *
+     * @param key the {@link AssetKey key} of the asset.
+     * @return the reference count of the shared asset, or 0 if the key does
+     * not hold a shared asset.
+     */
+    public static final int getReferences(final AssetKey key) {
+        final SharedAssets sharing = sharedAssets;
+        return sharing == null ? 0 : sharing.getHolders(key);
+    }
+
+    /**
+     * Returns the installed {@link AssetManifest manifest}.
+     *
+     * @return the installed manifest, or null if none is installed.
+     */
+    public static final AssetManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Retrieves the {@link Asset asset} at an index of the installed
+     * {@link AssetManifest manifest}, as returned by
+     * {@link AssetManifest#getId(CharSequence)}. Resolving the key is a single
+     * array access.
+     *
+     * @param <T> the type of {@link Asset asset} to retrieve.
+     * @param assetClass the class of the {@link Asset asset} to retrieve.
+     * @param id the index of the asset in the manifest.
+     * @return the requested {@link Asset asset}.
+     * @throws IllegalStateException if no manifest is installed.
+     */
+    public static final <T extends Asset> T get(final Class<T> assetClass, final int id) {
+        final AssetManifest assets = manifest;
+        if (assets == null) {
+            throw new IllegalStateException("No asset manifest is installed.");
+        }
+        return assetClass.cast(get(assets.getKey(id)));
+    }
+
+    /**
+     * Caches the {@link Asset asset} served for a key from the
+     * {@link #sharedAssets shared assets}, if another path with the same
+     * content holds one.
+     *
+     * @param key the {@link AssetKey key} being loaded.
+     * @return the shared asset now cached for the key, or null if there is
+     * none.
+     */
+    private static Asset share(final AssetKey key) {
+        final SharedAssets sharing = sharedAssets;
+        final Asset asset = sharing != null ? sharing.acquire(key) : null;
+        if (asset != null) {
+            store(key, asset);
+            shared.incrementAndGet();
+            metrics.shared(key.getType());
+        }
+        return asset;
+    }
+
+    /**
+     * Caches a decoded {@link Asset asset}. If deduplication is enabled and an
+     * asset with the same content was bound first, that asset is cached
+     * instead.
+     *
+     * @param key the {@link AssetKey key} the asset was decoded for.
+     * @param asset the decoded asset.
+     * @return the asset cached for the key.
+     */
+    private static Asset cache(final AssetKey key, final Asset asset) {
+        final SharedAssets sharing = sharedAssets;
+        Asset cached = asset;
+        if (sharing != null && dependencies.getDependencies(key).isEmpty()) {
+            cached = sharing.bind(key, asset);
+            if (cached != asset && cachedAssets.get(key) != cached) {
+                shared.incrementAndGet();
+                metrics.shared(key.getType());
+            }
+        }
+        return store(key, cached);
+    }
+
+    /**
+     * Stores an {@link Asset asset} in the {@link #cachedAssets cache},
+     * replacing the asset cached for the key if there is one, and counts it
+     * with the cached assets of its type.
+     *
+     * @param key the {@link AssetKey key} of the asset.
+     * @param asset the asset to cache.
+     * @return the cached asset.
+     */
+    private static Asset store(final AssetKey key, final Asset asset) {
+        synchronized (cachedAssets) {
+            final boolean added = cachedAssets.get(key) == null;
+            cachedAssets.put(key, asset);
+            if (added) {
+                cacheCount(key.getType()).incrementAndGet();
+            }
+        }
+        return asset;
+    }
+
+    /**
+     * Removes the {@link Asset asset} cached for a key from the
+     * {@link #cachedAssets cache} and from the count of its type.
+     *
+     * @param key the {@link AssetKey key} of the asset to remove.
+     * @return true if an asset was cached for the key.
+     */
+    private static boolean discard(final AssetKey key) {
+        synchronized (cachedAssets) {
+            /* Reports An Entry Collected Since Its Last Access As Evicted */
+            if (cachedAssets.get(key) != null && cachedAssets.remove(key) != null) {
+                cacheCount(key.getType()).decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of {@link #cachedAssets cached assets} of a type.
+     *
+     * @param type the {@link AssetType type} of the assets.
+     * @return the counter of the cached assets of the type.
+     */
+    private static AtomicInteger cacheCount(final AssetType type) {
+        final AtomicInteger count = cacheCounts.get(type);
+        return count != null ? count : cacheCounts.computeIfAbsent(type, (t) -> new AtomicInteger());
+    }
+
+    /**
+     * Returns the {@link AssetKey key} for an asset id in the installed
+     * {@link AssetManifest manifest} without creating any strings, or the key
+     * of the path if the manifest does not contain it.
+     *
+     * @param path an asset id or a path relative to the root assets directory.
+     * @return the {@link AssetKey key} of the asset.
+     */
+    private static AssetKey resolve(final String path) {
+        final AssetManifest assets = manifest;
+        if (assets != null) {
+            final AssetKey key = assets.getKey(path);
+            if (key != null) {
+                return key;
+            }
+        }
+        return AssetKey.getKey(path);
+    }
+
+    /**
+     * Returns the dependency graph used to find the {@link Asset assets}
+     * affected by a change. Loaders record the files each asset was built
+     * from, such as the files included by a shader.
+     *
+     * @return the asset dependency graph.
+     */
+    public static final AssetDependencies getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Adds a listener notified on the main thread with the
+     * {@link AssetKey keys} invalidated by each {@link #update()}.
+     *
+     * @param listener the listener to add.
+     */
+    public static final void addReloadListener(final Consumer<Set<AssetKey>> listener) {
+        reloadListeners.add(listener);
+    }
+
+    /**
+     * Removes a reload listener.
+     *
+     * @param listener the listener to remove.
+     */
+    public static final void removeReloadListener(final Consumer<Set<AssetKey>> listener) {
+        reloadListeners.remove(listener);
+    }
+
     /**
      * Registers the {@link AssetLoader loader} class to be used for loading
      * {@link Asset assets} of the specified {@link AssetType type(s)}. Loaders
@@ -612,21 +1087,31 @@ public final class AssetManager {
     }
 
     /**
-     * Resets the three internal atomic counters that are used for tracking the
-     * number of requested, loaded, and failed {@link Asset assets}.
+     * Resets the internal atomic counters that are used for tracking the
+     * number of requested, loaded, failed and shared {@link Asset assets},
+     * and discards the recorded {@link #getMetrics() metrics}.
      */
     public static final void reset() {
         requested.set(0);
         loaded.set(0);
         failed.set(0);
+        shared.set(0);
+        metrics.reset();
     }
 
     /**
      * Clears the {@link AssetCache asset cache}.
      */
     public static final void clear() {
+        final SharedAssets sharing = sharedAssets;
+        if (sharing != null) {
+            sharing.clear();
+        }
         if (!cachedAssets.isEmpty()) {
-            cachedAssets.clear();
+            synchronized (cachedAssets) {
+                cachedAssets.clear();
+                cacheCounts.clear();
+            }
             log.debug("Asset cache has been cleared", cachedAssets.size());
         }
     }
@@ -657,16 +1142,17 @@ public final class AssetManager {
      * Returns the number of {@link Asset assets} of the specified
      * {@link AssetType type} stored in the {@link AssetCache asset cache}. This
      * method does not take into consideration any assets that have not been
-     * completely loaded. The {@link #pendingAssets task cache} will be updated
-     * and any completed tasks will have their resulting {@link Asset asset}
-     * added to the {@link #cachedAssets assets cache} along with the
-     * {@link AssetKey asset key} associated with it before the count is taken.
+     * completely loaded. Every asset evicted so far is removed from the
+     * {@link #cachedAssets assets cache} before the count is taken, which is
+     * kept for each type as assets are cached and removed.
      *
      * @param type the {@link AssetType type} of {@link Asset asset} to count.
      * @return the number of cached {@link Asset assets} of the specified type.
      */
     public static final int getCacheSize(final AssetType type) {
-        return cachedAssets.keySet().stream().filter((key) -> (key.getType().equals(type))).mapToInt(e -> 1).sum();
+        cachedAssets.update();
+        final AtomicInteger count = cacheCounts.get(type);
+        return count != null ? count.get() : 0;
     }
 
     /**
@@ -723,6 +1209,32 @@ public final class AssetManager {
         return failed.get();
     }
 
+    /**
+     * Returns the total number of requests served with an {@link Asset asset}
+     * decoded for another path with identical content since the last time
+     * {@link #reset()} was called.
+     *
+     * @return the number of deduplicated assets since the last
+     * {@link #reset()}.
+     */
+    public static final int getShared() {
+        return shared.get();
+    }
+
+    /**
+     * Returns the telemetry of each {@link AssetType asset type}: load time
+     * histograms, bytes read, cache hits and misses, evictions and fallbacks.
+     * Metrics are disabled until {@link AssetMetrics#setEnabled(boolean)} is
+     * called, and are logged by {@link #update()} once a
+     * {@link AssetMetrics#setLogInterval(long, java.util.concurrent.TimeUnit) log interval}
+     * is set.
+     *
+     * @return the asset manager metrics.
+     */
+    public static final AssetMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Returns the total number of threads in the thread pool currently in the
      * process of loading {@link Asset assets}.
@@ -772,7 +1284,7 @@ public final class AssetManager {
         public void afterExecute(final Runnable task, final Throwable exceptions) {
             try {
                 Asset asset = (Asset) ((Future<?>) task).get();
-                cachedAssets.put(asset.getKey(), asset);
+                cache(asset.getKey(), asset);
                 pendingAssets.remove(asset.getKey());
                 loaded.incrementAndGet();
             } catch (final InterruptedException | ExecutionException | CancellationException | ClassCastException e) {
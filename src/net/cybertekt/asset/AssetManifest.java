@@ -0,0 +1,643 @@
+package net.cybertekt.asset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import net.cybertekt.crypto.SHA256;
+import net.cybertekt.util.Encoder;
+import net.cybertekt.util.XXHash64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Asset Manifest - (C) Cybertekt Software
+ *
+ * A binary index of the assets listed in <code>Assets.xml</code>. The XML
+ * manifest groups assets by name, and each asset is addressed by its group and
+ * id joined with a dot, such as <code>Textures.RGBA08</code>. The manifest is
+ * {@link #compile(Path, Path, boolean) compiled} at build time into a compact
+ * file holding every id and path, the type code, size and
+ * {@link XXHash64 xxHash} fingerprint of each file, and optionally a SHA-256
+ * hash of its content.
+ *
+ * <p>
+ * At startup the compiled file is {@link #open(Path) memory mapped} and the
+ * {@link AssetKey key} of every entry is resolved once. Ids are found in an
+ * open addressed hash table stored in the file, and candidate ids are compared
+ * character by character against the mapped data, so looking up an id creates
+ * no strings. Lookups by the integer index of an entry are a single array
+ * access. Once installed with {@link AssetManager#setManifest(AssetManifest)},
+ * ids may be passed to the asset manager wherever a path is accepted.
+ * </p>
+ *
+ * <p>
+ * Entries of the same type whose files have the same size and fingerprint, and
+ * the same SHA-256 hash when hashes are compiled, form a
+ * {@link #getContentGroup(int) content group}. The asset manager can decode
+ * one asset for a whole group instead of one per path when
+ * {@link AssetManager#setDeduplication(boolean) deduplication} is enabled.
+ * </p>
+ *
+ * <p>
+ * The file is big-endian: a header, a table of type names, fixed size entries,
+ * the hash table, the id and path characters and finally the optional content
+ * hashes. Manifests are immutable and may be shared between threads.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class AssetManifest {
+
+    /**
+     * SLF4J internal class logger for debugging.
+     */
+    public static final Logger log = LoggerFactory.getLogger(AssetManifest.class);
+
+    /**
+     * Magic number identifying a compiled manifest ("CTAM").
+     */
+    public static final int MAGIC = 0x4354414D;
+
+    /**
+     * Version of the compiled manifest format.
+     */
+    public static final short VERSION = 2;
+
+    /**
+     * Flag set when the manifest contains content hashes.
+     */
+    private static final short FLAG_HASHES = 1;
+
+    /**
+     * Size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 32;
+
+    /**
+     * Size of a type table entry in bytes: character offset and length.
+     */
+    private static final int TYPE_SIZE = 8;
+
+    /**
+     * Size of an entry in bytes: id hash, id offset, id length, type code,
+     * path offset, path length, reserved, file size and content fingerprint.
+     */
+    private static final int ENTRY_SIZE = 36;
+
+    /**
+     * Size of a content hash in bytes.
+     */
+    public static final int HASH_SIZE = SHA256.SIZE;
+
+    /**
+     * The mapped manifest.
+     */
+    private final ByteBuffer data;
+
+    /**
+     * The number of entries.
+     */
+    private final int count;
+
+    /**
+     * The mask of the hash table, which has a power of two size.
+     */
+    private final int mask;
+
+    /**
+     * Absolute offsets of the entry table, hash table, characters and hashes.
+     */
+    private final int entries, table, chars, hashes;
+
+    /**
+     * The asset type of each type code.
+     */
+    private final AssetType[] types;
+
+    /**
+     * The asset key of each entry, resolved when the manifest is opened.
+     */
+    private final AssetKey[] keys;
+
+    /**
+     * The index of the first entry of each key, for keys listed more than once.
+     */
+    private final Map<AssetKey, Integer> indices;
+
+    /**
+     * The content group of each entry, or -1 if its content is unique.
+     */
+    private final int[] groups;
+
+    /**
+     * Reads a compiled manifest from a buffer.
+     *
+     * @param data the compiled manifest.
+     * @throws IOException if the manifest is malformed.
+     */
+    private AssetManifest(final ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a compiled asset manifest");
+        } else if (data.getShort(4) != VERSION) {
+            throw new IOException("Unsupported asset manifest version " + data.getShort(4));
+        }
+        final boolean hashed = (data.getShort(6) & FLAG_HASHES) != 0;
+        count = data.getInt(8);
+        final int typeCount = data.getInt(12);
+        final int tableSize = data.getInt(16);
+        chars = data.getInt(20);
+        hashes = hashed ? data.getInt(24) : -1;
+        entries = HEADER_SIZE + typeCount * TYPE_SIZE;
+        table = entries + count * ENTRY_SIZE;
+        mask = tableSize - 1;
+
+        /* Validate Layout */
+        if (count < 0 || count > data.capacity() / ENTRY_SIZE || typeCount < 0 || typeCount > Short.MAX_VALUE
+                || tableSize <= count || Integer.bitCount(tableSize) != 1
+                || chars != table + tableSize * Integer.BYTES || chars > data.capacity()
+                || (hashed && (hashes < chars || (long) hashes + (long) count * HASH_SIZE > data.capacity()))) {
+            throw new IOException("Corrupt asset manifest header");
+        }
+
+        /* Resolve Types And Keys Once */
+        types = new AssetType[typeCount];
+        for (int t = 0; t < typeCount; t++) {
+            types[t] = AssetType.getType(readString(data.getInt(HEADER_SIZE + t * TYPE_SIZE), data.getShort(HEADER_SIZE + t * TYPE_SIZE + 4)));
+        }
+        keys = new AssetKey[count];
+        for (int i = 0; i < count; i++) {
+            final int e = entries + i * ENTRY_SIZE;
+            final int type = data.getShort(e + 10);
+            if (type < 0 || type >= typeCount) {
+                throw new IOException("Corrupt asset manifest entry " + i);
+            }
+            keys[i] = AssetKey.getKey(readString(data.getInt(e + 12), data.getShort(e + 16)));
+        }
+
+        /* Group Entries With Identical Content */
+        indices = new IdentityHashMap<>(count * 2);
+        groups = new int[count];
+        final Map<String, Integer> contents = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            indices.putIfAbsent(keys[i], i);
+            final int e = entries + i * ENTRY_SIZE;
+            final String content = data.getShort(e + 10) + ":" + data.getLong(e + 20) + ":" + data.getLong(e + 28) + (hashed ? ":" + Encoder.toHex(getHash(i)) : "");
+            final Integer first = contents.putIfAbsent(content, i);
+            groups[i] = -1;
+            if (first != null && keys[first] != keys[i]) {
+                groups[first] = first;
+                groups[i] = first;
+            }
+        }
+    }
+
+    /**
+     * Memory maps a compiled manifest.
+     *
+     * @param file the compiled manifest file.
+     * @return the manifest.
+     * @throws IOException if the file cannot be read or is malformed.
+     */
+    public static AssetManifest open(final Path file) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final AssetManifest manifest = new AssetManifest(map);
+            log.debug("Mapped asset manifest {} with {} entries", file, manifest.count);
+            return manifest;
+        }
+    }
+
+    /**
+     * Reads a compiled manifest from memory.
+     *
+     * @param data the compiled manifest.
+     * @return the manifest.
+     * @throws IOException if the manifest is malformed.
+     */
+    public static AssetManifest wrap(final byte[] data) throws IOException {
+        return new AssetManifest(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Returns the index of the entry with an id. Creates no objects.
+     *
+     * @param id the id of the asset, such as <code>Textures.RGBA08</code>.
+     * @return the index of the entry, or -1 if the manifest does not contain
+     * the id.
+     */
+    public final int getId(final CharSequence id) {
+        final int hash = hash(id);
+        final int length = id.length();
+        for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+            final int index = data.getInt(table + slot * Integer.BYTES) - 1;
+            if (index < 0) {
+                return -1;
+            }
+            final int e = entries + index * ENTRY_SIZE;
+            if (data.getInt(e) == hash && data.getShort(e + 8) == length && matches(data.getInt(e + 4), id)) {
+                return index;
+            }
+        }
+    }
+
+    /**
+     * Returns the key of an entry.
+     *
+     * @param index the index of the entry.
+     * @return the {@link AssetKey key} of the asset.
+     */
+    public final AssetKey getKey(final int index) {
+        return keys[index];
+    }
+
+    /**
+     * Returns the key of the entry with an id. Creates no objects.
+     *
+     * @param id the id of the asset.
+     * @return the {@link AssetKey key} of the asset, or null if the manifest
+     * does not contain the id.
+     */
+    public final AssetKey getKey(final CharSequence id) {
+        final int index = getId(id);
+        return index < 0 ? null : keys[index];
+    }
+
+    /**
+     * Returns the index of the entry of a key.
+     *
+     * @param key the {@link AssetKey key} of the asset.
+     * @return the index of the first entry with the key, or -1 if the manifest
+     * does not contain it.
+     */
+    public final int getIndex(final AssetKey key) {
+        final Integer index = indices.get(key);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the type of an entry.
+     *
+     * @param index the index of the entry.
+     * @return the {@link AssetType type} of the asset.
+     */
+    public final AssetType getType(final int index) {
+        return types[data.getShort(entries + index * ENTRY_SIZE + 10)];
+    }
+
+    /**
+     * Returns the size of the file of an entry when the manifest was compiled.
+     *
+     * @param index the index of the entry.
+     * @return the file size in bytes.
+     */
+    public final long getSize(final int index) {
+        return data.getLong(entries + index * ENTRY_SIZE + 20);
+    }
+
+    /**
+     * Returns the 64-bit {@link XXHash64 xxHash} of the file of an entry when
+     * the manifest was compiled. Fingerprints are always compiled.
+     *
+     * @param index the index of the entry.
+     * @return the content fingerprint.
+     */
+    public final long getFingerprint(final int index) {
+        return data.getLong(entries + index * ENTRY_SIZE + 28);
+    }
+
+    /**
+     * Returns the content group of an entry: the index of the first entry
+     * with the same type, size and fingerprint under a different path. When
+     * the manifest {@link #hasHashes() has hashes} the SHA-256 hashes of the
+     * entries must match as well.
+     *
+     * @param index the index of the entry.
+     * @return the index of the first entry with identical content, which may
+     * be the entry itself, or -1 if no other path has the same content.
+     */
+    public final int getContentGroup(final int index) {
+        return groups[index];
+    }
+
+    /**
+     * Indicates if the manifest contains content hashes.
+     *
+     * @return true if content hashes were compiled into the manifest.
+     */
+    public final boolean hasHashes() {
+        return hashes >= 0;
+    }
+
+    /**
+     * Returns the SHA-256 hash of the file of an entry when the manifest was
+     * compiled.
+     *
+     * @param index the index of the entry.
+     * @return a copy of the content hash, or null if the manifest contains no
+     * hashes.
+     */
+    public final byte[] getHash(final int index) {
+        if (hashes < 0) {
+            return null;
+        }
+        final byte[] hash = new byte[HASH_SIZE];
+        final ByteBuffer view = data.duplicate();
+        view.position(hashes + index * HASH_SIZE);
+        view.get(hash);
+        return hash;
+    }
+
+    /**
+     * Returns the id of an entry. Allocates a string and is intended for
+     * diagnostics.
+     *
+     * @param index the index of the entry.
+     * @return the id of the asset.
+     */
+    public final String getName(final int index) {
+        final int e = entries + index * ENTRY_SIZE;
+        try {
+            return readString(data.getInt(e + 4), data.getShort(e + 8));
+        } catch (final IOException ex) {
+            throw new IllegalStateException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the number of assets in the manifest.
+     */
+    public final int size() {
+        return count;
+    }
+
+    /**
+     * Compiles an XML manifest. Paths are resolved relative to the directory
+     * of the XML file, which is the root assets directory. The output is
+     * written to a temporary file and moved into place, so a running
+     * application never maps a partially written manifest. The temporary file
+     * is created with the default permissions of a new file rather than the
+     * owner-only permissions of {@link Files#createTempFile}, so the manifest
+     * stays readable by other users.
+     *
+     * @param xml the XML manifest.
+     * @param out the compiled manifest to write.
+     * @param hashes true to store a SHA-256 hash of each file.
+     * @return the number of entries compiled.
+     * @throws IOException if the XML cannot be read or is malformed, an id is
+     * repeated or a listed file does not exist.
+     */
+    public static int compile(final Path xml, final Path out, final boolean hashes) throws IOException {
+        final Path root = xml.toAbsolutePath().getParent();
+        final Map<String, String> assets = parse(xml);
+        final byte[] compiled = compile(assets, (path) -> {
+            final Path file = root.resolve(path);
+            if (!Files.isRegularFile(file)) {
+                throw new IOException("Asset listed in " + xml.getFileName() + " does not exist: " + path);
+            }
+            return file;
+        }, hashes);
+        final Path dir = out.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        final Path tmp = dir.resolve(out.getFileName() + "." + Long.toHexString(System.nanoTime()) + ".tmp");
+        try {
+            Files.write(tmp, compiled, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        log.info("Compiled {} assets from {} into {}", assets.size(), xml, out);
+        return assets.size();
+    }
+
+    /**
+     * Resolves the file of a manifest entry during compilation.
+     */
+    @FunctionalInterface
+    interface Resolver {
+
+        Path resolve(final String path) throws IOException;
+    }
+
+    /**
+     * Compiles a map of ids to paths.
+     *
+     * @param assets the path of each id, in manifest order.
+     * @param resolver locates the file of each path.
+     * @param hashed true to store a SHA-256 hash of each file.
+     * @return the compiled manifest.
+     * @throws IOException if a file cannot be read.
+     */
+    static byte[] compile(final Map<String, String> assets, final Resolver resolver, final boolean hashed) throws IOException {
+        final int count = assets.size();
+        int tableSize = 2;
+        while (tableSize < count * 2) {
+            tableSize <<= 1;
+        }
+
+        /* Collect Strings And Type Codes */
+        final StringBuilder text = new StringBuilder();
+        final Map<String, Integer> typeCodes = new LinkedHashMap<>();
+        final List<int[]> typeRefs = new ArrayList<>();
+        final int[][] entryRefs = new int[count][];
+        final long[] sizes = new long[count];
+        final long[] fingerprints = new long[count];
+        final byte[][] digests = new byte[count][];
+        int i = 0;
+        for (final Map.Entry<String, String> asset : assets.entrySet()) {
+            final String path = asset.getValue();
+            final int dot = path.lastIndexOf('.');
+            final String ext = dot < 0 || dot < path.lastIndexOf('/') ? "" : path.substring(dot + 1).toUpperCase();
+            Integer type = typeCodes.get(ext);
+            if (type == null) {
+                typeCodes.put(ext, type = typeCodes.size());
+                typeRefs.add(new int[]{text.length(), ext.length()});
+                text.append(ext);
+            }
+            entryRefs[i] = new int[]{hash(asset.getKey()), text.length(), asset.getKey().length(), type, 0, path.length()};
+            text.append(asset.getKey());
+            entryRefs[i][4] = text.length();
+            text.append(path);
+
+            final byte[] content = Files.readAllBytes(resolver.resolve(path));
+            sizes[i] = content.length;
+            fingerprints[i] = XXHash64.hash(content);
+            if (hashed) {
+                digests[i] = SHA256.hash(content);
+            }
+            i++;
+        }
+
+        /* Lay Out The File */
+        final int entries = HEADER_SIZE + typeCodes.size() * TYPE_SIZE;
+        final int table = entries + count * ENTRY_SIZE;
+        final int chars = table + tableSize * Integer.BYTES;
+        final int hashes = chars + text.length() * Character.BYTES;
+        final ByteBuffer out = ByteBuffer.allocate(hashes + (hashed ? count * HASH_SIZE : 0));
+        out.putInt(MAGIC).putShort(VERSION).putShort(hashed ? FLAG_HASHES : 0);
+        out.putInt(count).putInt(typeCodes.size()).putInt(tableSize).putInt(chars).putInt(hashed ? hashes : 0).putInt(0);
+        for (final int[] ref : typeRefs) {
+            out.putInt(ref[0]).putShort((short) ref[1]).putShort((short) 0);
+        }
+        for (int e = 0; e < count; e++) {
+            final int[] ref = entryRefs[e];
+            out.putInt(ref[0]).putInt(ref[1]).putShort((short) ref[2]).putShort((short) ref[3]);
+            out.putInt(ref[4]).putShort((short) ref[5]).putShort((short) 0).putLong(sizes[e]).putLong(fingerprints[e]);
+
+            /* Insert Into The Hash Table With Linear Probing */
+            int slot = mix(ref[0]) & (tableSize - 1);
+            while (out.getInt(table + slot * Integer.BYTES) != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            out.putInt(table + slot * Integer.BYTES, e + 1);
+        }
+        out.position(chars);
+        for (int c = 0; c < text.length(); c++) {
+            out.putChar(text.charAt(c));
+        }
+        if (hashed) {
+            for (final byte[] digest : digests) {
+                out.put(digest);
+            }
+        }
+        return out.array();
+    }
+
+    /**
+     * Parses an XML manifest into a map of ids to paths.
+     *
+     * @param xml the XML manifest.
+     * @return the path of each id, in manifest order.
+     * @throws IOException if the XML cannot be read or is malformed, or an id
+     * is repeated.
+     */
+    static Map<String, String> parse(final Path xml) throws IOException {
+        final Document document;
+        try (final InputStream in = Files.newInputStream(xml)) {
+            final DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            builder.setErrorHandler(new DefaultHandler());
+            document = builder.parse(in);
+        } catch (final ParserConfigurationException | SAXException e) {
+            throw new IOException("Malformed asset manifest " + xml + " - " + e.getMessage(), e);
+        }
+        final Map<String, String> assets = new LinkedHashMap<>();
+        final Map<String, String> paths = new HashMap<>();
+        final NodeList groups = document.getDocumentElement().getElementsByTagName("assets");
+        for (int g = 0; g < groups.getLength(); g++) {
+            final Element group = (Element) groups.item(g);
+            final String name = group.getAttribute("name").trim();
+            final NodeList list = group.getElementsByTagName("asset");
+            for (int a = 0; a < list.getLength(); a++) {
+                final Element asset = (Element) list.item(a);
+                final String id = asset.getAttribute("id").trim();
+                final String path = asset.getAttribute("path").trim().replace('\\', '/');
+                if (id.isEmpty() || path.isEmpty()) {
+                    throw new IOException("Asset without an id or path in group " + name);
+                }
+                final String qualified = name.isEmpty() ? id : name + "." + id;
+                if (assets.put(qualified, path) != null) {
+                    throw new IOException("Duplicate asset id " + qualified);
+                }
+                if (qualified.length() > Short.MAX_VALUE || path.length() > Short.MAX_VALUE) {
+                    throw new IOException("Asset id or path is too long: " + qualified);
+                }
+                final String other = paths.put(path, qualified);
+                if (other != null) {
+                    log.warn("Asset {} is listed as both {} and {}", path, other, qualified);
+                }
+            }
+        }
+        return assets;
+    }
+
+    /**
+     * Compiles a manifest from the command line, for use by the build.
+     * Arguments: the XML manifest, the compiled manifest and optionally
+     * <code>-hashes</code> to store content hashes.
+     *
+     * @param args the command line arguments.
+     * @throws IOException if the manifest cannot be compiled.
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: AssetManifest <Assets.xml> <Assets.bin> [-hashes]");
+            System.exit(1);
+        }
+        compile(Paths.get(args[0]), Paths.get(args[1]), args.length > 2 && args[2].equals("-hashes"));
+    }
+
+    /**
+     * Compares the characters of an id in the mapped data to a sequence.
+     */
+    private boolean matches(final int offset, final CharSequence id) {
+        int p = chars + offset * Character.BYTES;
+        for (int c = 0; c < id.length(); c++, p += Character.BYTES) {
+            if (data.getChar(p) != id.charAt(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a string from the mapped characters.
+     */
+    private String readString(final int offset, final int length) throws IOException {
+        if (offset < 0 || length < 0 || chars + ((long) offset + length) * Character.BYTES > (hashes < 0 ? data.capacity() : hashes)) {
+            throw new IOException("Corrupt asset manifest string");
+        }
+        final char[] c = new char[length];
+        for (int i = 0; i < length; i++) {
+            c[i] = data.getChar(chars + (offset + i) * Character.BYTES);
+        }
+        return new String(c);
+    }
+
+    /**
+     * Hashes an id. Strings reuse their cached hash code, which the same
+     * formula produces for any other character sequence.
+     */
+    private static int hash(final CharSequence id) {
+        if (id instanceof String) {
+            return id.hashCode();
+        }
+        int h = 0;
+        for (int i = 0; i < id.length(); i++) {
+            h = 31 * h + id.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * Spreads the bits of a hash before it is masked to a table slot.
+     */
+    private static int mix(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,703 @@
+package net.cybertekt.asset;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import net.cybertekt.asset.AssetManager.AssetInitializationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asset Metrics - (C) Cybertekt Software
+ *
+ * Telemetry of the {@link AssetManager asset manager}, kept separately for
+ * each {@link AssetType asset type}. For every load it records how long the
+ * task waited in the queue, how long the file took to read and how long the
+ * loader took to decode it, each in a {@link Histogram histogram} with power
+ * of two buckets, along with the bytes read. It also counts cache hits and
+ * misses, assets shared between identical files, entries evicted by the
+ * garbage collector or invalidated, failures and fallback assets.
+ *
+ * <p>
+ * Metrics are disabled by default and cost a single volatile read per
+ * operation while disabled. When enabled, a load reads its file through a
+ * stream that counts the bytes read and times each read, so that reading and
+ * decoding are timed apart without buffering the file. Every counter is a
+ * {@link LongAdder}, so loader threads recording at the same time do not
+ * contend. A consistent {@link Snapshot snapshot} can be taken at any time,
+ * and can be logged periodically by {@link AssetManager#update()}.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class AssetMetrics {
+
+    /**
+     * SLF4J internal class logger for debugging.
+     */
+    public static final Logger log = LoggerFactory.getLogger(AssetMetrics.class);
+
+    /**
+     * Number of histogram buckets. Bucket <i>i</i> counts durations of at
+     * least 2<sup>i-1</sup> and less than 2<sup>i</sup> nanoseconds, and the
+     * last bucket counts everything longer.
+     */
+    public static final int BUCKETS = 40;
+
+    /**
+     * The recorder of each asset type.
+     */
+    private final Map<AssetType, Recorder> recorders = new ConcurrentHashMap<>();
+
+    /**
+     * Indicates if metrics are recorded.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * Nanoseconds between log lines, or 0 to disable logging.
+     */
+    private volatile long logInterval;
+
+    /**
+     * The time of the last log line, accessed by the main thread only.
+     */
+    private long lastLog;
+
+    /**
+     * Constructs the metrics of the asset manager.
+     */
+    AssetMetrics() {
+    }
+
+    /**
+     * Enables or disables recording. Recorded values are kept while disabled.
+     *
+     * @param enabled true to record metrics.
+     */
+    public final void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Indicates if metrics are recorded.
+     *
+     * @return true if metrics are enabled.
+     */
+    public final boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets how often {@link AssetManager#update()} logs a snapshot at the info
+     * level while metrics are enabled.
+     *
+     * @param interval the time between log lines, or 0 to stop logging.
+     * @param unit the unit of the interval.
+     */
+    public final void setLogInterval(final long interval, final TimeUnit unit) {
+        logInterval = unit.toNanos(Math.max(0, interval));
+        lastLog = System.nanoTime();
+    }
+
+    /**
+     * Takes a snapshot of every asset type that has been recorded.
+     *
+     * @return the current {@link Snapshot snapshot}.
+     */
+    public final Snapshot getSnapshot() {
+        final List<TypeMetrics> types = new ArrayList<>();
+        for (final Recorder recorder : recorders.values()) {
+            types.add(new TypeMetrics(recorder));
+        }
+        types.sort(Comparator.comparing((metrics) -> metrics.getType().getExt()));
+        return new Snapshot(types);
+    }
+
+    /**
+     * Discards every recorded value.
+     */
+    public final void reset() {
+        recorders.clear();
+    }
+
+    @Override
+    public final String toString() {
+        return getSnapshot().toString();
+    }
+
+    /**
+     * Wraps a load in a task that records the time it waits in the queue, the
+     * time taken to read the file and the time taken to decode it.
+     *
+     * @param loader the {@link AssetLoader loader} of the asset.
+     * @param key the {@link AssetKey key} of the asset.
+     * @param stream the open stream of the file.
+     * @return the task to submit.
+     */
+    final Callable<Asset> newTask(final AssetLoader loader, final AssetKey key, final InputStream stream) {
+        return new TimedLoad(loader, key, stream, System.nanoTime());
+    }
+
+    /**
+     * Decodes a file, recording the time spent reading it and the time spent
+     * decoding it.
+     *
+     * @param loader the {@link AssetLoader loader} of the asset.
+     * @param key the {@link AssetKey key} of the asset.
+     * @param stream the open stream of the file.
+     * @param queued the time the load was queued, or -1 for a load that was
+     * not queued.
+     * @return the loaded {@link Asset asset}.
+     * @throws AssetInitializationException if the file cannot be read or
+     * decoded.
+     */
+    final Asset load(final AssetLoader loader, final AssetKey key, final InputStream stream, final long queued) throws AssetInitializationException {
+        return new TimedLoad(loader, key, stream, queued).call();
+    }
+
+    /**
+     * Records a cache hit.
+     */
+    final void hit(final AssetType type) {
+        if (enabled) {
+            recorder(type).hits.increment();
+        }
+    }
+
+    /**
+     * Records a cache miss.
+     */
+    final void miss(final AssetType type) {
+        if (enabled) {
+            recorder(type).misses.increment();
+        }
+    }
+
+    /**
+     * Records an asset served from another path with identical content.
+     */
+    final void shared(final AssetType type) {
+        if (enabled) {
+            recorder(type).shared.increment();
+        }
+    }
+
+    /**
+     * Records a cache entry removed because its asset was collected.
+     */
+    final void evicted(final AssetType type) {
+        if (enabled) {
+            recorder(type).evictions.increment();
+        }
+    }
+
+    /**
+     * Records a cache entry removed because its file changed.
+     */
+    final void invalidated(final AssetType type) {
+        if (enabled) {
+            recorder(type).invalidations.increment();
+        }
+    }
+
+    /**
+     * Records an asset that could not be found or has no loader.
+     */
+    final void failed(final AssetType type) {
+        if (enabled) {
+            recorder(type).failures.increment();
+        }
+    }
+
+    /**
+     * Records a fallback asset served in place of one that failed.
+     */
+    final void fallback(final AssetType type) {
+        if (enabled) {
+            recorder(type).fallbacks.increment();
+        }
+    }
+
+    /**
+     * Logs a snapshot if the log interval has elapsed. Called by the main
+     * thread.
+     */
+    final void poll() {
+        final long interval = logInterval;
+        if (interval > 0 && enabled) {
+            final long now = System.nanoTime();
+            if (now - lastLog >= interval) {
+                lastLog = now;
+                log.info("Asset metrics - {}", getSnapshot());
+            }
+        }
+    }
+
+    /**
+     * Returns the recorder of an asset type, creating it on first use.
+     */
+    final Recorder recorder(final AssetType type) {
+        final Recorder recorder = recorders.get(type);
+        return recorder != null ? recorder : recorders.computeIfAbsent(type, Recorder::new);
+    }
+
+    /**
+     * Returns the bucket of a duration.
+     */
+    static int bucket(final long nanos) {
+        return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * Live counters of one asset type.
+     */
+    static final class Recorder {
+
+        private final AssetType type;
+
+        private final LongAdder hits = new LongAdder(), misses = new LongAdder(), shared = new LongAdder();
+
+        private final LongAdder failures = new LongAdder(), fallbacks = new LongAdder();
+
+        private final LongAdder evictions = new LongAdder(), invalidations = new LongAdder(), bytes = new LongAdder();
+
+        private final Distribution wait = new Distribution(), io = new Distribution(), decode = new Distribution();
+
+        private Recorder(final AssetType type) {
+            this.type = type;
+        }
+
+        /**
+         * Records a completed load. Allocates nothing. Loads are counted by the
+         * decode histogram.
+         *
+         * @param waitNanos the time spent queued, or -1 if not queued.
+         * @param ioNanos the time spent reading the file.
+         * @param decodeNanos the time spent decoding.
+         * @param size the number of bytes read.
+         */
+        final void record(final long waitNanos, final long ioNanos, final long decodeNanos, final long size) {
+            bytes.add(size);
+            if (waitNanos >= 0) {
+                wait.record(waitNanos);
+            }
+            io.record(ioNanos);
+            decode.record(decodeNanos);
+        }
+    }
+
+    /**
+     * A load that reads its file through itself, counting the bytes read and
+     * the time spent inside the stream of the file. Used by a single loader
+     * thread.
+     */
+    private final class TimedLoad extends FilterInputStream implements Callable<Asset> {
+
+        private final AssetLoader loader;
+
+        private final AssetKey key;
+
+        /**
+         * The time the load was queued, or -1 if it was not queued.
+         */
+        private final long queued;
+
+        /**
+         * The bytes read or skipped.
+         */
+        private long bytes;
+
+        /**
+         * The nanoseconds spent inside the stream of the file.
+         */
+        private long nanos;
+
+        private TimedLoad(final AssetLoader loader, final AssetKey key, final InputStream stream, final long queued) {
+            super(stream);
+            this.loader = loader;
+            this.key = key;
+            this.queued = queued;
+        }
+
+        @Override
+        public Asset call() throws AssetInitializationException {
+            final long start = System.nanoTime();
+            final Recorder recorder = recorder(key.getType());
+            try {
+                final Asset asset = loader.loadInline(key, this);
+                recorder.record(queued < 0 ? -1 : start - queued, nanos, System.nanoTime() - start - nanos, bytes);
+                return asset;
+            } catch (final RuntimeException e) {
+                recorder.failures.increment();
+                throw e;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            final long start = System.nanoTime();
+            final int next = in.read();
+            nanos += System.nanoTime() - start;
+            if (next >= 0) {
+                bytes++;
+            }
+            return next;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final long start = System.nanoTime();
+            final int n = in.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            if (n > 0) {
+                bytes += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long start = System.nanoTime();
+            final long skipped = in.skip(n);
+            nanos += System.nanoTime() - start;
+            bytes += Math.max(0, skipped);
+            return skipped;
+        }
+    }
+
+    /**
+     * Live histogram of durations.
+     */
+    private static final class Distribution {
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private Distribution() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(final long nanos) {
+            buckets[bucket(nanos)].increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        private Histogram snapshot() {
+            final long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new Histogram(counts, total.sum(), max.get());
+        }
+    }
+
+    /**
+     * Snapshot of a distribution of durations in nanoseconds.
+     */
+    public static final class Histogram {
+
+        private final long[] counts;
+
+        private final long count, totalNanos, maxNanos;
+
+        private Histogram(final long[] counts, final long totalNanos, final long maxNanos) {
+            this.counts = counts;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            long sum = 0;
+            for (final long c : counts) {
+                sum += c;
+            }
+            this.count = sum;
+        }
+
+        /**
+         * Combines histograms.
+         */
+        private static Histogram merge(final List<Histogram> histograms) {
+            final long[] counts = new long[BUCKETS];
+            long total = 0, max = 0;
+            for (final Histogram h : histograms) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] += h.counts[i];
+                }
+                total += h.totalNanos;
+                max = Math.max(max, h.maxNanos);
+            }
+            return new Histogram(counts, total, max);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public long getMeanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+
+        /**
+         * Returns the number of durations in a bucket.
+         *
+         * @param bucket the bucket, from 0 to {@link #BUCKETS} - 1.
+         * @return the number of durations recorded in the bucket.
+         */
+        public long getBucket(final int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket containing
+         * it, limited to the longest duration recorded.
+         *
+         * @param percentile the percentile, from 0 to 100.
+         * @return the estimated duration in nanoseconds, or 0 if nothing was
+         * recorded.
+         */
+        public long getPercentileNanos(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(maxNanos, (1L << i) - 1);
+                }
+            }
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "p50 " + micros(getPercentileNanos(50)) + ", p99 " + micros(getPercentileNanos(99)) + ", max " + micros(maxNanos);
+        }
+    }
+
+    /**
+     * Snapshot of the metrics of one asset type.
+     */
+    public static final class TypeMetrics {
+
+        private final AssetType type;
+
+        private final long hits, misses, shared, loads, failures, fallbacks, evictions, invalidations, bytes;
+
+        private final Histogram wait, io, decode;
+
+        private TypeMetrics(final Recorder recorder) {
+            type = recorder.type;
+            hits = recorder.hits.sum();
+            misses = recorder.misses.sum();
+            shared = recorder.shared.sum();
+            failures = recorder.failures.sum();
+            fallbacks = recorder.fallbacks.sum();
+            evictions = recorder.evictions.sum();
+            invalidations = recorder.invalidations.sum();
+            bytes = recorder.bytes.sum();
+            wait = recorder.wait.snapshot();
+            io = recorder.io.snapshot();
+            decode = recorder.decode.snapshot();
+            loads = decode.getCount();
+        }
+
+        private TypeMetrics(final List<TypeMetrics> types) {
+            type = null;
+            final long[] sums = new long[9];
+            final List<Histogram> waits = new ArrayList<>(), ios = new ArrayList<>(), decodes = new ArrayList<>();
+            for (final TypeMetrics t : types) {
+                final long[] values = {t.hits, t.misses, t.shared, t.loads, t.failures, t.fallbacks, t.evictions, t.invalidations, t.bytes};
+                for (int i = 0; i < sums.length; i++) {
+                    sums[i] += values[i];
+                }
+                waits.add(t.wait);
+                ios.add(t.io);
+                decodes.add(t.decode);
+            }
+            hits = sums[0];
+            misses = sums[1];
+            shared = sums[2];
+            loads = sums[3];
+            failures = sums[4];
+            fallbacks = sums[5];
+            evictions = sums[6];
+            invalidations = sums[7];
+            bytes = sums[8];
+            wait = Histogram.merge(waits);
+            io = Histogram.merge(ios);
+            decode = Histogram.merge(decodes);
+        }
+
+        /**
+         * Returns the asset type.
+         *
+         * @return the {@link AssetType type}, or null for the total of every
+         * type.
+         */
+        public AssetType getType() {
+            return type;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * Returns the fraction of requests served from the cache.
+         *
+         * @return the hit ratio from 0 to 1, or 0 if nothing was requested.
+         */
+        public double getHitRatio() {
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+
+        public long getShared() {
+            return shared;
+        }
+
+        public long getLoads() {
+            return loads;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getFallbacks() {
+            return fallbacks;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public long getBytesRead() {
+            return bytes;
+        }
+
+        /**
+         * Returns the time loads waited in the queue. Inline loads are not
+         * queued and are not included.
+         *
+         * @return the queue wait {@link Histogram histogram}.
+         */
+        public Histogram getWait() {
+            return wait;
+        }
+
+        public Histogram getIO() {
+            return io;
+        }
+
+        public Histogram getDecode() {
+            return decode;
+        }
+
+        @Override
+        public String toString() {
+            return (type == null ? "Total" : type.getExt()) + " [" + loads + " loads, " + failures + " failed, " + fallbacks + " fallbacks, "
+                    + String.format("%.1f", getHitRatio() * 100) + "% hits, " + shared + " shared, " + evictions + " evicted, " + invalidations + " invalidated, "
+                    + bytes / 1024 + " KB read] - Wait [" + wait + "] - I/O [" + io + "] - Decode [" + decode + "]";
+        }
+    }
+
+    /**
+     * Snapshot of the metrics of every asset type.
+     */
+    public static final class Snapshot {
+
+        private final Map<AssetType, TypeMetrics> types;
+
+        private final TypeMetrics total;
+
+        private Snapshot(final List<TypeMetrics> list) {
+            final Map<AssetType, TypeMetrics> map = new LinkedHashMap<>();
+            for (final TypeMetrics metrics : list) {
+                map.put(metrics.getType(), metrics);
+            }
+            types = Collections.unmodifiableMap(map);
+            total = new TypeMetrics(list);
+        }
+
+        /**
+         * Returns the metrics of each recorded type, ordered by extension.
+         *
+         * @return the metrics of each {@link AssetType type}.
+         */
+        public Map<AssetType, TypeMetrics> getTypes() {
+            return types;
+        }
+
+        /**
+         * Returns the metrics of one type.
+         *
+         * @param type the {@link AssetType type}.
+         * @return the metrics of the type, or null if nothing was recorded for
+         * it.
+         */
+        public TypeMetrics get(final AssetType type) {
+            return types.get(type);
+        }
+
+        /**
+         * Returns the combined metrics of every type.
+         *
+         * @return the total metrics.
+         */
+        public TypeMetrics getTotal() {
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder text = new StringBuilder(total.toString());
+            for (final TypeMetrics metrics : types.values()) {
+                text.append("; ").append(metrics);
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Formats nanoseconds as microseconds.
+     */
+    private static String micros(final long nanos) {
+        return nanos / 1000 + "us";
+    }
+}
@@ -1,5 +1,6 @@
 package net.cybertekt.asset;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import net.cybertekt.util.HashCache;
 import net.cybertekt.util.HashCache.CacheMode;
 import net.cybertekt.util.HashCache.MapMode;
@@ -36,7 +37,7 @@ public final class AssetType {
      * asset types created by the {@link #getType(java.lang.String)} static
      * utility method.
      */
-    private static final HashCache<String, AssetType> typeCache = new HashCache<>(CacheMode.Weak, MapMode.Hash);
+    private static final HashCache<String, AssetType> typeCache = new HashCache<>(CacheMode.Weak, MapMode.Concurrent);
 
     /**
      * Tracks the total number of constructed types, which is incremented and
@@ -44,26 +45,22 @@ public final class AssetType {
      * there are never hash code collisions between types and optimizes them for
      * use with {@link java.util.HashMap}.
      */
-    private static int hashCount = 1;
+    private static final AtomicInteger hashCount = new AtomicInteger(1);
 
     /**
      * Static utility method for retrieving the asset type for the specified
      * file type extension. File type extensions are <b>not</b> case-sensitive
      * and are automatically converted to uppercase characters. A new type will
      * be constructed if one does not already exist for the specified extension
-     * within the {@link #typeCache}.
+     * within the {@link #typeCache}. Types may be requested from any thread,
+     * and concurrent requests for the same extension receive the same type.
      *
      * @param extension the file extension for which to retrieve the asset type.
      * @return the asset type for the specified file type extension.
      */
     public static final AssetType getType(final String extension) {
         updateCache();
-        String ext = extension.toUpperCase();
-        AssetType type = typeCache.get(ext);
-        if (type == null) {
-            typeCache.put(ext, (type = new AssetType(ext)));
-        }
-        return type;
+        return typeCache.computeIfAbsent(extension.toUpperCase(), AssetType::new);
     }
 
     /**
@@ -108,7 +105,7 @@ public final class AssetType {
      */
     private AssetType(final String extension) {
         ext = extension;
-        hashCode = AssetType.hashCount++;
+        hashCode = AssetType.hashCount.getAndIncrement();
     }
 
     /**
@@ -0,0 +1,300 @@
+package net.cybertekt.asset;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asset Watcher - (C) Cybertekt Software
+ *
+ * Watches a directory tree through a {@link WatchService} and reports the
+ * files that were created, modified or deleted. Editors typically write a
+ * file several times when saving it, so changes are debounced: they are
+ * collected until no further change has been seen for the debounce period and
+ * then reported together in one batch, each file at most once.
+ *
+ * <p>
+ * The {@link WatchService} does not watch subdirectories, so every directory
+ * in the tree is registered when the watcher starts and directories created
+ * later are registered as they appear, along with any files already inside
+ * them. Paths are reported relative to the root directory with forward
+ * slashes, the same form used by {@link AssetKey asset keys}. The
+ * {@link Listener listener} is called on the watcher thread.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class AssetWatcher {
+
+    /**
+     * SLF4J internal class logger for debugging.
+     */
+    public static final Logger log = LoggerFactory.getLogger(AssetWatcher.class);
+
+    /**
+     * Default debounce period in milliseconds.
+     */
+    public static final long DEFAULT_DEBOUNCE = 100;
+
+    /**
+     * Receives batches of changed files.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /**
+         * Called once changes have settled for the debounce period.
+         *
+         * @param paths the changed files relative to the root directory, in
+         * the order they first changed.
+         */
+        void onChange(final Set<String> paths);
+    }
+
+    /**
+     * The root of the watched directory tree.
+     */
+    private final Path root;
+
+    /**
+     * The debounce period in nanoseconds.
+     */
+    private final long debounce;
+
+    /**
+     * Receives batches of changed files.
+     */
+    private final Listener listener;
+
+    /**
+     * The watched directories keyed by their registration.
+     */
+    private final Map<WatchKey, Path> dirs = new ConcurrentHashMap<>();
+
+    /**
+     * The watch service, null while stopped.
+     */
+    private volatile WatchService service;
+
+    /**
+     * The watcher thread, null while stopped.
+     */
+    private volatile Thread thread;
+
+    /**
+     * Constructs a new watcher for a directory tree with the
+     * {@link #DEFAULT_DEBOUNCE default debounce period}.
+     *
+     * @param root the root of the directory tree to watch.
+     * @param listener receives batches of changed files.
+     */
+    public AssetWatcher(final Path root, final Listener listener) {
+        this(root, DEFAULT_DEBOUNCE, TimeUnit.MILLISECONDS, listener);
+    }
+
+    /**
+     * Constructs a new watcher for a directory tree.
+     *
+     * @param root the root of the directory tree to watch.
+     * @param debounce how long changes must settle before they are reported.
+     * @param unit the unit of the debounce period.
+     * @param listener receives batches of changed files.
+     */
+    public AssetWatcher(final Path root, final long debounce, final TimeUnit unit, final Listener listener) {
+        this.root = root.toAbsolutePath().normalize();
+        this.debounce = unit.toNanos(debounce);
+        this.listener = listener;
+    }
+
+    /**
+     * Registers every directory in the tree and starts the watcher thread.
+     * Starting a watcher that is already running has no effect.
+     *
+     * @throws IOException if the watch service cannot be created or the
+     * directory tree cannot be registered.
+     */
+    public final synchronized void start() throws IOException {
+        if (thread != null) {
+            return;
+        }
+        service = FileSystems.getDefault().newWatchService();
+        try {
+            register(root, null);
+        } catch (final IOException e) {
+            service.close();
+            service = null;
+            throw e;
+        }
+        thread = new Thread(this::run, "Asset Watcher");
+        thread.setDaemon(true);
+        thread.start();
+        log.debug("Watching {} directories under {}", dirs.size(), root);
+    }
+
+    /**
+     * Stops the watcher thread and closes the watch service. Changes that have
+     * not yet settled are discarded.
+     */
+    public final synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        try {
+            service.close();
+        } catch (final IOException e) {
+            log.warn("Unable to close watch service - {}", e.getMessage());
+        }
+        thread.interrupt();
+        try {
+            thread.join(1000);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dirs.clear();
+        thread = null;
+        service = null;
+    }
+
+    /**
+     * Indicates if the watcher thread is running.
+     *
+     * @return true if the watcher is running.
+     */
+    public final boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Returns the root of the watched directory tree.
+     *
+     * @return the absolute path of the root directory.
+     */
+    public final Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Watcher thread loop. Blocks until a change arrives, then keeps polling
+     * until no change has been seen for the debounce period.
+     */
+    private void run() {
+        final WatchService watch = service;
+        final Set<String> pending = new LinkedHashSet<>();
+        long last = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                final WatchKey key;
+                if (pending.isEmpty()) {
+                    key = watch.take();
+                } else {
+                    final long remaining = debounce - (System.nanoTime() - last);
+                    key = remaining > 0 ? watch.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                }
+
+                /* Quiet For The Debounce Period - Report The Batch */
+                if (key == null) {
+                    final Set<String> batch = Collections.unmodifiableSet(new LinkedHashSet<>(pending));
+                    pending.clear();
+                    try {
+                        listener.onChange(batch);
+                    } catch (final RuntimeException e) {
+                        log.error("Asset change listener failed - {}", e.toString());
+                    }
+                    continue;
+                }
+
+                if (collect(key, pending)) {
+                    last = System.nanoTime();
+                }
+                if (!key.reset()) {
+                    dirs.remove(key);
+                }
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException e) {
+            /* Stopped */
+        }
+    }
+
+    /**
+     * Adds the files reported by a watch key to the pending changes.
+     *
+     * @return true if any change was collected.
+     */
+    private boolean collect(final WatchKey key, final Set<String> pending) {
+        final Path dir = dirs.get(key);
+        boolean changed = false;
+        for (final WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                log.warn("Asset watcher overflowed under {} - some changes were lost", dir);
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            final Path path = dir.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    register(path, pending);
+                } catch (final IOException e) {
+                    log.warn("Unable to watch {} - {}", path, e.getMessage());
+                }
+            } else if (!Files.isDirectory(path)) {
+                pending.add(relativize(path));
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Registers a directory and all of its subdirectories, adding the files
+     * found to the pending changes if the tree was created after the watcher
+     * started.
+     */
+    private void register(final Path start, final Set<String> pending) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                dirs.put(dir.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                if (pending != null) {
+                    pending.add(relativize(file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Returns the path of a file relative to the root with forward slashes.
+     */
+    private String relativize(final Path path) {
+        return root.relativize(path).toString().replace('\\', '/');
+    }
+}
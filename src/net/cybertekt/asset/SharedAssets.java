@@ -0,0 +1,214 @@
+package net.cybertekt.asset;
+
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shared Assets - (C) Cybertekt Software
+ *
+ * Tracks the decoded {@link Asset assets} shared by the paths of each
+ * {@link AssetManifest#getContentGroup(int) content group} of a manifest. The
+ * first asset decoded for a group is bound to it, and every other key of the
+ * group that is requested afterwards is served the same instance instead of
+ * decoding its own copy.
+ *
+ * <p>
+ * Each group counts the keys holding its asset in the cache. A key stops
+ * holding the asset when it is {@link #release(AssetKey) released}, and a
+ * group with no holders left is dropped, so an asset evicted under every path
+ * is never handed out again. The group only references its asset weakly, so
+ * the cache alone decides when a shared asset is collected. A key whose file
+ * has {@link #detach(AssetKey) changed} since the manifest was compiled no
+ * longer matches its group and is never shared again.
+ * </p>
+ *
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+final class SharedAssets {
+
+    /**
+     * The manifest defining the content groups.
+     */
+    private final AssetManifest manifest;
+
+    /**
+     * The bound asset and holders of each content group.
+     */
+    private final Map<Integer, Group> groups = new HashMap<>();
+
+    /**
+     * The group each holding key belongs to.
+     */
+    private final Map<AssetKey, Integer> holders = new IdentityHashMap<>();
+
+    /**
+     * Keys whose files no longer match the manifest.
+     */
+    private final Set<AssetKey> detached = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Constructs an empty registry for the content groups of a manifest.
+     *
+     * @param manifest the {@link AssetManifest manifest} defining the groups.
+     */
+    SharedAssets(final AssetManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Returns the asset bound to the group of a key and adds the key to its
+     * holders.
+     *
+     * @param key the {@link AssetKey key} being loaded.
+     * @return the shared {@link Asset asset}, or null if the key has no group
+     * or no asset of its group is cached.
+     */
+    synchronized Asset acquire(final AssetKey key) {
+        final int id = groupOf(key);
+        final Group group = id < 0 ? null : groups.get(id);
+        final Asset asset = group != null ? group.asset.get() : null;
+        if (asset == null) {
+            drop(id);
+            return null;
+        }
+        hold(key, id, group);
+        return asset;
+    }
+
+    /**
+     * Binds a decoded asset to the group of its key. If another asset of the
+     * group is already cached, the key holds that asset instead and the
+     * decoded copy is discarded.
+     *
+     * @param key the {@link AssetKey key} the asset was decoded for.
+     * @param asset the decoded {@link Asset asset}.
+     * @return the asset to cache for the key.
+     */
+    synchronized Asset bind(final AssetKey key, final Asset asset) {
+        final int id = groupOf(key);
+        if (id < 0) {
+            return asset;
+        }
+        Group group = groups.get(id);
+        final Asset bound = group != null ? group.asset.get() : null;
+        if (bound != null) {
+            hold(key, id, group);
+            return bound;
+        }
+        drop(id);
+        group = new Group(asset);
+        groups.put(id, group);
+        hold(key, id, group);
+        return asset;
+    }
+
+    /**
+     * Removes a key from the holders of its group, dropping the group once no
+     * key holds its asset.
+     *
+     * @param key the {@link AssetKey key} evicted from the cache.
+     */
+    synchronized void release(final AssetKey key) {
+        final Integer id = holders.remove(key);
+        if (id == null) {
+            return;
+        }
+        final Group group = groups.get(id);
+        if (group != null) {
+            group.holders.remove(key);
+            if (group.holders.isEmpty()) {
+                groups.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Releases a key whose file has changed and excludes it from sharing.
+     *
+     * @param key the {@link AssetKey key} of the changed file.
+     */
+    synchronized void detach(final AssetKey key) {
+        release(key);
+        detached.add(key);
+    }
+
+    /**
+     * Returns the number of keys holding the asset of the group of a key.
+     *
+     * @param key the {@link AssetKey key} of the asset.
+     * @return the reference count of the shared asset, or 0 if the key does
+     * not hold a shared asset.
+     */
+    synchronized int getHolders(final AssetKey key) {
+        final Integer id = holders.get(key);
+        final Group group = id == null ? null : groups.get(id);
+        return group == null || group.asset.get() == null ? 0 : group.holders.size();
+    }
+
+    /**
+     * Drops every group. Detached keys remain excluded.
+     */
+    synchronized void clear() {
+        groups.clear();
+        holders.clear();
+    }
+
+    /**
+     * Returns the content group of a key, or -1 if it is not shared.
+     */
+    private int groupOf(final AssetKey key) {
+        if (detached.contains(key)) {
+            return -1;
+        }
+        final int index = manifest.getIndex(key);
+        return index < 0 ? -1 : manifest.getContentGroup(index);
+    }
+
+    /**
+     * Adds a key to the holders of a group.
+     */
+    private void hold(final AssetKey key, final int id, final Group group) {
+        holders.put(key, id);
+        group.holders.add(key);
+    }
+
+    /**
+     * Drops a group whose asset has been collected, along with its holders.
+     */
+    private void drop(final int id) {
+        final Group group = groups.remove(id);
+        if (group != null) {
+            holders.keySet().removeAll(group.holders);
+        }
+    }
+
+    /**
+     * The asset bound to a content group and the keys holding it.
+     */
+    private static final class Group {
+
+        /**
+         * The shared asset, collected once no cache entry holds it.
+         */
+        private final WeakReference<Asset> asset;
+
+        /**
+         * The keys holding the asset.
+         */
+        private final Set<AssetKey> holders = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private Group(final Asset asset) {
+            this.asset = new WeakReference<>(asset);
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package net.cybertekt.asset.font;
+
+import java.util.Arrays;
+import net.cybertekt.asset.Asset;
+import net.cybertekt.asset.AssetKey;
+
+/**
+ * Bitmap Font - (C) Cybertekt Software
+ *
+ * An immutable bitmap font {@link Asset asset} loaded from an AngelCode BMFont
+ * descriptor by the {@link FontLoader font loader}. Glyph metrics are stored
+ * in a single primitive table rather than an object per glyph, so laying out
+ * text touches a few contiguous arrays and allocates nothing. Glyphs for the
+ * first 256 code points are found by direct index, others by binary search.
+ * Kerning pairs are grouped by their first glyph, so a kerning lookup only
+ * searches the pairs that start with that glyph.
+ *
+ * <p>
+ * Metrics are in font pixels with the y axis pointing down from the top of
+ * the line, as in the descriptor. Texture coordinates are normalized to the
+ * size of the page texture.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BitmapFont extends Asset {
+
+    /**
+     * The number of floats per glyph in the {@link #glyphs glyph table}: x
+     * offset, y offset, width, height, x advance, u0, v0, u1, v1.
+     */
+    public static final int GLYPH_SIZE = 9;
+
+    /**
+     * Offsets of each value within a glyph table entry.
+     */
+    public static final int X_OFFSET = 0, Y_OFFSET = 1, WIDTH = 2, HEIGHT = 3, ADVANCE = 4, U0 = 5, V0 = 6, U1 = 7, V1 = 8;
+
+    /**
+     * The number of code points resolved by direct index.
+     */
+    private static final int DIRECT = 256;
+
+    /**
+     * The name of the typeface.
+     */
+    private final String face;
+
+    /**
+     * The size the font was rendered at, in pixels.
+     */
+    private final int size;
+
+    /**
+     * The distance between lines of text.
+     */
+    private final int lineHeight;
+
+    /**
+     * The distance from the top of a line to the baseline.
+     */
+    private final int base;
+
+    /**
+     * The keys of the page textures.
+     */
+    private final AssetKey[] pages;
+
+    /**
+     * The code point of each glyph, in ascending order.
+     */
+    private final int[] codes;
+
+    /**
+     * The metrics of each glyph, {@link #GLYPH_SIZE} floats per glyph in the
+     * same order as {@link #codes}.
+     */
+    private final float[] glyphs;
+
+    /**
+     * The page of each glyph.
+     */
+    private final byte[] glyphPages;
+
+    /**
+     * The glyph index of each of the first 256 code points, -1 if missing.
+     */
+    private final short[] direct;
+
+    /**
+     * The first kerning pair of each glyph, {@link #kernSecond} entries from
+     * <code>kernStart[i]</code> to <code>kernStart[i + 1]</code> belong to
+     * glyph <code>i</code>.
+     */
+    private final int[] kernStart;
+
+    /**
+     * The second code point of each kerning pair, ascending within a glyph.
+     */
+    private final int[] kernSecond;
+
+    /**
+     * The adjustment of each kerning pair.
+     */
+    private final short[] kernAmount;
+
+    /**
+     * The glyph used for code points the font does not contain.
+     */
+    private final int fallback;
+
+    /**
+     * Constructs a new bitmap font. Glyphs and kerning pairs may be given in
+     * any order.
+     *
+     * @param key the {@link AssetKey key} of the font descriptor.
+     * @param face the name of the typeface.
+     * @param size the size the font was rendered at.
+     * @param lineHeight the distance between lines of text.
+     * @param base the distance from the top of a line to the baseline.
+     * @param scaleW the width of the page textures.
+     * @param scaleH the height of the page textures.
+     * @param pages the keys of the page textures.
+     * @param chars the glyphs, 10 ints each: id, x, y, width, height, x
+     * offset, y offset, x advance, page and an unused channel value.
+     * @param charCount the number of glyphs.
+     * @param kernings the kerning pairs, 3 ints each: first, second, amount.
+     * @param kerningCount the number of kerning pairs.
+     */
+    public BitmapFont(final AssetKey key, final String face, final int size, final int lineHeight, final int base, final int scaleW, final int scaleH,
+            final AssetKey[] pages, final int[] chars, final int charCount, final int[] kernings, final int kerningCount) {
+        super(key);
+        this.face = face;
+        this.size = size;
+        this.lineHeight = lineHeight;
+        this.base = base;
+        this.pages = pages.clone();
+
+        /* Sort Glyphs By Code Point */
+        final long[] order = new long[charCount];
+        for (int i = 0; i < charCount; i++) {
+            order[i] = ((long) chars[i * FontLoader.CHAR_SIZE] << 32) | i;
+        }
+        Arrays.sort(order);
+
+        codes = new int[charCount];
+        glyphs = new float[charCount * GLYPH_SIZE];
+        glyphPages = new byte[charCount];
+        direct = new short[DIRECT];
+        Arrays.fill(direct, (short) -1);
+        final float invW = 1f / scaleW, invH = 1f / scaleH;
+        for (int g = 0; g < charCount; g++) {
+            final int c = (int) order[g] * FontLoader.CHAR_SIZE;
+            final int x = chars[c + 1], y = chars[c + 2], w = chars[c + 3], h = chars[c + 4];
+            final int t = g * GLYPH_SIZE;
+            codes[g] = chars[c];
+            glyphs[t + X_OFFSET] = chars[c + 5];
+            glyphs[t + Y_OFFSET] = chars[c + 6];
+            glyphs[t + WIDTH] = w;
+            glyphs[t + HEIGHT] = h;
+            glyphs[t + ADVANCE] = chars[c + 7];
+            glyphs[t + U0] = x * invW;
+            glyphs[t + V0] = y * invH;
+            glyphs[t + U1] = (x + w) * invW;
+            glyphs[t + V1] = (y + h) * invH;
+            glyphPages[g] = (byte) chars[c + 8];
+            if (codes[g] >= 0 && codes[g] < DIRECT) {
+                direct[codes[g]] = (short) g;
+            }
+        }
+
+        /* Group Kerning Pairs By First Glyph */
+        final long[] pairs = new long[kerningCount];
+        int pairCount = 0;
+        for (int i = 0; i < kerningCount; i++) {
+            final int first = getGlyph(kernings[i * 3]);
+            if (first >= 0) {
+                pairs[pairCount++] = ((long) first << 42) | ((long) (kernings[i * 3 + 1] & 0x1FFFFF) << 21) | i;
+            }
+        }
+        Arrays.sort(pairs, 0, pairCount);
+        kernStart = new int[charCount + 1];
+        kernSecond = new int[pairCount];
+        kernAmount = new short[pairCount];
+        for (int p = 0; p < pairCount; p++) {
+            final int i = (int) (pairs[p] & 0x1FFFFF);
+            kernStart[(int) (pairs[p] >>> 42) + 1]++;
+            kernSecond[p] = kernings[i * 3 + 1];
+            kernAmount[p] = (short) kernings[i * 3 + 2];
+        }
+        for (int g = 0; g < charCount; g++) {
+            kernStart[g + 1] += kernStart[g];
+        }
+
+        /* Missing Glyphs Are Drawn As A Question Mark, Or A Space */
+        final int question = getGlyph('?');
+        fallback = question >= 0 ? question : getGlyph(' ');
+    }
+
+    /**
+     * Returns the index of the glyph for a code point.
+     *
+     * @param codePoint the code point.
+     * @return the index of the glyph, or -1 if the font does not contain it.
+     */
+    public final int getGlyph(final int codePoint) {
+        if (codePoint >= 0 && codePoint < DIRECT) {
+            return direct[codePoint];
+        }
+        final int i = Arrays.binarySearch(codes, codePoint);
+        return i >= 0 ? i : -1;
+    }
+
+    /**
+     * Returns the index of the glyph for a code point, or the index of the
+     * fallback glyph if the font does not contain it.
+     *
+     * @param codePoint the code point.
+     * @return the index of the glyph to draw, or -1 if the font contains
+     * neither the code point nor a fallback glyph.
+     */
+    public final int getGlyphOrFallback(final int codePoint) {
+        final int g = getGlyph(codePoint);
+        return g >= 0 ? g : fallback;
+    }
+
+    /**
+     * Returns the kerning adjustment between a glyph and the code point that
+     * follows it.
+     *
+     * @param glyph the index of the first glyph.
+     * @param second the code point of the second glyph.
+     * @return the adjustment to the advance of the first glyph, zero if the
+     * pair is not kerned.
+     */
+    public final int getKerning(final int glyph, final int second) {
+        int low = kernStart[glyph], high = kernStart[glyph + 1] - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int code = kernSecond[mid];
+            if (code < second) {
+                low = mid + 1;
+            } else if (code > second) {
+                high = mid - 1;
+            } else {
+                return kernAmount[mid];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Lays out a string of text. Lines are separated by new line characters,
+     * tabs advance by four spaces and carriage returns are ignored.
+     *
+     * @param text the text to lay out.
+     * @return the layout of the text.
+     * @see TextLayout
+     */
+    public final TextLayout layout(final CharSequence text) {
+        return new TextLayout(this, text);
+    }
+
+    /**
+     * Returns the glyph table, {@link #GLYPH_SIZE} floats per glyph. The array
+     * is shared and must not be modified.
+     *
+     * @return the glyph table.
+     */
+    final float[] getGlyphTable() {
+        return glyphs;
+    }
+
+    /**
+     * Returns the value of a glyph metric.
+     *
+     * @param glyph the index of the glyph.
+     * @param offset the offset of the value, such as {@link #ADVANCE}.
+     * @return the value.
+     */
+    public final float getMetric(final int glyph, final int offset) {
+        return glyphs[glyph * GLYPH_SIZE + offset];
+    }
+
+    /**
+     * Returns the code point of a glyph.
+     *
+     * @param glyph the index of the glyph.
+     * @return the code point.
+     */
+    public final int getCodePoint(final int glyph) {
+        return codes[glyph];
+    }
+
+    /**
+     * Returns the page texture a glyph is drawn from.
+     *
+     * @param glyph the index of the glyph.
+     * @return the page index.
+     */
+    public final int getPage(final int glyph) {
+        return glyphPages[glyph];
+    }
+
+    /**
+     * Returns the number of glyphs in the font.
+     *
+     * @return the number of glyphs.
+     */
+    public final int getGlyphCount() {
+        return codes.length;
+    }
+
+    /**
+     * Returns the number of kerning pairs in the font.
+     *
+     * @return the number of kerning pairs.
+     */
+    public final int getKerningCount() {
+        return kernSecond.length;
+    }
+
+    /**
+     * Returns the name of the typeface.
+     *
+     * @return the typeface name.
+     */
+    public final String getFace() {
+        return face;
+    }
+
+    /**
+     * Returns the size the font was rendered at.
+     *
+     * @return the font size in pixels.
+     */
+    public final int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the distance between lines of text.
+     *
+     * @return the line height in pixels.
+     */
+    public final int getLineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * Returns the distance from the top of a line to the baseline.
+     *
+     * @return the baseline in pixels.
+     */
+    public final int getBase() {
+        return base;
+    }
+
+    /**
+     * Returns the key of a page texture.
+     *
+     * @param page the page index.
+     * @return the {@link AssetKey key} of the page texture.
+     */
+    public final AssetKey getPageKey(final int page) {
+        return pages[page];
+    }
+
+    /**
+     * Returns the number of page textures.
+     *
+     * @return the number of pages.
+     */
+    public final int getPageCount() {
+        return pages.length;
+    }
+
+    /**
+     * Overridden to return the typeface, size and glyph count.
+     *
+     * @return a string describing the font.
+     */
+    @Override
+    public final String toString() {
+        return getKey().getPath() + " [" + face + " " + size + "px, " + codes.length + " glyphs, " + kernSecond.length + " kerning pairs]";
+    }
+}
@@ -0,0 +1,430 @@
+package net.cybertekt.asset.font;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import net.cybertekt.asset.AssetKey;
+import net.cybertekt.asset.AssetLoader;
+import net.cybertekt.asset.AssetManager.AssetInitializationException;
+import net.cybertekt.asset.AssetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Font Loader - (C) Cybertekt Software.
+ * <p>
+ * Loads AngelCode BMFont descriptors and converts them into
+ * {@link BitmapFont bitmap font assets}.</p>
+ *
+ * Both the text and the XML variants of the descriptor are accepted. Each tag
+ * sits on its own line in both, as a tag name followed by
+ * <code>key=value</code> attributes, so one line parser reads either format.
+ * The page texture is resolved relative to the directory of the descriptor and
+ * is not loaded here; the renderer loads it when the font is first drawn.
+ * Text layouts and the renderer draw every glyph from a single texture, so
+ * fonts packed into more than one page are rejected.
+ *
+ * Supported File Types: FNT
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class FontLoader extends AssetLoader {
+
+    /**
+     * Static SLF4J class logger for debugging.
+     */
+    public static final Logger log = LoggerFactory.getLogger(FontLoader.class);
+
+    /**
+     * {@link AssetType Asset type} for AngelCode BMFont (FNT) files.
+     */
+    public final AssetType FNT = AssetType.getType("FNT");
+
+    /**
+     * The number of ints per glyph passed to the {@link BitmapFont font}: id,
+     * x, y, width, height, x offset, y offset, x advance, page and channel.
+     */
+    static final int CHAR_SIZE = 10;
+
+    /**
+     * The attributes of a <code>char</code> tag in {@link #CHAR_SIZE} order.
+     */
+    private static final String[] CHAR_ATTRIBUTES = {"id", "x", "y", "width", "height", "xoffset", "yoffset", "xadvance", "page", "chnl"};
+
+    /**
+     * The attributes of a <code>kerning</code> tag in order.
+     */
+    private static final String[] KERNING_ATTRIBUTES = {"first", "second", "amount"};
+
+    /**
+     * Returns a callable {@link AssetTask loading task} for constructing a
+     * {@link BitmapFont font asset} from the {@link InputStream input stream}
+     * of the font descriptor at the path specified by the
+     * {@link AssetKey asset key}.
+     *
+     * @param key the {@link AssetKey key} associated with the font descriptor.
+     * @param stream the {@link InputStream input stream} of the descriptor.
+     * @return the callable task for constructing the
+     * {@link BitmapFont font asset}.
+     */
+    @Override
+    public AssetTask newTask(final AssetKey key, final InputStream stream) {
+        if (key.getType().equals(FNT)) {
+            return new FNTLoader(key, stream);
+        }
+        log.error("Unsupported font file type extension: {}", key.getType().toString());
+        throw new UnsupportedOperationException("Unsupported font file type extension");
+    }
+
+    /**
+     * Parses a font descriptor into a {@link BitmapFont font}. Exposed so
+     * fonts can be parsed without the {@link net.cybertekt.asset.AssetManager
+     * asset manager}.
+     *
+     * @param key the {@link AssetKey key} of the font descriptor.
+     * @param stream the {@link InputStream input stream} of the descriptor.
+     * @return the parsed {@link BitmapFont font}.
+     * @throws AssetInitializationException if the descriptor is malformed,
+     * has more than one page, announces more glyphs or kerning pairs than it
+     * can hold, or cannot be read.
+     */
+    public static BitmapFont parse(final AssetKey key, final InputStream stream) throws AssetInitializationException {
+        String face = "";
+        int size = 0, lineHeight = 0, base = 0, scaleW = 0, scaleH = 0;
+        AssetKey[] pages = new AssetKey[0];
+        int[] chars = new int[128 * CHAR_SIZE], kernings = new int[0];
+        int charCount = 0, kerningCount = 0;
+
+        final String dir = key.getPath().lastIndexOf('/') < 0 ? "" : key.getPath().substring(0, key.getPath().lastIndexOf('/') + 1);
+        final Line line = new Line();
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            final int length = stream.available() > 0 ? stream.available() : Integer.MAX_VALUE;
+            String text;
+            int number = 0;
+            while ((text = reader.readLine()) != null) {
+                number++;
+                if (!line.parse(text)) {
+                    continue;
+                }
+                try {
+                    switch (line.tag) {
+                        case "info":
+                            face = line.get("face", "");
+                            size = Math.abs(line.getInt("size", 0));
+                            break;
+                        case "common":
+                            lineHeight = line.getInt("lineHeight");
+                            base = line.getInt("base");
+                            scaleW = line.getInt("scaleW");
+                            scaleH = line.getInt("scaleH");
+                            final int count = line.getInt("pages", 1);
+                            if (count != 1) {
+                                throw new AssetInitializationException(key, "Fonts must have exactly one page, found " + count + " on line " + number);
+                            }
+                            pages = new AssetKey[count];
+                            break;
+                        case "page":
+                            final int id = line.getInt("id");
+                            if (id < 0 || id >= pages.length) {
+                                throw new AssetInitializationException(key, "Page " + id + " is out of range on line " + number);
+                            }
+                            pages[id] = AssetKey.getKey(dir + line.get("file", null));
+                            break;
+                        case "chars":
+                            chars = grow(chars, count(line, length, CHAR_SIZE) * CHAR_SIZE);
+                            break;
+                        case "char":
+                            chars = grow(chars, (charCount + 1) * CHAR_SIZE);
+                            for (int i = 0; i < CHAR_SIZE; i++) {
+                                chars[charCount * CHAR_SIZE + i] = line.getInt(CHAR_ATTRIBUTES[i], 0);
+                            }
+                            if (chars[charCount * CHAR_SIZE + 8] >= pages.length) {
+                                throw new AssetInitializationException(key, "Glyph page is out of range on line " + number);
+                            }
+                            charCount++;
+                            break;
+                        case "kernings":
+                            kernings = grow(kernings, count(line, length, 3) * 3);
+                            break;
+                        case "kerning":
+                            kernings = grow(kernings, (kerningCount + 1) * 3);
+                            for (int i = 0; i < 3; i++) {
+                                kernings[kerningCount * 3 + i] = line.getInt(KERNING_ATTRIBUTES[i]);
+                            }
+                            kerningCount++;
+                            break;
+                        default:
+                            break;
+                    }
+                } catch (final IllegalArgumentException e) {
+                    throw new AssetInitializationException(key, e.getMessage() + " on line " + number);
+                }
+            }
+        } catch (final IOException e) {
+            throw new AssetInitializationException(key, "Unable to read font descriptor - " + e.getMessage());
+        }
+
+        /* Validate */
+        if (scaleW <= 0 || scaleH <= 0 || lineHeight <= 0) {
+            throw new AssetInitializationException(key, "Missing or invalid common tag");
+        }
+        for (int i = 0; i < pages.length; i++) {
+            if (pages[i] == null) {
+                throw new AssetInitializationException(key, "Missing page " + i);
+            }
+        }
+        if (charCount == 0) {
+            throw new AssetInitializationException(key, "Font contains no glyphs");
+        }
+        return new BitmapFont(key, face, size, lineHeight, base, scaleW, scaleH, pages, chars, charCount, kernings, kerningCount);
+    }
+
+    /**
+     * Returns the number of entries announced by a <code>chars</code> or
+     * <code>kernings</code> tag. Each entry has a line of its own that is
+     * longer than the ints it is stored in, so the count cannot exceed the
+     * length of the descriptor divided by the ints per entry.
+     *
+     * @param line the tag announcing the entries.
+     * @param length the length of the descriptor in bytes, or
+     * {@link Integer#MAX_VALUE} if it is unknown.
+     * @param stride the number of ints per entry.
+     * @return the announced number of entries.
+     * @throws IllegalArgumentException if the count is negative or too large.
+     */
+    private static int count(final Line line, final int length, final int stride) {
+        final int count = line.getInt("count", 0);
+        if (count < 0 || count > length / stride) {
+            throw new IllegalArgumentException("Count " + count + " does not fit the descriptor");
+        }
+        return count;
+    }
+
+    /**
+     * Returns an array of at least the required length, doubling it when it
+     * must grow.
+     */
+    private static int[] grow(final int[] array, final int required) {
+        return required <= array.length ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+    }
+
+    /**
+     * FNT Loader Task - (C) Cybertekt Software.
+     * <p>
+     * {@link AssetTask Task} that constructs a {@link BitmapFont font} from a
+     * BMFont descriptor.</p>
+     *
+     * @author Andrew Vektor
+     * @version 1.0.0
+     * @since 1.0.0
+     */
+    private final class FNTLoader extends AssetTask {
+
+        /**
+         * Constructs a new font loader for an {@link AssetKey asset key} and
+         * its corresponding {@link InputStream input stream}.
+         *
+         * @param key the {@link AssetKey key} of the font descriptor.
+         * @param stream the {@link InputStream input stream} of the file
+         * located at the path specified by the {@link AssetKey key}.
+         */
+        FNTLoader(final AssetKey key, final InputStream stream) {
+            super(key, stream);
+        }
+
+        /**
+         * Parses the descriptor into a {@link BitmapFont font}.
+         *
+         * @return the {@link BitmapFont font} described by the file.
+         * @throws AssetInitializationException if the descriptor is malformed.
+         */
+        @Override
+        public BitmapFont load() throws AssetInitializationException {
+            final BitmapFont font = parse(key, input);
+            log.debug("Loaded font {}", font);
+            return font;
+        }
+    }
+
+    /**
+     * A single tag of a descriptor, reused for every line. Attribute names
+     * and values are kept as offsets into the line so no strings are created
+     * for the numeric attributes that make up most of a descriptor.
+     */
+    private static final class Line {
+
+        /**
+         * The maximum number of attributes kept per tag.
+         */
+        private static final int MAX_ATTRIBUTES = 32;
+
+        /**
+         * The current line.
+         */
+        private String text;
+
+        /**
+         * The name of the tag.
+         */
+        private String tag;
+
+        /**
+         * The start and end of each attribute name and value.
+         */
+        private final int[] keyStart = new int[MAX_ATTRIBUTES], keyEnd = new int[MAX_ATTRIBUTES];
+        private final int[] valueStart = new int[MAX_ATTRIBUTES], valueEnd = new int[MAX_ATTRIBUTES];
+
+        /**
+         * The number of attributes.
+         */
+        private int count;
+
+        /**
+         * Splits a line into its tag and attributes. XML brackets, closing
+         * tags and declarations are skipped.
+         *
+         * @return false if the line holds no tag.
+         */
+        private boolean parse(final String line) {
+            text = line;
+            count = 0;
+            final int length = line.length();
+            int i = skip(0);
+            if (i < length && line.charAt(i) == '<') {
+                i++;
+                if (i < length && (line.charAt(i) == '/' || line.charAt(i) == '?' || line.charAt(i) == '!')) {
+                    return false;
+                }
+            }
+            final int start = i;
+            while (i < length && isName(line.charAt(i))) {
+                i++;
+            }
+            if (i == start) {
+                return false;
+            }
+            tag = line.substring(start, i);
+
+            while (count < MAX_ATTRIBUTES) {
+                i = skip(i);
+                final int ks = i;
+                while (i < length && isName(line.charAt(i))) {
+                    i++;
+                }
+                if (i == ks || i >= length || line.charAt(i) != '=') {
+                    break;
+                }
+                keyStart[count] = ks;
+                keyEnd[count] = i++;
+                if (i < length && line.charAt(i) == '"') {
+                    valueStart[count] = ++i;
+                    while (i < length && line.charAt(i) != '"') {
+                        i++;
+                    }
+                    valueEnd[count] = i++;
+                } else {
+                    valueStart[count] = i;
+                    while (i < length && line.charAt(i) > ' ' && line.charAt(i) != '/' && line.charAt(i) != '>') {
+                        i++;
+                    }
+                    valueEnd[count] = i;
+                }
+                count++;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the index of an attribute, or -1 if the tag does not have
+         * it.
+         */
+        private int find(final String name) {
+            for (int a = 0; a < count; a++) {
+                if (keyEnd[a] - keyStart[a] == name.length() && text.startsWith(name, keyStart[a])) {
+                    return a;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the value of an attribute, decoding XML entities.
+         */
+        private String get(final String name, final String fallback) {
+            final int a = find(name);
+            if (a < 0) {
+                if (fallback == null) {
+                    throw new IllegalArgumentException("Missing " + tag + " attribute " + name);
+                }
+                return fallback;
+            }
+            return text.substring(valueStart[a], valueEnd[a]).replace("&quot;", "\"").replace("&apos;", "'")
+                    .replace("&lt;", "<").replace("&gt;", ">").replace("&amp;", "&");
+        }
+
+        /**
+         * Returns the value of a required integer attribute.
+         */
+        private int getInt(final String name) {
+            final int a = find(name);
+            if (a < 0) {
+                throw new IllegalArgumentException("Missing " + tag + " attribute " + name);
+            }
+            return parseInt(a);
+        }
+
+        /**
+         * Returns the value of an optional integer attribute.
+         */
+        private int getInt(final String name, final int fallback) {
+            final int a = find(name);
+            return a < 0 ? fallback : parseInt(a);
+        }
+
+        /**
+         * Parses an integer attribute value in place.
+         */
+        private int parseInt(final int a) {
+            int i = valueStart[a];
+            final int end = valueEnd[a];
+            final boolean negative = i < end && text.charAt(i) == '-';
+            if (negative) {
+                i++;
+            }
+            if (i == end) {
+                throw new IllegalArgumentException("Invalid " + tag + " attribute " + text.substring(keyStart[a], keyEnd[a]));
+            }
+            int value = 0;
+            for (; i < end; i++) {
+                final int digit = text.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("Invalid " + tag + " attribute " + text.substring(keyStart[a], keyEnd[a]));
+                }
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Returns the index of the next character that is not whitespace.
+         */
+        private int skip(int i) {
+            while (i < text.length() && text.charAt(i) <= ' ') {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Indicates if a character may appear in a tag or attribute name.
+         */
+        private static boolean isName(final char c) {
+            return Character.isLetterOrDigit(c) || c == '_';
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package net.cybertekt.asset.font;
+
+import java.util.Arrays;
+
+/**
+ * Text Layout - (C) Cybertekt Software
+ *
+ * The positioned glyphs of a string of text laid out with a
+ * {@link BitmapFont bitmap font}. Each glyph is stored as a quad of
+ * {@link #QUAD_SIZE} floats: the top left and bottom right corners followed by
+ * the texture coordinates of those corners. Positions are in font pixels
+ * relative to the top left of the first line, with the y axis pointing down.
+ * Whitespace and glyphs with no area produce no quad.
+ *
+ * <p>
+ * A layout is immutable once constructed, so a label whose text does not
+ * change can be laid out once and {@link net.cybertekt.render.TextBatch batched}
+ * every frame at any position and scale.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class TextLayout {
+
+    /**
+     * The number of floats per quad: x0, y0, x1, y1, u0, v0, u1, v1.
+     */
+    public static final int QUAD_SIZE = 8;
+
+    /**
+     * The number of spaces a tab advances by.
+     */
+    public static final int TAB_SPACES = 4;
+
+    /**
+     * The font the text was laid out with.
+     */
+    private final BitmapFont font;
+
+    /**
+     * The quads of the visible glyphs.
+     */
+    private final float[] quads;
+
+    /**
+     * The number of quads.
+     */
+    private final int count;
+
+    /**
+     * The width of the widest line.
+     */
+    private final float width;
+
+    /**
+     * The height of all lines.
+     */
+    private final float height;
+
+    /**
+     * The number of lines.
+     */
+    private final int lines;
+
+    /**
+     * Lays out a string of text.
+     *
+     * @param font the {@link BitmapFont font} to lay the text out with.
+     * @param text the text to lay out.
+     */
+    TextLayout(final BitmapFont font, final CharSequence text) {
+        this.font = font;
+        final float[] table = font.getGlyphTable();
+        final int space = font.getGlyph(' ');
+        final float tab = TAB_SPACES * (space >= 0 ? table[space * BitmapFont.GLYPH_SIZE + BitmapFont.ADVANCE] : font.getSize() / 2);
+        final int length = text.length();
+
+        float[] out = new float[length * QUAD_SIZE];
+        float x = 0, y = 0, widest = 0;
+        int n = 0, lineCount = 1, prev = -1;
+        for (int i = 0; i < length;) {
+            final int cp = Character.codePointAt(text, i);
+            i += Character.charCount(cp);
+
+            /* Control Characters */
+            if (cp == '\n') {
+                widest = Math.max(widest, x);
+                x = 0;
+                y += font.getLineHeight();
+                lineCount++;
+                prev = -1;
+                continue;
+            } else if (cp == '\r') {
+                continue;
+            } else if (cp == '\t') {
+                x += tab;
+                prev = -1;
+                continue;
+            }
+
+            final int glyph = font.getGlyphOrFallback(cp);
+            if (glyph < 0) {
+                prev = -1;
+                continue;
+            }
+            if (prev >= 0) {
+                x += font.getKerning(prev, font.getCodePoint(glyph));
+            }
+
+            /* Emit A Quad For Visible Glyphs */
+            final int t = glyph * BitmapFont.GLYPH_SIZE;
+            final float w = table[t + BitmapFont.WIDTH], h = table[t + BitmapFont.HEIGHT];
+            if (w > 0 && h > 0) {
+                final int q = n++ * QUAD_SIZE;
+                out[q] = x + table[t + BitmapFont.X_OFFSET];
+                out[q + 1] = y + table[t + BitmapFont.Y_OFFSET];
+                out[q + 2] = out[q] + w;
+                out[q + 3] = out[q + 1] + h;
+                out[q + 4] = table[t + BitmapFont.U0];
+                out[q + 5] = table[t + BitmapFont.V0];
+                out[q + 6] = table[t + BitmapFont.U1];
+                out[q + 7] = table[t + BitmapFont.V1];
+            }
+            x += table[t + BitmapFont.ADVANCE];
+            prev = glyph;
+        }
+
+        this.quads = n * QUAD_SIZE == out.length ? out : Arrays.copyOf(out, n * QUAD_SIZE);
+        this.count = n;
+        this.width = Math.max(widest, x);
+        this.height = lineCount * font.getLineHeight();
+        this.lines = lineCount;
+    }
+
+    /**
+     * Returns the font the text was laid out with.
+     *
+     * @return the {@link BitmapFont font} of the layout.
+     */
+    public final BitmapFont getFont() {
+        return font;
+    }
+
+    /**
+     * Returns the quads of the visible glyphs, {@link #QUAD_SIZE} floats per
+     * quad. The array is shared and must not be modified.
+     *
+     * @return the glyph quads.
+     */
+    public final float[] getQuads() {
+        return quads;
+    }
+
+    /**
+     * Returns the number of visible glyphs.
+     *
+     * @return the number of quads.
+     */
+    public final int getQuadCount() {
+        return count;
+    }
+
+    /**
+     * Returns the width of the widest line, measured by glyph advance.
+     *
+     * @return the width in font pixels.
+     */
+    public final float getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of all lines.
+     *
+     * @return the height in font pixels.
+     */
+    public final float getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the number of lines.
+     *
+     * @return the number of lines.
+     */
+    public final int getLineCount() {
+        return lines;
+    }
+}
@@ -1,5 +1,9 @@
 package net.cybertekt.asset.shader;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import net.cybertekt.asset.Asset;
 import net.cybertekt.asset.AssetKey;
 import net.cybertekt.exception.OGLException;
@@ -20,6 +24,11 @@ import static org.lwjgl.opengl.GL43.GL_COMPUTE_SHADER;
  *
  * An immutable GLSL shader {@link Asset asset} defined by the file located at a
  * path specified by the {@link AssetKey key} specified during construction.
+ * The source code is hashed on construction so identical shaders can be
+ * recognized without comparing their source, and variants with additional
+ * <code>#define</code> directives are created once and shared through
+ * {@link #getVariant(java.util.Map)}. A shader is compiled at most once until
+ * it is {@link #delete() deleted}.
  *
  * @version 1.0.0
  * @since 1.0.0
@@ -86,11 +95,31 @@ public class OGLShader extends Asset {
      */
     private final String source;
 
+    /**
+     * The SHA-256 digest of the source code.
+     */
+    private final String hash;
+
+    /**
+     * The definitions injected into the source of this shader.
+     */
+    private final Map<String, String> defines;
+
+    /**
+     * Variants of this shader keyed by their definitions.
+     */
+    private final Map<Map<String, String>, OGLShader> variants;
+
     /**
      * The identifier assigned by LWJGL during construction.
      */
     private int id;
 
+    /**
+     * Indicates if the shader has been compiled successfully.
+     */
+    private boolean compiled;
+
     /**
      * Constructs and compiles a new OpenGL shader asset of the specified
      * {@link Type type}
@@ -101,27 +130,122 @@ public class OGLShader extends Asset {
      * @param source the GLSL source code of the shader.
      */
     public OGLShader(final AssetKey key, final Type type, final String source) {
+        this(key, type, source, Collections.emptyMap());
+    }
+
+    /**
+     * Constructs a variant of a shader with the specified definitions already
+     * injected into its source.
+     *
+     * @param key the {@link AssetKey key} of the shader the variant is based
+     * on.
+     * @param type the shader {@link Type type}.
+     * @param source the GLSL source code of the variant.
+     * @param defines the definitions injected into the source.
+     */
+    private OGLShader(final AssetKey key, final Type type, final String source, final Map<String, String> defines) {
         super(key);
         this.type = type;
         this.source = source;
+        this.hash = ShaderPreprocessor.hash(source);
+        this.defines = defines;
+        this.variants = defines.isEmpty() ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Returns the variant of this shader with the specified definitions
+     * injected after its <code>#version</code> directive. Variants are created
+     * once and shared, so the same definitions always return the same shader.
+     * Variants of a variant are not supported, they are created from the
+     * original shader instead.
+     *
+     * @param defines the names and values to define.
+     * @return this shader if there are no definitions, otherwise the variant
+     * of this shader with the definitions injected.
+     * @see ShaderPreprocessor#define(java.lang.String, java.util.Map)
+     */
+    public final OGLShader getVariant(final Map<String, String> defines) {
+        if (defines == null || defines.isEmpty()) {
+            return this;
+        }
+        if (variants == null) {
+            throw new UnsupportedOperationException("Variants must be created from the original shader: " + getKey().getPath());
+        }
+        final Map<String, String> sorted = Collections.unmodifiableMap(new TreeMap<>(defines));
+        return variants.computeIfAbsent(sorted, (d) -> new OGLShader(getKey(), type, ShaderPreprocessor.define(source, d), d));
     }
 
+    /**
+     * Compiles the shader if it has not already been compiled. Compiling a
+     * shader that has already been compiled returns its identifier without
+     * submitting the source again.
+     *
+     * @return the identifier assigned to the shader by LWJGL.
+     * @throws OGLException if the shader fails to compile.
+     */
     public final int compile() throws OGLException {
+        if (compiled) {
+            return id;
+        }
         if (id == 0) {
             id = glCreateShader(type.getId());
         }
-        
+
         glShaderSource(id, source);
         glCompileShader(id);
         if (glGetShaderi(id, GL_COMPILE_STATUS) == 0) {
             throw new OGLException(getKey().getPath() + " compilation failed:\n\t" + glGetShaderInfoLog(id));
         }
+        compiled = true;
         return id;
     }
-    
+
+    /**
+     * Deletes the compiled shader. The shader will be compiled again the next
+     * time it is {@link #compile() compiled}.
+     */
     public final void delete() {
-        glDeleteShader(id);
+        if (id != 0) {
+            glDeleteShader(id);
+        }
         id = 0;
+        compiled = false;
+    }
+
+    /**
+     * Indicates if the shader has been compiled and not yet deleted.
+     *
+     * @return true if the shader has been compiled, false otherwise.
+     */
+    public final boolean isCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Returns the GLSL source code of the shader.
+     *
+     * @return the GLSL source code of the shader.
+     */
+    public final String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 digest of the source code.
+     *
+     * @return the digest of the source code.
+     */
+    public final String getHash() {
+        return hash;
+    }
+
+    /**
+     * Returns the definitions injected into the source of this variant.
+     *
+     * @return the definitions of this variant, empty for the original shader.
+     */
+    public final Map<String, String> getDefines() {
+        return defines;
     }
 
     /**
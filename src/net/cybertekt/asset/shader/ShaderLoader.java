@@ -1,13 +1,19 @@
 package net.cybertekt.asset.shader;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import net.cybertekt.asset.AssetKey;
 import net.cybertekt.asset.AssetLoader;
+import net.cybertekt.asset.AssetManager;
 import net.cybertekt.asset.AssetType;
 
 /**
  * Shader Loader - (C) Cybertekt Software.
  *
+ * Loads GLSL shaders, expanding their <code>#include</code> directives with
+ * the {@link ShaderPreprocessor preprocessor} before constructing the
+ * {@link OGLShader shader asset}.
  *
  * @author Andrew Vektor
  * @version 1.0.0
@@ -35,6 +41,30 @@ public class ShaderLoader extends AssetLoader {
      */
     public final AssetType COMP = AssetType.getType("COMP");
 
+    /**
+     * Expands the include directives of each loaded shader.
+     */
+    private final ShaderPreprocessor preprocessor = new ShaderPreprocessor();
+
+    /**
+     * Reads the source code of a shader from the stream, expands its include
+     * directives and records the included files as
+     * {@link AssetManager#getDependencies() dependencies} of the shader.
+     *
+     * @param key the {@link AssetKey key} of the shader.
+     * @param stream the {@link InputStream input stream} of the shader file.
+     * @return the expanded GLSL source code.
+     */
+    private String preprocess(final AssetKey key, final InputStream stream) {
+        final ShaderPreprocessor.Result result = preprocessor.process(key.getPath(), new java.util.Scanner(stream).useDelimiter("\\A").next());
+        final List<AssetKey> includes = new ArrayList<>();
+        for (final String file : result.getFiles().subList(1, result.getFiles().size())) {
+            includes.add(AssetKey.getKey(file));
+        }
+        AssetManager.getDependencies().set(key, includes);
+        return result.getSource();
+    }
+
     @Override
     public AssetTask newTask(final AssetKey key, final InputStream stream) {
         if (key.getType().equals(VERT)) {
@@ -84,7 +114,7 @@ public class ShaderLoader extends AssetLoader {
          */
         @Override
         public OGLShader load() {
-            return new OGLShader(key, OGLShader.Type.Vertex, new java.util.Scanner(input).useDelimiter("\\A").next());
+            return new OGLShader(key, OGLShader.Type.Vertex, preprocess(key, input));
         }
 
     }
@@ -123,7 +153,7 @@ public class ShaderLoader extends AssetLoader {
          */
         @Override
         public OGLShader load() {
-            return new OGLShader(key, OGLShader.Type.Fragment, new java.util.Scanner(input).useDelimiter("\\A").next());
+            return new OGLShader(key, OGLShader.Type.Fragment, preprocess(key, input));
         }
     }
 
@@ -161,7 +191,7 @@ public class ShaderLoader extends AssetLoader {
          */
         @Override
         public OGLShader load() {
-            return new OGLShader(key, OGLShader.Type.Geometry, new java.util.Scanner(input).useDelimiter("\\A").next());
+            return new OGLShader(key, OGLShader.Type.Geometry, preprocess(key, input));
         }
     }
 
@@ -199,7 +229,7 @@ public class ShaderLoader extends AssetLoader {
          */
         @Override
         public OGLShader load() {
-            return new OGLShader(key, OGLShader.Type.Compute, new java.util.Scanner(input).useDelimiter("\\A").next());
+            return new OGLShader(key, OGLShader.Type.Compute, preprocess(key, input));
         }
     }
 }
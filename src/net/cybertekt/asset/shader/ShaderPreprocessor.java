@@ -0,0 +1,353 @@
+package net.cybertekt.asset.shader;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import net.cybertekt.asset.AssetKey;
+import net.cybertekt.asset.AssetManager;
+import net.cybertekt.asset.AssetManager.AssetInitializationException;
+import net.cybertekt.crypto.SHA256;
+import net.cybertekt.util.Encoder;
+
+/**
+ * Shader Preprocessor - (C) Cybertekt Software
+ *
+ * Prepares GLSL source code before it is handed to the driver. Resolves
+ * <code>#include "path"</code> directives through a {@link Resolver}, which by
+ * default reads the included file through the {@link AssetManager}, injects
+ * <code>#define</code> permutations directly after the <code>#version</code>
+ * directive, and hashes the result so identical variants can be recognized
+ * without comparing their source. Nothing in this class requires an OpenGL
+ * context.
+ *
+ * <p>
+ * Include paths are relative to the directory of the including file unless
+ * they begin with a forward slash, in which case they are relative to the
+ * {@link AssetManager#rootDir root asset directory}. Each file is expanded at
+ * most once per shader so shared headers do not need include guards, and an
+ * include cycle is reported as an error. Every expanded file is framed by
+ * <code>#line</code> directives whose source string number is the index of the
+ * file in {@link Result#getFiles()}, so compiler errors can be traced back to
+ * the file and line that caused them.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class ShaderPreprocessor {
+
+    /**
+     * Supplies the source code of an included file.
+     */
+    @FunctionalInterface
+    public interface Resolver {
+
+        /**
+         * Returns the source code of the file located at the specified path.
+         *
+         * @param path the path of the file relative to the root asset
+         * directory.
+         * @return the source code of the file.
+         * @throws AssetInitializationException if the file cannot be read.
+         */
+        String resolve(final String path) throws AssetInitializationException;
+    }
+
+    /**
+     * Resolves includes by reading them through the {@link AssetManager}.
+     */
+    public static final Resolver ASSETS = (path) -> {
+        try {
+            return AssetManager.streamToString(AssetManager.stream(path));
+        } catch (final AssetManager.AssetNotFoundException e) {
+            throw new AssetInitializationException(AssetKey.getKey(path), "Included shader file not found: " + path);
+        }
+    };
+
+    /**
+     * The maximum depth of nested includes.
+     */
+    public static final int MAX_DEPTH = 32;
+
+    /**
+     * The resolver used to read included files.
+     */
+    private final Resolver resolver;
+
+    /**
+     * Constructs a new preprocessor that reads included files through the
+     * {@link AssetManager}.
+     */
+    public ShaderPreprocessor() {
+        this(ASSETS);
+    }
+
+    /**
+     * Constructs a new preprocessor that reads included files through the
+     * specified {@link Resolver resolver}.
+     *
+     * @param resolver the resolver used to read included files.
+     */
+    public ShaderPreprocessor(final Resolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Expands every include directive in the source code of the file located
+     * at the specified path.
+     *
+     * @param path the path of the file relative to the root asset directory,
+     * used to resolve relative includes.
+     * @param source the source code of the file.
+     * @return the expanded source code and the files that contributed to it.
+     * @throws AssetInitializationException if an include cannot be resolved,
+     * is malformed or forms a cycle.
+     */
+    public final Result process(final String path, final String source) throws AssetInitializationException {
+        final List<String> files = new ArrayList<>();
+        final StringBuilder out = new StringBuilder(source.length() + 256);
+        expand(normalize(path), source, out, files, new HashSet<>(), new ArrayList<>());
+        return new Result(out.toString(), files);
+    }
+
+    /**
+     * Recursively appends the expanded source of a file to the output.
+     */
+    private void expand(final String path, final String source, final StringBuilder out, final List<String> files, final Set<String> included, final List<String> stack) {
+        if (stack.size() >= MAX_DEPTH) {
+            throw new AssetInitializationException(AssetKey.getKey(path), "Shader includes nested deeper than " + MAX_DEPTH + ": " + stack);
+        }
+        final int index = files.size();
+        files.add(path);
+        included.add(path);
+        stack.add(path);
+
+        final String[] lines = source.split("\r?\n", -1);
+        boolean versioned = false;
+        for (int i = 0; i < lines.length; i++) {
+            final String line = lines[i];
+            final String directive = line.trim();
+
+            /* Copy Ordinary Lines Verbatim */
+            if (!directive.startsWith("#")) {
+                appendLine(out, line, i, lines.length);
+                continue;
+            }
+            final String body = directive.substring(1).trim();
+
+            if (body.startsWith("include")) {
+                final String target = resolve(path, parseInclude(path, i + 1, body));
+                if (stack.contains(target)) {
+                    throw new AssetInitializationException(AssetKey.getKey(path), "Shader include cycle: " + stack + " -> " + target);
+                }
+                if (!included.contains(target)) {
+                    out.append("#line 1 ").append(files.size()).append('\n');
+                    expand(target, resolver.resolve(target), out, files, included, stack);
+                    out.append('\n');
+                }
+                out.append("#line ").append(i + 2).append(' ').append(index).append('\n');
+            } else if (body.startsWith("pragma") && body.substring(6).trim().equals("once")) {
+                /* Every File Is Included Once - Keep The Line Count */
+                out.append('\n');
+            } else if (body.startsWith("version")) {
+                if (index != 0 || versioned) {
+                    throw new AssetInitializationException(AssetKey.getKey(path), path + ":" + (i + 1) + " - #version may only appear once, in the main shader file.");
+                }
+                versioned = true;
+                appendLine(out, line, i, lines.length);
+            } else {
+                appendLine(out, line, i, lines.length);
+            }
+        }
+        stack.remove(stack.size() - 1);
+    }
+
+    /**
+     * Appends a line and, unless it is the last line of its file, a line
+     * terminator.
+     */
+    private static void appendLine(final StringBuilder out, final String line, final int index, final int count) {
+        out.append(line);
+        if (index < count - 1) {
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Extracts the quoted or bracketed path from an include directive.
+     */
+    private static String parseInclude(final String path, final int line, final String body) {
+        final String arg = body.substring(7).trim();
+        if (arg.length() > 2 && ((arg.charAt(0) == '"' && arg.charAt(arg.length() - 1) == '"') || (arg.charAt(0) == '<' && arg.charAt(arg.length() - 1) == '>'))) {
+            return arg.substring(1, arg.length() - 1).trim();
+        }
+        throw new AssetInitializationException(AssetKey.getKey(path), path + ":" + line + " - malformed include directive: #" + body);
+    }
+
+    /**
+     * Resolves an include path against the path of the including file.
+     */
+    private static String resolve(final String from, final String include) {
+        if (include.startsWith("/")) {
+            return normalize(include.substring(1));
+        }
+        final int slash = from.lastIndexOf('/');
+        return normalize(slash < 0 ? include : from.substring(0, slash + 1) + include);
+    }
+
+    /**
+     * Collapses "." and ".." segments and converts backslashes.
+     */
+    private static String normalize(final String path) {
+        final List<String> parts = new ArrayList<>();
+        for (final String part : path.replace('\\', '/').split("/")) {
+            if (part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if (part.equals("..")) {
+                if (!parts.isEmpty() && !parts.get(parts.size() - 1).equals("..")) {
+                    parts.remove(parts.size() - 1);
+                    continue;
+                }
+            }
+            parts.add(part);
+        }
+        return String.join("/", parts);
+    }
+
+    /**
+     * Returns the source code with a <code>#define</code> directive for each
+     * entry of the map inserted directly after the <code>#version</code>
+     * directive, or at the top of the source if there is none. Definitions are
+     * written in key order so the same permutation always produces the same
+     * source. A null or empty value defines the name without a value.
+     *
+     * @param source the source code.
+     * @param defines the names and values to define, may be null or empty.
+     * @return the source code with the definitions injected.
+     */
+    public static String define(final String source, final Map<String, String> defines) {
+        if (defines == null || defines.isEmpty()) {
+            return source;
+        }
+
+        /* Find The End Of The Version Directive */
+        int insert = 0, lineNumber = 1, line = 0;
+        for (int start = 0; start < source.length();) {
+            int end = source.indexOf('\n', start);
+            end = end < 0 ? source.length() : end + 1;
+            line++;
+            final String directive = source.substring(start, end).trim();
+            if (directive.startsWith("#") && directive.substring(1).trim().startsWith("version")) {
+                insert = end;
+                lineNumber = line + 1;
+                break;
+            }
+            start = end;
+        }
+
+        final StringBuilder out = new StringBuilder(source.length() + defines.size() * 32);
+        out.append(source, 0, insert);
+        if (insert > 0 && source.charAt(insert - 1) != '\n') {
+            out.append('\n');
+        }
+        for (final Map.Entry<String, String> e : new TreeMap<>(defines).entrySet()) {
+            out.append("#define ").append(e.getKey());
+            if (e.getValue() != null && !e.getValue().isEmpty()) {
+                out.append(' ').append(e.getValue());
+            }
+            out.append('\n');
+        }
+        out.append("#line ").append(lineNumber).append('\n');
+        out.append(source, insert, source.length());
+        return out.toString();
+    }
+
+    /**
+     * Returns the SHA-256 digest of the UTF-8 encoded source code.
+     *
+     * @param source the source code to hash.
+     * @return the hex encoded digest.
+     */
+    public static String hash(final String source) {
+        return Encoder.toHex(SHA256.hash(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the SHA-256 digest of a list of shader stages. Each stage is
+     * identified by its {@link OGLShader.Type type} and the hash of its
+     * source, so the order of the stages does not matter but the stage each
+     * source belongs to does.
+     *
+     * @param shaders the shader stages.
+     * @return the hex encoded digest.
+     */
+    public static String hash(final OGLShader... shaders) {
+        final List<String> stages = new ArrayList<>(shaders.length);
+        for (final OGLShader s : shaders) {
+            stages.add(s.getType().name() + ':' + s.getHash());
+        }
+        Collections.sort(stages);
+        final MessageDigest digest = SHA256.digest();
+        for (final String stage : stages) {
+            digest.update(stage.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return Encoder.toHex(digest.digest());
+    }
+
+    /**
+     * The expanded source code of a shader and the files that contributed to
+     * it.
+     */
+    public static final class Result {
+
+        /**
+         * The expanded source code.
+         */
+        private final String source;
+
+        /**
+         * The files that contributed to the source, in source string order.
+         */
+        private final List<String> files;
+
+        /**
+         * Constructs a new result.
+         *
+         * @param source the expanded source code.
+         * @param files the files that contributed to the source.
+         */
+        Result(final String source, final List<String> files) {
+            this.source = source;
+            this.files = Collections.unmodifiableList(files);
+        }
+
+        /**
+         * Returns the expanded source code.
+         *
+         * @return the expanded source code.
+         */
+        public final String getSource() {
+            return source;
+        }
+
+        /**
+         * Returns the files that contributed to the source. The index of each
+         * file is the source string number used by its <code>#line</code>
+         * directives, the main file is always first.
+         *
+         * @return the files that contributed to the source.
+         */
+        public final List<String> getFiles() {
+            return files;
+        }
+    }
+}
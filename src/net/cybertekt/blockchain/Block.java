@@ -1,44 +1,184 @@
 package net.cybertekt.blockchain;
 
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.List;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
-import net.cybertekt.crypto.RSAKeyPair;
+import javax.persistence.Transient;
+import net.cybertekt.crypto.SHA256;
+import net.cybertekt.crypto.SignatureAlgorithm;
+import net.cybertekt.crypto.SigningKeyPair;
+import net.cybertekt.exception.CryptoException;
 
 /**
+ * A signed block. Chained blocks also carry the hash of the previous block
+ * and the {@link MerkleTree} root of the {@link Transaction transactions}
+ * encoded in their data, and their signature covers both. Unchained blocks
+ * leave both empty. The signature of either kind covers a versioned message
+ * holding the length of each field, so a signature made for one kind of block
+ * never verifies for the other. Each block records the version of its signed
+ * message, and blocks stored before the message was versioned keep verifying
+ * against their previous hash, Merkle root, and data as they are.
  *
  * @author Vektor
  */
 @Entity
 public class Block implements Serializable {
     private static final long serialVersionUID = 1L;
-    
+
+    /**
+     * Previous hash of the first block in a chain.
+     */
+    public static final byte[] GENESIS_HASH = new byte[SHA256.SIZE];
+
+    /**
+     * Empty previous hash and Merkle root of unchained blocks.
+     */
+    private static final byte[] NONE = new byte[0];
+
+    /**
+     * Version of the signed message, which distinguishes block signatures
+     * from signatures over any other message.
+     */
+    static final byte SIGNED_VERSION = 1;
+
+    /**
+     * Version of blocks signed before the signed message was versioned, whose
+     * signature covers the previous hash, Merkle root, and data without a
+     * header. Blocks stored without a version read as this version.
+     */
+    static final byte LEGACY_VERSION = 0;
+
+    /**
+     * Size of the version and field lengths that begin the signed message.
+     */
+    static final int SIGNED_HEADER_SIZE = 13;
+
     @Id @GeneratedValue
     private long id;
-    
+
+    private byte[] prevHash = NONE;
+
+    private byte[] merkleRoot = NONE;
+
     private byte[] publicKey;
-    
+
     private byte[] data;
-    
+
     private byte[] signature;
-    
+
+    /**
+     * Version of the message covered by the signature.
+     */
+    private byte signedVersion;
+
+    /**
+     * SHA-256 hash of the block, computed on first use.
+     */
+    @Transient
+    private transient byte[] hash;
+
     public Block(){};
-    
+
     public Block(final byte[] publicKey, final byte[] data, final byte[] signature) {
         this.publicKey = publicKey;
         this.data = data;
         this.signature = signature;
+        this.signedVersion = SIGNED_VERSION;
+    }
+
+    /**
+     * Constructs a chained block.
+     *
+     * @param prevHash the hash of the previous block, or {@link #GENESIS_HASH}.
+     * @param merkleRoot the Merkle root of the transactions in the data.
+     * @param publicKey the X.509 encoded public key of the signer.
+     * @param data the encoded transactions.
+     * @param signature the signature over the previous hash, Merkle root, and
+     * data.
+     */
+    public Block(final byte[] prevHash, final byte[] merkleRoot, final byte[] publicKey, final byte[] data, final byte[] signature) {
+        this(publicKey, data, signature);
+        if (prevHash.length != SHA256.SIZE || merkleRoot.length != SHA256.SIZE) {
+            throw new IllegalArgumentException("Previous hash and Merkle root must be " + SHA256.SIZE + " bytes");
+        }
+        this.prevHash = prevHash;
+        this.merkleRoot = merkleRoot;
+    }
+
+    /**
+     * Constructs a block that has already been assigned an id by a
+     * {@link BlockLog}. The previous hash and Merkle root are either both
+     * empty or both hashes.
+     */
+    Block(final long id, final byte signedVersion, final byte[] prevHash, final byte[] merkleRoot, final byte[] publicKey, final byte[] data, final byte[] signature) {
+        this(publicKey, data, signature);
+        this.id = id;
+        this.signedVersion = signedVersion;
+        this.prevHash = prevHash;
+        this.merkleRoot = merkleRoot;
     }
-    
+
+    /**
+     * Creates an unchained block holding arbitrary data, signed by the
+     * specified key.
+     *
+     * @param data the data of the block.
+     * @param key the key pair used to sign the block.
+     * @return the signed block.
+     * @throws CryptoException if the block could not be signed.
+     */
+    public static Block create(final byte[] data, final SigningKeyPair key) throws CryptoException {
+        return new Block(key.getPublic(), data, key.sign(getSignedBytes(data)));
+    }
+
+    /**
+     * Creates a chained block holding a batch of transactions, signed by the
+     * specified key.
+     *
+     * @param prevHash the hash of the previous block, or {@link #GENESIS_HASH}.
+     * @param transactions the transactions to include.
+     * @param key the key pair used to sign the block.
+     * @return the signed block.
+     * @throws CryptoException if the block could not be signed.
+     */
+    public static Block create(final byte[] prevHash, final List<Transaction> transactions, final SigningKeyPair key) throws CryptoException {
+        final byte[] merkleRoot = MerkleTree.root(transactions);
+        final byte[] data = Transaction.encodeAll(transactions);
+        return new Block(prevHash, merkleRoot, key.getPublic(), data, key.sign(signedBytes(prevHash, merkleRoot, data)));
+    }
+
     public long getId() {
         return id;
     }
 
+    /**
+     * Returns the hash of the previous block. Unchained blocks, including
+     * those stored before blocks were chained, return an empty array.
+     *
+     * @return the previous hash.
+     */
+    public byte[] getPrevHash() {
+        return prevHash == null ? NONE : prevHash;
+    }
+
+    /**
+     * Returns the Merkle root of the transactions in the data. Unchained
+     * blocks return an empty array.
+     *
+     * @return the Merkle root.
+     */
+    public byte[] getMerkleRoot() {
+        return merkleRoot == null ? NONE : merkleRoot;
+    }
+
     public byte[] getPublicKey() {
         return publicKey;
     }
-    
+
     public byte[] getData() {
         return data;
     }
@@ -46,9 +186,141 @@ public class Block implements Serializable {
     public byte[] getSignature() {
         return signature;
     }
-    
+
+    /**
+     * Returns the version of the message covered by the signature. Blocks
+     * created by this class use the current version, while blocks stored
+     * before the signed message was versioned return 0.
+     *
+     * @return the version of the signed message.
+     */
+    public byte getSignedVersion() {
+        return signedVersion;
+    }
+
+    /**
+     * Indicates if the block carries a previous hash and Merkle root.
+     *
+     * @return true if the block is chained.
+     */
+    public boolean isChained() {
+        return getPrevHash().length != 0;
+    }
+
+    /**
+     * Returns the bytes covered by the signature: a version byte and the
+     * lengths of the previous hash, Merkle root, and data, followed by the
+     * fields themselves. The previous hash and Merkle root of unchained
+     * blocks are empty. The signature of a block stored before the message
+     * was versioned covers the fields alone.
+     *
+     * @return the signed bytes.
+     */
+    public byte[] getSignedBytes() {
+        if (signedVersion == LEGACY_VERSION) {
+            return ByteBuffer.allocate(getPrevHash().length + getMerkleRoot().length + data.length)
+                    .put(getPrevHash()).put(getMerkleRoot()).put(data).array();
+        }
+        return signedBytes(getPrevHash(), getMerkleRoot(), data);
+    }
+
+    /**
+     * Returns the bytes an unchained block holding the specified data must be
+     * signed over.
+     *
+     * @param data the data of the block.
+     * @return the signed bytes.
+     * @see #getSignedBytes()
+     */
+    public static byte[] getSignedBytes(final byte[] data) {
+        return signedBytes(NONE, NONE, data);
+    }
+
+    /**
+     * Returns the SHA-256 hash of the length-prefixed previous hash, Merkle
+     * root, public key, and signature. The next block in a chain stores this
+     * hash as its previous hash. The data of a chained block is committed to
+     * through its Merkle root rather than hashed again, so following the links
+     * only hashes the small header of each block. The hash of an unchained
+     * block also covers its data.
+     *
+     * @return the hash of the block. The array must not be modified.
+     */
+    public byte[] getHash() {
+        if (hash == null) {
+            final MessageDigest digest = SHA256.digest();
+            final ByteBuffer length = ByteBuffer.allocate(4);
+            for (final byte[] field : new byte[][]{getPrevHash(), getMerkleRoot(), publicKey, isChained() ? null : data, signature}) {
+                if (field != null) {
+                    digest.update(length.putInt(0, field.length).array());
+                    digest.update(field);
+                }
+            }
+            hash = digest.digest();
+        }
+        return hash;
+    }
+
+    /**
+     * Decodes the transactions held in the data of a chained block.
+     *
+     * @return the transactions of the block.
+     * @throws IllegalArgumentException if the data is not a transaction batch.
+     */
+    public List<Transaction> getTransactions() {
+        return Transaction.decodeAll(data);
+    }
+
+    /**
+     * Checks that the Merkle root matches the transactions in the data.
+     * Unchained blocks have no Merkle root and always pass.
+     *
+     * @return true if the Merkle root is valid.
+     */
+    public boolean isMerkleRootValid() {
+        if (!isChained()) {
+            return true;
+        }
+        try {
+            return MessageDigest.isEqual(merkleRoot, MerkleTree.root(getTransactions()));
+        } catch (final IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     public boolean verify() {
-        return RSAKeyPair.verify(publicKey, data, signature);
+        return SignatureAlgorithm.verify(publicKey, getSignedBytes(), signature);
+    }
+
+    /**
+     * Writes the version and field lengths that begin the signed message.
+     *
+     * @param out the array receiving the {@link #SIGNED_HEADER_SIZE} header
+     * bytes.
+     * @param prevHash the length of the previous hash.
+     * @param merkleRoot the length of the Merkle root.
+     * @param data the length of the data.
+     * @return the array.
+     */
+    static byte[] signedHeader(final byte[] out, final int prevHash, final int merkleRoot, final int data) {
+        out[0] = SIGNED_VERSION;
+        putLength(out, 1, prevHash);
+        putLength(out, 5, merkleRoot);
+        putLength(out, 9, data);
+        return out;
+    }
+
+    private static void putLength(final byte[] out, final int offset, final int length) {
+        out[offset] = (byte) (length >>> 24);
+        out[offset + 1] = (byte) (length >>> 16);
+        out[offset + 2] = (byte) (length >>> 8);
+        out[offset + 3] = (byte) length;
+    }
+
+    private static byte[] signedBytes(final byte[] prevHash, final byte[] merkleRoot, final byte[] data) {
+        return ByteBuffer.allocate(SIGNED_HEADER_SIZE + prevHash.length + merkleRoot.length + data.length)
+                .put(signedHeader(new byte[SIGNED_HEADER_SIZE], prevHash.length, merkleRoot.length, data.length))
+                .put(prevHash).put(merkleRoot).put(data).array();
     }
 
 }
@@ -0,0 +1,549 @@
+package net.cybertekt.blockchain;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.SignatureException;
+import net.cybertekt.crypto.SHA256;
+
+/**
+ * Block Codec - (C) Cybertekt Software
+ *
+ * <p>
+ * Compact, versioned binary encoding of {@link Block blocks} and the
+ * variable-length integers used by both blocks and
+ * {@link Transaction transactions}. A block is encoded as:
+ * </p>
+ *
+ * <pre>
+ * [version:1][flags:1][publicKeyLength:varint][dataLength:varint][signatureLength:varint]
+ * [prevHash:32][merkleRoot:32]  (chained blocks only)
+ * [data][publicKey][signature]
+ * </pre>
+ *
+ * <p>
+ * The previous hash, Merkle root, and data are stored next to each other, so
+ * the fields covered by the signature are a single contiguous region of the
+ * encoding and can be fed to a {@link Signature} straight from the buffer
+ * after the header of the signed message. Blocks signed before the signed
+ * message was versioned carry the {@link #LEGACY} flag, and their signature
+ * covers the region alone.
+ * </p>
+ *
+ * <p>
+ * The encoding is canonical: every block has exactly one encoding. Decoding
+ * rejects unknown versions and flags, varints that are not in their shortest
+ * form, and trailing bytes, so equal blocks always have equal bytes.
+ * </p>
+ *
+ * <p>
+ * A {@link BlockView} reads the fields of an encoded block in place, for
+ * example directly from a memory-mapped {@link BlockLog} segment, without
+ * allocating a block or copying its fields.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BlockCodec {
+
+    /**
+     * Current encoding version.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * Flag set on chained blocks, which carry a previous hash and Merkle root.
+     */
+    static final byte CHAINED = 1;
+
+    /**
+     * Flag set on blocks whose signature covers the unversioned message.
+     */
+    static final byte LEGACY = 2;
+
+    /**
+     * Size of the version and flags.
+     */
+    private static final int FIXED_HEADER_SIZE = 2;
+
+    /**
+     * Size of the smallest possible encoding.
+     */
+    public static final int MIN_SIZE = FIXED_HEADER_SIZE + 3;
+
+    /**
+     * Largest number of bytes in an encoded varint.
+     */
+    public static final int MAX_VARINT_SIZE = 5;
+
+    /**
+     * Returns the number of bytes {@link #encode(Block, ByteBuffer)} writes.
+     *
+     * @param block the block.
+     * @return the encoded size of the block.
+     */
+    public static int getEncodedSize(final Block block) {
+        final int publicKey = block.getPublicKey().length, data = block.getData().length, signature = block.getSignature().length;
+        return FIXED_HEADER_SIZE + varintSize(publicKey) + varintSize(data) + varintSize(signature)
+                + (block.isChained() ? 2 * SHA256.SIZE : 0) + publicKey + data + signature;
+    }
+
+    /**
+     * Writes a block at the position of a buffer. The id of the block is not
+     * encoded.
+     *
+     * @param block the block to encode.
+     * @param buffer the buffer to write to.
+     * @throws java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void encode(final Block block, final ByteBuffer buffer) {
+        final byte[] publicKey = block.getPublicKey(), data = block.getData(), signature = block.getSignature();
+        buffer.put(VERSION).put((byte) ((block.isChained() ? CHAINED : 0) | (block.getSignedVersion() == Block.LEGACY_VERSION ? LEGACY : 0)));
+        putVarint(buffer, publicKey.length);
+        putVarint(buffer, data.length);
+        putVarint(buffer, signature.length);
+        if (block.isChained()) {
+            buffer.put(block.getPrevHash()).put(block.getMerkleRoot());
+        }
+        buffer.put(data).put(publicKey).put(signature);
+    }
+
+    /**
+     * Encodes a block into a new array.
+     *
+     * @param block the block to encode.
+     * @return the encoded block.
+     */
+    public static byte[] encode(final Block block) {
+        final ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize(block));
+        encode(block, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Reads a block at the position of a buffer and advances the position past
+     * it.
+     *
+     * @param buffer the buffer to read from.
+     * @param id the id to assign to the block.
+     * @return the decoded block.
+     * @throws IllegalArgumentException if the buffer does not hold a complete,
+     * canonical encoding.
+     */
+    public static Block decode(final ByteBuffer buffer, final long id) {
+        final int start = buffer.position();
+        final int size = check(buffer, start, buffer.remaining());
+        if (size < 0) {
+            throw new IllegalArgumentException("Malformed block encoding at offset " + start);
+        }
+        final BlockView view = new BlockView().wrap(buffer, start);
+        buffer.position(start + size);
+        return view.toBlock(id);
+    }
+
+    /**
+     * Decodes a block from an array holding exactly one encoded block.
+     *
+     * @param encoded the encoded block.
+     * @return the decoded block with an id of zero.
+     * @throws IllegalArgumentException if the array is not a complete,
+     * canonical encoding.
+     */
+    public static Block decode(final byte[] encoded) {
+        final ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        final Block block = decode(buffer, 0);
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException(buffer.remaining() + " bytes after the encoded block");
+        }
+        return block;
+    }
+
+    /**
+     * Checks the header of an encoded block without reading the fields.
+     *
+     * @param buffer the buffer holding the block.
+     * @param offset the absolute offset of the block.
+     * @param remaining the number of bytes available at the offset.
+     * @return the encoded size of the block, or -1 if the header is malformed,
+     * not canonical, or describes more bytes than are available.
+     */
+    public static int check(final ByteBuffer buffer, final int offset, final int remaining) {
+        if (remaining < MIN_SIZE || buffer.get(offset) != VERSION) {
+            return -1;
+        }
+        final byte flags = buffer.get(offset + 1);
+        if ((flags & ~(CHAINED | LEGACY)) != 0) {
+            return -1;
+        }
+        int position = offset + FIXED_HEADER_SIZE;
+        long total = (flags & CHAINED) != 0 ? 2 * SHA256.SIZE : 0;
+        for (int field = 0; field < 3; field++) {
+            final long varint = readVarint(buffer, position, offset + remaining);
+            if (varint < 0) {
+                return -1;
+            }
+            total += (int) varint;
+            position += (int) (varint >>> 32);
+        }
+        total += position - offset;
+        return total <= remaining ? (int) total : -1;
+    }
+
+    /**
+     * Returns the number of bytes needed to encode a varint.
+     *
+     * @param value the non-negative value.
+     * @return the encoded size, from 1 to {@link #MAX_VARINT_SIZE}.
+     */
+    public static int varintSize(final int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : value < 1 << 28 ? 4 : 5;
+    }
+
+    /**
+     * Writes a non-negative value as an unsigned LEB128 varint: seven bits per
+     * byte, least significant first, with the high bit set on every byte but
+     * the last.
+     *
+     * @param buffer the buffer to write to.
+     * @param value the non-negative value.
+     */
+    public static void putVarint(final ByteBuffer buffer, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative varint: " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads a varint at the position of a buffer and advances the position.
+     *
+     * @param buffer the buffer to read from.
+     * @return the non-negative value.
+     * @throws IllegalArgumentException if the varint is truncated, too large,
+     * or not in its shortest form.
+     */
+    public static int getVarint(final ByteBuffer buffer) {
+        final long varint = readVarint(buffer, buffer.position(), buffer.limit());
+        if (varint < 0) {
+            throw new IllegalArgumentException("Malformed varint at offset " + buffer.position());
+        }
+        buffer.position(buffer.position() + (int) (varint >>> 32));
+        return (int) varint;
+    }
+
+    /**
+     * Reads a length-prefixed byte array at the position of a buffer.
+     *
+     * @param buffer the buffer to read from.
+     * @return the field.
+     * @throws IllegalArgumentException if the field is truncated.
+     */
+    static byte[] getField(final ByteBuffer buffer) {
+        final int length = getVarint(buffer);
+        if (length > buffer.remaining()) {
+            throw new IllegalArgumentException("Field of " + length + " bytes exceeds the " + buffer.remaining() + " remaining");
+        }
+        final byte[] field = new byte[length];
+        buffer.get(field);
+        return field;
+    }
+
+    /**
+     * Writes a length-prefixed byte array at the position of a buffer.
+     *
+     * @param buffer the buffer to write to.
+     * @param field the field.
+     */
+    static void putField(final ByteBuffer buffer, final byte[] field) {
+        putVarint(buffer, field.length);
+        buffer.put(field);
+    }
+
+    /**
+     * Reads a varint at an absolute offset without moving the buffer.
+     *
+     * @return the encoded size in the upper 32 bits and the value in the lower
+     * 32 bits, or -1 if the varint is truncated, exceeds
+     * {@link Integer#MAX_VALUE}, or is not in its shortest form.
+     */
+    private static long readVarint(final ByteBuffer buffer, final int offset, final int limit) {
+        int value = 0;
+        for (int i = 0; i < MAX_VARINT_SIZE; i++) {
+            if (offset + i >= limit) {
+                return -1;
+            }
+            final int b = buffer.get(offset + i);
+            if (i == MAX_VARINT_SIZE - 1 && (b & 0xF8) != 0) {
+                return -1;
+            }
+            value |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                if (b == 0 && i > 0) {
+                    return -1;
+                }
+                return (long) (i + 1) << 32 | value;
+            }
+        }
+        return -1;
+    }
+
+    private BlockCodec() {
+    }
+
+    /**
+     * Block View - (C) Cybertekt Software
+     *
+     * <p>
+     * A reusable flyweight over an encoded block. {@link #wrap(ByteBuffer, int)}
+     * parses only the header; fields are then read in place from the buffer.
+     * Hashing, signature checks, and comparisons feed the buffer directly to
+     * the digest or signature, so a single view can walk any number of blocks
+     * without allocating.
+     * </p>
+     *
+     * <p>
+     * A view must only be used by one thread at a time and only while the
+     * bytes it wraps are unchanged.
+     * </p>
+     */
+    public static final class BlockView {
+
+        /**
+         * Private duplicate of the wrapped buffer whose position and limit are
+         * moved to select fields.
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * Buffer the duplicate was made from, so rewrapping the same buffer
+         * does not duplicate it again.
+         */
+        private ByteBuffer source;
+
+        private boolean chained, legacy;
+
+        /**
+         * Absolute offsets of the start of the block, the signed region, the
+         * data, the public key, and the signature, and the end of the block.
+         */
+        private int start, signed, data, publicKey, signature, end;
+
+        /**
+         * Scratch space for length prefixes fed to digests.
+         */
+        private final byte[] length = new byte[4];
+
+        /**
+         * Scratch space for signatures, grown as needed.
+         */
+        private byte[] scratch = new byte[0];
+
+        /**
+         * Scratch space for the header of the signed message.
+         */
+        private final byte[] header = new byte[Block.SIGNED_HEADER_SIZE];
+
+        /**
+         * Positions the view over the block encoded at an absolute offset of a
+         * buffer. The buffer's own position and limit are not changed.
+         *
+         * @param source the buffer holding the block.
+         * @param offset the absolute offset of the block.
+         * @return this view.
+         * @throws IllegalArgumentException if the encoding is malformed.
+         */
+        public BlockView wrap(final ByteBuffer source, final int offset) {
+            final int size = check(source, offset, source.limit() - offset);
+            if (size < 0) {
+                throw new IllegalArgumentException("Malformed block encoding at offset " + offset);
+            }
+            if (source != this.source) {
+                this.source = source;
+                this.buffer = source.duplicate();
+            }
+            buffer.limit(buffer.capacity());
+            int position = offset + FIXED_HEADER_SIZE;
+            final long publicKeyVarint = readVarint(source, position, offset + size);
+            position += (int) (publicKeyVarint >>> 32);
+            final long dataVarint = readVarint(source, position, offset + size);
+            position += (int) (dataVarint >>> 32);
+            position += (int) (readVarint(source, position, offset + size) >>> 32);
+            chained = (source.get(offset + 1) & CHAINED) != 0;
+            legacy = (source.get(offset + 1) & LEGACY) != 0;
+            start = offset;
+            signed = position;
+            data = signed + (chained ? 2 * SHA256.SIZE : 0);
+            publicKey = data + (int) dataVarint;
+            signature = publicKey + (int) publicKeyVarint;
+            end = offset + size;
+            return this;
+        }
+
+        public boolean isChained() {
+            return chained;
+        }
+
+        /**
+         * Returns the number of bytes of the encoded block.
+         *
+         * @return the encoded size.
+         */
+        public int getEncodedSize() {
+            return end - start;
+        }
+
+        public int getDataLength() {
+            return publicKey - data;
+        }
+
+        public int getPublicKeyLength() {
+            return signature - publicKey;
+        }
+
+        public int getSignatureLength() {
+            return end - signature;
+        }
+
+        /**
+         * Compares the previous hash with an expected hash in constant time.
+         *
+         * @param expected the expected previous hash.
+         * @return true if the block is chained and its previous hash matches.
+         */
+        public boolean isPrevHash(final byte[] expected) {
+            if (!chained || expected.length != SHA256.SIZE) {
+                return false;
+            }
+            int diff = 0;
+            for (int i = 0; i < SHA256.SIZE; i++) {
+                diff |= buffer.get(signed + i) ^ expected[i];
+            }
+            return diff == 0;
+        }
+
+        /**
+         * Computes the hash of the block, equal to {@link Block#getHash()},
+         * into an array.
+         *
+         * @param digest the digest to use, which is reset.
+         * @param out the array receiving the 32 byte hash.
+         * @param offset the offset in the array.
+         */
+        public void hash(final MessageDigest digest, final byte[] out, final int offset) {
+            digest.reset();
+            if (chained) {
+                update(digest, signed, SHA256.SIZE);
+                update(digest, signed + SHA256.SIZE, SHA256.SIZE);
+            } else {
+                update(digest, signed, 0);
+                update(digest, signed, 0);
+            }
+            update(digest, publicKey, getPublicKeyLength());
+            if (!chained) {
+                update(digest, data, getDataLength());
+            }
+            update(digest, signature, getSignatureLength());
+            try {
+                digest.digest(out, offset, SHA256.SIZE);
+            } catch (final DigestException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        /**
+         * Feeds the bytes covered by the block's signature, equal to
+         * {@link Block#getSignedBytes()}, to a signature initialized for
+         * verification.
+         *
+         * @param sig the signature to update.
+         * @throws SignatureException if the signature is not initialized.
+         */
+        public void updateSigned(final Signature sig) throws SignatureException {
+            if (!legacy) {
+                final int hashes = chained ? SHA256.SIZE : 0;
+                sig.update(Block.signedHeader(header, hashes, hashes, getDataLength()));
+            }
+            sig.update(range(signed, publicKey));
+        }
+
+        /**
+         * Verifies the signature of the block against an initialized
+         * signature after {@link #updateSigned(Signature)}.
+         *
+         * @param sig the updated signature.
+         * @return true if the signature is valid.
+         * @throws SignatureException if the signature is not initialized.
+         */
+        public boolean verifySignature(final Signature sig) throws SignatureException {
+            final int size = getSignatureLength();
+            if (scratch.length < size) {
+                scratch = new byte[size];
+            }
+            range(signature, end).get(scratch, 0, size);
+            return sig.verify(scratch, 0, size);
+        }
+
+        /**
+         * Copies the public key into an array.
+         *
+         * @param out the array, at least {@link #getPublicKeyLength()} long.
+         */
+        public void getPublicKey(final byte[] out) {
+            range(publicKey, signature).get(out, 0, getPublicKeyLength());
+        }
+
+        /**
+         * Returns a read-only buffer over the data, sharing the wrapped bytes.
+         *
+         * @return the data.
+         */
+        public ByteBuffer getData() {
+            return range(data, publicKey).slice().asReadOnlyBuffer();
+        }
+
+        /**
+         * Materializes the viewed block.
+         *
+         * @param id the id to assign to the block.
+         * @return a new block holding copies of the fields.
+         */
+        public Block toBlock(final long id) {
+            final byte[] prevHash = copy(chained ? signed : data, chained ? SHA256.SIZE : 0);
+            final byte[] merkleRoot = copy(chained ? signed + SHA256.SIZE : data, chained ? SHA256.SIZE : 0);
+            return new Block(id, legacy ? Block.LEGACY_VERSION : Block.SIGNED_VERSION, prevHash, merkleRoot, copy(publicKey, getPublicKeyLength()), copy(data, getDataLength()), copy(signature, getSignatureLength()));
+        }
+
+        private byte[] copy(final int offset, final int size) {
+            final byte[] bytes = new byte[size];
+            range(offset, offset + size).get(bytes);
+            return bytes;
+        }
+
+        private ByteBuffer range(final int from, final int to) {
+            buffer.limit(buffer.capacity());
+            buffer.position(from);
+            buffer.limit(to);
+            return buffer;
+        }
+
+        /**
+         * Feeds a length-prefixed field to a digest, matching the layout
+         * hashed by {@link Block#getHash()}.
+         */
+        private void update(final MessageDigest digest, final int offset, final int size) {
+            length[0] = (byte) (size >>> 24);
+            length[1] = (byte) (size >>> 16);
+            length[2] = (byte) (size >>> 8);
+            length[3] = (byte) size;
+            digest.update(length);
+            digest.update(range(offset, offset + size));
+        }
+    }
+}
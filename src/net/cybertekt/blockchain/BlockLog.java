@@ -0,0 +1,698 @@
+package net.cybertekt.blockchain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Block Log - (C) Cybertekt Software
+ *
+ * <p>
+ * Append-only storage for {@link Block blocks}. Blocks are written as records
+ * to a sequence of fixed size segment files in a single directory. Each
+ * segment file is preallocated and memory-mapped so that appends and reads are
+ * plain memory copies. Blocks are assigned sequential ids starting at zero and
+ * an in-memory offset index maps every id to its segment and offset so that
+ * any block can be read without scanning.
+ * </p>
+ *
+ * <p>
+ * Each record is stored as {@code [length][crc32][payload]} where the length
+ * and CRC-32 cover the payload only. The payload holds the block id followed
+ * by the block in its canonical {@link BlockCodec} encoding, which can be read
+ * in place through a {@link BlockCodec.BlockView}. A length of zero marks the
+ * end of a segment.
+ * </p>
+ *
+ * <p>
+ * Appends are not durable until they are synced. A background flusher thread
+ * forces the mapped segments to disk whenever a writer calls {@link #sync()}
+ * and at a fixed interval otherwise. Writers that call sync while a force is
+ * in progress are committed together by the next force, so concurrent writers
+ * share the cost of each fsync.
+ * </p>
+ *
+ * <p>
+ * When a log is opened, every record is checked against its length and CRC.
+ * The log is truncated at the first record that is incomplete or corrupt,
+ * which is what a crash in the middle of an append leaves behind, and any
+ * later segments are deleted.
+ * </p>
+ *
+ * <p>
+ * Appends are serialized; reads are lock-free and may run concurrently with
+ * appends.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BlockLog implements Closeable {
+
+    /**
+     * Class Logger.
+     */
+    public static final Logger log = LoggerFactory.getLogger(BlockLog.class);
+
+    /**
+     * Default size of each segment file in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Default interval in milliseconds at which unsynced appends are flushed.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /**
+     * Segment file name extension.
+     */
+    public static final String EXTENSION = ".log";
+
+    /**
+     * Size of the length and CRC that precede each record payload.
+     */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Size of the payload of a record holding the smallest possible block.
+     */
+    private static final int MIN_PAYLOAD_SIZE = 8 + BlockCodec.MIN_SIZE;
+
+    /**
+     * Directory containing the segment files.
+     */
+    private final Path dir;
+
+    /**
+     * Size of newly created segment files.
+     */
+    private final int segmentSize;
+
+    /**
+     * Interval at which unsynced appends are flushed.
+     */
+    private final long flushInterval;
+
+    /**
+     * Segments in id order. Replaced, never modified, when a segment is added.
+     */
+    private volatile Segment[] segments;
+
+    /**
+     * Segment number and offset of each block packed as
+     * {@code segment << 32 | offset}. Grown by copying; entries below
+     * {@link #count} are never modified.
+     */
+    private volatile long[] index;
+
+    /**
+     * Number of blocks in the log. Written only by appends while holding the
+     * write lock; published after the record and index entry are written.
+     */
+    private volatile long count;
+
+    /**
+     * Number of blocks known to be on disk.
+     */
+    private long durable;
+
+    /**
+     * Number of blocks that writers have requested to be synced.
+     */
+    private long requested;
+
+    /**
+     * Number of times the segments have been forced to disk.
+     */
+    private long flushes;
+
+    /**
+     * Guards appends.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Guards the durable, requested, and flush counts, and is used to signal
+     * the flusher and waiting writers.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Checksum reused by appends.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Background thread that forces appended records to disk.
+     */
+    private final Thread flusher;
+
+    /**
+     * Set when the log is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Error thrown by the last force, reported to waiting writers.
+     */
+    private IOException flushError;
+
+    /**
+     * Opens the block log in the specified directory using the default
+     * segment size and flush interval, creating it if it does not exist.
+     *
+     * @param dir the directory containing the segment files.
+     * @throws IOException if the log could not be opened or recovered.
+     */
+    public BlockLog(final Path dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * Opens the block log in the specified directory, creating it if it does
+     * not exist. Any incomplete or corrupt records at the end of the log are
+     * discarded.
+     *
+     * @param dir the directory containing the segment files.
+     * @param segmentSize the size of newly created segment files in bytes.
+     * @param flushInterval the interval in milliseconds at which unsynced
+     * appends are flushed to disk.
+     * @throws IOException if the log could not be opened or recovered.
+     */
+    public BlockLog(final Path dir, final int segmentSize, final long flushInterval) throws IOException {
+        if (segmentSize < HEADER_SIZE + MIN_PAYLOAD_SIZE + 4) {
+            throw new IllegalArgumentException("Segment size is too small: " + segmentSize);
+        }
+        if (flushInterval <= 0) {
+            throw new IllegalArgumentException("Flush interval must be greater than zero: " + flushInterval);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.flushInterval = flushInterval;
+        this.segments = new Segment[0];
+        this.index = new long[1024];
+        Files.createDirectories(dir);
+
+        recover();
+        durable = requested = count;
+
+        flusher = new Thread(this::flush, "BlockLog Flusher [" + dir.getFileName() + "]");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Appends a block to the log. The block is readable as soon as this
+     * method returns but is not durable until it is {@link #sync() synced}.
+     *
+     * @param block the block to append. Its id is ignored.
+     * @return the id assigned to the block.
+     * @throws IOException if a new segment file could not be created.
+     */
+    public long append(final Block block) throws IOException {
+        final int payload = 8 + BlockCodec.getEncodedSize(block);
+
+        synchronized (writeLock) {
+            if (closed) {
+                throw new IOException("Block log is closed");
+            }
+
+            /* Roll Over To A New Segment If The Record Does Not Fit */
+            Segment segment = segments.length == 0 ? null : segments[segments.length - 1];
+            if (segment == null || segment.position + HEADER_SIZE + payload > segment.buffer.capacity()) {
+                if (HEADER_SIZE + payload > segmentSize) {
+                    throw new IllegalArgumentException("Block of " + payload + " bytes does not fit in a segment of " + segmentSize + " bytes");
+                }
+                segment = addSegment(count);
+            }
+
+            /* Write The Record */
+            final long id = count;
+            final int offset = segment.position;
+            final ByteBuffer buffer = segment.buffer;
+            buffer.position(offset + HEADER_SIZE);
+            buffer.putLong(id);
+            BlockCodec.encode(block, buffer);
+            crc.reset();
+            crc.update(payloadOf(buffer, offset, payload));
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.putInt(offset, payload);
+            segment.position = offset + HEADER_SIZE + payload;
+
+            /* Publish The Record */
+            long[] entries = index;
+            if (id == entries.length) {
+                if (id >= Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("Block log is full");
+                }
+                index = entries = Arrays.copyOf(entries, (int) Math.min(Integer.MAX_VALUE - 8, entries.length * 2L));
+            }
+            entries[(int) id] = (long) (segments.length - 1) << 32 | offset;
+            count = id + 1;
+            return id;
+        }
+    }
+
+    /**
+     * Blocks until every block appended before this call is on disk. Writers
+     * that sync concurrently are committed together.
+     *
+     * @throws IOException if the log could not be forced to disk.
+     */
+    public void sync() throws IOException {
+        final long target = count;
+        synchronized (flushLock) {
+            if (durable >= target) {
+                return;
+            }
+            requested = Math.max(requested, target);
+            flushLock.notifyAll();
+            while (durable < target) {
+                if (flushError != null) {
+                    throw flushError;
+                }
+                if (!flusher.isAlive()) {
+                    throw new IOException("Block log is closed");
+                }
+                try {
+                    flushLock.wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for sync", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a block from the log.
+     *
+     * @param id the id of the block.
+     * @return a new block holding copies of the stored fields.
+     * @throws IndexOutOfBoundsException if no block with the id exists.
+     */
+    public Block get(final long id) {
+        final long entry = entry(id);
+        final ByteBuffer buffer = segments[(int) (entry >>> 32)].buffer.duplicate();
+        buffer.position((int) entry + HEADER_SIZE + 8);
+        return BlockCodec.decode(buffer, id);
+    }
+
+    /**
+     * Positions a view over a block in the mapped segment without copying or
+     * allocating. The view is valid for as long as the log is open.
+     *
+     * @param id the id of the block.
+     * @param view the view to position.
+     * @return the view.
+     * @throws IndexOutOfBoundsException if no block with the id exists.
+     */
+    public BlockCodec.BlockView view(final long id, final BlockCodec.BlockView view) {
+        final long entry = entry(id);
+        return view.wrap(segments[(int) (entry >>> 32)].buffer, (int) entry + HEADER_SIZE + 8);
+    }
+
+    /**
+     * Returns a spliterator over the blocks with ids in the specified range.
+     * Blocks are read one at a time as the spliterator advances, so only the
+     * blocks currently being processed are held in memory. The spliterator
+     * splits in halves down to the specified chunk size, allowing the range
+     * to be processed by a parallel stream.
+     *
+     * @param from the id of the first block, inclusive.
+     * @param to the id of the last block, exclusive.
+     * @param chunkSize the smallest number of blocks split off for a single
+     * thread.
+     * @return the spliterator over the range of blocks.
+     * @throws IndexOutOfBoundsException if the range is not within the log.
+     */
+    public Spliterator<Block> spliterator(final long from, final long to, final int chunkSize) {
+        if (from < 0 || from > to || to > count) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") is not within a log of " + count + " blocks");
+        }
+        return new BlockSpliterator(from, to, Math.max(1, chunkSize));
+    }
+
+    /**
+     * Returns the number of blocks in the log, which is also the id that the
+     * next appended block will be assigned.
+     *
+     * @return the number of blocks in the log.
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of times appended blocks have been forced to disk.
+     * Compared to the number of sync calls this shows how well concurrent
+     * commits are grouped.
+     *
+     * @return the number of forces.
+     */
+    public long getFlushCount() {
+        synchronized (flushLock) {
+            return flushes;
+        }
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Flushes every appended block to disk and closes the log. The mapped
+     * segments are released when they are garbage collected.
+     *
+     * @throws IOException if the log could not be forced to disk.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        boolean interrupted = false;
+        while (flusher.isAlive()) {
+            try {
+                flusher.join();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        for (final Segment segment : segments) {
+            segment.channel.close();
+        }
+        synchronized (flushLock) {
+            if (flushError != null) {
+                throw flushError;
+            }
+        }
+        log.debug("Closed block log {} with {} blocks in {} segments", dir, count, segments.length);
+    }
+
+    /**
+     * Flusher thread body. Waits until a sync is requested or the flush
+     * interval elapses, then forces every segment written since the previous
+     * force and wakes the waiting writers. Makes a final pass when the log is
+     * closed.
+     */
+    private void flush() {
+        int first = Math.max(0, segments.length - 1);
+        while (true) {
+            final long target;
+            final boolean stop;
+            synchronized (flushLock) {
+                if (!closed && requested <= durable) {
+                    try {
+                        flushLock.wait(flushInterval);
+                    } catch (final InterruptedException e) {
+                        /* Only Closing The Log Stops The Flusher */
+                    }
+                }
+                stop = closed;
+                target = count;
+                if (target <= durable && !stop) {
+                    continue;
+                }
+            }
+
+            /* Force Every Segment Touched Since The Last Force */
+            IOException error = null;
+            final Segment[] current = segments;
+            try {
+                for (int i = first; i < current.length; i++) {
+                    current[i].buffer.force();
+                }
+                first = Math.max(0, current.length - 1);
+            } catch (final RuntimeException e) {
+                error = new IOException("Unable to force block log to disk", e);
+                log.error("{}: {}", e.getClass().getName(), e.getMessage());
+            }
+
+            synchronized (flushLock) {
+                if (error == null) {
+                    durable = Math.max(durable, target);
+                    flushes++;
+                }
+                flushError = error;
+                flushLock.notifyAll();
+            }
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Creates, preallocates, and maps a new segment file.
+     */
+    private Segment addSegment(final long baseId) throws IOException {
+        final Segment segment = new Segment(dir.resolve(String.format("%020d", baseId) + EXTENSION), baseId, segmentSize);
+        final Segment[] current = segments;
+        final Segment[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = segment;
+        segments = next;
+        return segment;
+    }
+
+    /**
+     * Maps the existing segment files and rebuilds the offset index. The log
+     * is truncated at the first record that is incomplete, corrupt, or out of
+     * sequence and all later segment files are deleted. A record whose
+     * checksum is intact but which does not hold a valid block is not a torn
+     * write, so the log is left untouched and opening fails instead.
+     */
+    private void recover() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (final Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+
+        final long time = System.nanoTime();
+        final CRC32 check = new CRC32();
+        boolean truncated = false;
+        for (int i = 0; i < files.size(); i++) {
+            final Path file = files.get(i);
+            if (truncated) {
+                log.warn("Deleting block log segment {} after a truncated segment", file);
+                Files.delete(file);
+                continue;
+            }
+            final long baseId;
+            try {
+                baseId = Long.parseLong(file.getFileName().toString().substring(0, file.getFileName().toString().length() - EXTENSION.length()));
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid block log segment name: " + file);
+            }
+            if (baseId != count) {
+                log.warn("Deleting block log segment {} which does not start at block {}", file, count);
+                Files.delete(file);
+                truncated = true;
+                continue;
+            }
+
+            /* The Last Segment Is Mapped At Full Size So It Can Be Appended To */
+            final long length = Files.size(file);
+            final boolean last = i == files.size() - 1;
+            final Segment segment = new Segment(file, baseId, (int) Math.min(Integer.MAX_VALUE, last ? Math.max(length, segmentSize) : length));
+            final Segment[] next = Arrays.copyOf(segments, segments.length + 1);
+            next[segments.length] = segment;
+            segments = next;
+
+            /* Scan And Index Every Record */
+            final ByteBuffer buffer = segment.buffer;
+            int offset = 0;
+            while (true) {
+                final int remaining = buffer.capacity() - offset;
+                if (remaining < HEADER_SIZE) {
+                    break;
+                }
+                final int payload = buffer.getInt(offset);
+                if (payload == 0) {
+                    break;
+                }
+                boolean valid = payload >= MIN_PAYLOAD_SIZE && payload <= remaining - HEADER_SIZE && buffer.getLong(offset + HEADER_SIZE) == count;
+                if (valid) {
+                    check.reset();
+                    check.update(payloadOf(buffer, offset, payload));
+                    valid = (int) check.getValue() == buffer.getInt(offset + 4);
+                    if (valid && !isWellFormed(buffer, offset + HEADER_SIZE + 8, payload - 8)) {
+                        /* An Intact Record That Is Not A Block Was Written In Another Format */
+                        throw new IOException("Unsupported block encoding in " + file + " at offset " + offset + "; the log was written by an incompatible version");
+                    }
+                }
+                if (!valid) {
+                    log.warn("Truncating block log at block {}: incomplete or corrupt record in {} at offset {}", count, file, offset);
+                    truncated = true;
+                    break;
+                }
+                if (count == index.length) {
+                    index = Arrays.copyOf(index, index.length * 2);
+                }
+                index[(int) count++] = (long) (segments.length - 1) << 32 | offset;
+                offset += HEADER_SIZE + payload;
+            }
+            segment.position = offset;
+
+            /* Zero The Discarded Tail So Later Appends Leave No Stale Records */
+            if (truncated) {
+                if (segment.buffer.capacity() < segmentSize) {
+                    segment.remap(segmentSize);
+                }
+                final ByteBuffer tail = segment.buffer.duplicate();
+                tail.position(offset);
+                final byte[] zeros = new byte[8192];
+                while (tail.hasRemaining()) {
+                    tail.put(zeros, 0, Math.min(zeros.length, tail.remaining()));
+                }
+                segment.buffer.force();
+            }
+        }
+        log.debug("Opened block log {} with {} blocks in {} segments [{}ms]", dir, count, segments.length, (System.nanoTime() - time) / 1000000);
+    }
+
+    /**
+     * Returns the index entry of a block.
+     */
+    private long entry(final long id) {
+        if (id < 0 || id >= count) {
+            throw new IndexOutOfBoundsException("Block " + id + " does not exist in a log of " + count + " blocks");
+        }
+        return index[(int) id];
+    }
+
+    /**
+     * Checks that a record payload holds exactly one canonically encoded
+     * block.
+     */
+    private static boolean isWellFormed(final ByteBuffer buffer, final int position, final int remaining) {
+        return BlockCodec.check(buffer, position, remaining) == remaining;
+    }
+
+    /**
+     * Returns a view of the payload of the record at the specified offset.
+     */
+    private static ByteBuffer payloadOf(final ByteBuffer buffer, final int offset, final int payload) {
+        final ByteBuffer view = buffer.duplicate();
+        view.limit(offset + HEADER_SIZE + payload).position(offset + HEADER_SIZE);
+        return view;
+    }
+
+    /**
+     * Lazily reads a range of blocks, splitting the range in halves.
+     */
+    private final class BlockSpliterator implements Spliterator<Block> {
+
+        private long next;
+        private final long end;
+        private final int chunkSize;
+
+        private BlockSpliterator(final long next, final long end, final int chunkSize) {
+            this.next = next;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public boolean tryAdvance(final Consumer<? super Block> action) {
+            if (next >= end) {
+                return false;
+            }
+            action.accept(get(next++));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(final Consumer<? super Block> action) {
+            while (next < end) {
+                action.accept(get(next++));
+            }
+        }
+
+        @Override
+        public Spliterator<Block> trySplit() {
+            final long remaining = end - next;
+            if (remaining < 2L * chunkSize) {
+                return null;
+            }
+            final long start = next;
+            next += remaining >>> 1;
+            return new BlockSpliterator(start, next, chunkSize);
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - next;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file.
+     */
+    private static final class Segment {
+
+        private final Path file;
+        private final long baseId;
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+
+        /**
+         * Write offset of the next record. Only accessed by the writer.
+         */
+        private int position;
+
+        private Segment(final Path file, final long baseId, final int size) throws IOException {
+            this.file = file;
+            this.baseId = baseId;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Maps the segment at a new size, extending the file if needed. Only
+         * used during recovery before the segment is visible to readers.
+         */
+        private void remap(final int size) throws IOException {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        @Override
+        public String toString() {
+            return file + " [" + baseId + "]";
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package net.cybertekt.blockchain;
+
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import net.cybertekt.crypto.SignatureAlgorithm;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Block Verifier - (C) Cybertekt Software
+ *
+ * <p>
+ * Verifies the signatures of many {@link Block blocks} in parallel. Blocks are
+ * split between the workers of a {@link ForkJoinPool} and each worker thread
+ * reuses its own {@link Signature} and {@link KeyFactory} instances instead of
+ * looking up new instances for every block. Blocks may be signed with any
+ * {@link SignatureAlgorithm}; the algorithm is detected from the encoded public
+ * key. Decoded public keys are kept in a bounded least-recently-used cache
+ * keyed by their encoded bytes since many blocks are usually signed by the same
+ * key.
+ * </p>
+ *
+ * <p>
+ * Block verifiers are thread-safe and are intended to be shared.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BlockVerifier {
+
+    /**
+     * Class Logger.
+     */
+    public static final Logger log = LoggerFactory.getLogger(BlockVerifier.class);
+
+    /**
+     * Default maximum number of decoded public keys to cache.
+     */
+    public static final int DEFAULT_KEY_CACHE_SIZE = 1024;
+
+    /**
+     * Number of blocks below which a verification task is not split further.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    /**
+     * Cached in place of encoded keys that could not be decoded so that
+     * invalid keys are only decoded once.
+     */
+    private static final PublicKey INVALID_KEY = new PublicKey() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String getAlgorithm() {
+            return "NONE";
+        }
+
+        @Override
+        public String getFormat() {
+            return null;
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return null;
+        }
+    };
+
+    /**
+     * Pool used to verify batches of blocks.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Least-recently-used cache of decoded public keys. Access is synchronized
+     * on the map; keys are decoded outside of the lock.
+     */
+    private final Map<EncodedKey, PublicKey> keyCache;
+
+    /**
+     * Key cache statistics.
+     */
+    private final LongAdder keyHits = new LongAdder(), keyMisses = new LongAdder();
+
+    /**
+     * Constructs a new block verifier that uses the common ForkJoin pool and
+     * caches up to {@link #DEFAULT_KEY_CACHE_SIZE} public keys.
+     */
+    public BlockVerifier() {
+        this(ForkJoinPool.commonPool(), DEFAULT_KEY_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a new block verifier.
+     *
+     * @param pool the pool used to verify batches of blocks.
+     * @param keyCacheSize the maximum number of decoded public keys to cache.
+     */
+    public BlockVerifier(final ForkJoinPool pool, final int keyCacheSize) {
+        this.pool = pool;
+        this.keyCache = new LinkedHashMap<EncodedKey, PublicKey>(Math.min(keyCacheSize, 1024) * 4 / 3 + 1, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<EncodedKey, PublicKey> eldest) {
+                return size() > keyCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Verifies the signature of a single block on the calling thread.
+     *
+     * @param block the block to verify.
+     * @return true if the signature of the block is valid.
+     */
+    public final boolean verify(final Block block) {
+        return verify(block, decode(block.getPublicKey()));
+    }
+
+    /**
+     * Verifies the signature of a block against a public key previously
+     * returned by {@link #decode(byte[])}.
+     *
+     * @param block the block to verify.
+     * @param key the decoded public key of the block.
+     * @return true if the signature of the block is valid.
+     */
+    final boolean verify(final Block block, final PublicKey key) {
+        final SignatureAlgorithm algorithm = SignatureAlgorithm.of(key);
+        if (algorithm == null) {
+            return false;
+        }
+        try {
+            final Signature sig = algorithm.getSignature();
+            sig.initVerify(key);
+            if (block.getSignedVersion() != Block.LEGACY_VERSION) {
+                sig.update(Block.signedHeader(new byte[Block.SIGNED_HEADER_SIZE], block.getPrevHash().length, block.getMerkleRoot().length, block.getData().length));
+            }
+            sig.update(block.getPrevHash());
+            sig.update(block.getMerkleRoot());
+            sig.update(block.getData());
+            return sig.verify(block.getSignature());
+        } catch (final InvalidKeyException | SignatureException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Verifies the signatures of a list of blocks in parallel and blocks until
+     * every block has been verified.
+     *
+     * @param blocks the blocks to verify. The list must support efficient
+     * random access and must not be modified during verification.
+     * @return the per-block results and metrics of the verification.
+     */
+    public final Result verify(final List<Block> blocks) {
+        final long hits = keyHits.sum(), misses = keyMisses.sum();
+        final boolean[] valid = new boolean[blocks.size()];
+        final long time = System.nanoTime();
+        if (!blocks.isEmpty()) {
+            pool.invoke(new VerifyTask(blocks, valid, 0, valid.length));
+        }
+        final Result result = new Result(valid, System.nanoTime() - time, keyHits.sum() - hits, keyMisses.sum() - misses);
+        log.debug("{}", result);
+        return result;
+    }
+
+    /**
+     * Returns the number of decoded public keys currently cached.
+     *
+     * @return the number of cached public keys.
+     */
+    public final int getKeyCacheSize() {
+        synchronized (keyCache) {
+            return keyCache.size();
+        }
+    }
+
+    /**
+     * Returns a decoded public key from the cache or decodes and caches it.
+     *
+     * @param encoded the X.509 encoded public key.
+     * @return the public key or {@link #INVALID_KEY} if the encoded key is
+     * invalid or uses an unsupported algorithm.
+     */
+    final PublicKey decode(final byte[] encoded) {
+        final EncodedKey id = new EncodedKey(encoded);
+        PublicKey key;
+        synchronized (keyCache) {
+            key = keyCache.get(id);
+        }
+        if (key != null) {
+            keyHits.increment();
+            return key;
+        }
+        keyMisses.increment();
+        final SignatureAlgorithm algorithm = SignatureAlgorithm.detect(encoded);
+        try {
+            key = algorithm == null ? INVALID_KEY : algorithm.decode(encoded);
+        } catch (final CryptoException e) {
+            key = INVALID_KEY;
+        }
+        synchronized (keyCache) {
+            keyCache.put(id, key);
+        }
+        return key;
+    }
+
+    /**
+     * Verifies a range of blocks, splitting the range in half until it is
+     * small enough to verify directly.
+     */
+    private final class VerifyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Block> blocks;
+        private final boolean[] valid;
+        private final int start, end;
+
+        private VerifyTask(final List<Block> blocks, final boolean[] valid, final int start, final int end) {
+            this.blocks = blocks;
+            this.valid = valid;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= BATCH_SIZE) {
+                for (int i = start; i < end; i++) {
+                    valid[i] = verify(blocks.get(i));
+                }
+            } else {
+                final int mid = (start + end) >>> 1;
+                invokeAll(new VerifyTask(blocks, valid, start, mid), new VerifyTask(blocks, valid, mid, end));
+            }
+        }
+    }
+
+    /**
+     * Encoded public key bytes with content based equality. The array is not
+     * copied and must not be modified while cached.
+     */
+    private static final class EncodedKey {
+
+        private final byte[] bytes;
+        private final int hash;
+
+        private EncodedKey(final byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof EncodedKey && hash == ((EncodedKey) o).hash && Arrays.equals(bytes, ((EncodedKey) o).bytes);
+        }
+    }
+
+    /**
+     * The per-block results and metrics of a batch verification.
+     */
+    public static final class Result {
+
+        private final boolean[] valid;
+        private final int validCount;
+        private final long elapsed;
+        private final long keyHits, keyMisses;
+
+        private Result(final boolean[] valid, final long elapsed, final long keyHits, final long keyMisses) {
+            this.valid = valid;
+            this.elapsed = elapsed;
+            this.keyHits = keyHits;
+            this.keyMisses = keyMisses;
+            int count = 0;
+            for (final boolean v : valid) {
+                count += v ? 1 : 0;
+            }
+            this.validCount = count;
+        }
+
+        /**
+         * Indicates if the block at the specified index of the verified list
+         * has a valid signature.
+         *
+         * @param index the index of the block.
+         * @return true if the signature of the block is valid.
+         */
+        public boolean isValid(final int index) {
+            return valid[index];
+        }
+
+        /**
+         * Indicates if every verified block has a valid signature.
+         *
+         * @return true if every block is valid.
+         */
+        public boolean isAllValid() {
+            return validCount == valid.length;
+        }
+
+        public int getBlockCount() {
+            return valid.length;
+        }
+
+        public int getValidCount() {
+            return validCount;
+        }
+
+        public int getInvalidCount() {
+            return valid.length - validCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsed;
+        }
+
+        /**
+         * Returns the verification throughput.
+         *
+         * @return the number of blocks verified per second.
+         */
+        public double getBlocksPerSecond() {
+            return elapsed == 0 ? 0 : valid.length * 1e9 / elapsed;
+        }
+
+        /**
+         * Returns the number of public key lookups during this verification
+         * that were served from the key cache.
+         *
+         * @return the number of key cache hits.
+         */
+        public long getKeyCacheHits() {
+            return keyHits;
+        }
+
+        /**
+         * Returns the number of public keys decoded during this verification.
+         * Concurrent verifications sharing the same verifier are included.
+         *
+         * @return the number of key cache misses.
+         */
+        public long getKeyCacheMisses() {
+            return keyMisses;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Verified %d of %d Blocks [%dms, %.0f blocks/s, key cache %d hits / %d misses]", validCount, valid.length, elapsed / 1000000, getBlocksPerSecond(), keyHits, keyMisses);
+        }
+    }
+}
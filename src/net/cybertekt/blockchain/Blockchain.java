@@ -1,18 +1,276 @@
 package net.cybertekt.blockchain;
 
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import net.cybertekt.crypto.SHA256;
+import net.cybertekt.crypto.SigningKeyPair;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
+ * A chain of hash-linked blocks stored in a {@link BlockLog}. Blocks are
+ * appended, traversed, and verified through the chain; a
+ * {@link BlockchainNode} builds blocks from submitted transactions and answers
+ * indexed queries on top of it.
  *
  * @author Vektor
  */
 public class Blockchain {
-    
+
+    /**
+     * Class Logger.
+     */
+    public static final Logger log = LoggerFactory.getLogger(Blockchain.class);
+
+    /**
+     * Default number of blocks split off for a single thread or fetched in a
+     * single query page.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
     private String address;
-    
+
+    /**
+     * Block storage, or null if the chain has no local block log.
+     */
+    private final BlockLog blocks;
+
+    /**
+     * Hash of the last block, which the next appended block links to.
+     */
+    private byte[] head;
+
+    /**
+     * Number of leading blocks whose links and signatures have been verified.
+     */
+    private long verified;
+
     public Blockchain(final String address) {
+        this(address, null);
+    }
+
+    public Blockchain(final String address, final BlockLog blocks) {
         this.address = address;
+        this.blocks = blocks;
+        this.head = blocks == null || blocks.size() == 0 ? Block.GENESIS_HASH : blocks.get(blocks.size() - 1).getHash();
+    }
+
+    /**
+     * Creates a block holding a batch of transactions that links to the last
+     * block of the chain and appends it to the block log. Blocks must only be
+     * appended to the block log through this chain.
+     *
+     * @param key the key pair used to sign the block.
+     * @param transactions the transactions to include.
+     * @return the id of the new block.
+     * @throws CryptoException if the block could not be signed.
+     * @throws IOException if the block could not be appended.
+     */
+    public synchronized long append(final SigningKeyPair key, final List<Transaction> transactions) throws CryptoException, IOException {
+        final Block block = Block.create(head, transactions, key);
+        final long id = getBlocks().append(block);
+        head = block.getHash();
+        return id;
+    }
+
+    /**
+     * Returns the hash of the last block, or {@link Block#GENESIS_HASH} if the
+     * chain is empty. A chain whose links are intact is fully determined by
+     * this hash.
+     *
+     * @return the hash of the last block.
+     */
+    public synchronized byte[] getHeadHash() {
+        return head;
+    }
+
+    /**
+     * Checks that every block in a range is chained and links to the hash of
+     * the block before it. Only the small header of each block is hashed, so
+     * this is far cheaper than checking signatures. Without the Merkle root
+     * check, blocks are read in place through a {@link BlockCodec.BlockView}
+     * and nothing is allocated per block. Optionally also checks that the
+     * Merkle root of each block matches its transactions, which decodes and
+     * hashes every transaction.
+     *
+     * @param from the id of the first block to check, inclusive.
+     * @param to the id of the last block to check, exclusive.
+     * @param merkleRoots true to also check the Merkle root of each block.
+     * @return the id of the first block that fails, or -1 if every block in
+     * the range is intact.
+     */
+    public long verifyLinks(final long from, final long to, final boolean merkleRoots) {
+        byte[] prev = from == 0 ? Block.GENESIS_HASH : getBlocks().get(from - 1).getHash();
+        if (!merkleRoots) {
+            final BlockCodec.BlockView view = new BlockCodec.BlockView();
+            final MessageDigest digest = SHA256.digest();
+            prev = prev.clone();
+            for (long id = from; id < to; id++) {
+                if (!getBlocks().view(id, view).isPrevHash(prev)) {
+                    return id;
+                }
+                view.hash(digest, prev, 0);
+            }
+            return -1;
+        }
+        final Iterator<Block> it = Spliterators.iterator(getBlocks().spliterator(from, to, DEFAULT_CHUNK_SIZE));
+        while (it.hasNext()) {
+            final Block block = it.next();
+            if (!block.isChained() || !MessageDigest.isEqual(block.getPrevHash(), prev) || !block.isMerkleRootValid()) {
+                return block.getId();
+            }
+            prev = block.getHash();
+        }
+        return -1;
+    }
+
+    /**
+     * Verifies the blocks appended since the last successful call. The links
+     * and Merkle roots of the new blocks are checked first, then their
+     * signatures are checked by the pipeline. Blocks that pass are not checked
+     * again, so the cost of each call depends only on the number of new
+     * blocks.
+     *
+     * @param pipeline the pipeline used to check signatures.
+     * @return true if every new block is valid.
+     */
+    public synchronized boolean verifyNew(final VerificationPipeline pipeline) {
+        final long size = getBlocks().size();
+        final long broken = verifyLinks(verified, size, true);
+        if (broken >= 0) {
+            log.warn("Blockchain {} is broken at block {}", address, broken);
+            return false;
+        }
+        final VerificationPipeline.Result result = pipeline.verify(Spliterators.iterator(getBlocks().spliterator(verified, size, DEFAULT_CHUNK_SIZE)));
+        if (!result.isAllValid()) {
+            log.warn("Blockchain {} has {} blocks with invalid signatures", address, result.getInvalidCount());
+            return false;
+        }
+        log.debug("Verified blocks {} to {} of blockchain {}", verified, size, address);
+        verified = size;
+        return true;
+    }
+
+    /**
+     * Returns the number of leading blocks verified by
+     * {@link #verifyNew(VerificationPipeline)}.
+     *
+     * @return the number of verified blocks.
+     */
+    public synchronized long getVerifiedCount() {
+        return verified;
+    }
+
+    /**
+     * Returns the number of blocks in the chain.
+     *
+     * @return the number of blocks.
+     */
+    public long size() {
+        return getBlocks().size();
+    }
+
+    /**
+     * Returns a spliterator over every block in the chain. Blocks are read
+     * from the block log as the spliterator advances and the spliterator
+     * splits down to {@link #DEFAULT_CHUNK_SIZE} blocks, so the chain can be
+     * traversed sequentially or in parallel in constant memory.
+     *
+     * @return the spliterator over the blocks of the chain.
+     */
+    public Spliterator<Block> spliterator() {
+        return getBlocks().spliterator(0, getBlocks().size(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns an iterator over every block in the chain that reads each block
+     * as it is reached.
+     *
+     * @return the iterator over the blocks of the chain.
+     */
+    public Iterator<Block> iterator() {
+        return Spliterators.iterator(spliterator());
+    }
+
+    /**
+     * Returns a sequential stream of every block in the chain.
+     *
+     * @return the stream of blocks.
+     */
+    public Stream<Block> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of every block in the chain.
+     *
+     * @return the parallel stream of blocks.
+     */
+    public Stream<Block> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Returns an iterator over every block stored by an entity manager that
+     * fetches one page of blocks at a time in id order instead of loading
+     * every block into a list. Each page is selected by the id of the last
+     * block of the previous page rather than by offset, so every page costs
+     * the same to fetch, and the blocks of a page are detached from the
+     * entity manager once the next page is fetched so that iterating a large
+     * chain does not grow its persistence context.
+     *
+     * @param manager the entity manager storing the blocks.
+     * @param pageSize the number of blocks fetched by each page.
+     * @return the iterator over the stored blocks.
+     */
+    public static Iterator<Block> paged(final EntityManager manager, final int pageSize) {
+        final TypedQuery<Block> query = manager.createQuery("SELECT b FROM Block b WHERE b.id > :last ORDER BY b.id", Block.class).setMaxResults(pageSize);
+        return new Iterator<Block>() {
+            private List<Block> page;
+            private long last = Long.MIN_VALUE;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (page == null || (next == page.size() && page.size() == pageSize)) {
+                    if (page != null) {
+                        for (final Block block : page) {
+                            manager.detach(block);
+                        }
+                    }
+                    page = query.setParameter("last", last).getResultList();
+                    if (!page.isEmpty()) {
+                        last = page.get(page.size() - 1).getId();
+                    }
+                    next = 0;
+                }
+                return next < page.size();
+            }
+
+            @Override
+            public Block next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+    }
+
+    BlockLog getBlocks() {
+        if (blocks == null) {
+            throw new IllegalStateException("Blockchain " + address + " has no local block log");
+        }
+        return blocks;
     }
-    
-    
-    //public Result runQuery("String query")
-    
 }
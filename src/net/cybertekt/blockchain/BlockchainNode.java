@@ -0,0 +1,567 @@
+package net.cybertekt.blockchain;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import net.cybertekt.crypto.SigningKeyPair;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Blockchain Node - (C) Cybertekt Software
+ *
+ * <p>
+ * An embedded node that accepts {@link Transaction transactions} from any
+ * number of threads, batches them into blocks, and answers queries in-process.
+ * Submitted transactions wait in a {@link Mempool} until a single builder
+ * thread cuts a block, either once a full batch is pending or once the oldest
+ * pending transaction has waited for the maximum delay. The builder is the
+ * only writer: it signs each block, appends it to the {@link Blockchain},
+ * indexes its transactions by public key, and then publishes a new
+ * {@link Snapshot}.
+ * </p>
+ *
+ * <p>
+ * Readers never lock. A snapshot is an immutable view of the chain at the
+ * moment it was published and only exposes blocks below its size, so a query
+ * against one snapshot sees a consistent chain while the builder keeps
+ * appending. The index is append-only and each snapshot filters out entries
+ * written after it was taken.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BlockchainNode implements Closeable {
+
+    /**
+     * Class Logger.
+     */
+    public static final Logger log = LoggerFactory.getLogger(BlockchainNode.class);
+
+    /**
+     * Default maximum number of transactions in a block.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * Default maximum time in milliseconds a pending transaction waits before
+     * a block is cut.
+     */
+    public static final long DEFAULT_MAX_DELAY = 100;
+
+    /**
+     * Largest batch size, limited by the bits used for the transaction
+     * position in an index entry.
+     */
+    public static final int MAX_BATCH_SIZE = 1 << 20;
+
+    /**
+     * Bits of an index entry holding the position of a transaction within its
+     * block.
+     */
+    private static final int POSITION_BITS = 20;
+
+    /**
+     * The chain blocks are appended to.
+     */
+    private final Blockchain chain;
+
+    /**
+     * Block storage of the chain.
+     */
+    private final BlockLog blocks;
+
+    /**
+     * Key pair used to sign blocks.
+     */
+    private final SigningKeyPair key;
+
+    /**
+     * Pending transactions.
+     */
+    private final Mempool mempool;
+
+    /**
+     * Maximum number of transactions in a block.
+     */
+    private final int batchSize;
+
+    /**
+     * Maximum delay in nanoseconds before a block is cut.
+     */
+    private final long maxDelay;
+
+    /**
+     * True to reject submitted transactions with invalid signatures.
+     */
+    private final boolean verify;
+
+    /**
+     * Index entries of the transactions of each public key. Only the builder
+     * adds entries.
+     */
+    private final Map<ByteBuffer, Postings> index = new ConcurrentHashMap<>();
+
+    /**
+     * The most recently published snapshot.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Guards the builder state and is used to signal the builder and threads
+     * waiting for a flush.
+     */
+    private final Object signal = new Object();
+
+    /**
+     * Number of transactions drained from the mempool whose blocks have been
+     * published in a snapshot.
+     */
+    private long committed;
+
+    /**
+     * Largest accepted count a flush is waiting for. The builder cuts blocks
+     * without waiting for the delay until it has committed this many
+     * transactions.
+     */
+    private long flushTarget;
+
+    /**
+     * Error that stopped the builder.
+     */
+    private volatile Exception failure;
+
+    /**
+     * Set when the node is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Background thread that builds blocks.
+     */
+    private final Thread builder;
+
+    /**
+     * Constructs a node with the default batch size, delay, and mempool
+     * capacity that verifies submitted transactions.
+     *
+     * @param chain the chain to append to. Must have a block log.
+     * @param key the key pair used to sign blocks.
+     */
+    public BlockchainNode(final Blockchain chain, final SigningKeyPair key) {
+        this(chain, key, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY, Mempool.DEFAULT_CAPACITY, true);
+    }
+
+    /**
+     * Constructs a node and starts its block builder. The transactions of the
+     * blocks already in the chain are indexed first.
+     *
+     * @param chain the chain to append to. Must have a block log.
+     * @param key the key pair used to sign blocks.
+     * @param batchSize the maximum number of transactions in a block.
+     * @param maxDelay the maximum time in milliseconds a pending transaction
+     * waits before a block is cut.
+     * @param capacity the maximum number of pending transactions.
+     * @param verify true to reject submitted transactions with invalid
+     * signatures. Signatures are checked on the submitting thread.
+     */
+    public BlockchainNode(final Blockchain chain, final SigningKeyPair key, final int batchSize, final long maxDelay, final int capacity, final boolean verify) {
+        if (batchSize <= 0 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE + ": " + batchSize);
+        }
+        if (maxDelay <= 0) {
+            throw new IllegalArgumentException("Maximum delay must be greater than zero: " + maxDelay);
+        }
+        this.chain = chain;
+        this.blocks = chain.getBlocks();
+        this.key = key;
+        this.mempool = new Mempool(capacity);
+        this.batchSize = batchSize;
+        this.maxDelay = TimeUnit.MILLISECONDS.toNanos(maxDelay);
+        this.verify = verify;
+
+        /* Index The Existing Chain */
+        final long size = blocks.size();
+        final long time = System.nanoTime();
+        chain.stream().forEachOrdered(this::index);
+        snapshot = new Snapshot(size, chain.getHeadHash());
+        log.debug("Indexed {} blocks for {} keys [{}ms]", size, index.size(), (System.nanoTime() - time) / 1000000);
+
+        builder = new Thread(this::build, "BlockchainNode Builder [" + blocks.getDirectory().getFileName() + "]");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /**
+     * Submits a transaction for inclusion in a block. Never blocks.
+     *
+     * @param transaction the transaction to submit.
+     * @return true if the transaction was accepted, false if its signature is
+     * invalid, it is already pending, or the mempool is full.
+     * @throws IllegalStateException if the node is closed or its builder has
+     * failed.
+     */
+    public boolean submit(final Transaction transaction) {
+        if (closed) {
+            throw new IllegalStateException("Node is closed");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Block builder failed", failure);
+        }
+        if (verify && !transaction.verify()) {
+            return false;
+        }
+        final int pending = mempool.offer(transaction);
+        if (pending == 1 || pending == batchSize) {
+            /* Start The Delay Or Cut A Full Batch */
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+        return pending > 0;
+    }
+
+    /**
+     * Cuts a block from the pending transactions without waiting for the
+     * delay and waits until every transaction submitted before this call is in
+     * a published snapshot. Transactions submitted while waiting are not
+     * waited for.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the builder has failed.
+     */
+    public void flush() throws InterruptedException {
+        synchronized (signal) {
+            final long target = mempool.getAcceptedCount();
+            flushTarget = Math.max(flushTarget, target);
+            signal.notifyAll();
+            while (failure == null && builder.isAlive() && committed < target) {
+                signal.wait();
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Block builder failed", failure);
+            }
+        }
+    }
+
+    /**
+     * Returns the most recently published snapshot. The snapshot never
+     * changes and may be queried from any thread.
+     *
+     * @return the current snapshot.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Blockchain getChain() {
+        return chain;
+    }
+
+    public Mempool getMempool() {
+        return mempool;
+    }
+
+    /**
+     * Stops accepting transactions, builds blocks from every pending
+     * transaction, and stops the builder. The chain and its block log are not
+     * closed.
+     */
+    @Override
+    public void close() {
+        synchronized (signal) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            signal.notifyAll();
+        }
+        boolean interrupted = false;
+        while (builder.isAlive()) {
+            try {
+                builder.join();
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Closed node with {} blocks and {} indexed keys", snapshot.size, index.size());
+    }
+
+    /**
+     * Builder thread body. Waits for pending transactions, then for a full
+     * batch, the maximum delay, a flush, or the node to close, and appends a
+     * block. Exits once the node is closed and every accepted transaction has
+     * been drained.
+     */
+    private void build() {
+        final List<Transaction> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                synchronized (signal) {
+                    while (!closed && mempool.size() == 0) {
+                        signal.wait();
+                    }
+                    final long deadline = System.nanoTime() + maxDelay;
+                    long remaining;
+                    while (!closed && committed >= flushTarget && mempool.size() < batchSize && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(signal, remaining);
+                    }
+                    if (mempool.size() == 0) {
+                        if (closed && mempool.getDrainedCount() == mempool.getAcceptedCount()) {
+                            signal.notifyAll();
+                            return;
+                        }
+                        continue;
+                    }
+                }
+
+                /* Build, Append, And Index The Block */
+                mempool.drain(batchSize, batch);
+                if (batch.isEmpty()) {
+                    /* The Oldest Accepted Transaction Is Still Being Stored */
+                    Thread.yield();
+                    continue;
+                }
+                final long drained = mempool.getDrainedCount();
+                final long id = chain.append(key, batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    postings(batch.get(i).getPublicKey()).add(id << POSITION_BITS | i);
+                }
+                batch.clear();
+                snapshot = new Snapshot(id + 1, chain.getHeadHash());
+
+                synchronized (signal) {
+                    committed = drained;
+                    signal.notifyAll();
+                }
+            }
+        } catch (final IOException | CryptoException | RuntimeException | InterruptedException e) {
+            log.error("Block builder stopped - {}: {}", e.getClass().getName(), e.getMessage());
+            synchronized (signal) {
+                failure = e;
+                signal.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Adds the transactions of an existing block to the index.
+     */
+    private void index(final Block block) {
+        if (!block.isChained()) {
+            return;
+        }
+        final List<Transaction> transactions = block.getTransactions();
+        for (int i = 0; i < transactions.size(); i++) {
+            postings(transactions.get(i).getPublicKey()).add(block.getId() << POSITION_BITS | i);
+        }
+    }
+
+    private Postings postings(final byte[] publicKey) {
+        return index.computeIfAbsent(ByteBuffer.wrap(publicKey), k -> new Postings());
+    }
+
+    /**
+     * Snapshot - (C) Cybertekt Software
+     *
+     * An immutable, consistent view of the chain and its index. Every query
+     * only sees the blocks that existed when the snapshot was published.
+     */
+    public final class Snapshot {
+
+        /**
+         * Number of blocks visible to the snapshot.
+         */
+        private final long size;
+
+        /**
+         * Hash of the last visible block.
+         */
+        private final byte[] head;
+
+        private Snapshot(final long size, final byte[] head) {
+            this.size = size;
+            this.head = head;
+        }
+
+        /**
+         * Returns the number of blocks visible to the snapshot.
+         *
+         * @return the number of blocks.
+         */
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Returns the hash of the last visible block.
+         *
+         * @return the head hash. The array must not be modified.
+         */
+        public byte[] getHeadHash() {
+            return head;
+        }
+
+        /**
+         * Returns a visible block.
+         *
+         * @param id the id of the block.
+         * @return the block.
+         * @throws IndexOutOfBoundsException if the block is not visible.
+         */
+        public Block getBlock(final long id) {
+            if (id < 0 || id >= size) {
+                throw new IndexOutOfBoundsException("Block " + id + " of " + size);
+            }
+            return blocks.get(id);
+        }
+
+        /**
+         * Returns a stream of the visible blocks in a range, read from the
+         * block log as the stream is consumed.
+         *
+         * @param from the id of the first block, inclusive.
+         * @param to the id of the last block, exclusive. Clamped to the size of
+         * the snapshot.
+         * @return the stream of blocks.
+         */
+        public Stream<Block> getBlocks(final long from, final long to) {
+            final long end = Math.min(to, size);
+            if (from < 0 || from > end) {
+                throw new IndexOutOfBoundsException("Range " + from + " to " + to + " of " + size);
+            }
+            final Spliterator<Block> spliterator = blocks.spliterator(from, end, Blockchain.DEFAULT_CHUNK_SIZE);
+            return StreamSupport.stream(spliterator, false);
+        }
+
+        /**
+         * Returns the number of visible transactions signed by a key.
+         *
+         * @param publicKey the X.509 encoded public key.
+         * @return the number of transactions.
+         */
+        public int getTransactionCount(final byte[] publicKey) {
+            final Postings postings = index.get(ByteBuffer.wrap(publicKey));
+            return postings == null ? 0 : postings.count(size << POSITION_BITS);
+        }
+
+        /**
+         * Returns the ids of the visible blocks holding transactions signed by
+         * a key, in ascending order.
+         *
+         * @param publicKey the X.509 encoded public key.
+         * @return the block ids.
+         */
+        public long[] getBlockIds(final byte[] publicKey) {
+            final Postings postings = index.get(ByteBuffer.wrap(publicKey));
+            if (postings == null) {
+                return new long[0];
+            }
+            final int count = postings.count(size << POSITION_BITS);
+            final long[] entries = postings.entries;
+            final long[] ids = new long[count];
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                final long id = entries[i] >>> POSITION_BITS;
+                if (distinct == 0 || ids[distinct - 1] != id) {
+                    ids[distinct++] = id;
+                }
+            }
+            return Arrays.copyOf(ids, distinct);
+        }
+
+        /**
+         * Returns the visible transactions signed by a key in chain order.
+         * Each block holding a match is read and decoded once.
+         *
+         * @param publicKey the X.509 encoded public key.
+         * @param limit the maximum number of transactions to return.
+         * @return the transactions.
+         */
+        public List<Transaction> getTransactions(final byte[] publicKey, final int limit) {
+            final Postings postings = index.get(ByteBuffer.wrap(publicKey));
+            if (postings == null) {
+                return Collections.emptyList();
+            }
+            final int count = Math.min(limit, postings.count(size << POSITION_BITS));
+            final long[] entries = postings.entries;
+            final List<Transaction> transactions = new ArrayList<>(count);
+            long current = -1;
+            List<Transaction> block = null;
+            for (int i = 0; i < count; i++) {
+                final long id = entries[i] >>> POSITION_BITS;
+                if (id != current) {
+                    block = blocks.get(id).getTransactions();
+                    current = id;
+                }
+                transactions.add(block.get((int) (entries[i] & (MAX_BATCH_SIZE - 1))));
+            }
+            return transactions;
+        }
+    }
+
+    /**
+     * Append-only list of the index entries of one key, packed as
+     * {@code blockId << 20 | position}. Entries are added in ascending order
+     * by the single writer and published through the volatile count, so
+     * readers see a prefix of the list without locking.
+     */
+    private static final class Postings {
+
+        /**
+         * Index entries. Grown by copying; entries below the count are never
+         * modified.
+         */
+        private volatile long[] entries = new long[4];
+
+        /**
+         * Number of published entries. Written after the entry.
+         */
+        private volatile int count;
+
+        private void add(final long entry) {
+            long[] current = entries;
+            if (count == current.length) {
+                current = entries = Arrays.copyOf(current, current.length * 2);
+            }
+            current[count] = entry;
+            count++;
+        }
+
+        /**
+         * Returns the number of published entries below a bound. The count
+         * is read before the entries so the array holds at least that many;
+         * callers must likewise read the entries after calling this method.
+         */
+        private int count(final long bound) {
+            final int published = count;
+            final long[] current = entries;
+            int low = 0, high = published;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (current[mid] < bound) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package net.cybertekt.blockchain;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mempool - (C) Cybertekt Software
+ *
+ * <p>
+ * A bounded pool of pending {@link Transaction transactions} waiting to be
+ * included in a block. Any number of threads may offer transactions
+ * concurrently without locking; transactions are drained in the order they
+ * were accepted. A transaction whose hash is already pending is rejected, and
+ * offers fail rather than block once the pool is full so that producers can
+ * apply their own back-pressure.
+ * </p>
+ *
+ * <p>
+ * Each accepted transaction is assigned the next sequence number, counting
+ * from zero, and stored in a ring of slots at that position before its offer
+ * returns. Transactions are drained strictly in sequence order, so once the
+ * {@link #getDrainedCount() drained count} passes the
+ * {@link #getAcceptedCount() accepted count} read at some moment, every
+ * transaction accepted before that moment has been drained.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class Mempool {
+
+    /**
+     * Default maximum number of pending transactions.
+     */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    /**
+     * Pending transactions indexed by sequence number modulo the ring size. A
+     * slot is null until the transaction claiming it has been stored.
+     */
+    private final AtomicReferenceArray<Transaction> slots;
+
+    /**
+     * Mask of the ring size, a power of two no smaller than the capacity.
+     */
+    private final int mask;
+
+    /**
+     * Hashes of the pending transactions.
+     */
+    private final Set<ByteBuffer> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Number of slots reserved by offers that passed the capacity check and
+     * have not been drained yet.
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    /**
+     * Sequence number of the next accepted transaction.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Number of transactions stored in their slots since the pool was created.
+     */
+    private final AtomicLong stored = new AtomicLong();
+
+    /**
+     * Sequence number of the next transaction to drain.
+     */
+    private volatile long head;
+
+    /**
+     * Maximum number of pending transactions.
+     */
+    private final int capacity;
+
+    /**
+     * Offer statistics.
+     */
+    private final LongAdder full = new LongAdder(), duplicates = new LongAdder();
+
+    public Mempool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty pool.
+     *
+     * @param capacity the maximum number of pending transactions.
+     */
+    public Mempool(final int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + (1 << 30) + ": " + capacity);
+        }
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(Math.max(1, Integer.highestOneBit(capacity - 1) << 1));
+        this.mask = slots.length() - 1;
+    }
+
+    /**
+     * Adds a transaction to the pool unless the pool is full or the same
+     * transaction is already pending.
+     *
+     * @param transaction the transaction to add.
+     * @return the number of pending transactions including the new one, or 0
+     * if the transaction was rejected.
+     */
+    public int offer(final Transaction transaction) {
+        if (reserved.incrementAndGet() > capacity) {
+            reserved.decrementAndGet();
+            full.increment();
+            return 0;
+        }
+        if (!pending.add(ByteBuffer.wrap(transaction.getHash()))) {
+            reserved.decrementAndGet();
+            duplicates.increment();
+            return 0;
+        }
+        slots.set((int) sequence.getAndIncrement() & mask, transaction);
+        return (int) Math.max(1, stored.incrementAndGet() - head);
+    }
+
+    /**
+     * Removes up to the specified number of transactions in sequence order.
+     * Draining stops early at a transaction that has been accepted but not
+     * yet stored by its offer.
+     *
+     * @param max the maximum number of transactions to remove.
+     * @param into the list the transactions are added to.
+     * @return the number of transactions removed.
+     */
+    public synchronized int drain(final int max, final List<Transaction> into) {
+        final long first = head, last = Math.min(sequence.get(), first + max);
+        long next = first;
+        Transaction transaction;
+        while (next < last && (transaction = slots.get((int) next & mask)) != null) {
+            slots.set((int) next & mask, null);
+            pending.remove(ByteBuffer.wrap(transaction.getHash()));
+            into.add(transaction);
+            next++;
+        }
+        head = next;
+        reserved.addAndGet((int) (first - next));
+        return (int) (next - first);
+    }
+
+    /**
+     * Returns the number of pending transactions that have been stored and
+     * can be drained.
+     *
+     * @return the number of pending transactions.
+     */
+    public int size() {
+        return (int) Math.max(0, stored.get() - head);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of transactions drained since the pool was created.
+     * Every transaction with a lower sequence number has been drained.
+     *
+     * @return the number of drained transactions.
+     */
+    public long getDrainedCount() {
+        return head;
+    }
+
+    /**
+     * Returns the number of transactions accepted since the pool was created,
+     * which is also the sequence number of the next accepted transaction.
+     * Every offer that returned before this call was assigned a lower
+     * sequence number.
+     *
+     * @return the number of accepted transactions.
+     */
+    public long getAcceptedCount() {
+        return sequence.get();
+    }
+
+    /**
+     * Returns the number of offers rejected because the pool was full.
+     *
+     * @return the number of rejected offers.
+     */
+    public long getFullCount() {
+        return full.sum();
+    }
+
+    /**
+     * Returns the number of offers rejected because the transaction was
+     * already pending.
+     *
+     * @return the number of duplicate offers.
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+}
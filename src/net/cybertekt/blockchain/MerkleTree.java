@@ -0,0 +1,264 @@
+package net.cybertekt.blockchain;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+import net.cybertekt.crypto.SHA256;
+
+/**
+ * Merkle Tree - (C) Cybertekt Software
+ *
+ * <p>
+ * Binary hash tree over the {@link Transaction#getHash() hashes} of a batch of
+ * transactions. Interior nodes are the SHA-256 hash of {@link #NODE_PREFIX}
+ * followed by their two children, while transaction hashes are prefixed with
+ * {@link Transaction#LEAF_PREFIX}, so a leaf can never be mistaken for an
+ * interior node. When a level has an odd number of nodes the last node is
+ * carried up to the next level unchanged rather than paired with a copy of
+ * itself, so two different batches can never share a root.
+ * </p>
+ *
+ * <p>
+ * Every level of the tree is kept so that an inclusion {@link Proof} for any
+ * transaction can be produced in O(log n). Leaf hashing and wide levels are
+ * split across the common ForkJoin pool once they reach the parallel
+ * threshold.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class MerkleTree {
+
+    /**
+     * Prefix of the data hashed for an interior node.
+     */
+    public static final byte NODE_PREFIX = 1;
+
+    /**
+     * Root of a tree without any leaves: the hash of no data.
+     */
+    public static final byte[] EMPTY_ROOT = SHA256.hash(new byte[0]);
+
+    /**
+     * Default number of hashes in a level above which the level is hashed in
+     * parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+
+    /**
+     * Levels of the tree from the leaves to the root.
+     */
+    private final byte[][][] levels;
+
+    /**
+     * Constructs the tree over a batch of transactions using the default
+     * parallel threshold.
+     *
+     * @param transactions the transactions in block order.
+     */
+    public MerkleTree(final List<Transaction> transactions) {
+        this(transactions, DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Constructs the tree over a batch of transactions.
+     *
+     * @param transactions the transactions in block order.
+     * @param parallelThreshold the number of hashes in a level at which the
+     * level is hashed in parallel, or zero to always hash sequentially.
+     */
+    public MerkleTree(final List<Transaction> transactions, final int parallelThreshold) {
+        final byte[][] leaves = new byte[transactions.size()][];
+        run(new Level(i -> transactions.get(i).getHash(), leaves, 0, leaves.length, parallelThreshold), parallelThreshold);
+        this.levels = build(leaves, parallelThreshold);
+    }
+
+    /**
+     * Constructs the tree over precomputed leaf hashes.
+     *
+     * @param leaves the leaf hashes in order. The array is not copied.
+     * @param parallelThreshold the number of hashes in a level at which the
+     * level is hashed in parallel, or zero to always hash sequentially.
+     */
+    public MerkleTree(final byte[][] leaves, final int parallelThreshold) {
+        this.levels = build(leaves, parallelThreshold);
+    }
+
+    /**
+     * Returns the root hash of the tree over a batch of transactions.
+     *
+     * @param transactions the transactions in block order.
+     * @return the root hash.
+     */
+    public static byte[] root(final List<Transaction> transactions) {
+        return new MerkleTree(transactions).getRoot();
+    }
+
+    /**
+     * Returns the root hash, or {@link #EMPTY_ROOT} if there are no leaves.
+     *
+     * @return the root hash. The array must not be modified.
+     */
+    public byte[] getRoot() {
+        final byte[][] top = levels[levels.length - 1];
+        return top.length == 0 ? EMPTY_ROOT : top[0];
+    }
+
+    public int getLeafCount() {
+        return levels[0].length;
+    }
+
+    /**
+     * Returns the hashes needed to recompute the root from the leaf at the
+     * specified index.
+     *
+     * @param index the index of the leaf.
+     * @return the inclusion proof of the leaf.
+     * @throws IndexOutOfBoundsException if the index is not a leaf.
+     */
+    public Proof getProof(final int index) {
+        if (index < 0 || index >= levels[0].length) {
+            throw new IndexOutOfBoundsException("Leaf " + index + " of " + levels[0].length);
+        }
+        final byte[][] siblings = new byte[levels.length - 1][];
+        long left = 0;
+        int count = 0;
+        int i = index;
+        for (int level = 0; level < levels.length - 1; level++) {
+            final int sibling = i ^ 1;
+            if (sibling < levels[level].length) {
+                if (sibling < i) {
+                    left |= 1L << count;
+                }
+                siblings[count++] = levels[level][sibling];
+            }
+            i >>>= 1;
+        }
+        return new Proof(index, Arrays.copyOf(siblings, count), left);
+    }
+
+    /**
+     * Checks that a leaf is included in the tree with the specified root.
+     *
+     * @param leaf the leaf hash, usually {@link Transaction#getHash()}.
+     * @param proof the inclusion proof of the leaf.
+     * @param root the trusted root hash.
+     * @return true if the proof leads from the leaf to the root.
+     */
+    public static boolean verify(final byte[] leaf, final Proof proof, final byte[] root) {
+        byte[] hash = leaf;
+        for (int i = 0; i < proof.siblings.length; i++) {
+            hash = (proof.left & 1L << i) != 0 ? SHA256.hash(NODE_PREFIX, proof.siblings[i], hash) : SHA256.hash(NODE_PREFIX, hash, proof.siblings[i]);
+        }
+        return MessageDigest.isEqual(hash, root);
+    }
+
+    /**
+     * Hashes each level from the leaves until a single node remains.
+     */
+    private static byte[][][] build(final byte[][] leaves, final int parallelThreshold) {
+        int height = 1;
+        for (int n = leaves.length; n > 1; n = (n + 1) >>> 1) {
+            height++;
+        }
+        final byte[][][] levels = new byte[height][][];
+        levels[0] = leaves;
+        for (int level = 1; level < height; level++) {
+            final byte[][] below = levels[level - 1];
+            final byte[][] above = new byte[(below.length + 1) >>> 1][];
+            run(new Level(i -> node(below, i), above, 0, above.length, parallelThreshold), parallelThreshold);
+            levels[level] = above;
+        }
+        return levels;
+    }
+
+    /**
+     * Returns the node at the specified index of the level above the
+     * specified level.
+     */
+    private static byte[] node(final byte[][] below, final int i) {
+        final int left = i << 1;
+        return left + 1 < below.length ? SHA256.hash(NODE_PREFIX, below[left], below[left + 1]) : below[left];
+    }
+
+    private static void run(final Level task, final int parallelThreshold) {
+        if (parallelThreshold > 0 && task.end - task.start >= parallelThreshold) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+    }
+
+    /**
+     * Computes a range of the hashes of one level, splitting the range in
+     * half until it falls below half of the parallel threshold.
+     */
+    private static final class Level extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IntFunction<byte[]> hash;
+        private final byte[][] level;
+        private final int start, end, parallelThreshold;
+
+        private Level(final IntFunction<byte[]> hash, final byte[][] level, final int start, final int end, final int parallelThreshold) {
+            this.hash = hash;
+            this.level = level;
+            this.start = start;
+            this.end = end;
+            this.parallelThreshold = parallelThreshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (parallelThreshold <= 0 || end - start <= parallelThreshold / 2) {
+                for (int i = start; i < end; i++) {
+                    level[i] = hash.apply(i);
+                }
+            } else {
+                final int mid = (start + end) >>> 1;
+                invokeAll(new Level(hash, level, start, mid, parallelThreshold), new Level(hash, level, mid, end, parallelThreshold));
+            }
+        }
+    }
+
+    /**
+     * Inclusion proof of a single leaf: the sibling hash at each level where
+     * the path to the root has a sibling, and which side each sibling is on.
+     */
+    public static final class Proof {
+
+        private final int index;
+        private final byte[][] siblings;
+
+        /**
+         * Bit i is set when sibling i is on the left of the path.
+         */
+        private final long left;
+
+        private Proof(final int index, final byte[][] siblings, final long left) {
+            this.index = index;
+            this.siblings = siblings;
+            this.left = left;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the number of sibling hashes in the proof, which is at most
+         * the height of the tree.
+         *
+         * @return the length of the proof.
+         */
+        public int getLength() {
+            return siblings.length;
+        }
+    }
+}
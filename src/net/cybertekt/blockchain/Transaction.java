@@ -1,25 +1,184 @@
 package net.cybertekt.blockchain;
 
 import java.io.Serializable;
-import javax.persistence.Entity;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.cybertekt.crypto.SHA256;
+import net.cybertekt.crypto.SignatureAlgorithm;
+import net.cybertekt.crypto.SigningKeyPair;
+import net.cybertekt.exception.CryptoException;
 
 /**
+ * A signed transaction. Blocks carry a batch of transactions in their data
+ * and commit to them through the root of a {@link MerkleTree} of the
+ * transaction hashes.
  *
  * @author Vektor
  */
+public class Transaction implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Prefix of the data hashed for a transaction, which separates leaf
+     * hashes from the interior nodes of a Merkle tree.
+     */
+    static final byte LEAF_PREFIX = 0;
 
-public abstract class Transaction implements Serializable {
-    
     byte[] publicKey, type, data, signature;
-    
+
+    /**
+     * SHA-256 hash of the encoded transaction, computed on first use.
+     */
+    private transient byte[] hash;
+
     public Transaction() {
-        
+
     }
-    
+
     public Transaction(final byte[] publicKey, final byte[] type, final byte[] data, final byte[] signature) {
         this.publicKey = publicKey;
         this.type = type;
         this.data = data;
-        this.signature = signature;        
+        this.signature = signature;
+    }
+
+    /**
+     * Creates a transaction signed by the specified key. The signature covers
+     * the type and the data.
+     *
+     * @param key the key pair used to sign the transaction.
+     * @param type the application defined transaction type.
+     * @param data the transaction data.
+     * @return the signed transaction.
+     * @throws CryptoException if the transaction could not be signed.
+     */
+    public static Transaction sign(final SigningKeyPair key, final byte[] type, final byte[] data) throws CryptoException {
+        return new Transaction(key.getPublic(), type, data, key.sign(signedBytes(type, data)));
+    }
+
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    public byte[] getType() {
+        return type;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public byte[] getSignature() {
+        return signature;
+    }
+
+    /**
+     * Verifies the signature of the transaction.
+     *
+     * @return true if the signature is valid.
+     */
+    public boolean verify() {
+        return SignatureAlgorithm.verify(publicKey, signedBytes(type, data), signature);
+    }
+
+    /**
+     * Returns the SHA-256 hash of the prefixed, encoded transaction, which is
+     * the leaf of the transaction in a {@link MerkleTree}.
+     *
+     * @return the hash of the transaction. The array must not be modified.
+     */
+    public byte[] getHash() {
+        if (hash == null) {
+            final ByteBuffer buffer = ByteBuffer.allocate(1 + getEncodedSize());
+            buffer.put(LEAF_PREFIX);
+            encode(buffer);
+            hash = SHA256.hash(buffer.array());
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #encode(ByteBuffer)}.
+     *
+     * @return the encoded size of the transaction.
+     */
+    public int getEncodedSize() {
+        return BlockCodec.varintSize(publicKey.length) + BlockCodec.varintSize(type.length) + BlockCodec.varintSize(data.length) + BlockCodec.varintSize(signature.length)
+                + publicKey.length + type.length + data.length + signature.length;
+    }
+
+    /**
+     * Writes the public key, type, data, and signature, each prefixed by its
+     * length as a {@link BlockCodec#putVarint(ByteBuffer, int) varint}.
+     *
+     * @param buffer the buffer to write to.
+     */
+    public void encode(final ByteBuffer buffer) {
+        BlockCodec.putField(buffer, publicKey);
+        BlockCodec.putField(buffer, type);
+        BlockCodec.putField(buffer, data);
+        BlockCodec.putField(buffer, signature);
+    }
+
+    /**
+     * Reads a transaction written by {@link #encode(ByteBuffer)}.
+     *
+     * @param buffer the buffer to read from.
+     * @return the decoded transaction.
+     * @throws IllegalArgumentException if the buffer does not hold a complete
+     * transaction.
+     */
+    public static Transaction decode(final ByteBuffer buffer) {
+        return new Transaction(BlockCodec.getField(buffer), BlockCodec.getField(buffer), BlockCodec.getField(buffer), BlockCodec.getField(buffer));
+    }
+
+    /**
+     * Encodes a batch of transactions as the data of a block: the number of
+     * transactions as a varint followed by each encoded transaction.
+     *
+     * @param transactions the transactions to encode.
+     * @return the encoded batch.
+     */
+    public static byte[] encodeAll(final List<Transaction> transactions) {
+        int size = BlockCodec.varintSize(transactions.size());
+        for (final Transaction transaction : transactions) {
+            size += transaction.getEncodedSize();
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        BlockCodec.putVarint(buffer, transactions.size());
+        for (final Transaction transaction : transactions) {
+            transaction.encode(buffer);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes a batch of transactions encoded by {@link #encodeAll(List)}.
+     *
+     * @param data the encoded batch.
+     * @return the decoded transactions.
+     * @throws IllegalArgumentException if the data is not a complete batch.
+     */
+    public static List<Transaction> decodeAll(final byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        final int count = BlockCodec.getVarint(buffer);
+        if (count > buffer.remaining() / 4) {
+            throw new IllegalArgumentException("Invalid transaction count: " + count);
+        }
+        final List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(decode(buffer));
+        }
+        if (buffer.hasRemaining()) {
+            throw new IllegalArgumentException(buffer.remaining() + " bytes after the last transaction");
+        }
+        return Collections.unmodifiableList(transactions);
+    }
+
+    private static byte[] signedBytes(final byte[] type, final byte[] data) {
+        return ByteBuffer.allocate(4 + type.length + data.length).putInt(type.length).put(type).put(data).array();
     }
 }
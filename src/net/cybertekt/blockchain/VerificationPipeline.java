@@ -0,0 +1,398 @@
+package net.cybertekt.blockchain;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verification Pipeline - (C) Cybertekt Software
+ *
+ * <p>
+ * Verifies a stream of {@link Block blocks} of any length in constant memory.
+ * Blocks flow through four stages connected by bounded queues:
+ * </p>
+ *
+ * <ol>
+ * <li>Read - the calling thread pulls blocks from the source into batches.</li>
+ * <li>Decode - a single thread decodes the public key of each block through
+ * the {@link BlockVerifier} key cache.</li>
+ * <li>Verify - a number of threads check the signatures.</li>
+ * <li>Aggregate - a single thread counts the results and records the ids of
+ * invalid blocks.</li>
+ * </ol>
+ *
+ * <p>
+ * A fixed number of batches circulate through the pipeline and are returned
+ * to the reader once aggregated. When a later stage falls behind, the reader
+ * waits for a free batch instead of reading further ahead, so at most
+ * {@code queueCapacity * batchSize} blocks are held at any time regardless of
+ * the length of the chain.
+ * </p>
+ *
+ * <p>
+ * Pipelines are not thread-safe; each call to {@link #verify(Iterator)} starts
+ * and stops its own stage threads.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class VerificationPipeline {
+
+    /**
+     * Class Logger.
+     */
+    public static final Logger log = LoggerFactory.getLogger(VerificationPipeline.class);
+
+    /**
+     * Default number of blocks per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * Default number of batches in circulation.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /**
+     * Maximum number of invalid block ids recorded by a result.
+     */
+    public static final int MAX_INVALID_IDS = 1024;
+
+    /**
+     * Verifier used to decode keys and check signatures.
+     */
+    private final BlockVerifier verifier;
+
+    /**
+     * Number of verify stage threads.
+     */
+    private final int threads;
+
+    /**
+     * Number of blocks per batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Number of batches in circulation.
+     */
+    private final int queueCapacity;
+
+    /**
+     * Constructs a new pipeline with one verify thread per available
+     * processor and the default batch size and queue capacity.
+     *
+     * @param verifier the verifier used to decode keys and check signatures.
+     */
+    public VerificationPipeline(final BlockVerifier verifier) {
+        this(verifier, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructs a new pipeline.
+     *
+     * @param verifier the verifier used to decode keys and check signatures.
+     * @param threads the number of verify stage threads.
+     * @param batchSize the number of blocks per batch.
+     * @param queueCapacity the number of batches in circulation, which bounds
+     * how far the reader may run ahead of verification.
+     */
+    public VerificationPipeline(final BlockVerifier verifier, final int threads, final int batchSize, final int queueCapacity) {
+        if (threads < 1 || batchSize < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Threads, batch size, and queue capacity must be greater than zero");
+        }
+        this.verifier = verifier;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Verifies every block returned by an iterator and blocks until the last
+     * block has been verified. The iterator is only used by the calling
+     * thread.
+     *
+     * @param blocks the blocks to verify.
+     * @return the aggregated results of the verification.
+     * @throws IllegalStateException if a stage fails or the calling thread is
+     * interrupted.
+     */
+    public Result verify(final Iterator<Block> blocks) {
+        final Run run = new Run();
+        final long time = System.nanoTime();
+        run.start();
+        try {
+            /* Read Stage */
+            while (blocks.hasNext()) {
+                long wait = System.nanoTime();
+                final Batch batch = run.free.take();
+                run.stall += System.nanoTime() - wait;
+                batch.size = 0;
+                while (batch.size < batchSize && blocks.hasNext()) {
+                    batch.blocks[batch.size++] = blocks.next();
+                }
+                run.decode.put(batch);
+            }
+            run.decode.put(Batch.END);
+            run.join();
+        } catch (final InterruptedException e) {
+            run.interrupt();
+            if (run.failure.get() == null) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while verifying blocks", e);
+            }
+        } catch (final RuntimeException e) {
+            run.fail(e);
+        }
+        final Throwable failure = run.failure.get();
+        if (failure != null) {
+            run.interrupt();
+            Thread.interrupted();
+            throw new IllegalStateException("Block verification failed", failure);
+        }
+        final Result result = new Result(run.count, run.validCount, Arrays.copyOf(run.invalidIds, run.invalidIdCount), System.nanoTime() - time, run.stall);
+        log.debug("{}", result);
+        return result;
+    }
+
+    /**
+     * A batch of blocks with the decoded keys and verification results of
+     * each block.
+     */
+    private static final class Batch {
+
+        /**
+         * Marks the end of the stream.
+         */
+        private static final Batch END = new Batch(0);
+
+        private final Block[] blocks;
+        private final PublicKey[] keys;
+        private final boolean[] valid;
+        private int size;
+
+        private Batch(final int capacity) {
+            blocks = new Block[capacity];
+            keys = new PublicKey[capacity];
+            valid = new boolean[capacity];
+        }
+    }
+
+    /**
+     * The queues, stage threads, and running totals of a single verification.
+     */
+    private final class Run {
+
+        private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<Batch> decode = new ArrayBlockingQueue<>(queueCapacity + 1);
+        private final BlockingQueue<Batch> verify = new ArrayBlockingQueue<>(queueCapacity + threads);
+        private final BlockingQueue<Batch> aggregate = new ArrayBlockingQueue<>(queueCapacity + threads);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final Thread[] stages = new Thread[threads + 2];
+        private final Thread reader = Thread.currentThread();
+
+        /**
+         * Written by the aggregate stage and read after it has been joined.
+         */
+        private long count, validCount;
+        private final long[] invalidIds = new long[MAX_INVALID_IDS];
+        private int invalidIdCount;
+
+        /**
+         * Time the reader spent waiting for a free batch.
+         */
+        private long stall;
+
+        private Run() {
+            for (int i = 0; i < queueCapacity; i++) {
+                free.add(new Batch(batchSize));
+            }
+        }
+
+        private void start() {
+            stages[0] = new Thread(this::decode, "Verification Pipeline Decode");
+            for (int i = 0; i < threads; i++) {
+                stages[i + 1] = new Thread(this::verify, "Verification Pipeline Verify " + i);
+            }
+            stages[threads + 1] = new Thread(this::aggregate, "Verification Pipeline Aggregate");
+            for (final Thread stage : stages) {
+                stage.setDaemon(true);
+                stage.start();
+            }
+        }
+
+        private void join() throws InterruptedException {
+            for (final Thread stage : stages) {
+                stage.join();
+            }
+        }
+
+        private void interrupt() {
+            for (final Thread stage : stages) {
+                if (stage != null) {
+                    stage.interrupt();
+                }
+            }
+        }
+
+        /**
+         * Records the first failure and stops every stage, including the
+         * reader.
+         */
+        private void fail(final Throwable t) {
+            if (failure.compareAndSet(null, t)) {
+                log.error("{}: {}", t.getClass().getName(), t.getMessage());
+            }
+            interrupt();
+            reader.interrupt();
+        }
+
+        /**
+         * Decode Stage.
+         */
+        private void decode() {
+            try {
+                Batch batch;
+                while ((batch = decode.take()) != Batch.END) {
+                    for (int i = 0; i < batch.size; i++) {
+                        batch.keys[i] = verifier.decode(batch.blocks[i].getPublicKey());
+                    }
+                    verify.put(batch);
+                }
+                for (int i = 0; i < threads; i++) {
+                    verify.put(Batch.END);
+                }
+            } catch (final InterruptedException e) {
+                /* Stopped After A Failure */
+            } catch (final RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Verify Stage.
+         */
+        private void verify() {
+            try {
+                Batch batch;
+                while ((batch = verify.take()) != Batch.END) {
+                    for (int i = 0; i < batch.size; i++) {
+                        batch.valid[i] = verifier.verify(batch.blocks[i], batch.keys[i]);
+                    }
+                    aggregate.put(batch);
+                }
+                aggregate.put(Batch.END);
+            } catch (final InterruptedException e) {
+                /* Stopped After A Failure */
+            } catch (final RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Aggregate Stage. Clears each batch and returns it to the reader.
+         */
+        private void aggregate() {
+            try {
+                int ended = 0;
+                while (ended < threads) {
+                    final Batch batch = aggregate.take();
+                    if (batch == Batch.END) {
+                        ended++;
+                        continue;
+                    }
+                    for (int i = 0; i < batch.size; i++) {
+                        if (batch.valid[i]) {
+                            validCount++;
+                        } else if (invalidIdCount < invalidIds.length) {
+                            invalidIds[invalidIdCount++] = batch.blocks[i].getId();
+                        }
+                    }
+                    count += batch.size;
+                    Arrays.fill(batch.blocks, 0, batch.size, null);
+                    Arrays.fill(batch.keys, 0, batch.size, null);
+                    free.put(batch);
+                }
+            } catch (final InterruptedException e) {
+                /* Stopped After A Failure */
+            } catch (final RuntimeException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * The aggregated results and metrics of a pipeline verification.
+     */
+    public static final class Result {
+
+        private final long blockCount, validCount;
+        private final long[] invalidIds;
+        private final long elapsed, stall;
+
+        private Result(final long blockCount, final long validCount, final long[] invalidIds, final long elapsed, final long stall) {
+            this.blockCount = blockCount;
+            this.validCount = validCount;
+            this.invalidIds = invalidIds;
+            this.elapsed = elapsed;
+            this.stall = stall;
+        }
+
+        public long getBlockCount() {
+            return blockCount;
+        }
+
+        public long getValidCount() {
+            return validCount;
+        }
+
+        public long getInvalidCount() {
+            return blockCount - validCount;
+        }
+
+        /**
+         * Returns the ids of the invalid blocks in the order they were
+         * aggregated, which is not necessarily the order they were read. At
+         * most {@link #MAX_INVALID_IDS} ids are recorded.
+         *
+         * @return the ids of the invalid blocks.
+         */
+        public long[] getInvalidIds() {
+            return invalidIds.clone();
+        }
+
+        public boolean isAllValid() {
+            return validCount == blockCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsed;
+        }
+
+        /**
+         * Returns the time the read stage spent waiting for verification to
+         * catch up.
+         *
+         * @return the read stage stall time in nanoseconds.
+         */
+        public long getStallNanos() {
+            return stall;
+        }
+
+        public double getBlocksPerSecond() {
+            return elapsed == 0 ? 0 : blockCount * 1e9 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Verified %d of %d Blocks [%dms, %.0f blocks/s, read stalled %dms]", validCount, blockCount, elapsed / 1000000, getBlocksPerSecond(), stall / 1000000);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.cybertekt.crypto;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Crypto Random - (C) Cybertekt Software
+ *
+ * <p>
+ * The {@link SecureRandom} source used to generate keys. By default this is
+ * the non-blocking native generator, which is seeded from the operating system
+ * once and never waits for entropy, so key generation does not stall on
+ * servers with little entropy the way {@link SecureRandom#getInstanceStrong()}
+ * can.
+ * </p>
+ *
+ * <p>
+ * The source can be chosen with the {@value #PROPERTY} system property, set to
+ * either a {@link SecureRandom} algorithm name or {@value #STRONG} for the
+ * platform's strong (possibly blocking) source, or replaced at runtime with
+ * {@link #set(SecureRandom)}.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class CryptoRandom {
+
+    public static final Logger log = LoggerFactory.getLogger(CryptoRandom.class);
+
+    /**
+     * System property naming the random source.
+     */
+    public static final String PROPERTY = "net.cybertekt.crypto.random";
+
+    /**
+     * Property value selecting {@link SecureRandom#getInstanceStrong()}.
+     */
+    public static final String STRONG = "strong";
+
+    /**
+     * Default Algorithm - NativePRNGNonBlocking
+     */
+    public static final String DEFAULT_ALGORITHM = "NativePRNGNonBlocking";
+
+    private static volatile SecureRandom random;
+
+    /**
+     * Returns the random source, creating it on first use.
+     *
+     * @return the shared random source.
+     */
+    public static SecureRandom get() {
+        SecureRandom r = random;
+        if (r == null) {
+            synchronized (CryptoRandom.class) {
+                r = random;
+                if (r == null) {
+                    r = random = create(System.getProperty(PROPERTY, DEFAULT_ALGORITHM));
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Replaces the random source.
+     *
+     * @param source the new random source.
+     */
+    public static void set(final SecureRandom source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Random source must not be null");
+        }
+        random = source;
+    }
+
+    /**
+     * Replaces the random source with one of the named algorithm, or the
+     * strong source if the name is {@value #STRONG}. Unknown algorithms fall
+     * back to the platform default.
+     *
+     * @param algorithm the algorithm name.
+     */
+    public static void setAlgorithm(final String algorithm) {
+        set(create(algorithm));
+    }
+
+    private static SecureRandom create(final String algorithm) {
+        try {
+            return STRONG.equalsIgnoreCase(algorithm) ? SecureRandom.getInstanceStrong() : SecureRandom.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException e) {
+            log.warn("Random Source {} Unavailable - Using Platform Default", algorithm);
+            return new SecureRandom();
+        }
+    }
+
+    private CryptoRandom() {
+    }
+}
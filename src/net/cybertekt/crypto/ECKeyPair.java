@@ -0,0 +1,106 @@
+package net.cybertekt.crypto;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.ECGenParameterSpec;
+import net.cybertekt.exception.CryptoException;
+
+/**
+ * Elliptic Curve Key Pair - (C) Cybertekt Software
+ *
+ * Provides functions for generating key pairs and signing data using the
+ * elliptic curve {@link SignatureAlgorithm#ECDSA_P256 ECDSA P-256} and
+ * {@link SignatureAlgorithm#ED25519 Ed25519} algorithms. Compared with RSA,
+ * keys are generated in milliseconds rather than seconds and keys and
+ * signatures are far smaller, but with the JDK providers verification is
+ * slower than RSA, so RSA remains the better choice when verifying dominates.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class ECKeyPair implements SigningKeyPair {
+
+    /**
+     * The algorithm used by this key pair.
+     */
+    private final SignatureAlgorithm algorithm;
+
+    /**
+     * Stores the generated {@link java.security.KeyPair key pair}.
+     */
+    private final KeyPair key;
+
+    /**
+     * Constructs and returns a new key pair for the specified elliptic curve
+     * algorithm using the {@link CryptoRandom} source.
+     *
+     * @param algorithm {@link SignatureAlgorithm#ECDSA_P256} or
+     * {@link SignatureAlgorithm#ED25519}.
+     * @return the new key pair.
+     * @throws CryptoException if the algorithm is not an elliptic curve
+     * algorithm or is not provided by this runtime.
+     */
+    public static final ECKeyPair generate(final SignatureAlgorithm algorithm) throws CryptoException {
+        try {
+            final KeyPairGenerator keyGenerator = KeyPairGenerator.getInstance(algorithm.getKeyAlgorithm());
+            switch (algorithm) {
+                case ECDSA_P256:
+                    keyGenerator.initialize(new ECGenParameterSpec(SignatureAlgorithm.P256_CURVE), CryptoRandom.get());
+                    break;
+                case ED25519:
+                    keyGenerator.initialize(255, CryptoRandom.get());
+                    break;
+                default:
+                    throw new CryptoException("Not An Elliptic Curve Algorithm - " + algorithm);
+            }
+            return new ECKeyPair(algorithm, keyGenerator.generateKeyPair());
+        } catch (final NoSuchAlgorithmException | InvalidAlgorithmParameterException e) {
+            throw new CryptoException("Key Generation Failed - " + e.getLocalizedMessage());
+        }
+    }
+
+    private ECKeyPair(final SignatureAlgorithm algorithm, final KeyPair key) {
+        this.algorithm = algorithm;
+        this.key = key;
+    }
+
+    @Override
+    public final SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public final byte[] sign(final byte[] data) throws CryptoException {
+        try {
+            final Signature sig = algorithm.getSignature();
+            sig.initSign(key.getPrivate());
+            sig.update(data);
+            return sig.sign();
+        } catch (final InvalidKeyException | SignatureException e) {
+            throw new CryptoException("Signature Failed - " + e.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public final boolean verify(final byte[] data, final byte[] signature) throws CryptoException {
+        try {
+            final Signature sig = algorithm.getSignature();
+            sig.initVerify(key.getPublic());
+            sig.update(data);
+            return sig.verify(signature);
+        } catch (final InvalidKeyException | SignatureException e) {
+            throw new CryptoException("Signature Failed - " + e.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public final byte[] getPublic() {
+        return key.getPublic().getEncoded();
+    }
+}
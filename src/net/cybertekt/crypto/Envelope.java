@@ -0,0 +1,440 @@
+package net.cybertekt.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.MGF1ParameterSpec;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import net.cybertekt.exception.CryptoException;
+
+/**
+ * Envelope - (C) Cybertekt Software
+ *
+ * <p>
+ * Hybrid encryption of payloads of any size for an RSA public key. Each
+ * message is encrypted with a new AES-256 key in GCM mode and the AES key is
+ * wrapped with RSA-OAEP (SHA-256), so only the small key is processed by RSA.
+ * Payloads are split into chunks that are encrypted and authenticated
+ * independently, so streams of any length are encrypted and decrypted in
+ * constant memory and no plaintext is released before its chunk has been
+ * authenticated.
+ * </p>
+ *
+ * <p>
+ * An envelope is written as:
+ * </p>
+ *
+ * <pre>
+ * [version:1][chunkSize:4][wrappedKeyLength:2][wrappedKey][noncePrefix:8]
+ * [chunk]...[final chunk]
+ * </pre>
+ *
+ * <p>
+ * Every chunk but the last holds exactly {@code chunkSize} bytes of plaintext
+ * plus a 16 byte tag; the final chunk holds the rest, between one byte and a
+ * full chunk, and is only empty for an empty payload. The
+ * nonce of each chunk is the random prefix followed by the chunk number, and
+ * the chunk is authenticated together with a flag marking the final chunk, so
+ * reordered, dropped, truncated, or extended envelopes fail to decrypt.
+ * </p>
+ *
+ * <p>
+ * Cipher instances are kept per thread and reused for every chunk.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class Envelope {
+
+    /**
+     * Envelope format version.
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * Default number of plaintext bytes per chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Largest chunk size accepted when decrypting.
+     */
+    public static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Key Wrapping Algorithm - RSA-OAEP with SHA-256
+     */
+    public static final String WRAP_ALGORITHM = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
+
+    /**
+     * Payload Encryption Algorithm - AES-GCM
+     */
+    public static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+
+    /**
+     * Size of the AES key in bits.
+     */
+    private static final int KEY_SIZE = 256;
+
+    /**
+     * Size of the authentication tag in bytes.
+     */
+    public static final int TAG_SIZE = 16;
+
+    /**
+     * Size of the random nonce prefix; the remaining four bytes of the 12
+     * byte nonce count chunks.
+     */
+    private static final int PREFIX_SIZE = 8;
+
+    /**
+     * Largest wrapped key accepted when decrypting, enough for 8192-bit RSA.
+     */
+    private static final int MAX_WRAPPED_KEY_SIZE = 1024;
+
+    /**
+     * OAEP parameters, stated explicitly so that SHA-256 is also used for MGF1
+     * regardless of the provider default.
+     */
+    private static final OAEPParameterSpec OAEP = new OAEPParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSource.PSpecified.DEFAULT);
+
+    private static final ThreadLocal<Cipher> WRAP = ThreadLocal.withInitial(() -> cipher(WRAP_ALGORITHM));
+
+    private static final ThreadLocal<Cipher> AES = ThreadLocal.withInitial(() -> cipher(CIPHER_ALGORITHM));
+
+    private static final byte[] NOT_FINAL = {0}, FINAL = {1};
+
+    /**
+     * Wraps a stream so that bytes written to it are encrypted for a public
+     * key. The envelope header is written immediately; closing the returned
+     * stream writes the final chunk and closes the target.
+     *
+     * @param key the RSA public key of the recipient.
+     * @param out the stream receiving the envelope.
+     * @param chunkSize the number of plaintext bytes per chunk.
+     * @return the encrypting stream.
+     * @throws IOException if the key could not be wrapped or the header could
+     * not be written.
+     */
+    public static OutputStream encrypt(final PublicKey key, final OutputStream out, final int chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE + ": " + chunkSize);
+        }
+        final byte[] wrapped, prefix = new byte[PREFIX_SIZE];
+        final SecretKey secret;
+        try {
+            final KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(KEY_SIZE, CryptoRandom.get());
+            secret = generator.generateKey();
+            final Cipher wrap = WRAP.get();
+            wrap.init(Cipher.WRAP_MODE, key, OAEP, CryptoRandom.get());
+            wrapped = wrap.wrap(secret);
+        } catch (final GeneralSecurityException e) {
+            throw new IOException("Unable to wrap envelope key - " + e.getLocalizedMessage(), e);
+        }
+        CryptoRandom.get().nextBytes(prefix);
+
+        final byte[] header = new byte[7 + wrapped.length + PREFIX_SIZE];
+        header[0] = VERSION;
+        putInt(header, 1, chunkSize);
+        header[5] = (byte) (wrapped.length >>> 8);
+        header[6] = (byte) wrapped.length;
+        System.arraycopy(wrapped, 0, header, 7, wrapped.length);
+        System.arraycopy(prefix, 0, header, 7 + wrapped.length, PREFIX_SIZE);
+        out.write(header);
+        return new EncryptingStream(out, secret, prefix, chunkSize);
+    }
+
+    /**
+     * Wraps a stream holding an envelope so that the plaintext can be read
+     * from it. The header is read immediately.
+     *
+     * @param key the RSA private key of the recipient.
+     * @param in the stream supplying the envelope.
+     * @return the decrypting stream, which throws an {@link IOException} if
+     * any chunk fails authentication or the envelope is truncated.
+     * @throws IOException if the header is invalid or the key could not be
+     * unwrapped.
+     */
+    public static InputStream decrypt(final PrivateKey key, final InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readByte() != VERSION) {
+            throw new IOException("Unsupported envelope version");
+        }
+        final int chunkSize = data.readInt();
+        final int wrappedLength = data.readUnsignedShort();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE || wrappedLength > MAX_WRAPPED_KEY_SIZE) {
+            throw new IOException("Invalid envelope header");
+        }
+        final byte[] wrapped = new byte[wrappedLength], prefix = new byte[PREFIX_SIZE];
+        data.readFully(wrapped);
+        data.readFully(prefix);
+        final SecretKey secret;
+        try {
+            final Cipher wrap = WRAP.get();
+            wrap.init(Cipher.UNWRAP_MODE, key, OAEP);
+            secret = (SecretKey) wrap.unwrap(wrapped, "AES", Cipher.SECRET_KEY);
+        } catch (final GeneralSecurityException e) {
+            throw new IOException("Unable to unwrap envelope key - " + e.getLocalizedMessage(), e);
+        }
+        return new DecryptingStream(in, secret, prefix, chunkSize);
+    }
+
+    /**
+     * Encrypts a payload held in memory.
+     *
+     * @param key the RSA public key of the recipient.
+     * @param data the payload.
+     * @return the envelope.
+     * @throws CryptoException if the payload could not be encrypted.
+     */
+    public static byte[] encrypt(final PublicKey key, final byte[] data) throws CryptoException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(getEncryptedSize(data.length, DEFAULT_CHUNK_SIZE, 512));
+        try (OutputStream out = encrypt(key, bytes, DEFAULT_CHUNK_SIZE)) {
+            out.write(data);
+        } catch (final IOException e) {
+            throw new CryptoException("Encryption Failed - " + e.getLocalizedMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decrypts an envelope held in memory.
+     *
+     * @param key the RSA private key of the recipient.
+     * @param envelope the envelope.
+     * @return the payload.
+     * @throws CryptoException if the envelope is invalid or was not encrypted
+     * for the key.
+     */
+    public static byte[] decrypt(final PrivateKey key, final byte[] envelope) throws CryptoException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(envelope.length);
+        try (InputStream in = decrypt(key, new ByteArrayInputStream(envelope))) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, read);
+            }
+        } catch (final IOException e) {
+            throw new CryptoException("Decryption Failed - " + e.getLocalizedMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the size of the envelope of a payload.
+     *
+     * @param length the size of the payload.
+     * @param chunkSize the number of plaintext bytes per chunk.
+     * @param wrappedKeySize the size of the wrapped key, which is the RSA key
+     * size in bytes.
+     * @return the size of the envelope.
+     */
+    public static int getEncryptedSize(final int length, final int chunkSize, final int wrappedKeySize) {
+        final int chunks = length == 0 ? 1 : (length - 1) / chunkSize + 1;
+        return 7 + wrappedKeySize + PREFIX_SIZE + length + chunks * TAG_SIZE;
+    }
+
+    /**
+     * Encrypts or decrypts one chunk with the cipher of the calling thread.
+     */
+    private static int chunk(final int mode, final Key key, final byte[] prefix, final int counter, final boolean last,
+            final byte[] in, final int length, final byte[] out) throws GeneralSecurityException {
+        final byte[] nonce = new byte[PREFIX_SIZE + 4];
+        System.arraycopy(prefix, 0, nonce, 0, PREFIX_SIZE);
+        putInt(nonce, PREFIX_SIZE, counter);
+        final Cipher cipher = AES.get();
+        cipher.init(mode, key, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+        cipher.updateAAD(last ? FINAL : NOT_FINAL);
+        return cipher.doFinal(in, 0, length, out, 0);
+    }
+
+    private static void putInt(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static Cipher cipher(final String algorithm) {
+        try {
+            return Cipher.getInstance(algorithm);
+        } catch (final NoSuchAlgorithmException | javax.crypto.NoSuchPaddingException e) {
+            throw new IllegalStateException(algorithm + " is not supported by this runtime", e);
+        }
+    }
+
+    private Envelope() {
+    }
+
+    /**
+     * Buffers one chunk of plaintext and encrypts it once more data arrives,
+     * so that the chunk written on close is always the final one.
+     */
+    private static final class EncryptingStream extends FilterOutputStream {
+
+        private final SecretKey key;
+        private final byte[] prefix, plain, sealed;
+        private int length, counter;
+        private boolean closed;
+
+        private EncryptingStream(final OutputStream out, final SecretKey key, final byte[] prefix, final int chunkSize) {
+            super(out);
+            this.key = key;
+            this.prefix = prefix;
+            this.plain = new byte[chunkSize];
+            this.sealed = new byte[chunkSize + TAG_SIZE];
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Envelope is closed");
+            }
+            while (len > 0) {
+                if (length == plain.length) {
+                    seal(false);
+                }
+                final int copy = Math.min(len, plain.length - length);
+                System.arraycopy(b, off, plain, length, copy);
+                length += copy;
+                off += copy;
+                len -= copy;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                seal(true);
+                out.flush();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void seal(final boolean last) throws IOException {
+            if (counter == -1) {
+                throw new IOException("Envelope exceeds the maximum number of chunks");
+            }
+            try {
+                out.write(sealed, 0, chunk(Cipher.ENCRYPT_MODE, key, prefix, counter++, last, plain, length, sealed));
+            } catch (final GeneralSecurityException e) {
+                throw new IOException("Chunk encryption failed - " + e.getLocalizedMessage(), e);
+            }
+            length = 0;
+        }
+    }
+
+    /**
+     * Reads and authenticates one chunk at a time, reading one byte past each
+     * full chunk to learn whether it is the final one.
+     */
+    private static final class DecryptingStream extends InputStream {
+
+        private final InputStream in;
+        private final SecretKey key;
+        private final byte[] prefix, sealed, plain;
+        private int position, length, counter, lookahead = -2;
+        private boolean done;
+
+        private DecryptingStream(final InputStream in, final SecretKey key, final byte[] prefix, final int chunkSize) {
+            this.in = in;
+            this.key = key;
+            this.prefix = prefix;
+            this.sealed = new byte[chunkSize + TAG_SIZE];
+            this.plain = new byte[chunkSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == length) {
+                if (done) {
+                    return -1;
+                }
+                open();
+            }
+            final int copy = Math.min(len, length - position);
+            System.arraycopy(plain, position, b, off, copy);
+            position += copy;
+            return copy;
+        }
+
+        @Override
+        public int available() {
+            return length - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        /**
+         * Reads, authenticates, and decrypts the next chunk.
+         */
+        private void open() throws IOException {
+            int filled = 0;
+            if (lookahead >= 0) {
+                sealed[filled++] = (byte) lookahead;
+            }
+            while (filled < sealed.length) {
+                final int read = in.read(sealed, filled, sealed.length - filled);
+                if (read < 0) {
+                    break;
+                }
+                filled += read;
+            }
+            if (filled < TAG_SIZE) {
+                throw new EOFException("Envelope is truncated");
+            }
+            lookahead = filled == sealed.length ? in.read() : -1;
+            final boolean last = lookahead < 0;
+            try {
+                length = chunk(Cipher.DECRYPT_MODE, key, prefix, counter++, last, sealed, filled, plain);
+            } catch (final InvalidKeyException e) {
+                throw new IOException("Chunk decryption failed - " + e.getLocalizedMessage(), e);
+            } catch (final GeneralSecurityException e) {
+                throw new IOException("Envelope chunk " + (counter - 1) + " failed authentication", e);
+            }
+            position = 0;
+            done = last;
+        }
+    }
+}
@@ -1,16 +1,15 @@
 package net.cybertekt.crypto;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.InvalidKeyException;
 import java.security.InvalidParameterException;
-import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.X509EncodedKeySpec;
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
@@ -23,22 +22,50 @@ import net.cybertekt.exception.CryptoException;
  * Provides functions for generating asymmetric key pairs using the RSA
  * algorithm.
  *
+ * <p>
+ * {@link #encrypt(byte[])} applies RSA directly and is limited to payloads
+ * smaller than the key. Larger payloads and streams are encrypted as an
+ * {@link Envelope}, where RSA only wraps a per-message AES key.
+ * </p>
+ *
  * @version 1.0.0
  * @since 1.0.0
  * @author Andrew Vektor
  */
-public class RSAKeyPair {
+public class RSAKeyPair implements SigningKeyPair {
 
     /**
      * Encryption Algorithm - RSA
      */
     public static final String ALGORITHM = "RSA";
 
+    /**
+     * Signature Algorithm - SHA1withRSA
+     */
+    public static final String SIGNATURE_ALGORITHM = "SHA1withRSA";
+
+    /**
+     * Key size used by {@link SignatureAlgorithm#generate()}.
+     */
+    public static final int DEFAULT_KEY_SIZE = 2048;
+
     /**
      * Stores the generated {@link java.security.KeyPair key pair}.
      */
     private final KeyPair key;
 
+    /**
+     * RSA cipher of each thread, reused by {@link #encrypt(byte[])} and
+     * {@link #decrypt(byte[])}.
+     */
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (final NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException(ALGORITHM + " is not supported by this runtime", e);
+        }
+    });
+
     /**
      * Constructs and returns a new secure RSAKeyPair which can be used to
      * encrypt, decrypt, sign, and verify data in the form of byte[] arrays.
@@ -50,7 +77,7 @@ public class RSAKeyPair {
     public static final RSAKeyPair generate(final int keySize) throws CryptoException {
         try {
             KeyPairGenerator keyGenerator = KeyPairGenerator.getInstance(ALGORITHM);
-            keyGenerator.initialize(keySize, SecureRandom.getInstanceStrong());
+            keyGenerator.initialize(keySize, CryptoRandom.get());
             return new RSAKeyPair(keyGenerator.genKeyPair());
         } catch (final NoSuchAlgorithmException | InvalidParameterException e) {
             throw new CryptoException(e.getMessage());
@@ -58,62 +85,126 @@ public class RSAKeyPair {
     }
 
     public static final boolean verify(final byte[] key, final byte[] data, final byte[] signature) {
-        try {
-            final Signature sig = Signature.getInstance("SHA1withRSA");
-            sig.initVerify(KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(key)));
-            sig.update(data);
-            return sig.verify(signature);
-        } catch (final NoSuchAlgorithmException | InvalidKeyException | InvalidKeySpecException | SignatureException e) {
-            return false;
-        }
+        return SignatureAlgorithm.detect(key) == SignatureAlgorithm.RSA && SignatureAlgorithm.verify(key, data, signature);
+    }
+
+    /**
+     * Encrypts a payload of any size as an {@link Envelope} for the holder of
+     * an encoded RSA public key.
+     *
+     * @param key the X.509 encoded public key of the recipient.
+     * @param data the payload.
+     * @return the envelope.
+     * @throws CryptoException if the key is not an RSA key or encryption
+     * fails.
+     */
+    public static final byte[] encryptEnvelope(final byte[] key, final byte[] data) throws CryptoException {
+        return Envelope.encrypt(SignatureAlgorithm.RSA.decode(key), data);
     }
 
     private RSAKeyPair(final KeyPair key) {
         this.key = key;
     }
 
+    @Override
+    public final SignatureAlgorithm getAlgorithm() {
+        return SignatureAlgorithm.RSA;
+    }
+
     public final byte[] encrypt(final byte[] data) throws CryptoException {
         try {
-            final Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key.getPublic());
+            final Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key.getPublic(), CryptoRandom.get());
             return cipher.doFinal(data);
-        } catch (final NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
+        } catch (final InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
             throw new CryptoException("Encryption Failed - " + e.getLocalizedMessage());
         }
     }
 
     public final byte[] decrypt(final byte[] data) throws CryptoException {
         try {
-            final Cipher cipher = Cipher.getInstance(ALGORITHM);
+            final Cipher cipher = CIPHER.get();
             cipher.init(Cipher.DECRYPT_MODE, key.getPrivate());
             return cipher.doFinal(data);
-        } catch (final NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
+        } catch (final InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
             throw new CryptoException("Decryption Failed - " + e.getLocalizedMessage());
         }
     }
 
+    /**
+     * Encrypts a payload of any size as an {@link Envelope} for this key pair.
+     *
+     * @param data the payload.
+     * @return the envelope.
+     * @throws CryptoException if encryption fails.
+     */
+    public final byte[] encryptEnvelope(final byte[] data) throws CryptoException {
+        return Envelope.encrypt(key.getPublic(), data);
+    }
+
+    /**
+     * Decrypts an {@link Envelope} encrypted for this key pair.
+     *
+     * @param envelope the envelope.
+     * @return the payload.
+     * @throws CryptoException if the envelope is invalid, was tampered with,
+     * or was encrypted for another key.
+     */
+    public final byte[] decryptEnvelope(final byte[] envelope) throws CryptoException {
+        return Envelope.decrypt(key.getPrivate(), envelope);
+    }
+
+    /**
+     * Wraps a stream so that bytes written to it are encrypted as an
+     * {@link Envelope} for this key pair, one chunk at a time.
+     *
+     * @param out the stream receiving the envelope.
+     * @return the encrypting stream, which must be closed to complete the
+     * envelope.
+     * @throws IOException if the header could not be written.
+     */
+    public final OutputStream encrypt(final OutputStream out) throws IOException {
+        return Envelope.encrypt(key.getPublic(), out, Envelope.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Wraps a stream holding an {@link Envelope} encrypted for this key pair
+     * so that its plaintext can be read one authenticated chunk at a time.
+     *
+     * @param in the stream supplying the envelope.
+     * @return the decrypting stream.
+     * @throws IOException if the header is invalid or was not encrypted for
+     * this key pair.
+     */
+    public final InputStream decrypt(final InputStream in) throws IOException {
+        return Envelope.decrypt(key.getPrivate(), in);
+    }
+
+    @Override
     public final byte[] sign(final byte[] data) throws CryptoException {
         try {
-            final Signature sig = Signature.getInstance("SHA1withRSA");
+            final Signature sig = SignatureAlgorithm.RSA.getSignature();
             sig.initSign(key.getPrivate());
             sig.update(data);
             return sig.sign();
-        } catch (final NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+        } catch (final InvalidKeyException | SignatureException e) {
             throw new CryptoException("Signature Failed - " + e.getLocalizedMessage());
         }
     }
 
+    @Override
     public final boolean verify(final byte[] data, final byte[] signature) throws CryptoException {
         try {
-            final Signature sig = Signature.getInstance("SHA1withRSA");
+            final Signature sig = SignatureAlgorithm.RSA.getSignature();
             sig.initVerify(key.getPublic());
             sig.update(data);
             return sig.verify(signature);
-        } catch (final NoSuchAlgorithmException | InvalidKeyException | SignatureException e) {
+        } catch (final InvalidKeyException | SignatureException e) {
             throw new CryptoException("Signature Failed - " + e.getLocalizedMessage());
         }
     }
 
+    @Override
     public final byte[] getPublic() {
         return key.getPublic().getEncoded();
     }
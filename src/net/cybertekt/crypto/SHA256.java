@@ -0,0 +1,80 @@
+package net.cybertekt.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 - (C) Cybertekt Software
+ *
+ * Computes SHA-256 digests using a {@link MessageDigest} instance per thread,
+ * so hashing many small inputs does not look up a new digest for each one.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class SHA256 {
+
+    /**
+     * Digest Algorithm - SHA-256
+     */
+    public static final String ALGORITHM = "SHA-256";
+
+    /**
+     * Size of a digest in bytes.
+     */
+    public static final int SIZE = 32;
+
+    /**
+     * Per-thread digest instance.
+     */
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * Returns the digest of the specified data.
+     *
+     * @param data the data to hash.
+     * @return the 32 byte digest.
+     */
+    public static byte[] hash(final byte[] data) {
+        return DIGEST.get().digest(data);
+    }
+
+    /**
+     * Returns the digest of a prefix byte followed by two other digests, which
+     * is how the interior nodes of a hash tree are combined.
+     *
+     * @param prefix the domain separation prefix.
+     * @param left the first digest.
+     * @param right the second digest.
+     * @return the 32 byte digest.
+     */
+    public static byte[] hash(final byte prefix, final byte[] left, final byte[] right) {
+        final MessageDigest digest = DIGEST.get();
+        digest.update(prefix);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    /**
+     * Returns the per-thread digest, reset and ready for use. The digest must
+     * not be shared with other threads or held across calls to this class.
+     *
+     * @return the digest of the calling thread.
+     */
+    public static MessageDigest digest() {
+        final MessageDigest digest = DIGEST.get();
+        digest.reset();
+        return digest;
+    }
+
+    private SHA256() {
+    }
+}
@@ -0,0 +1,315 @@
+package net.cybertekt.crypto;
+
+import java.security.AlgorithmParameters;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.InvalidParameterSpecException;
+import java.security.spec.X509EncodedKeySpec;
+import net.cybertekt.exception.CryptoException;
+
+/**
+ * Signature Algorithm - (C) Cybertekt Software
+ *
+ * <p>
+ * The signature schemes supported by {@link SigningKeyPair signing key pairs}
+ * using only the providers built into the JDK. Public keys are exchanged in
+ * their X.509 encoding, which names the key algorithm by object identifier, so
+ * the scheme of any encoded key can be {@link #detect(byte[]) detected} and a
+ * signature verified without knowing the scheme in advance.
+ * </p>
+ *
+ * <p>
+ * Each scheme keeps a {@link Signature} and {@link KeyFactory} per thread.
+ * Ed25519 requires Java 15 or later; check {@link #isAvailable()} before using
+ * it on older runtimes.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public enum SignatureAlgorithm {
+
+    /**
+     * RSA with SHA-1, the scheme {@link RSAKeyPair} has always used. Kept so
+     * that existing signatures remain valid.
+     */
+    RSA(RSAKeyPair.ALGORITHM, RSAKeyPair.SIGNATURE_ALGORITHM, new byte[]{0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7, 0x0D, 0x01, 0x01, 0x01}),
+    /**
+     * ECDSA over the NIST P-256 curve with SHA-256.
+     */
+    ECDSA_P256("EC", "SHA256withECDSA", new byte[]{0x2A, (byte) 0x86, 0x48, (byte) 0xCE, 0x3D, 0x02, 0x01}),
+    /**
+     * EdDSA over Curve25519. Available from Java 15.
+     */
+    ED25519("Ed25519", "Ed25519", new byte[]{0x2B, 0x65, 0x70});
+
+    /**
+     * Name of the curve used by {@link #ECDSA_P256}.
+     */
+    public static final String P256_CURVE = "secp256r1";
+
+    /**
+     * JCA key algorithm name.
+     */
+    private final String keyAlgorithm;
+
+    /**
+     * JCA signature algorithm name.
+     */
+    private final String signatureAlgorithm;
+
+    /**
+     * DER encoded object identifier of the key algorithm.
+     */
+    private final byte[] oid;
+
+    private final ThreadLocal<Signature> signature;
+
+    private final ThreadLocal<KeyFactory> keyFactory;
+
+    private SignatureAlgorithm(final String keyAlgorithm, final String signatureAlgorithm, final byte[] oid) {
+        this.keyAlgorithm = keyAlgorithm;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.oid = oid;
+        this.signature = ThreadLocal.withInitial(() -> {
+            try {
+                return Signature.getInstance(signatureAlgorithm);
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(signatureAlgorithm + " is not supported by this runtime", e);
+            }
+        });
+        this.keyFactory = ThreadLocal.withInitial(() -> {
+            try {
+                return KeyFactory.getInstance(keyAlgorithm);
+            } catch (final NoSuchAlgorithmException e) {
+                throw new IllegalStateException(keyAlgorithm + " is not supported by this runtime", e);
+            }
+        });
+    }
+
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    public String getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    /**
+     * Indicates if the runtime provides this scheme.
+     *
+     * @return true if keys can be generated and signatures verified.
+     */
+    public boolean isAvailable() {
+        try {
+            Signature.getInstance(signatureAlgorithm);
+            KeyFactory.getInstance(keyAlgorithm);
+            return true;
+        } catch (final NoSuchAlgorithmException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Generates a new key pair for this scheme using the {@link CryptoRandom}
+     * source. RSA keys are {@link RSAKeyPair#DEFAULT_KEY_SIZE} bits.
+     *
+     * @return the new key pair.
+     * @throws CryptoException if the runtime does not provide this scheme.
+     */
+    public SigningKeyPair generate() throws CryptoException {
+        return this == RSA ? RSAKeyPair.generate(RSAKeyPair.DEFAULT_KEY_SIZE) : ECKeyPair.generate(this);
+    }
+
+    /**
+     * Returns the signature instance of the calling thread. The instance must
+     * be initialized before each use and must not be shared with other
+     * threads.
+     *
+     * @return the per-thread signature instance.
+     * @throws IllegalStateException if the runtime does not provide this
+     * scheme.
+     */
+    public Signature getSignature() {
+        return signature.get();
+    }
+
+    /**
+     * Decodes an X.509 encoded public key of this scheme.
+     *
+     * @param encoded the encoded public key.
+     * @return the public key.
+     * @throws CryptoException if the key is not a valid key of this scheme,
+     * including {@link #ECDSA_P256} keys over any other curve.
+     */
+    public PublicKey decode(final byte[] encoded) throws CryptoException {
+        final PublicKey key;
+        try {
+            key = keyFactory.get().generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (final InvalidKeySpecException | IllegalStateException e) {
+            throw new CryptoException("Invalid " + name() + " Public Key - " + e.getLocalizedMessage());
+        }
+        if (this == ECDSA_P256 && !isP256(key)) {
+            throw new CryptoException("Invalid " + name() + " Public Key - Curve Is Not " + P256_CURVE);
+        }
+        return key;
+    }
+
+    /**
+     * Verifies a signature with a public key of this scheme.
+     *
+     * @param key the public key.
+     * @param data the signed data.
+     * @param signature the signature.
+     * @return true if the signature is valid.
+     */
+    public boolean verify(final PublicKey key, final byte[] data, final byte[] signature) {
+        try {
+            final Signature sig = getSignature();
+            sig.initVerify(key);
+            sig.update(data);
+            return sig.verify(signature);
+        } catch (final InvalidKeyException | SignatureException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Detects the scheme of an X.509 encoded public key from the object
+     * identifier of its algorithm. Every EC key is treated as
+     * {@link #ECDSA_P256}; the curve itself is checked when the key is
+     * decoded.
+     *
+     * @param encoded the encoded public key.
+     * @return the scheme of the key, or null if it is not recognized.
+     */
+    public static SignatureAlgorithm detect(final byte[] encoded) {
+        /* SubjectPublicKeyInfo ::= SEQUENCE { SEQUENCE { OID, params }, BIT STRING } */
+        int p = enter(encoded, 0, 0x30);
+        p = enter(encoded, p, 0x30);
+        if (p < 0 || p + 2 > encoded.length || encoded[p] != 0x06) {
+            return null;
+        }
+        final int length = encoded[p + 1] & 0xFF;
+        p += 2;
+        if (p + length > encoded.length) {
+            return null;
+        }
+        for (final SignatureAlgorithm algorithm : values()) {
+            if (regionEquals(encoded, p, length, algorithm.oid)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the scheme of a decoded public key.
+     *
+     * @param key the public key.
+     * @return the scheme of the key, or null if it is not recognized.
+     */
+    public static SignatureAlgorithm of(final PublicKey key) {
+        switch (key.getAlgorithm()) {
+            case "RSA":
+                return RSA;
+            case "EC":
+                return ECDSA_P256;
+            case "Ed25519":
+            case "EdDSA":
+                return ED25519;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Verifies a signature with an X.509 encoded public key of any supported
+     * scheme.
+     *
+     * @param key the encoded public key.
+     * @param data the signed data.
+     * @param signature the signature.
+     * @return true if the key is recognized and the signature is valid.
+     */
+    public static boolean verify(final byte[] key, final byte[] data, final byte[] signature) {
+        final SignatureAlgorithm algorithm = detect(key);
+        if (algorithm == null) {
+            return false;
+        }
+        try {
+            return algorithm.verify(algorithm.decode(key), data, signature);
+        } catch (final CryptoException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Indicates if a public key is an EC key over the {@link #P256_CURVE}
+     * curve.
+     */
+    private static boolean isP256(final PublicKey key) {
+        if (!(key instanceof ECPublicKey)) {
+            return false;
+        }
+        final ECParameterSpec params = ((ECPublicKey) key).getParams(), p256 = P256.PARAMS;
+        return params.getCofactor() == p256.getCofactor() && params.getOrder().equals(p256.getOrder())
+                && params.getGenerator().equals(p256.getGenerator()) && params.getCurve().equals(p256.getCurve());
+    }
+
+    /**
+     * Skips the tag and length of a DER element and returns the offset of its
+     * contents, or -1 if the element at the offset does not have the tag.
+     */
+    private static int enter(final byte[] der, int p, final int tag) {
+        if (p < 0 || p + 2 > der.length || (der[p] & 0xFF) != tag) {
+            return -1;
+        }
+        final int length = der[p + 1] & 0xFF;
+        p += 2;
+        if ((length & 0x80) != 0) {
+            p += length & 0x7F;
+        }
+        return p <= der.length ? p : -1;
+    }
+
+    private static boolean regionEquals(final byte[] bytes, final int offset, final int length, final byte[] expected) {
+        if (length != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Domain parameters of the {@link #P256_CURVE} curve, looked up on first
+     * use.
+     */
+    private static final class P256 {
+
+        private static final ECParameterSpec PARAMS;
+
+        static {
+            try {
+                final AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+                parameters.init(new ECGenParameterSpec(P256_CURVE));
+                PARAMS = parameters.getParameterSpec(ECParameterSpec.class);
+            } catch (final NoSuchAlgorithmException | InvalidParameterSpecException e) {
+                throw new IllegalStateException(P256_CURVE + " is not supported by this runtime", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package net.cybertekt.crypto;
+
+import net.cybertekt.exception.CryptoException;
+
+/**
+ * Signing Key Pair - (C) Cybertekt Software
+ *
+ * A private key able to sign data together with its public key, for any of the
+ * supported {@link SignatureAlgorithm signature algorithms}. The public key is
+ * exchanged in its X.509 encoding and signatures can be checked without the
+ * key pair using {@link SignatureAlgorithm#verify(byte[], byte[], byte[])}.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public interface SigningKeyPair {
+
+    /**
+     * Returns the algorithm used to sign data with this key pair.
+     *
+     * @return the signature algorithm.
+     */
+    public SignatureAlgorithm getAlgorithm();
+
+    /**
+     * Returns the X.509 encoded public key.
+     *
+     * @return the encoded public key.
+     */
+    public byte[] getPublic();
+
+    /**
+     * Signs the specified data with the private key.
+     *
+     * @param data the data to sign.
+     * @return the signature.
+     * @throws CryptoException if the data could not be signed.
+     */
+    public byte[] sign(final byte[] data) throws CryptoException;
+
+    /**
+     * Verifies a signature over the specified data with the public key.
+     *
+     * @param data the signed data.
+     * @param signature the signature.
+     * @return true if the signature is valid.
+     * @throws CryptoException if the signature could not be checked.
+     */
+    public boolean verify(final byte[] data, final byte[] signature) throws CryptoException;
+}
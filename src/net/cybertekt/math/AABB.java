@@ -0,0 +1,261 @@
+package net.cybertekt.math;
+
+import org.joml.Matrix4fc;
+
+/**
+ * AABB - (C) Cybertekt Software.
+ *
+ * An axis-aligned bounding box defined by its minimum and maximum corners. A
+ * newly constructed box is empty (its minimum is greater than its maximum) and
+ * grows to enclose the points and boxes merged into it. Bounding boxes are
+ * mutable and every operation that produces a box stores its result in a
+ * destination box so that no objects are allocated.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class AABB {
+
+    /**
+     * Minimum corner.
+     */
+    public float minX, minY, minZ;
+
+    /**
+     * Maximum corner.
+     */
+    public float maxX, maxY, maxZ;
+
+    /**
+     * Constructs a new empty bounding box.
+     */
+    public AABB() {
+        empty();
+    }
+
+    /**
+     * Constructs a new bounding box from its minimum and maximum corners.
+     *
+     * @param minX the minimum x-axis coordinate.
+     * @param minY the minimum y-axis coordinate.
+     * @param minZ the minimum z-axis coordinate.
+     * @param maxX the maximum x-axis coordinate.
+     * @param maxY the maximum y-axis coordinate.
+     * @param maxZ the maximum z-axis coordinate.
+     */
+    public AABB(final float minX, final float minY, final float minZ, final float maxX, final float maxY, final float maxZ) {
+        set(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Constructs a new bounding box by copying another bounding box.
+     *
+     * @param toCopy the bounding box to copy.
+     */
+    public AABB(final AABB toCopy) {
+        set(toCopy);
+    }
+
+    /**
+     * Resets this bounding box so that it does not enclose any point.
+     *
+     * @return this bounding box for the purpose of call chaining.
+     */
+    public final AABB empty() {
+        minX = minY = minZ = Float.POSITIVE_INFINITY;
+        maxX = maxY = maxZ = Float.NEGATIVE_INFINITY;
+        return this;
+    }
+
+    /**
+     * Indicates if this bounding box does not enclose any point.
+     *
+     * @return true if this bounding box is empty.
+     */
+    public final boolean isEmpty() {
+        return minX > maxX || minY > maxY || minZ > maxZ;
+    }
+
+    /**
+     * Sets the minimum and maximum corners of this bounding box.
+     *
+     * @param minX the minimum x-axis coordinate.
+     * @param minY the minimum y-axis coordinate.
+     * @param minZ the minimum z-axis coordinate.
+     * @param maxX the maximum x-axis coordinate.
+     * @param maxY the maximum y-axis coordinate.
+     * @param maxZ the maximum z-axis coordinate.
+     * @return this bounding box for the purpose of call chaining.
+     */
+    public final AABB set(final float minX, final float minY, final float minZ, final float maxX, final float maxY, final float maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        return this;
+    }
+
+    /**
+     * Sets this bounding box equal to another bounding box.
+     *
+     * @param toSet the bounding box to copy.
+     * @return this bounding box for the purpose of call chaining.
+     */
+    public final AABB set(final AABB toSet) {
+        return set(toSet.minX, toSet.minY, toSet.minZ, toSet.maxX, toSet.maxY, toSet.maxZ);
+    }
+
+    /**
+     * Sets this bounding box to the smallest box that encloses a set of packed
+     * vertex positions.
+     *
+     * @param positions the vertex positions.
+     * @param offset the index of the first coordinate of the first vertex.
+     * @param count the number of vertices.
+     * @param stride the number of floats between the starts of two vertices.
+     * @return this bounding box for the purpose of call chaining.
+     */
+    public final AABB set(final float[] positions, final int offset, final int count, final int stride) {
+        empty();
+        for (int i = 0, p = offset; i < count; i++, p += stride) {
+            merge(positions[p], positions[p + 1], positions[p + 2]);
+        }
+        return this;
+    }
+
+    /**
+     * Grows this bounding box to enclose a point.
+     *
+     * @param x the x-axis coordinate of the point.
+     * @param y the y-axis coordinate of the point.
+     * @param z the z-axis coordinate of the point.
+     * @return this bounding box for the purpose of call chaining.
+     */
+    public final AABB merge(final float x, final float y, final float z) {
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        minZ = Math.min(minZ, z);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+        maxZ = Math.max(maxZ, z);
+        return this;
+    }
+
+    /**
+     * Grows this bounding box to enclose another bounding box.
+     *
+     * @param other the bounding box to enclose.
+     * @return this bounding box for the purpose of call chaining.
+     */
+    public final AABB merge(final AABB other) {
+        minX = Math.min(minX, other.minX);
+        minY = Math.min(minY, other.minY);
+        minZ = Math.min(minZ, other.minZ);
+        maxX = Math.max(maxX, other.maxX);
+        maxY = Math.max(maxY, other.maxY);
+        maxZ = Math.max(maxZ, other.maxZ);
+        return this;
+    }
+
+    /**
+     * Indicates if this bounding box overlaps another bounding box.
+     *
+     * @param other the bounding box to test.
+     * @return true if the bounding boxes overlap or touch.
+     */
+    public final boolean intersects(final AABB other) {
+        return minX <= other.maxX && maxX >= other.minX && minY <= other.maxY && maxY >= other.minY && minZ <= other.maxZ && maxZ >= other.minZ;
+    }
+
+    /**
+     * Transforms this bounding box by an affine matrix and stores the smallest
+     * axis-aligned box that encloses the result in the destination box. Uses
+     * the method described by Jim Arvo (Graphics Gems, 1990) which only needs
+     * the center and extent of the box instead of all eight corners.
+     *
+     * @param m the affine transformation matrix.
+     * @param dest the bounding box in which to store the result (may be this
+     * box).
+     * @return the destination bounding box.
+     */
+    public final AABB transform(final Matrix4fc m, final AABB dest) {
+        if (isEmpty()) {
+            return dest.empty();
+        }
+        final float cx = (minX + maxX) * 0.5f, cy = (minY + maxY) * 0.5f, cz = (minZ + maxZ) * 0.5f;
+        final float ex = (maxX - minX) * 0.5f, ey = (maxY - minY) * 0.5f, ez = (maxZ - minZ) * 0.5f;
+
+        /* Transform Center */
+        final float ncx = m.m00() * cx + m.m10() * cy + m.m20() * cz + m.m30();
+        final float ncy = m.m01() * cx + m.m11() * cy + m.m21() * cz + m.m31();
+        final float ncz = m.m02() * cx + m.m12() * cy + m.m22() * cz + m.m32();
+
+        /* Transform Extent By The Absolute Linear Part */
+        final float nex = Math.abs(m.m00()) * ex + Math.abs(m.m10()) * ey + Math.abs(m.m20()) * ez;
+        final float ney = Math.abs(m.m01()) * ex + Math.abs(m.m11()) * ey + Math.abs(m.m21()) * ez;
+        final float nez = Math.abs(m.m02()) * ex + Math.abs(m.m12()) * ey + Math.abs(m.m22()) * ez;
+
+        return dest.set(ncx - nex, ncy - ney, ncz - nez, ncx + nex, ncy + ney, ncz + nez);
+    }
+
+    /**
+     * Transforms this bounding box by a {@link Transform} and stores the
+     * result in the destination box.
+     *
+     * @param t the transform to apply.
+     * @param dest the bounding box in which to store the result (may be this
+     * box).
+     * @return the destination bounding box.
+     */
+    public final AABB transform(final Transform t, final AABB dest) {
+        return transform(t.getTransformMatrix(), dest);
+    }
+
+    /**
+     * Returns the x-axis coordinate of the center of this bounding box.
+     *
+     * @return the center x-axis coordinate.
+     */
+    public final float getCenterX() {
+        return (minX + maxX) * 0.5f;
+    }
+
+    /**
+     * Returns the y-axis coordinate of the center of this bounding box.
+     *
+     * @return the center y-axis coordinate.
+     */
+    public final float getCenterY() {
+        return (minY + maxY) * 0.5f;
+    }
+
+    /**
+     * Returns the z-axis coordinate of the center of this bounding box.
+     *
+     * @return the center z-axis coordinate.
+     */
+    public final float getCenterZ() {
+        return (minZ + maxZ) * 0.5f;
+    }
+
+    /**
+     * Returns the surface area of this bounding box.
+     *
+     * @return the surface area or zero if this box is empty.
+     */
+    public final float getSurfaceArea() {
+        if (isEmpty()) {
+            return 0f;
+        }
+        final float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+        return 2f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    @Override
+    public String toString() {
+        return "AABB [" + minX + ", " + minY + ", " + minZ + "] - [" + maxX + ", " + maxY + ", " + maxZ + "]";
+    }
+}
@@ -0,0 +1,311 @@
+package net.cybertekt.math;
+
+import java.nio.FloatBuffer;
+import org.joml.Matrix4fc;
+
+/**
+ * Batch Math - (C) Cybertekt Software.
+ *
+ * <p>
+ * Static kernels that apply the same operation to many packed values at once.
+ * Matrices are packed as 16 floats in column-major order (the layout used by
+ * OpenGL, JOML, and {@link net.cybertekt.scene.SceneGraph}), bounding boxes as
+ * 6 floats (min xyz, max xyz), and points either interleaved (xyz or xyzw) or
+ * as separate coordinate arrays (structure of arrays).
+ * </p>
+ *
+ * <p>
+ * The transform loops are written without calls or data dependent branches so
+ * that the JIT compiler can unroll them and, for the structure of arrays
+ * variants, auto-vectorize them. Prefer the structure of arrays variants for hot loops
+ * over large data sets. None of the kernels allocate.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BatchMath {
+
+    /**
+     * Number of floats in a packed matrix.
+     */
+    public static final int MATRIX_SIZE = 16;
+
+    /**
+     * Number of floats in a packed bounding box.
+     */
+    public static final int AABB_SIZE = 6;
+
+    private BatchMath() {
+    }
+
+    /**
+     * Transforms interleaved positions (x, y, z, implicit w = 1) by an affine
+     * matrix.
+     *
+     * @param m the matrix.
+     * @param in the packed positions (3 floats each).
+     * @param inOffset the index of the first input float.
+     * @param out the array in which to store the transformed positions (may be
+     * the input array if the offsets are equal).
+     * @param outOffset the index of the first output float.
+     * @param count the number of positions.
+     */
+    public static void transformPositions(final Matrix4fc m, final float[] in, final int inOffset, final float[] out, final int outOffset, final int count) {
+        final float m00 = m.m00(), m01 = m.m01(), m02 = m.m02();
+        final float m10 = m.m10(), m11 = m.m11(), m12 = m.m12();
+        final float m20 = m.m20(), m21 = m.m21(), m22 = m.m22();
+        final float m30 = m.m30(), m31 = m.m31(), m32 = m.m32();
+        for (int i = 0, s = inOffset, d = outOffset; i < count; i++, s += 3, d += 3) {
+            final float x = in[s], y = in[s + 1], z = in[s + 2];
+            out[d] = m00 * x + m10 * y + m20 * z + m30;
+            out[d + 1] = m01 * x + m11 * y + m21 * z + m31;
+            out[d + 2] = m02 * x + m12 * y + m22 * z + m32;
+        }
+    }
+
+    /**
+     * Transforms positions stored as separate coordinate arrays by an affine
+     * matrix.
+     *
+     * @param m the matrix.
+     * @param x the x-axis coordinates.
+     * @param y the y-axis coordinates.
+     * @param z the z-axis coordinates.
+     * @param outX the array in which to store the transformed x-axis
+     * coordinates (may be the input array).
+     * @param outY the array in which to store the transformed y-axis
+     * coordinates (may be the input array).
+     * @param outZ the array in which to store the transformed z-axis
+     * coordinates (may be the input array).
+     * @param count the number of positions.
+     */
+    public static void transformPositions(final Matrix4fc m, final float[] x, final float[] y, final float[] z, final float[] outX, final float[] outY, final float[] outZ, final int count) {
+        final float m00 = m.m00(), m01 = m.m01(), m02 = m.m02();
+        final float m10 = m.m10(), m11 = m.m11(), m12 = m.m12();
+        final float m20 = m.m20(), m21 = m.m21(), m22 = m.m22();
+        final float m30 = m.m30(), m31 = m.m31(), m32 = m.m32();
+        for (int i = 0; i < count; i++) {
+            final float px = x[i], py = y[i], pz = z[i];
+            outX[i] = m00 * px + m10 * py + m20 * pz + m30;
+            outY[i] = m01 * px + m11 * py + m21 * pz + m31;
+            outZ[i] = m02 * px + m12 * py + m22 * pz + m32;
+        }
+    }
+
+    /**
+     * Transforms interleaved positions (x, y, z, implicit w = 1) stored in
+     * float buffers by an affine matrix. Absolute indexing is used; the
+     * positions and limits of the buffers are not changed.
+     *
+     * @param m the matrix.
+     * @param in the buffer containing packed positions (3 floats each).
+     * @param inIndex the index of the first input float.
+     * @param out the buffer in which to store the transformed positions.
+     * @param outIndex the index of the first output float.
+     * @param count the number of positions.
+     */
+    public static void transformPositions(final Matrix4fc m, final FloatBuffer in, final int inIndex, final FloatBuffer out, final int outIndex, final int count) {
+        final float m00 = m.m00(), m01 = m.m01(), m02 = m.m02();
+        final float m10 = m.m10(), m11 = m.m11(), m12 = m.m12();
+        final float m20 = m.m20(), m21 = m.m21(), m22 = m.m22();
+        final float m30 = m.m30(), m31 = m.m31(), m32 = m.m32();
+        for (int i = 0, s = inIndex, d = outIndex; i < count; i++, s += 3, d += 3) {
+            final float x = in.get(s), y = in.get(s + 1), z = in.get(s + 2);
+            out.put(d, m00 * x + m10 * y + m20 * z + m30);
+            out.put(d + 1, m01 * x + m11 * y + m21 * z + m31);
+            out.put(d + 2, m02 * x + m12 * y + m22 * z + m32);
+        }
+    }
+
+    /**
+     * Transforms interleaved four component vectors (x, y, z, w) by a general
+     * (possibly projective) matrix.
+     *
+     * @param m the matrix.
+     * @param in the packed vectors (4 floats each).
+     * @param inOffset the index of the first input float.
+     * @param out the array in which to store the transformed vectors (may be
+     * the input array if the offsets are equal).
+     * @param outOffset the index of the first output float.
+     * @param count the number of vectors.
+     */
+    public static void transformVectors(final Matrix4fc m, final float[] in, final int inOffset, final float[] out, final int outOffset, final int count) {
+        final float m00 = m.m00(), m01 = m.m01(), m02 = m.m02(), m03 = m.m03();
+        final float m10 = m.m10(), m11 = m.m11(), m12 = m.m12(), m13 = m.m13();
+        final float m20 = m.m20(), m21 = m.m21(), m22 = m.m22(), m23 = m.m23();
+        final float m30 = m.m30(), m31 = m.m31(), m32 = m.m32(), m33 = m.m33();
+        for (int i = 0, s = inOffset, d = outOffset; i < count; i++, s += 4, d += 4) {
+            final float x = in[s], y = in[s + 1], z = in[s + 2], w = in[s + 3];
+            out[d] = m00 * x + m10 * y + m20 * z + m30 * w;
+            out[d + 1] = m01 * x + m11 * y + m21 * z + m31 * w;
+            out[d + 2] = m02 * x + m12 * y + m22 * z + m32 * w;
+            out[d + 3] = m03 * x + m13 * y + m23 * z + m33 * w;
+        }
+    }
+
+    /**
+     * Multiplies pairs of packed matrices (dest[i] = left[i] * right[i]).
+     *
+     * @param left the packed left-hand matrices.
+     * @param leftOffset the index of the first float of the first left-hand
+     * matrix.
+     * @param right the packed right-hand matrices.
+     * @param rightOffset the index of the first float of the first right-hand
+     * matrix.
+     * @param dest the array in which to store the products. Must not overlap
+     * either input range.
+     * @param destOffset the index of the first float of the first product.
+     * @param count the number of matrix pairs.
+     */
+    public static void mul(final float[] left, final int leftOffset, final float[] right, final int rightOffset, final float[] dest, final int destOffset, final int count) {
+        for (int i = 0; i < count; i++) {
+            mul(left, leftOffset + i * MATRIX_SIZE, right, rightOffset + i * MATRIX_SIZE, dest, destOffset + i * MATRIX_SIZE);
+        }
+    }
+
+    /**
+     * Multiplies a single matrix by many packed matrices (dest[i] = left *
+     * right[i]). Typically used to apply a view-projection or parent matrix to
+     * many model matrices.
+     *
+     * @param left the left-hand matrix.
+     * @param right the packed right-hand matrices.
+     * @param rightOffset the index of the first float of the first right-hand
+     * matrix.
+     * @param dest the array in which to store the products (may be the right
+     * array if the offsets are equal).
+     * @param destOffset the index of the first float of the first product.
+     * @param count the number of right-hand matrices.
+     */
+    public static void mul(final Matrix4fc left, final float[] right, final int rightOffset, final float[] dest, final int destOffset, final int count) {
+        final float a00 = left.m00(), a01 = left.m01(), a02 = left.m02(), a03 = left.m03();
+        final float a10 = left.m10(), a11 = left.m11(), a12 = left.m12(), a13 = left.m13();
+        final float a20 = left.m20(), a21 = left.m21(), a22 = left.m22(), a23 = left.m23();
+        final float a30 = left.m30(), a31 = left.m31(), a32 = left.m32(), a33 = left.m33();
+        for (int i = 0; i < count; i++) {
+            final int r = rightOffset + i * MATRIX_SIZE, d = destOffset + i * MATRIX_SIZE;
+            for (int c = 0; c < 16; c += 4) {
+                final float b0 = right[r + c], b1 = right[r + c + 1], b2 = right[r + c + 2], b3 = right[r + c + 3];
+                dest[d + c] = a00 * b0 + a10 * b1 + a20 * b2 + a30 * b3;
+                dest[d + c + 1] = a01 * b0 + a11 * b1 + a21 * b2 + a31 * b3;
+                dest[d + c + 2] = a02 * b0 + a12 * b1 + a22 * b2 + a32 * b3;
+                dest[d + c + 3] = a03 * b0 + a13 * b1 + a23 * b2 + a33 * b3;
+            }
+        }
+    }
+
+    /**
+     * Multiplies two packed matrices. The destination must not overlap either
+     * input.
+     */
+    private static void mul(final float[] a, final int ao, final float[] b, final int bo, final float[] dest, final int d) {
+        final float a00 = a[ao], a01 = a[ao + 1], a02 = a[ao + 2], a03 = a[ao + 3];
+        final float a10 = a[ao + 4], a11 = a[ao + 5], a12 = a[ao + 6], a13 = a[ao + 7];
+        final float a20 = a[ao + 8], a21 = a[ao + 9], a22 = a[ao + 10], a23 = a[ao + 11];
+        final float a30 = a[ao + 12], a31 = a[ao + 13], a32 = a[ao + 14], a33 = a[ao + 15];
+        for (int c = 0; c < 16; c += 4) {
+            final float b0 = b[bo + c], b1 = b[bo + c + 1], b2 = b[bo + c + 2], b3 = b[bo + c + 3];
+            dest[d + c] = a00 * b0 + a10 * b1 + a20 * b2 + a30 * b3;
+            dest[d + c + 1] = a01 * b0 + a11 * b1 + a21 * b2 + a31 * b3;
+            dest[d + c + 2] = a02 * b0 + a12 * b1 + a22 * b2 + a32 * b3;
+            dest[d + c + 3] = a03 * b0 + a13 * b1 + a23 * b2 + a33 * b3;
+        }
+    }
+
+    /**
+     * Transforms packed bounding boxes by per-box affine matrices and stores
+     * the smallest enclosing axis-aligned boxes. Uses the same center/extent
+     * method as {@link AABB#transform(Matrix4fc, AABB)}. Empty boxes produce
+     * undefined results.
+     *
+     * @param matrices the packed matrices, one per box.
+     * @param matrixOffset the index of the first float of the first matrix.
+     * @param boxes the packed bounding boxes (6 floats each).
+     * @param boxOffset the index of the first float of the first box.
+     * @param out the array in which to store the transformed boxes (may be the
+     * box array if the offsets are equal).
+     * @param outOffset the index of the first float of the first output box.
+     * @param count the number of boxes.
+     */
+    public static void transformAABBs(final float[] matrices, final int matrixOffset, final float[] boxes, final int boxOffset, final float[] out, final int outOffset, final int count) {
+        for (int i = 0; i < count; i++) {
+            final int m = matrixOffset + i * MATRIX_SIZE, b = boxOffset + i * AABB_SIZE, o = outOffset + i * AABB_SIZE;
+            final float cx = (boxes[b] + boxes[b + 3]) * 0.5f, cy = (boxes[b + 1] + boxes[b + 4]) * 0.5f, cz = (boxes[b + 2] + boxes[b + 5]) * 0.5f;
+            final float ex = (boxes[b + 3] - boxes[b]) * 0.5f, ey = (boxes[b + 4] - boxes[b + 1]) * 0.5f, ez = (boxes[b + 5] - boxes[b + 2]) * 0.5f;
+            final float ncx = matrices[m] * cx + matrices[m + 4] * cy + matrices[m + 8] * cz + matrices[m + 12];
+            final float ncy = matrices[m + 1] * cx + matrices[m + 5] * cy + matrices[m + 9] * cz + matrices[m + 13];
+            final float ncz = matrices[m + 2] * cx + matrices[m + 6] * cy + matrices[m + 10] * cz + matrices[m + 14];
+            final float nex = Math.abs(matrices[m]) * ex + Math.abs(matrices[m + 4]) * ey + Math.abs(matrices[m + 8]) * ez;
+            final float ney = Math.abs(matrices[m + 1]) * ex + Math.abs(matrices[m + 5]) * ey + Math.abs(matrices[m + 9]) * ez;
+            final float nez = Math.abs(matrices[m + 2]) * ex + Math.abs(matrices[m + 6]) * ey + Math.abs(matrices[m + 10]) * ez;
+            out[o] = ncx - nex;
+            out[o + 1] = ncy - ney;
+            out[o + 2] = ncz - nez;
+            out[o + 3] = ncx + nex;
+            out[o + 4] = ncy + ney;
+            out[o + 5] = ncz + nez;
+        }
+    }
+
+    /**
+     * Computes the signed distance from a plane (a, b, c, d) to the centers of
+     * many spheres minus their radii. A result less than zero means the sphere
+     * is not completely on the positive side of the plane; a result less than
+     * minus twice the radius means it is completely on the negative side.
+     *
+     * @param a the x-axis component of the normalized plane normal.
+     * @param b the y-axis component of the normalized plane normal.
+     * @param c the z-axis component of the normalized plane normal.
+     * @param d the plane distance.
+     * @param x the x-axis coordinates of the sphere centers.
+     * @param y the y-axis coordinates of the sphere centers.
+     * @param z the z-axis coordinates of the sphere centers.
+     * @param radius the sphere radii.
+     * @param out the array in which to store the distances.
+     * @param count the number of spheres.
+     */
+    public static void planeDistances(final float a, final float b, final float c, final float d, final float[] x, final float[] y, final float[] z, final float[] radius, final float[] out, final int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = a * x[i] + b * y[i] + c * z[i] + d - radius[i];
+        }
+    }
+
+    /**
+     * Tests many spheres against the packed planes of a {@link Frustum} and
+     * stores the indices of the spheres that are not completely outside. The
+     * planes are held in locals and a sphere is rejected as soon as it is
+     * found behind one of them, which in typical scenes is the first or second
+     * plane tested.
+     *
+     * @param planes the packed frustum planes (see {@link Frustum#getPlanes()}).
+     * @param x the x-axis coordinates of the sphere centers.
+     * @param y the y-axis coordinates of the sphere centers.
+     * @param z the z-axis coordinates of the sphere centers.
+     * @param radius the sphere radii.
+     * @param visible the array in which to store the indices of visible
+     * spheres; must be able to hold count indices.
+     * @param count the number of spheres.
+     * @return the number of visible spheres.
+     */
+    public static int cullSpheres(final float[] planes, final float[] x, final float[] y, final float[] z, final float[] radius, final int[] visible, final int count) {
+        final float a0 = planes[0], b0 = planes[1], c0 = planes[2], d0 = planes[3];
+        final float a1 = planes[4], b1 = planes[5], c1 = planes[6], d1 = planes[7];
+        final float a2 = planes[8], b2 = planes[9], c2 = planes[10], d2 = planes[11];
+        final float a3 = planes[12], b3 = planes[13], c3 = planes[14], d3 = planes[15];
+        final float a4 = planes[16], b4 = planes[17], c4 = planes[18], d4 = planes[19];
+        final float a5 = planes[20], b5 = planes[21], c5 = planes[22], d5 = planes[23];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            final float px = x[i], py = y[i], pz = z[i], r = -radius[i];
+            if (a0 * px + b0 * py + c0 * pz + d0 < r || a1 * px + b1 * py + c1 * pz + d1 < r
+                    || a2 * px + b2 * py + c2 * pz + d2 < r || a3 * px + b3 * py + c3 * pz + d3 < r
+                    || a4 * px + b4 * py + c4 * pz + d4 < r || a5 * px + b5 * py + c5 * pz + d5 < r) {
+                continue;
+            }
+            visible[n++] = i;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,151 @@
+package net.cybertekt.math;
+
+import org.joml.Matrix4fc;
+
+/**
+ * Bounding Sphere - (C) Cybertekt Software.
+ *
+ * A sphere that encloses a set of points, defined by a center and a radius. A
+ * sphere with a negative radius is empty. Bounding spheres are mutable and
+ * every operation that produces a sphere stores its result in a destination
+ * sphere so that no objects are allocated.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BoundingSphere {
+
+    /**
+     * Center of the sphere.
+     */
+    public float x, y, z;
+
+    /**
+     * Radius of the sphere. Negative if the sphere is empty.
+     */
+    public float radius = -1f;
+
+    /**
+     * Constructs a new empty bounding sphere.
+     */
+    public BoundingSphere() {
+    }
+
+    /**
+     * Constructs a new bounding sphere from its center and radius.
+     *
+     * @param x the x-axis coordinate of the center.
+     * @param y the y-axis coordinate of the center.
+     * @param z the z-axis coordinate of the center.
+     * @param radius the radius of the sphere.
+     */
+    public BoundingSphere(final float x, final float y, final float z, final float radius) {
+        set(x, y, z, radius);
+    }
+
+    /**
+     * Sets the center and radius of this bounding sphere.
+     *
+     * @param x the x-axis coordinate of the center.
+     * @param y the y-axis coordinate of the center.
+     * @param z the z-axis coordinate of the center.
+     * @param radius the radius of the sphere.
+     * @return this bounding sphere for the purpose of call chaining.
+     */
+    public final BoundingSphere set(final float x, final float y, final float z, final float radius) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.radius = radius;
+        return this;
+    }
+
+    /**
+     * Sets this bounding sphere equal to another bounding sphere.
+     *
+     * @param toSet the bounding sphere to copy.
+     * @return this bounding sphere for the purpose of call chaining.
+     */
+    public final BoundingSphere set(final BoundingSphere toSet) {
+        return set(toSet.x, toSet.y, toSet.z, toSet.radius);
+    }
+
+    /**
+     * Indicates if this bounding sphere does not enclose any point.
+     *
+     * @return true if this bounding sphere is empty.
+     */
+    public final boolean isEmpty() {
+        return radius < 0f;
+    }
+
+    /**
+     * Sets this sphere to enclose a set of packed vertex positions. The center
+     * of the sphere is the center of the bounding box of the points and the
+     * radius is the distance to the farthest point, which is never more than
+     * the half-diagonal of the box and is usually much tighter.
+     *
+     * @param positions the vertex positions.
+     * @param offset the index of the first coordinate of the first vertex.
+     * @param count the number of vertices.
+     * @param stride the number of floats between the starts of two vertices.
+     * @param box the bounding box of the same vertices.
+     * @return this bounding sphere for the purpose of call chaining.
+     */
+    public final BoundingSphere set(final float[] positions, final int offset, final int count, final int stride, final AABB box) {
+        if (count == 0) {
+            return set(0f, 0f, 0f, -1f);
+        }
+        final float cx = box.getCenterX(), cy = box.getCenterY(), cz = box.getCenterZ();
+        float max = 0f;
+        for (int i = 0, p = offset; i < count; i++, p += stride) {
+            final float dx = positions[p] - cx, dy = positions[p + 1] - cy, dz = positions[p + 2] - cz;
+            max = Math.max(max, dx * dx + dy * dy + dz * dz);
+        }
+        return set(cx, cy, cz, (float) Math.sqrt(max));
+    }
+
+    /**
+     * Transforms this bounding sphere by an affine matrix and stores the result
+     * in the destination sphere. The radius is scaled by the largest scale
+     * factor of the matrix so that non-uniform scales remain conservative.
+     *
+     * @param m the affine transformation matrix.
+     * @param dest the bounding sphere in which to store the result (may be this
+     * sphere).
+     * @return the destination bounding sphere.
+     */
+    public final BoundingSphere transform(final Matrix4fc m, final BoundingSphere dest) {
+        if (isEmpty()) {
+            return dest.set(0f, 0f, 0f, -1f);
+        }
+        final float sx = m.m00() * m.m00() + m.m01() * m.m01() + m.m02() * m.m02();
+        final float sy = m.m10() * m.m10() + m.m11() * m.m11() + m.m12() * m.m12();
+        final float sz = m.m20() * m.m20() + m.m21() * m.m21() + m.m22() * m.m22();
+        final float scale = (float) Math.sqrt(Math.max(sx, Math.max(sy, sz)));
+        return dest.set(
+                m.m00() * x + m.m10() * y + m.m20() * z + m.m30(),
+                m.m01() * x + m.m11() * y + m.m21() * z + m.m31(),
+                m.m02() * x + m.m12() * y + m.m22() * z + m.m32(),
+                radius * scale);
+    }
+
+    /**
+     * Transforms this bounding sphere by a {@link Transform} and stores the
+     * result in the destination sphere.
+     *
+     * @param t the transform to apply.
+     * @param dest the bounding sphere in which to store the result (may be this
+     * sphere).
+     * @return the destination bounding sphere.
+     */
+    public final BoundingSphere transform(final Transform t, final BoundingSphere dest) {
+        return transform(t.getTransformMatrix(), dest);
+    }
+
+    @Override
+    public String toString() {
+        return "BoundingSphere [" + x + ", " + y + ", " + z + "] r=" + radius;
+    }
+}
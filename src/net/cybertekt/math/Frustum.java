@@ -0,0 +1,167 @@
+package net.cybertekt.math;
+
+import org.joml.Matrix4fc;
+
+/**
+ * Frustum - (C) Cybertekt Software.
+ *
+ * The six clipping planes of a view volume extracted from a combined
+ * view-projection matrix (Gribb &amp; Hartmann). Planes are stored as packed
+ * normalized (a, b, c, d) floats with normals pointing into the volume so a
+ * point is inside a plane when <i>a*x + b*y + c*z + d &gt;= 0</i>. The tests are
+ * conservative: volumes that lie outside the frustum but straddle two planes
+ * near a corner may be reported as intersecting.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class Frustum {
+
+    /**
+     * Result returned when a volume lies completely outside the frustum.
+     */
+    public static final int OUTSIDE = 0;
+
+    /**
+     * Result returned when a volume is partially inside the frustum.
+     */
+    public static final int INTERSECTS = 1;
+
+    /**
+     * Result returned when a volume lies completely inside the frustum.
+     */
+    public static final int INSIDE = 2;
+
+    /**
+     * Packed planes (left, right, bottom, top, near, far), 4 floats each.
+     */
+    private final float[] planes = new float[24];
+
+    /**
+     * Constructs a new frustum. The planes must be set with
+     * {@link #set(Matrix4fc)} before the frustum is used.
+     */
+    public Frustum() {
+    }
+
+    /**
+     * Constructs a new frustum from a view-projection matrix.
+     *
+     * @param viewProjection the combined projection * view matrix.
+     */
+    public Frustum(final Matrix4fc viewProjection) {
+        set(viewProjection);
+    }
+
+    /**
+     * Extracts the clipping planes from a view-projection matrix. Objects that
+     * are tested against this frustum must be in the space that the matrix
+     * transforms from (usually world space).
+     *
+     * @param m the combined projection * view matrix.
+     * @return this frustum for the purpose of call chaining.
+     */
+    public final Frustum set(final Matrix4fc m) {
+        plane(0, m.m03() + m.m00(), m.m13() + m.m10(), m.m23() + m.m20(), m.m33() + m.m30());
+        plane(1, m.m03() - m.m00(), m.m13() - m.m10(), m.m23() - m.m20(), m.m33() - m.m30());
+        plane(2, m.m03() + m.m01(), m.m13() + m.m11(), m.m23() + m.m21(), m.m33() + m.m31());
+        plane(3, m.m03() - m.m01(), m.m13() - m.m11(), m.m23() - m.m21(), m.m33() - m.m31());
+        plane(4, m.m03() + m.m02(), m.m13() + m.m12(), m.m23() + m.m22(), m.m33() + m.m32());
+        plane(5, m.m03() - m.m02(), m.m13() - m.m12(), m.m23() - m.m22(), m.m33() - m.m32());
+        return this;
+    }
+
+    /**
+     * Tests a bounding box against this frustum.
+     *
+     * @param box the bounding box to test.
+     * @return {@link #OUTSIDE}, {@link #INTERSECTS}, or {@link #INSIDE}.
+     */
+    public final int test(final AABB box) {
+        return test(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+    }
+
+    /**
+     * Tests a bounding box against this frustum. For each plane only the
+     * corner farthest along the plane normal (and the opposite corner) is
+     * evaluated.
+     *
+     * @param minX the minimum x-axis coordinate of the box.
+     * @param minY the minimum y-axis coordinate of the box.
+     * @param minZ the minimum z-axis coordinate of the box.
+     * @param maxX the maximum x-axis coordinate of the box.
+     * @param maxY the maximum y-axis coordinate of the box.
+     * @param maxZ the maximum z-axis coordinate of the box.
+     * @return {@link #OUTSIDE}, {@link #INTERSECTS}, or {@link #INSIDE}.
+     */
+    public final int test(final float minX, final float minY, final float minZ, final float maxX, final float maxY, final float maxZ) {
+        int result = INSIDE;
+        for (int p = 0; p < 24; p += 4) {
+            final float a = planes[p], b = planes[p + 1], c = planes[p + 2], d = planes[p + 3];
+            final float far = a * (a >= 0f ? maxX : minX) + b * (b >= 0f ? maxY : minY) + c * (c >= 0f ? maxZ : minZ) + d;
+            if (far < 0f) {
+                return OUTSIDE;
+            }
+            final float near = a * (a >= 0f ? minX : maxX) + b * (b >= 0f ? minY : maxY) + c * (c >= 0f ? minZ : maxZ) + d;
+            if (near < 0f) {
+                result = INTERSECTS;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tests a bounding sphere against this frustum.
+     *
+     * @param sphere the bounding sphere to test.
+     * @return {@link #OUTSIDE}, {@link #INTERSECTS}, or {@link #INSIDE}.
+     */
+    public final int test(final BoundingSphere sphere) {
+        return test(sphere.x, sphere.y, sphere.z, sphere.radius);
+    }
+
+    /**
+     * Tests a sphere against this frustum.
+     *
+     * @param x the x-axis coordinate of the center.
+     * @param y the y-axis coordinate of the center.
+     * @param z the z-axis coordinate of the center.
+     * @param radius the radius of the sphere.
+     * @return {@link #OUTSIDE}, {@link #INTERSECTS}, or {@link #INSIDE}.
+     */
+    public final int test(final float x, final float y, final float z, final float radius) {
+        int result = INSIDE;
+        for (int p = 0; p < 24; p += 4) {
+            final float distance = planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3];
+            if (distance < -radius) {
+                return OUTSIDE;
+            }
+            if (distance < radius) {
+                result = INTERSECTS;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the packed planes of this frustum (left, right, bottom, top,
+     * near, far), 4 floats each. The returned array must not be modified.
+     *
+     * @return the packed frustum planes.
+     */
+    public final float[] getPlanes() {
+        return planes;
+    }
+
+    /**
+     * Stores a normalized plane.
+     */
+    private void plane(final int index, final float a, final float b, final float c, final float d) {
+        final float inv = 1f / (float) Math.sqrt(a * a + b * b + c * c);
+        planes[index * 4] = a * inv;
+        planes[index * 4 + 1] = b * inv;
+        planes[index * 4 + 2] = c * inv;
+        planes[index * 4 + 3] = d * inv;
+    }
+}
@@ -1,9 +1,11 @@
 package net.cybertekt.math;
 
-import org.joml.Matrix3f;
 import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
 import org.joml.Vector3f;
+import org.joml.Vector3fc;
 
 /**
  * Transform - (C) Cybertekt Software.
@@ -12,6 +14,14 @@ import org.joml.Vector3f;
  * Methods are provided for combining and perform mathematical operations on
  * transforms.
  *
+ * The combined transform matrix is cached and only rebuilt when one of the
+ * components has changed since the matrix was last requested. To guarantee
+ * that the cache can not become stale the components are only exposed as
+ * read-only views and must be modified through the setters of this class.
+ * Every operation that produces a new transform has a <i>Local</i> variant
+ * that modifies this transform and a variant that stores the result in a
+ * destination transform, neither of which allocate any objects.
+ *
  * @version 1.0.0
  * @since 1.0.0
  * @author Andrew Vektor
@@ -21,17 +31,17 @@ public final class Transform {
     /**
      * Location (position) component.
      */
-    private Vector3f translation = new Vector3f().zero();
+    private final Vector3f translation = new Vector3f().zero();
 
     /**
      * Rotation (orientation) component.
      */
-    private Quaternionf rotation = new Quaternionf().identity();
+    private final Quaternionf rotation = new Quaternionf().identity();
 
     /**
      * Scale (size) component.
      */
-    private Vector3f scale = new Vector3f(1f, 1f, 1f);
+    private final Vector3f scale = new Vector3f(1f, 1f, 1f);
 
     /**
      * Location (position) matrix defined as an instance variable to prevent the
@@ -58,6 +68,12 @@ public final class Transform {
      */
     private final Matrix4f transformMatrix = new Matrix4f();
 
+    /**
+     * Indicates that one or more components have changed since the transform
+     * matrix was last generated.
+     */
+    private boolean dirty = true;
+
     /**
      * Constructs a transform with a default translation, rotation, and scale.
      * Default translation is a zero vector, default rotation is an identity
@@ -74,7 +90,7 @@ public final class Transform {
      * @param translation the translation (location) component of this
      * transform.
      */
-    public Transform(final Vector3f translation) {
+    public Transform(final Vector3fc translation) {
         this.translation.set(translation);
     }
 
@@ -86,23 +102,24 @@ public final class Transform {
      * transform.
      * @param rotation the rotation (orientation) component of this transform.
      */
-    public Transform(final Vector3f translation, final Quaternionf rotation) {
+    public Transform(final Vector3fc translation, final Quaternionfc rotation) {
         this.translation.set(translation);
         this.rotation.set(rotation);
     }
 
     /**
      * Constructs a new transform with the provided translation, rotation, and
-     * scale components.
+     * scale components. The components are copied; the parameters are not
+     * referenced by this transform.
      *
      * @param location the translation (location) component of this transform.
      * @param rotation the rotation (orientation) component of this transform.
      * @param scale the scale (size) component of this transform.
      */
-    public Transform(final Vector3f location, final Quaternionf rotation, final Vector3f scale) {
-        this.translation = location;
-        this.rotation = rotation;
-        this.scale = scale;
+    public Transform(final Vector3fc location, final Quaternionfc rotation, final Vector3fc scale) {
+        this.translation.set(location);
+        this.rotation.set(rotation);
+        this.scale.set(scale);
     }
 
     /**
@@ -115,9 +132,7 @@ public final class Transform {
      * is null.
      */
     public Transform(final Transform toCopy) {
-        this.translation.set(toCopy.getTranslation());
-        this.rotation.set(toCopy.getRotation());
-        this.scale.set(toCopy.getScale());
+        set(toCopy);
     }
 
     /**
@@ -126,13 +141,14 @@ public final class Transform {
      * transform is internally modified by this operation. The parameter
      * transform is not modified in any way by this operation.
      *
-     * @param toSet
-     * @return
+     * @param toSet the transform from which to copy.
+     * @return a reference to this transform for the purpose of call chaining.
      */
     public final Transform set(final Transform toSet) {
-        translation.set(toSet.getTranslation());
-        rotation.set(toSet.getRotation());
-        scale.set(toSet.getScale());
+        translation.set(toSet.translation);
+        rotation.set(toSet.rotation);
+        scale.set(toSet.scale);
+        dirty = true;
         return this;
     }
 
@@ -147,23 +163,32 @@ public final class Transform {
      * @return a reference to this transform for the purpose of call chaining.
      */
     public final Transform combine(final Transform parent) {
+        return combine(parent, this);
+    }
 
-        /* Apply Parent Scale To Local Scale */
-        scale.mul(parent.getScale());
-
-        /* Apply Parent Rotation To Local Rotation */
-        parent.getRotation().mul(rotation, rotation);
+    /**
+     * Combines the translation, rotation, and scale of this transform and a
+     * parent transform and stores the result in the destination transform.
+     * This transform is not modified unless it is also the destination. The
+     * destination must not be the parent transform.
+     *
+     * @param parent the parent transform to combine with this transform.
+     * @param dest the transform in which to store the result.
+     * @return the destination transform.
+     */
+    public final Transform combine(final Transform parent, final Transform dest) {
 
-        /* Apply Parent Scale To Local Location */
-        translation.mul(parent.getScale());
+        /* Apply Parent Scale, Rotation, And Location To Local Location */
+        translation.mul(parent.scale, dest.translation).rotate(parent.rotation).add(parent.translation);
 
-        /* Apply Parent Rotation to Local Location */
-        translation.mul(parent.getRotation().get(new Matrix3f()));
+        /* Apply Parent Scale To Local Scale */
+        scale.mul(parent.scale, dest.scale);
 
-        /* Apply Parent Location to Local Location */
-        translation.add(parent.getTranslation());
+        /* Apply Parent Rotation To Local Rotation */
+        parent.rotation.mul(rotation, dest.rotation);
 
-        return this;
+        dest.dirty = true;
+        return dest;
     }
 
     /**
@@ -178,7 +203,25 @@ public final class Transform {
      * this transform.
      */
     public final Transform add(final Transform toAdd) {
-        return new Transform(new Vector3f(translation).add(toAdd.getTranslation()), new Quaternionf(rotation).add(toAdd.getRotation()), new Vector3f(scale).add(toAdd.getScale()));
+        return add(toAdd, new Transform());
+    }
+
+    /**
+     * Adds the components of the parameter transform to the components of this
+     * transform and stores the result in the destination transform. Neither
+     * this transform or the parameter transform are modified unless one of
+     * them is also the destination.
+     *
+     * @param toAdd the transform to add to this transform.
+     * @param dest the transform in which to store the result.
+     * @return the destination transform.
+     */
+    public final Transform add(final Transform toAdd, final Transform dest) {
+        translation.add(toAdd.translation, dest.translation);
+        rotation.add(toAdd.rotation, dest.rotation);
+        scale.add(toAdd.scale, dest.scale);
+        dest.dirty = true;
+        return dest;
     }
 
     /**
@@ -193,10 +236,7 @@ public final class Transform {
      * @return this transform for the purpose of call chaining.
      */
     public final Transform addLocal(final Transform toAdd) {
-        translation.add(toAdd.getTranslation());
-        scale.add(toAdd.getScale());
-        rotation.add(toAdd.getRotation());
-        return this;
+        return add(toAdd, this);
     }
 
     /**
@@ -211,7 +251,25 @@ public final class Transform {
      * multiplied by the parameter transform.
      */
     public final Transform mult(final Transform toMult) {
-        return new Transform(new Vector3f(translation).mul(toMult.getTranslation()), new Quaternionf(rotation).mul(toMult.getRotation()), new Vector3f(scale).mul(toMult.getScale()));
+        return mult(toMult, new Transform());
+    }
+
+    /**
+     * Multiplies the components of this transform by the components of the
+     * parameter transform and stores the result in the destination transform.
+     * Neither this transform or the parameter transform are modified unless
+     * one of them is also the destination.
+     *
+     * @param toMult the transform by which to multiply this transform.
+     * @param dest the transform in which to store the result.
+     * @return the destination transform.
+     */
+    public final Transform mult(final Transform toMult, final Transform dest) {
+        translation.mul(toMult.translation, dest.translation);
+        rotation.mul(toMult.rotation, dest.rotation);
+        scale.mul(toMult.scale, dest.scale);
+        dest.dirty = true;
+        return dest;
     }
 
     /**
@@ -229,10 +287,7 @@ public final class Transform {
      * @return this transform for the purpose of call chaining.
      */
     public final Transform multLocal(final Transform toMult) {
-        translation.mul(toMult.getTranslation());
-        scale.mul(toMult.getScale());
-        rotation.mul(toMult.getRotation());
-        return this;
+        return mult(toMult, this);
     }
 
     /**
@@ -240,8 +295,9 @@ public final class Transform {
      *
      * @param toSet the translation to set.
      */
-    public final void setTranslation(final Vector3f toSet) {
+    public final void setTranslation(final Vector3fc toSet) {
         translation.set(toSet);
+        dirty = true;
     }
 
     /**
@@ -253,14 +309,16 @@ public final class Transform {
      */
     public final void setTranslation(final float x, final float y, final float z) {
         translation.set(x, y, z);
+        dirty = true;
     }
 
     /**
-     * Returns the translation component of this transform.
+     * Returns a read-only view of the translation component of this transform.
+     * Use {@link #setTranslation(float, float, float)} to modify it.
      *
      * @return the translation component of this transform.
      */
-    public final Vector3f getTranslation() {
+    public final Vector3fc getTranslation() {
         return translation;
     }
 
@@ -271,7 +329,7 @@ public final class Transform {
      * @return the translation generated from the translation component of this
      * transform.
      */
-    public final Matrix4f getTranslationMatrix() {
+    public final Matrix4fc getTranslationMatrix() {
         return locationMatrix.translation(translation);
     }
 
@@ -280,16 +338,31 @@ public final class Transform {
      *
      * @param toSet the rotation component of this transform.
      */
-    public final void setRotation(final Quaternionf toSet) {
+    public final void setRotation(final Quaternionfc toSet) {
         rotation.set(toSet);
+        dirty = true;
+    }
+
+    /**
+     * Sets the rotation component of this transform.
+     *
+     * @param x the x component of the rotation quaternion.
+     * @param y the y component of the rotation quaternion.
+     * @param z the z component of the rotation quaternion.
+     * @param w the w component of the rotation quaternion.
+     */
+    public final void setRotation(final float x, final float y, final float z, final float w) {
+        rotation.set(x, y, z, w);
+        dirty = true;
     }
 
     /**
-     * Returns the rotation component of this transform.
+     * Returns a read-only view of the rotation component of this transform.
+     * Use {@link #setRotation(float, float, float, float)} to modify it.
      *
      * @return the rotation rotation component of this transform.
      */
-    public final Quaternionf getRotation() {
+    public final Quaternionfc getRotation() {
         return rotation;
     }
 
@@ -299,7 +372,7 @@ public final class Transform {
      * @return the rotation matrix generated by the rotation component of this
      * transform.
      */
-    public final Matrix4f getRotationMatrix() {
+    public final Matrix4fc getRotationMatrix() {
         return rotationMatrix.rotation(rotation);
     }
 
@@ -308,8 +381,9 @@ public final class Transform {
      *
      * @param toSet the scale vector to set.
      */
-    public final void setScale(final Vector3f toSet) {
+    public final void setScale(final Vector3fc toSet) {
         scale.set(toSet);
+        dirty = true;
     }
 
     /**
@@ -321,6 +395,7 @@ public final class Transform {
      */
     public final void setScale(final float x, final float y, final float z) {
         scale.set(x, y, z);
+        dirty = true;
     }
 
     /**
@@ -333,11 +408,12 @@ public final class Transform {
     }
 
     /**
-     * Returns the scale component of this transform.
+     * Returns a read-only view of the scale component of this transform. Use
+     * {@link #setScale(float, float, float)} to modify it.
      *
      * @return the scale component of this transform.
      */
-    public final Vector3f getScale() {
+    public final Vector3fc getScale() {
         return scale;
     }
 
@@ -346,13 +422,25 @@ public final class Transform {
      *
      * @return the matrix generated from the scale component of this transform.
      */
-    public final Matrix4f getScaleMatrix() {
+    public final Matrix4fc getScaleMatrix() {
         return scaleMatrix.scaling(scale);
     }
 
     /**
-     * Generates a transformation matrix from the combined translation,
-     * rotation, and scale components of this transform.
+     * Indicates if one or more components of this transform have changed since
+     * the transform matrix was last generated.
+     *
+     * @return true if the next call to {@link #getTransformMatrix()} will
+     * rebuild the transform matrix.
+     */
+    public final boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Returns the transformation matrix defined by the combined translation,
+     * rotation, and scale components of this transform. The matrix is cached
+     * and only rebuilt when a component has changed.
      *
      * Mathematically equivalent to:
      * <i>Translation Matrix * Rotation Matrix * Scale Matrix</i>
@@ -360,8 +448,23 @@ public final class Transform {
      * @return the matrix defined by multiplying the translation, rotation, and
      * scale of components of this transform.
      */
-    public final Matrix4f getTransformMatrix() {
-        return transformMatrix.translation(translation).mul(getRotationMatrix()).mul(getScaleMatrix());
+    public final Matrix4fc getTransformMatrix() {
+        if (dirty) {
+            transformMatrix.translationRotateScale(translation, rotation, scale);
+            dirty = false;
+        }
+        return transformMatrix;
+    }
+
+    /**
+     * Copies the transformation matrix of this transform into the destination
+     * matrix.
+     *
+     * @param dest the matrix in which to store the transformation matrix.
+     * @return the destination matrix.
+     */
+    public final Matrix4f getTransformMatrix(final Matrix4f dest) {
+        return dest.set(getTransformMatrix());
     }
 
 }
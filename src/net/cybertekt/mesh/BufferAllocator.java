@@ -0,0 +1,333 @@
+package net.cybertekt.mesh;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Buffer Allocator - (C) Cybertekt Software.
+ *
+ * <p>
+ * Manages the sub-allocation of a fixed capacity range of elements (vertices,
+ * indices, bytes, etc) such as a large OpenGL buffer object. Free space is
+ * tracked as a set of free blocks. Allocations are served using a best-fit
+ * strategy and freed blocks are automatically coalesced with their neighbors.
+ * When the free space becomes too fragmented to satisfy a request the
+ * allocator may be {@link #compact(Relocator) compacted}, which moves every
+ * live {@link Allocation allocation} towards the start of the range.
+ * </p>
+ *
+ * <p>
+ * This class performs bookkeeping only and never touches the memory that it
+ * manages which allows it to be used (and tested) without an OpenGL context.
+ * It is <b>NOT</b> thread-safe.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BufferAllocator {
+
+    /**
+     * Receives the data movements required to complete a
+     * {@link BufferAllocator#compact(Relocator) compaction}. Moves are
+     * reported in ascending order of their source offset and always move data
+     * towards the start of the range.
+     */
+    public interface Relocator {
+
+        /**
+         * Moves a range of elements from one offset to another.
+         *
+         * @param from the current offset of the range.
+         * @param to the new offset of the range.
+         * @param size the number of elements in the range.
+         */
+        public void move(final int from, final int to, final int size);
+    }
+
+    /**
+     * A contiguous range of elements that has been reserved from an allocator.
+     * The offset of an allocation may change when its allocator is compacted.
+     */
+    public static final class Allocation {
+
+        /**
+         * The offset of the first element of this allocation.
+         */
+        private int offset;
+
+        /**
+         * The number of elements reserved by this allocation.
+         */
+        private final int size;
+
+        /**
+         * Indicates if this allocation has been released.
+         */
+        private boolean freed;
+
+        /**
+         * Constructs a new allocation for the specified range.
+         *
+         * @param offset the offset of the first element.
+         * @param size the number of elements.
+         */
+        private Allocation(final int offset, final int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        /**
+         * Returns the offset of the first element of this allocation.
+         *
+         * @return the offset of the first element of this allocation.
+         */
+        public final int getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the number of elements reserved by this allocation.
+         *
+         * @return the number of elements reserved by this allocation.
+         */
+        public final int getSize() {
+            return size;
+        }
+
+        /**
+         * Indicates if this allocation has been released back to its
+         * allocator.
+         *
+         * @return true if this allocation has been freed.
+         */
+        public final boolean isFreed() {
+            return freed;
+        }
+
+        @Override
+        public final String toString() {
+            return "[" + offset + ", " + (offset + size) + ")";
+        }
+    }
+
+    /**
+     * Free blocks ordered by offset (offset to size). Used for coalescing.
+     */
+    private final TreeMap<Integer, Integer> freeByOffset = new TreeMap<>();
+
+    /**
+     * Free blocks ordered by size and then offset. Used for best-fit searches.
+     * Each block is encoded as a long of (size &lt;&lt; 32 | offset).
+     */
+    private final TreeSet<Long> freeBySize = new TreeSet<>(Comparator.naturalOrder());
+
+    /**
+     * Live allocations ordered by offset.
+     */
+    private final TreeMap<Integer, Allocation> allocations = new TreeMap<>();
+
+    /**
+     * The total number of elements managed by this allocator.
+     */
+    private final int capacity;
+
+    /**
+     * The number of elements currently reserved.
+     */
+    private int used;
+
+    /**
+     * Constructs a new allocator that manages the element range [0, capacity).
+     *
+     * @param capacity the total number of elements to manage.
+     */
+    public BufferAllocator(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Allocator capacity must be greater than zero: " + capacity);
+        }
+        this.capacity = capacity;
+        addFree(0, capacity);
+    }
+
+    /**
+     * Reserves a contiguous range of elements.
+     *
+     * @param size the number of elements to reserve.
+     * @return the reserved {@link Allocation allocation} or null if there is
+     * no free block large enough to satisfy the request.
+     */
+    public final Allocation allocate(final int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Allocation size must be greater than zero: " + size);
+        }
+        final Long block = freeBySize.ceiling(((long) size) << 32);
+        if (block == null) {
+            return null;
+        }
+        final int blockOffset = (int) (block & 0xFFFFFFFFL);
+        final int blockSize = (int) (block >>> 32);
+        removeFree(blockOffset, blockSize);
+        if (blockSize > size) {
+            addFree(blockOffset + size, blockSize - size);
+        }
+        final Allocation a = new Allocation(blockOffset, size);
+        allocations.put(blockOffset, a);
+        used += size;
+        return a;
+    }
+
+    /**
+     * Releases an allocation and coalesces the released range with any
+     * adjacent free blocks.
+     *
+     * @param a the allocation to release.
+     */
+    public final void free(final Allocation a) {
+        if (a.freed || allocations.get(a.offset) != a) {
+            throw new IllegalArgumentException("Allocation " + a + " does not belong to this allocator or has already been freed.");
+        }
+        allocations.remove(a.offset);
+        a.freed = true;
+        used -= a.size;
+
+        int offset = a.offset;
+        int size = a.size;
+
+        /* Merge With Previous Free Block */
+        final Map.Entry<Integer, Integer> prev = freeByOffset.floorEntry(offset);
+        if (prev != null && prev.getKey() + prev.getValue() == offset) {
+            removeFree(prev.getKey(), prev.getValue());
+            offset = prev.getKey();
+            size += prev.getValue();
+        }
+
+        /* Merge With Next Free Block */
+        final Integer next = freeByOffset.get(offset + size);
+        if (next != null) {
+            removeFree(offset + size, next);
+            size += next;
+        }
+        addFree(offset, size);
+    }
+
+    /**
+     * Moves every live allocation towards the start of the range so that all
+     * free space forms a single block at the end of the range. The relocator
+     * is notified of each move so that the underlying memory can be updated;
+     * allocation offsets are updated in place.
+     *
+     * @param relocator receives the data movements, in ascending order.
+     * @return the number of allocations that were moved.
+     */
+    public final int compact(final Relocator relocator) {
+        if (freeByOffset.size() <= 1 && (freeByOffset.isEmpty() || freeByOffset.firstKey() == used)) {
+            return 0;
+        }
+        final Allocation[] live = allocations.values().toArray(new Allocation[allocations.size()]);
+        allocations.clear();
+        int cursor = 0;
+        int moved = 0;
+        for (final Allocation a : live) {
+            if (a.offset != cursor) {
+                relocator.move(a.offset, cursor, a.size);
+                a.offset = cursor;
+                moved++;
+            }
+            allocations.put(cursor, a);
+            cursor += a.size;
+        }
+        freeByOffset.clear();
+        freeBySize.clear();
+        if (cursor < capacity) {
+            addFree(cursor, capacity - cursor);
+        }
+        return moved;
+    }
+
+    /**
+     * Returns the total number of elements managed by this allocator.
+     *
+     * @return the capacity of this allocator.
+     */
+    public final int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of elements currently reserved.
+     *
+     * @return the number of reserved elements.
+     */
+    public final int getUsed() {
+        return used;
+    }
+
+    /**
+     * Returns the number of elements not currently reserved.
+     *
+     * @return the number of free elements.
+     */
+    public final int getFree() {
+        return capacity - used;
+    }
+
+    /**
+     * Returns the size of the largest free block. This is the largest
+     * allocation that can currently be made without compacting.
+     *
+     * @return the size of the largest free block.
+     */
+    public final int getLargestFreeBlock() {
+        return freeBySize.isEmpty() ? 0 : (int) (freeBySize.last() >>> 32);
+    }
+
+    /**
+     * Returns the number of free blocks.
+     *
+     * @return the number of free blocks.
+     */
+    public final int getFreeBlockCount() {
+        return freeByOffset.size();
+    }
+
+    /**
+     * Returns the number of live allocations.
+     *
+     * @return the number of live allocations.
+     */
+    public final int getAllocationCount() {
+        return allocations.size();
+    }
+
+    /**
+     * Indicates how fragmented the free space is. Zero indicates that all free
+     * space is contained in a single block, values approaching one indicate
+     * that the free space is scattered across many small blocks.
+     *
+     * @return the fragmentation ratio between 0 and 1.
+     */
+    public final float getFragmentation() {
+        final int free = getFree();
+        return free == 0 ? 0f : 1f - ((float) getLargestFreeBlock() / free);
+    }
+
+    /**
+     * Adds a block to both free block indices.
+     */
+    private void addFree(final int offset, final int size) {
+        freeByOffset.put(offset, size);
+        freeBySize.add((((long) size) << 32) | offset);
+    }
+
+    /**
+     * Removes a block from both free block indices.
+     */
+    private void removeFree(final int offset, final int size) {
+        freeByOffset.remove(offset);
+        freeBySize.remove((((long) size) << 32) | offset);
+    }
+}
@@ -1,104 +1,142 @@
-package net.cybertekt.mesh;
-
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import static org.lwjgl.opengl.ARBVertexArrayObject.glBindVertexArray;
-import static org.lwjgl.opengl.ARBVertexArrayObject.glDeleteVertexArrays;
-import static org.lwjgl.opengl.ARBVertexArrayObject.glGenVertexArrays;
-import static org.lwjgl.opengl.GL11.GL_FLOAT;
-import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_ELEMENT_ARRAY_BUFFER;
-import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
-import static org.lwjgl.opengl.GL15.glBindBuffer;
-import static org.lwjgl.opengl.GL15.glBufferData;
-import static org.lwjgl.opengl.GL15.glDeleteBuffers;
-import static org.lwjgl.opengl.GL15.glGenBuffers;
-import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
-import static org.lwjgl.system.MemoryUtil.memAllocFloat;
-import static org.lwjgl.system.MemoryUtil.memAllocInt;
-import static org.lwjgl.system.MemoryUtil.memFree;
-
-/**
- * Mesh - (C) Cybertekt Software
- *
- *
- * @version 1.0.0
- * @since 1.0.0
- * @author Vektor
- */
-public class Mesh {
-
-    /* Vertex Array Object Identifier */
-    private final int vertexArrayObject;
-
-    /* Vertex Buffer Object Identifier */
-    private final int positionBufferId;
-    
-    /* Vertex Color Buffer Object Identifier */
-    private final int colorBufferId;
-
-    /* Vertex Indices Buffer Object Identifier */
-    private final int indexBufferId;
-
-    /* Number of total vertices in the mesh */
-    private final int vertexCount;
-
-    public Mesh(float[] vertices, float[] colors, int[] indices) {
-        
-        vertexCount = indices.length;
-
-        vertexArrayObject = glGenVertexArrays();
-        glBindVertexArray(vertexArrayObject);
-
-        /* Create Vertex Position Buffer */
-        positionBufferId = glGenBuffers();
-        FloatBuffer vertexBuffer = memAllocFloat(vertices.length);
-        vertexBuffer.put(vertices).flip();
-        glBindBuffer(GL_ARRAY_BUFFER, positionBufferId);
-        glBufferData(GL_ARRAY_BUFFER, vertexBuffer, GL_STATIC_DRAW);
-        glVertexAttribPointer(0, 3, GL_FLOAT, false, 0, 0);
-        memFree(vertexBuffer);
-
-        /* Create Vertex Color Buffer */
-        colorBufferId = glGenBuffers();
-        FloatBuffer colorBuffer = memAllocFloat(colors.length);
-        colorBuffer.put(colors).flip();
-        glBindBuffer(GL_ARRAY_BUFFER, colorBufferId);
-        glBufferData(GL_ARRAY_BUFFER, colorBuffer, GL_STATIC_DRAW);
-        glVertexAttribPointer(1, 3, GL_FLOAT, false, 0, 0);
-        memFree(colorBuffer);
-        
-        /* Create Vertex Indicies Buffer */
-        indexBufferId = glGenBuffers();
-        IntBuffer indexBuffer = memAllocInt(indices.length);
-        indexBuffer.put(indices).flip();
-        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
-        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indexBuffer, GL_STATIC_DRAW);
-        memFree(indexBuffer);
-    }
-
-    /**
-     * Returns the vertex array object identifier.
-     *
-     * @return the vertex array object identifier.
-     */
-    public int getVertexArrayId() {
-        return vertexArrayObject;
-    }
-
-    public int getVertexCount() {
-        return vertexCount;
-    }
-
-    public void destroy() {
-        /* Delete Buffers */
-        glBindBuffer(GL_ARRAY_BUFFER, 0);
-        glDeleteBuffers(positionBufferId);
-        glDeleteBuffers(colorBufferId);
-        glDeleteBuffers(indexBufferId);
-        
-        /* Delete Vertex Array Object */
-        glBindVertexArray(0);
-        glDeleteVertexArrays(vertexArrayObject);
-    }
-}
+package net.cybertekt.mesh;
+
+import net.cybertekt.math.AABB;
+import net.cybertekt.math.BoundingSphere;
+import net.cybertekt.mesh.BufferAllocator.Allocation;
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL32.glDrawElementsBaseVertex;
+
+/**
+ * Mesh - (C) Cybertekt Software
+ *
+ * A range of vertices and indices sub-allocated from a shared
+ * {@link MeshBuffer mesh buffer}. Meshes do not own any OpenGL objects; they
+ * are constructed by {@link MeshBuffer#allocate(float[], float[], int[])} and
+ * are drawn with a base-vertex draw call while the vertex array object of
+ * their buffer is bound.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Vektor
+ */
+public class Mesh {
+
+    /* The buffer from which this mesh was allocated */
+    private final MeshBuffer buffer;
+
+    /* Vertex range within the vertex arena */
+    private final Allocation vertexBlock;
+
+    /* Index range within the index arena */
+    private final Allocation indexBlock;
+
+    /* Model space bounding box */
+    private final AABB bounds;
+
+    /* Model space bounding sphere */
+    private final BoundingSphere sphere;
+
+    Mesh(final MeshBuffer buffer, final Allocation vertexBlock, final Allocation indexBlock, final AABB bounds, final BoundingSphere sphere) {
+        this.buffer = buffer;
+        this.vertexBlock = vertexBlock;
+        this.indexBlock = indexBlock;
+        this.bounds = bounds;
+        this.sphere = sphere;
+    }
+
+    /**
+     * Draws this mesh as a list of triangles. The vertex array object of the
+     * owning {@link MeshBuffer buffer} must be bound.
+     */
+    public final void draw() {
+        glDrawElementsBaseVertex(GL_TRIANGLES, indexBlock.getSize(), GL_UNSIGNED_INT, (long) indexBlock.getOffset() * Integer.BYTES, vertexBlock.getOffset());
+    }
+
+    /**
+     * Returns the {@link MeshBuffer buffer} from which this mesh was
+     * allocated.
+     *
+     * @return the buffer that stores this mesh.
+     */
+    public final MeshBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the vertex array object identifier shared by every mesh in the
+     * same {@link MeshBuffer buffer}.
+     *
+     * @return the vertex array object identifier.
+     */
+    public int getVertexArrayId() {
+        return buffer.getVertexArrayId();
+    }
+
+    /**
+     * Returns the number of indices drawn by this mesh.
+     *
+     * @return the number of indices drawn by this mesh.
+     */
+    public int getVertexCount() {
+        return indexBlock.getSize();
+    }
+
+    /**
+     * Returns the offset of the first vertex of this mesh within the vertex
+     * arena. Used as the base vertex of draw calls.
+     *
+     * @return the base vertex of this mesh.
+     */
+    public final int getBaseVertex() {
+        return vertexBlock.getOffset();
+    }
+
+    /**
+     * Returns the offset of the first index of this mesh within the index
+     * arena.
+     *
+     * @return the first index of this mesh.
+     */
+    public final int getFirstIndex() {
+        return indexBlock.getOffset();
+    }
+
+    /**
+     * Returns the model space bounding box of this mesh. The returned box is
+     * shared and must not be modified; use
+     * {@link AABB#transform(net.cybertekt.math.Transform, AABB)} to obtain
+     * world space bounds.
+     *
+     * @return the model space bounding box.
+     */
+    public final AABB getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the model space bounding sphere of this mesh. The returned
+     * sphere is shared and must not be modified.
+     *
+     * @return the model space bounding sphere.
+     */
+    public final BoundingSphere getBoundingSphere() {
+        return sphere;
+    }
+
+    final Allocation getVertexBlock() {
+        return vertexBlock;
+    }
+
+    final Allocation getIndexBlock() {
+        return indexBlock;
+    }
+
+    /**
+     * Releases the vertex and index ranges of this mesh back to its
+     * {@link MeshBuffer buffer}.
+     */
+    public void destroy() {
+        buffer.release(this);
+    }
+}
@@ -0,0 +1,292 @@
+package net.cybertekt.mesh;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import net.cybertekt.exception.OGLException;
+import net.cybertekt.math.AABB;
+import net.cybertekt.math.BoundingSphere;
+import net.cybertekt.mesh.BufferAllocator.Allocation;
+import static org.lwjgl.opengl.ARBVertexArrayObject.glBindVertexArray;
+import static org.lwjgl.opengl.ARBVertexArrayObject.glDeleteVertexArrays;
+import static org.lwjgl.opengl.ARBVertexArrayObject.glGenVertexArrays;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_DYNAMIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_ELEMENT_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL31.GL_COPY_READ_BUFFER;
+import static org.lwjgl.opengl.GL31.GL_COPY_WRITE_BUFFER;
+import static org.lwjgl.opengl.GL31.glCopyBufferSubData;
+import static org.lwjgl.system.MemoryUtil.memAllocFloat;
+import static org.lwjgl.system.MemoryUtil.memAllocInt;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Mesh Buffer - (C) Cybertekt Software.
+ *
+ * <p>
+ * A large vertex arena and index arena shared by many {@link Mesh meshes}.
+ * Each mesh buffer owns a single vertex array object, a single interleaved
+ * vertex buffer (position and color) and a single index buffer. Meshes are
+ * sub-allocated from these buffers using a {@link BufferAllocator} and are
+ * drawn using base-vertex draw calls, which means that every mesh stored in a
+ * buffer can be rendered while only binding the vertex array object once.
+ * </p>
+ *
+ * <p>
+ * When the free space of an arena becomes too fragmented to satisfy a request
+ * the arena is compacted on the GPU before the allocation is retried. Mesh
+ * buffers must only be used from the thread that owns the OpenGL context.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class MeshBuffer {
+
+    /**
+     * The number of floats that define a single vertex (position xyz, color
+     * rgb).
+     */
+    public static final int VERTEX_SIZE = 6;
+
+    /**
+     * The size (in bytes) of a single interleaved vertex.
+     */
+    public static final int VERTEX_STRIDE = VERTEX_SIZE * Float.BYTES;
+
+    /**
+     * Vertex Array Object Identifier shared by every mesh in this buffer.
+     */
+    private final int vertexArrayObject;
+
+    /**
+     * Interleaved Vertex Buffer Object Identifier.
+     */
+    private final int vertexBufferId;
+
+    /**
+     * Vertex Index Buffer Object Identifier.
+     */
+    private final int indexBufferId;
+
+    /**
+     * Bookkeeping for the vertex arena (in vertices).
+     */
+    private final BufferAllocator vertexAllocator;
+
+    /**
+     * Bookkeeping for the index arena (in indices).
+     */
+    private final BufferAllocator indexAllocator;
+
+    /**
+     * Constructs a new mesh buffer with room for the specified number of
+     * vertices and indices. Both arenas are allocated on the GPU immediately.
+     *
+     * @param vertexCapacity the maximum number of vertices.
+     * @param indexCapacity the maximum number of indices.
+     */
+    public MeshBuffer(final int vertexCapacity, final int indexCapacity) {
+        vertexAllocator = new BufferAllocator(vertexCapacity);
+        indexAllocator = new BufferAllocator(indexCapacity);
+
+        vertexArrayObject = glGenVertexArrays();
+        glBindVertexArray(vertexArrayObject);
+
+        /* Create Interleaved Vertex Buffer */
+        vertexBufferId = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBufferId);
+        glBufferData(GL_ARRAY_BUFFER, (long) vertexCapacity * VERTEX_STRIDE, GL_DYNAMIC_DRAW);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, VERTEX_STRIDE, 0);
+        glVertexAttribPointer(1, 3, GL_FLOAT, false, VERTEX_STRIDE, 3 * Float.BYTES);
+        glEnableVertexAttribArray(0);
+        glEnableVertexAttribArray(1);
+
+        /* Create Vertex Index Buffer (Binding Is Stored In The VAO) */
+        indexBufferId = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, (long) indexCapacity * Integer.BYTES, GL_DYNAMIC_DRAW);
+
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    /**
+     * Uploads a new mesh into this buffer. Indices are relative to the first
+     * vertex of the mesh and do not need to be offset by the caller. The model
+     * space bounds of the mesh are computed from the vertex positions.
+     *
+     * @param vertices the vertex positions (3 floats per vertex).
+     * @param colors the vertex colors (3 floats per vertex).
+     * @param indices the vertex indices.
+     * @return the {@link Mesh mesh} that references the uploaded data.
+     * @throws OGLException if there is not enough free space in this buffer.
+     */
+    public final Mesh allocate(final float[] vertices, final float[] colors, final int[] indices) throws OGLException {
+        if (vertices.length % 3 != 0 || colors.length != vertices.length) {
+            throw new IllegalArgumentException("Vertex positions and colors must both contain 3 floats per vertex.");
+        }
+        final int vertexCount = vertices.length / 3;
+
+        final Allocation vertexBlock = reserve(vertexAllocator, vertexBufferId, vertexCount, VERTEX_STRIDE);
+        final Allocation indexBlock;
+        try {
+            indexBlock = reserve(indexAllocator, indexBufferId, indices.length, Integer.BYTES);
+        } catch (final OGLException e) {
+            vertexAllocator.free(vertexBlock);
+            throw e;
+        }
+
+        /* Upload Interleaved Vertex Data */
+        final FloatBuffer vertexBuffer = memAllocFloat(vertexCount * VERTEX_SIZE);
+        for (int i = 0; i < vertices.length; i += 3) {
+            vertexBuffer.put(vertices, i, 3).put(colors, i, 3);
+        }
+        vertexBuffer.flip();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBufferId);
+        glBufferSubData(GL_ARRAY_BUFFER, (long) vertexBlock.getOffset() * VERTEX_STRIDE, vertexBuffer);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        memFree(vertexBuffer);
+
+        /* Upload Index Data */
+        final IntBuffer indexBuffer = memAllocInt(indices.length);
+        indexBuffer.put(indices).flip();
+        glBindBuffer(GL_COPY_WRITE_BUFFER, indexBufferId);
+        glBufferSubData(GL_COPY_WRITE_BUFFER, (long) indexBlock.getOffset() * Integer.BYTES, indexBuffer);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        memFree(indexBuffer);
+
+        /* Compute Model Space Bounds */
+        final AABB bounds = new AABB().set(vertices, 0, vertexCount, 3);
+        final BoundingSphere sphere = new BoundingSphere().set(vertices, 0, vertexCount, 3, bounds);
+
+        return new Mesh(this, vertexBlock, indexBlock, bounds, sphere);
+    }
+
+    /**
+     * Releases the space used by a mesh. Called by {@link Mesh#destroy()}.
+     *
+     * @param mesh the mesh to release.
+     */
+    final void release(final Mesh mesh) {
+        vertexAllocator.free(mesh.getVertexBlock());
+        indexAllocator.free(mesh.getIndexBlock());
+    }
+
+    /**
+     * Compacts both arenas so that all free space forms a single block at the
+     * end of each buffer. Meshes remain valid as their offsets are updated in
+     * place.
+     */
+    public final void compact() {
+        compact(vertexAllocator, vertexBufferId, VERTEX_STRIDE);
+        compact(indexAllocator, indexBufferId, Integer.BYTES);
+    }
+
+    /**
+     * Binds the vertex array object shared by every mesh in this buffer.
+     */
+    public final void bind() {
+        glBindVertexArray(vertexArrayObject);
+    }
+
+    /**
+     * Unbinds the vertex array object.
+     */
+    public final void unbind() {
+        glBindVertexArray(0);
+    }
+
+    /**
+     * Returns the vertex array object identifier shared by every mesh in this
+     * buffer.
+     *
+     * @return the vertex array object identifier.
+     */
+    public final int getVertexArrayId() {
+        return vertexArrayObject;
+    }
+
+    /**
+     * Returns the bookkeeping for the vertex arena.
+     *
+     * @return the vertex arena allocator.
+     */
+    public final BufferAllocator getVertexAllocator() {
+        return vertexAllocator;
+    }
+
+    /**
+     * Returns the bookkeeping for the index arena.
+     *
+     * @return the index arena allocator.
+     */
+    public final BufferAllocator getIndexAllocator() {
+        return indexAllocator;
+    }
+
+    /**
+     * Deletes the buffers and vertex array object. Every mesh allocated from
+     * this buffer becomes invalid.
+     */
+    public final void destroy() {
+        /* Delete Buffers */
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glDeleteBuffers(vertexBufferId);
+        glDeleteBuffers(indexBufferId);
+
+        /* Delete Vertex Array Object */
+        glBindVertexArray(0);
+        glDeleteVertexArrays(vertexArrayObject);
+    }
+
+    /**
+     * Reserves space from an arena, compacting the arena first if the free
+     * space is sufficient but too fragmented.
+     */
+    private Allocation reserve(final BufferAllocator allocator, final int bufferId, final int size, final int stride) throws OGLException {
+        Allocation a = allocator.allocate(size);
+        if (a == null && allocator.getFree() >= size) {
+            compact(allocator, bufferId, stride);
+            a = allocator.allocate(size);
+        }
+        if (a == null) {
+            throw new OGLException("Mesh buffer out of space: requested " + size + " elements, " + allocator.getFree() + " of " + allocator.getCapacity() + " free.");
+        }
+        return a;
+    }
+
+    /**
+     * Compacts an arena and moves the affected ranges on the GPU. Each range
+     * is staged through a temporary buffer because source and destination
+     * ranges within the same buffer may overlap.
+     */
+    private void compact(final BufferAllocator allocator, final int bufferId, final int stride) {
+        final int scratchId = glGenBuffers();
+        glBindBuffer(GL_COPY_WRITE_BUFFER, scratchId);
+        glBufferData(GL_COPY_WRITE_BUFFER, (long) allocator.getUsed() * stride, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_COPY_READ_BUFFER, bufferId);
+
+        allocator.compact((from, to, size) -> {
+            final long bytes = (long) size * stride;
+            glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, (long) from * stride, 0, bytes);
+            glBindBuffer(GL_COPY_READ_BUFFER, scratchId);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, bufferId);
+            glCopyBufferSubData(GL_COPY_READ_BUFFER, GL_COPY_WRITE_BUFFER, 0, (long) to * stride, bytes);
+            glBindBuffer(GL_COPY_READ_BUFFER, bufferId);
+            glBindBuffer(GL_COPY_WRITE_BUFFER, scratchId);
+        });
+
+        glBindBuffer(GL_COPY_READ_BUFFER, 0);
+        glBindBuffer(GL_COPY_WRITE_BUFFER, 0);
+        glDeleteBuffers(scratchId);
+    }
+}
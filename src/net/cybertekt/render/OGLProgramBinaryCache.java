@@ -0,0 +1,536 @@
+package net.cybertekt.render;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import net.cybertekt.crypto.SHA256;
+import net.cybertekt.util.Encoder;
+import static org.lwjgl.opengl.GL11.GL_RENDERER;
+import static org.lwjgl.opengl.GL11.GL_TRUE;
+import static org.lwjgl.opengl.GL11.GL_VENDOR;
+import static org.lwjgl.opengl.GL11.GL_VERSION;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL11.glGetString;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20.glCreateProgram;
+import static org.lwjgl.opengl.GL20.glDeleteProgram;
+import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL41.GL_NUM_PROGRAM_BINARY_FORMATS;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_LENGTH;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glGetProgramBinary;
+import static org.lwjgl.opengl.GL41.glProgramBinary;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
+import org.lwjgl.BufferUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OGL Program Binary Cache - (C) Cybertekt Software
+ *
+ * Stores linked shader programs on disk with <code>glGetProgramBinary</code>
+ * and restores them on the next launch with <code>glProgramBinary</code>, so
+ * programs that have not changed skip compilation and linking entirely. The
+ * cache is opt-in, it is used by an {@link OGLProgramCache program cache} once
+ * {@link OGLProgramCache#setBinaryCache(OGLProgramBinaryCache) assigned}.
+ *
+ * <p>
+ * Each entry is a file in the cache directory named after the hash of the
+ * {@link OGLProgramCache#getKey(java.util.Map, net.cybertekt.asset.shader.OGLShader...) program key}
+ * and the driver vendor, renderer and version, so a driver update or a change
+ * to any shader source simply misses. The file repeats the program key and
+ * driver and carries a SHA-256 checksum of the binary. An entry whose header
+ * or checksum does not match, or that the driver refuses to link, is deleted
+ * and reported as a miss so the caller falls back to compiling from source.
+ * </p>
+ *
+ * <p>
+ * All OpenGL calls go through a {@link Backend backend}, so storage, keying
+ * and invalidation can be exercised without a GPU. Like the program cache,
+ * the {@link #GL OpenGL backend} must only be used from the thread the context
+ * is current on.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class OGLProgramBinaryCache {
+
+    /**
+     * Static {@link org.slf4j.Logger logger} for class debugging.
+     */
+    public static final Logger log = LoggerFactory.getLogger(OGLProgramBinaryCache.class);
+
+    /**
+     * Default cache directory, relative to the working directory.
+     */
+    public static final String DEFAULT_DIR = System.getProperty("user.dir").replace('\\', '/') + "/cache/shaders/";
+
+    /**
+     * File extension of cache entries.
+     */
+    public static final String EXTENSION = ".bin";
+
+    /**
+     * Identifies a cache entry, "CTPB".
+     */
+    private static final int MAGIC = 0x43545042;
+
+    /**
+     * Version of the cache entry format.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * The OpenGL calls used by the cache.
+     */
+    public interface Backend {
+
+        /**
+         * Returns a string that identifies the driver, binaries are only valid
+         * for the driver that produced them.
+         *
+         * @return the vendor, renderer and version of the driver.
+         */
+        String getDriver();
+
+        /**
+         * Indicates if the driver supports at least one program binary
+         * format.
+         *
+         * @return true if program binaries are supported.
+         */
+        boolean isSupported();
+
+        /**
+         * Marks a program that is about to be linked as retrievable.
+         *
+         * @param program the program identifier.
+         */
+        void setRetrievable(final int program);
+
+        /**
+         * Retrieves the binary of a linked program.
+         *
+         * @param program the program identifier.
+         * @return the binary, or null if the driver does not provide one.
+         */
+        Binary getBinary(final int program);
+
+        /**
+         * Creates a new program from a binary.
+         *
+         * @param binary the binary to load.
+         * @return the identifier of the linked program, or zero if the driver
+         * rejected the binary.
+         */
+        int loadBinary(final Binary binary);
+    }
+
+    /**
+     * Backend that makes the OpenGL calls on the current context.
+     */
+    public static final Backend GL = new Backend() {
+        @Override
+        public String getDriver() {
+            return glGetString(GL_VENDOR) + " | " + glGetString(GL_RENDERER) + " | " + glGetString(GL_VERSION);
+        }
+
+        @Override
+        public boolean isSupported() {
+            return glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        }
+
+        @Override
+        public void setRetrievable(final int program) {
+            glProgramParameteri(program, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
+
+        @Override
+        public Binary getBinary(final int program) {
+            final int length = glGetProgrami(program, GL_PROGRAM_BINARY_LENGTH);
+            if (length <= 0) {
+                return null;
+            }
+            final IntBuffer written = BufferUtils.createIntBuffer(1), format = BufferUtils.createIntBuffer(1);
+            final ByteBuffer buffer = BufferUtils.createByteBuffer(length);
+            glGetProgramBinary(program, written, format, buffer);
+            final byte[] data = new byte[written.get(0)];
+            buffer.get(data);
+            return new Binary(format.get(0), data);
+        }
+
+        @Override
+        public int loadBinary(final Binary binary) {
+            final int program = glCreateProgram();
+            final ByteBuffer buffer = BufferUtils.createByteBuffer(binary.getData().length);
+            buffer.put(binary.getData()).flip();
+            glProgramBinary(program, binary.getFormat(), buffer);
+            if (glGetProgrami(program, GL_LINK_STATUS) == 0) {
+                glDeleteProgram(program);
+                return 0;
+            }
+            return program;
+        }
+    };
+
+    /**
+     * The directory entries are stored in.
+     */
+    private final Path dir;
+
+    /**
+     * The OpenGL calls used by the cache.
+     */
+    private final Backend backend;
+
+    /**
+     * The driver string, read from the backend on first use.
+     */
+    private String driver;
+
+    /**
+     * Indicates if the driver supports program binaries, read from the backend
+     * on first use.
+     */
+    private Boolean supported;
+
+    /**
+     * Statistics - entries loaded, missing, rejected and stored.
+     */
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong(), rejected = new AtomicLong(), stored = new AtomicLong();
+
+    /**
+     * Constructs a new cache in the {@link #DEFAULT_DIR default directory}
+     * that uses the current OpenGL context.
+     */
+    public OGLProgramBinaryCache() {
+        this(Paths.get(DEFAULT_DIR), GL);
+    }
+
+    /**
+     * Constructs a new cache in the specified directory.
+     *
+     * @param dir the directory to store entries in, created on the first
+     * store.
+     * @param backend the OpenGL calls used by the cache.
+     */
+    public OGLProgramBinaryCache(final Path dir, final Backend backend) {
+        this.dir = dir;
+        this.backend = backend;
+    }
+
+    /**
+     * Indicates if the driver supports program binaries. A cache on a driver
+     * without support always misses and never stores.
+     *
+     * @return true if program binaries are supported.
+     */
+    public final boolean isSupported() {
+        if (supported == null) {
+            supported = backend.isSupported();
+            if (!supported) {
+                log.info("Program binaries are not supported by {}", getDriver());
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Returns the driver string entries are keyed by.
+     *
+     * @return the vendor, renderer and version of the driver.
+     */
+    public final String getDriver() {
+        if (driver == null) {
+            driver = backend.getDriver();
+        }
+        return driver;
+    }
+
+    /**
+     * Marks a program that is about to be linked so its binary can be
+     * {@link #store(java.lang.String, int) stored} once it is linked.
+     *
+     * @param program the program identifier.
+     */
+    public final void prepare(final int program) {
+        if (isSupported()) {
+            backend.setRetrievable(program);
+        }
+    }
+
+    /**
+     * Creates a linked program from the entry stored for the specified
+     * program key.
+     *
+     * @param key the program key.
+     * @return the identifier of the linked program, or zero if there is no
+     * valid entry and the program must be compiled from source.
+     */
+    public final int load(final String key) {
+        if (!isSupported()) {
+            return 0;
+        }
+        final Path file = getFile(key);
+        final byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file);
+        } catch (final NoSuchFileException e) {
+            misses.incrementAndGet();
+            return 0;
+        } catch (final IOException e) {
+            log.warn("Unable to read program binary {} - {}", file, e.getMessage());
+            misses.incrementAndGet();
+            return 0;
+        }
+
+        final Binary binary = decode(key, bytes);
+        final int program = binary == null ? 0 : backend.loadBinary(binary);
+        if (program == 0) {
+            log.info("Discarding stale program binary {}", file);
+            rejected.incrementAndGet();
+            delete(file);
+            return 0;
+        }
+        hits.incrementAndGet();
+        return program;
+    }
+
+    /**
+     * Stores the binary of a linked program under the specified program key,
+     * replacing any existing entry. The entry is written to a temporary file
+     * and moved into place so a crash never leaves a partial entry behind.
+     *
+     * @param key the program key.
+     * @param program the identifier of a linked program.
+     * @return true if the binary was stored.
+     */
+    public final boolean store(final String key, final int program) {
+        if (!isSupported()) {
+            return false;
+        }
+        final Binary binary = backend.getBinary(program);
+        if (binary == null) {
+            return false;
+        }
+        final Path file = getFile(key);
+        try {
+            Files.createDirectories(dir);
+            final Path temp = Files.createTempFile(dir, "program", ".tmp");
+            try {
+                Files.write(temp, encode(key, binary));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            stored.incrementAndGet();
+            return true;
+        } catch (final IOException e) {
+            log.warn("Unable to store program binary {} - {}", file, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deletes the entry stored for the specified program key.
+     *
+     * @param key the program key.
+     */
+    public final void invalidate(final String key) {
+        delete(getFile(key));
+    }
+
+    /**
+     * Deletes every entry in the cache directory, including entries stored by
+     * other drivers.
+     */
+    public final void clear() {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            for (final Path file : files) {
+                delete(file);
+            }
+        } catch (final IOException e) {
+            log.warn("Unable to clear program binary cache {} - {}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the file the entry for the specified program key is stored in
+     * for the current driver.
+     *
+     * @param key the program key.
+     * @return the path of the entry.
+     */
+    public final Path getFile(final String key) {
+        final MessageDigest digest = SHA256.digest();
+        digest.update(key.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(getDriver().getBytes(StandardCharsets.UTF_8));
+        return dir.resolve(Encoder.toHex(digest.digest()) + EXTENSION);
+    }
+
+    /**
+     * Writes an entry - magic, format version, program key, driver, binary
+     * format, binary length, binary and the checksum of the binary.
+     */
+    private byte[] encode(final String key, final Binary binary) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(binary.getData().length + 256);
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(key);
+            out.writeUTF(getDriver());
+            out.writeInt(binary.getFormat());
+            out.writeInt(binary.getData().length);
+            out.write(binary.getData());
+            out.write(SHA256.hash(binary.getData()));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads and validates an entry.
+     *
+     * @return the binary, or null if the entry is corrupt or was stored for a
+     * different key or driver.
+     */
+    private Binary decode(final String key, final byte[] bytes) {
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(key) || !in.readUTF().equals(getDriver())) {
+                return null;
+            }
+            final int format = in.readInt();
+            final int length = in.readInt();
+            if (length < 0 || length != in.available() - SHA256.SIZE) {
+                return null;
+            }
+            final byte[] data = new byte[length], checksum = new byte[SHA256.SIZE];
+            in.readFully(data);
+            in.readFully(checksum);
+            return Arrays.equals(checksum, SHA256.hash(data)) ? new Binary(format, data) : null;
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes a file, logging rather than throwing on failure.
+     */
+    private static void delete(final Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (final IOException e) {
+            log.warn("Unable to delete program binary {} - {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the directory entries are stored in.
+     *
+     * @return the cache directory.
+     */
+    public final Path getDir() {
+        return dir;
+    }
+
+    /**
+     * Returns the number of programs loaded from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public final long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of programs with no entry in the cache.
+     *
+     * @return the number of cache misses.
+     */
+    public final long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of entries discarded because they were corrupt,
+     * stored for a different key or driver, or rejected by the driver.
+     *
+     * @return the number of rejected entries.
+     */
+    public final long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of entries stored.
+     *
+     * @return the number of stored entries.
+     */
+    public final long getStored() {
+        return stored.get();
+    }
+
+    /**
+     * A program binary and the driver specific format it is encoded in.
+     */
+    public static final class Binary {
+
+        /**
+         * The driver specific binary format.
+         */
+        private final int format;
+
+        /**
+         * The binary data.
+         */
+        private final byte[] data;
+
+        /**
+         * Constructs a new binary.
+         *
+         * @param format the driver specific binary format.
+         * @param data the binary data.
+         */
+        public Binary(final int format, final byte[] data) {
+            this.format = format;
+            this.data = data;
+        }
+
+        /**
+         * Returns the driver specific binary format.
+         *
+         * @return the binary format.
+         */
+        public final int getFormat() {
+            return format;
+        }
+
+        /**
+         * Returns the binary data.
+         *
+         * @return the binary data.
+         */
+        public final byte[] getData() {
+            return data;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package net.cybertekt.render;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.cybertekt.asset.AssetKey;
+import net.cybertekt.asset.AssetManager;
+import net.cybertekt.asset.shader.OGLShader;
+import net.cybertekt.asset.shader.ShaderPreprocessor;
+import net.cybertekt.exception.OGLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OGL Program Cache - (C) Cybertekt Software
+ *
+ * Shares linked {@link OGLShaderProgram shader programs} between everything
+ * that renders with the same OpenGL context. Programs are keyed by the hash of
+ * their shader sources and the <code>#define</code> permutation applied to
+ * them, so each variant is compiled and linked only once no matter how many
+ * times it is requested, and shaders with identical source for the same
+ * stage are compiled once and attached to every program that uses them. An optional
+ * {@link OGLProgramBinaryCache binary cache} carries linked programs over to
+ * the next launch.
+ *
+ * <p>
+ * Programs whose shaders have changed can be {@link #reload(java.util.Collection) rebuilt}
+ * in place: the shaders are loaded again through the {@link AssetManager},
+ * linked with the same definitions, and the new OpenGL program is swapped into
+ * the existing {@link OGLShaderProgram} so references to it stay valid. A
+ * program that fails to rebuild keeps running with its previous version.
+ * </p>
+ *
+ * <p>
+ * OpenGL objects belong to the context that created them, so there must be one
+ * cache per context and it must only be used from the thread the context is
+ * current on. This class is <b>NOT</b> thread-safe.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class OGLProgramCache {
+
+    /**
+     * Static {@link org.slf4j.Logger logger} for class debugging.
+     */
+    public static final Logger log = LoggerFactory.getLogger(OGLProgramCache.class);
+
+    /**
+     * Linked programs keyed by their {@link #getKey(java.util.Map, OGLShader...) key}.
+     */
+    private final Map<String, Entry> programs = new HashMap<>();
+
+    /**
+     * Every linked program in the order it was linked.
+     */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Compiled shaders keyed by their {@link #stageKey(OGLShader) stage and
+     * source hash}.
+     */
+    private final Map<String, OGLShader> shaders = new HashMap<>();
+
+    /**
+     * Restores and stores program binaries, null if disabled.
+     */
+    private OGLProgramBinaryCache binaries;
+
+    /**
+     * The number of requests answered from the cache.
+     */
+    private long hits;
+
+    /**
+     * The number of requests that linked a new program or restored one from
+     * the binary cache.
+     */
+    private long misses;
+
+    /**
+     * Returns the program linked from the specified shaders, linking it if it
+     * is not already cached.
+     *
+     * @param name the name of the program if it has to be linked.
+     * @param shaders the {@link OGLShader shaders} to link.
+     * @return the linked {@link OGLShaderProgram program}.
+     * @throws OGLException if a shader fails to compile or the program fails
+     * to link.
+     */
+    public final OGLShaderProgram get(final String name, final OGLShader... shaders) throws OGLException {
+        return get(name, Collections.emptyMap(), shaders);
+    }
+
+    /**
+     * Returns the program linked from the {@link OGLShader#getVariant(java.util.Map) variants}
+     * of the specified shaders with the specified definitions, compiling and
+     * linking it if it is not already cached.
+     *
+     * @param name the name of the program if it has to be linked.
+     * @param defines the definitions to inject into every shader.
+     * @param shaders the {@link OGLShader shaders} to link.
+     * @return the linked {@link OGLShaderProgram program}.
+     * @throws OGLException if a shader fails to compile or the program fails
+     * to link.
+     */
+    public final OGLShaderProgram get(final String name, final Map<String, String> defines, final OGLShader... shaders) throws OGLException {
+        final OGLShader[] variants = variants(defines, shaders);
+        final String key = ShaderPreprocessor.hash(variants);
+        final Entry cached = programs.get(key);
+        if (cached != null) {
+            hits++;
+            return cached.program;
+        }
+
+        final Entry entry = new Entry(name, defines, shaders, variants, link(name, key, variants), key);
+        programs.put(key, entry);
+        entries.add(entry);
+        misses++;
+        return entry.program;
+    }
+
+    /**
+     * Restores a program from the binary cache or compiles and links it from
+     * the shader variants.
+     */
+    private OGLShaderProgram link(final String name, final String key, final OGLShader[] variants) throws OGLException {
+        /* Restore The Program From A Stored Binary */
+        if (binaries != null) {
+            final int id = binaries.load(key);
+            if (id != 0) {
+                log.debug("Restored {} program {} [{}]", name, id, key);
+                return new OGLShaderProgram(name, id);
+            }
+        }
+
+        /* Share Compiled Shaders With Identical Source And Stage */
+        for (int i = 0; i < variants.length; i++) {
+            final OGLShader compiled = this.shaders.putIfAbsent(stageKey(variants[i]), variants[i]);
+            if (compiled != null) {
+                variants[i] = compiled;
+            }
+        }
+
+        final OGLShaderProgram program = new OGLShaderProgram(name, true, binaries, variants);
+        if (binaries != null) {
+            binaries.store(key, program.getId());
+        }
+        log.debug("Linked {} program {} [{}]", name, program.getId(), key);
+        return program;
+    }
+
+    /**
+     * Returns the key a program linked from the specified shaders and
+     * definitions is cached under. Computing the key does not require an
+     * OpenGL context.
+     *
+     * @param defines the definitions to inject into every shader.
+     * @param shaders the {@link OGLShader shaders} to link.
+     * @return the hex encoded hash of the shader variants.
+     */
+    public static String getKey(final Map<String, String> defines, final OGLShader... shaders) {
+        return ShaderPreprocessor.hash(variants(defines, shaders));
+    }
+
+    /**
+     * Returns the key a compiled shader is shared under. The same source
+     * compiled for another stage is a different shader object.
+     */
+    private static String stageKey(final OGLShader shader) {
+        return shader.getType().name() + ':' + shader.getHash();
+    }
+
+    /**
+     * Returns the variant of each shader for the specified definitions.
+     */
+    private static OGLShader[] variants(final Map<String, String> defines, final OGLShader... shaders) {
+        final OGLShader[] variants = new OGLShader[shaders.length];
+        for (int i = 0; i < shaders.length; i++) {
+            variants[i] = shaders[i].getVariant(defines);
+        }
+        return variants;
+    }
+
+    /**
+     * Indicates if the program for the specified shaders and definitions has
+     * already been linked.
+     *
+     * @param defines the definitions to inject into every shader.
+     * @param shaders the {@link OGLShader shaders} to link.
+     * @return true if the program is cached, false otherwise.
+     */
+    public final boolean contains(final Map<String, String> defines, final OGLShader... shaders) {
+        return programs.containsKey(getKey(defines, shaders));
+    }
+
+    /**
+     * Rebuilds every program linked from a shader in the specified set, such
+     * as the {@link AssetKey keys} passed to an
+     * {@link AssetManager#addReloadListener(java.util.function.Consumer) asset reload listener}.
+     * Programs whose shaders load with unchanged source are left alone. A
+     * program rebuilt into a variant that is already cached keeps its own
+     * OpenGL program, and requests for the variant keep receiving the program
+     * cached first. Must be called from the thread the context is current on.
+     *
+     * @param changed the keys of the changed shaders.
+     * @return the number of programs rebuilt.
+     */
+    public final int reload(final Collection<AssetKey> changed) {
+        int rebuilt = 0;
+        for (final Entry entry : entries) {
+            if (!entry.dependsOn(changed)) {
+                continue;
+            }
+            try {
+                final OGLShader[] shaders = new OGLShader[entry.sources.length];
+                for (int i = 0; i < shaders.length; i++) {
+                    shaders[i] = AssetManager.get(OGLShader.class, entry.sources[i]);
+                }
+                final OGLShader[] variants = variants(entry.defines, shaders);
+                final String key = ShaderPreprocessor.hash(variants);
+                if (key.equals(entry.key)) {
+                    continue;
+                }
+
+                /* Swap The Rebuilt Program Into The Existing One */
+                entry.program.replace(link(entry.name, key, variants));
+                final String previous = entry.key;
+                entry.update(key, variants);
+                if (programs.remove(previous, entry)) {
+                    adopt(previous);
+                }
+                programs.putIfAbsent(key, entry);
+                rebuilt++;
+                log.info("Rebuilt {} program {}", entry.name, entry.program.getId());
+            } catch (final OGLException | RuntimeException e) {
+                log.error("Unable to rebuild {} program, keeping the previous version - {}", entry.name, e.getMessage());
+            }
+        }
+        if (rebuilt > 0) {
+            prune();
+        }
+        return rebuilt;
+    }
+
+    /**
+     * Caches the first remaining entry whose program has the specified key,
+     * after the entry cached under it was rebuilt with another key. Entries
+     * can share a key once their shaders are edited to match, and only one of
+     * them is cached under it.
+     */
+    private void adopt(final String key) {
+        for (final Entry entry : entries) {
+            if (entry.key.equals(key)) {
+                programs.put(key, entry);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deletes compiled shaders that are no longer attached to any program.
+     */
+    private void prune() {
+        final Set<String> live = new HashSet<>();
+        for (final Entry entry : entries) {
+            Collections.addAll(live, entry.stages);
+        }
+        for (final Iterator<OGLShader> it = shaders.values().iterator(); it.hasNext();) {
+            final OGLShader shader = it.next();
+            if (!live.contains(stageKey(shader))) {
+                shader.delete();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Destroys every cached program and deletes every compiled shader.
+     */
+    public final void destroy() {
+        for (final Entry entry : entries) {
+            entry.program.destroy();
+        }
+        for (final OGLShader shader : shaders.values()) {
+            shader.delete();
+        }
+        log.debug("Destroyed {} programs and {} shaders", entries.size(), shaders.size());
+        programs.clear();
+        entries.clear();
+        shaders.clear();
+    }
+
+    /**
+     * Assigns the {@link OGLProgramBinaryCache binary cache} used to restore
+     * programs before compiling them from source and to store newly linked
+     * programs. Binary caching is disabled by default.
+     *
+     * @param binaries the binary cache, or null to disable binary caching.
+     */
+    public final void setBinaryCache(final OGLProgramBinaryCache binaries) {
+        this.binaries = binaries;
+    }
+
+    /**
+     * Returns the {@link OGLProgramBinaryCache binary cache} in use.
+     *
+     * @return the binary cache, or null if binary caching is disabled.
+     */
+    public final OGLProgramBinaryCache getBinaryCache() {
+        return binaries;
+    }
+
+    /**
+     * Returns the cached programs.
+     *
+     * @return the cached programs in the order they were linked.
+     */
+    public final List<OGLShaderProgram> getPrograms() {
+        final List<OGLShaderProgram> list = new ArrayList<>(entries.size());
+        for (final Entry entry : entries) {
+            list.add(entry.program);
+        }
+        return list;
+    }
+
+    /**
+     * Returns the number of cached programs.
+     *
+     * @return the number of cached programs.
+     */
+    public final int getProgramCount() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of compiled shaders.
+     *
+     * @return the number of compiled shaders.
+     */
+    public final int getShaderCount() {
+        return shaders.size();
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the number of cache hits.
+     */
+    public final long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of requests that linked a new program or restored one
+     * from the binary cache.
+     *
+     * @return the number of cache misses.
+     */
+    public final long getMisses() {
+        return misses;
+    }
+
+    /**
+     * A linked program and what it was linked from.
+     */
+    private static final class Entry {
+
+        /**
+         * The name of the program.
+         */
+        private final String name;
+
+        /**
+         * The definitions injected into every shader.
+         */
+        private final Map<String, String> defines;
+
+        /**
+         * The keys of the shaders the program is linked from.
+         */
+        private final AssetKey[] sources;
+
+        /**
+         * The linked program.
+         */
+        private final OGLShaderProgram program;
+
+        /**
+         * The key the program is cached under.
+         */
+        private String key;
+
+        /**
+         * The stage keys of the shader variants.
+         */
+        private String[] stages;
+
+        private Entry(final String name, final Map<String, String> defines, final OGLShader[] shaders, final OGLShader[] variants, final OGLShaderProgram program, final String key) {
+            this.name = name;
+            this.defines = defines == null ? Collections.emptyMap() : new HashMap<>(defines);
+            this.sources = new AssetKey[shaders.length];
+            for (int i = 0; i < shaders.length; i++) {
+                sources[i] = shaders[i].getKey();
+            }
+            this.program = program;
+            update(key, variants);
+        }
+
+        /**
+         * Records the key and shader stage keys of a rebuilt program.
+         */
+        private void update(final String key, final OGLShader[] variants) {
+            this.key = key;
+            this.stages = new String[variants.length];
+            for (int i = 0; i < variants.length; i++) {
+                stages[i] = stageKey(variants[i]);
+            }
+        }
+
+        /**
+         * Indicates if the program is linked from any of the specified shaders.
+         */
+        private boolean dependsOn(final Collection<AssetKey> changed) {
+            for (final AssetKey source : sources) {
+                if (changed.contains(source)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -5,7 +5,6 @@ import net.cybertekt.asset.shader.OGLShader;
 import net.cybertekt.exception.OGLException;
 import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL20;
-import static org.lwjgl.opengl.GL20.GL_COMPILE_STATUS;
 import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
 import static org.lwjgl.opengl.GL20.GL_VALIDATE_STATUS;
 import static org.lwjgl.opengl.GL20.glAttachShader;
@@ -13,7 +12,6 @@ import static org.lwjgl.opengl.GL20.glCreateProgram;
 import static org.lwjgl.opengl.GL20.glDeleteProgram;
 import static org.lwjgl.opengl.GL20.glDetachShader;
 import static org.lwjgl.opengl.GL20.glGetProgrami;
-import static org.lwjgl.opengl.GL20.glGetShaderi;
 import static org.lwjgl.opengl.GL20.glGetUniformLocation;
 import static org.lwjgl.opengl.GL20.glLinkProgram;
 import static org.lwjgl.opengl.GL20.glUniformMatrix4fv;
@@ -41,10 +39,11 @@ public class OGLShaderProgram {
     public static final Logger LOG = LoggerFactory.getLogger(OGLShaderProgram.class);
 
     /**
-     * The OpenGL shader program identifier. The value of this constant is
-     * generated by OpenGL via glCreateProgram.
+     * The OpenGL shader program identifier. The value is generated by OpenGL
+     * via glCreateProgram and only changes when the program is
+     * {@link #replace(OGLShaderProgram) replaced} by a rebuilt one.
      */
-    private final int ID;
+    private int id;
 
     /**
      * Human readable identifier for this shader program.
@@ -52,42 +51,109 @@ public class OGLShaderProgram {
     private final String NAME;
 
     /**
+     * Constructs and links a new shader program, compiling any of the shaders
+     * that have not already been compiled. The shaders are deleted once the
+     * program has been linked.
      *
      * @param name the String that identifiers the shader program.
      * @param shaders the {@link OGLShader OGL shaders} to include in this
      * shader program.
-     * @throws OGLException
+     * @throws OGLException if a shader fails to compile or the program fails
+     * to link.
      */
     public OGLShaderProgram(final String name, final OGLShader... shaders) throws OGLException {
-        this.ID = glCreateProgram();
+        this(name, false, shaders);
+    }
+
+    /**
+     * Constructs and links a new shader program, compiling any of the shaders
+     * that have not already been compiled.
+     *
+     * @param name the String that identifiers the shader program.
+     * @param retainShaders true to keep the compiled shaders for use in other
+     * programs, false to delete them once the program has been linked.
+     * @param shaders the {@link OGLShader OGL shaders} to include in this
+     * shader program.
+     * @throws OGLException if a shader fails to compile or the program fails
+     * to link.
+     */
+    public OGLShaderProgram(final String name, final boolean retainShaders, final OGLShader... shaders) throws OGLException {
+        this(name, retainShaders, null, shaders);
+    }
+
+    /**
+     * Constructs and links a new shader program, marking it retrievable before
+     * it is linked so its binary can be stored in the specified
+     * {@link OGLProgramBinaryCache binary cache}.
+     *
+     * @param name the String that identifiers the shader program.
+     * @param retainShaders true to keep the compiled shaders for use in other
+     * programs, false to delete them once the program has been linked.
+     * @param binaries the binary cache the program will be stored in, or null.
+     * @param shaders the {@link OGLShader OGL shaders} to include in this
+     * shader program.
+     * @throws OGLException if a shader fails to compile or the program fails
+     * to link.
+     */
+    OGLShaderProgram(final String name, final boolean retainShaders, final OGLProgramBinaryCache binaries, final OGLShader... shaders) throws OGLException {
+        this.id = glCreateProgram();
         this.NAME = name;
 
         /* Create GLSL Shader Program */
-        if (ID == 0) {
+        if (id == 0) {
             throw new OGLException("Unable to create additional shaders.");
         }
 
         /* Compile and Attach Shaders */
         for (final OGLShader s : shaders) {
-
-            /* Check Shader Compilation Status */
-            if (glGetShaderi(s.getId(), GL_COMPILE_STATUS) == 0) {
-                s.compile();
-            }
-            glAttachShader(ID, s.getId());
+            glAttachShader(id, s.compile());
         }
 
         /* Link Shader Program */
-        glLinkProgram(ID);
-        if (glGetProgrami(ID, GL_LINK_STATUS) == 0) {
-            throw new OGLException("Unable to link shaders: " + GL20.glGetProgramInfoLog(ID));
+        if (binaries != null) {
+            binaries.prepare(id);
+        }
+        glLinkProgram(id);
+        if (glGetProgrami(id, GL_LINK_STATUS) == 0) {
+            final String info = GL20.glGetProgramInfoLog(id);
+            glDeleteProgram(id);
+            throw new OGLException("Unable to link shaders: " + info);
         }
 
         /* Detach Shaders To Free Them For Future Use */
         for (final OGLShader s : shaders) {
-            glDetachShader(ID, s.getId());
-            s.delete();
+            glDetachShader(id, s.getId());
+            if (!retainShaders) {
+                s.delete();
+            }
+        }
+    }
+
+    /**
+     * Wraps a shader program that has already been linked, such as one
+     * restored from an {@link OGLProgramBinaryCache binary cache}.
+     *
+     * @param name the String that identifiers the shader program.
+     * @param id the identifier of the linked program.
+     */
+    public OGLShaderProgram(final String name, final int id) {
+        this.id = id;
+        this.NAME = name;
+    }
+
+    /**
+     * Takes over the OpenGL program of another shader program and deletes the
+     * program this one used before. Used to swap in a rebuilt program without
+     * invalidating references to this one.
+     *
+     * @param program the rebuilt program, which must not be used afterwards.
+     */
+    final void replace(final OGLShaderProgram program) {
+        if (id != 0 && id != program.id) {
+            glDeleteProgram(id);
         }
+        id = program.id;
+        program.id = 0;
     }
 
     /**
@@ -97,22 +163,23 @@ public class OGLShaderProgram {
      * properly.
      */
     public final void validate() {
-        glValidateProgram(ID);
-        if (glGetProgrami(ID, GL_VALIDATE_STATUS) == 0) {
-            LOG.error("{} Shader Validation Failed: {}", NAME, GL20.glGetProgramInfoLog(ID));
+        glValidateProgram(id);
+        if (glGetProgrami(id, GL_VALIDATE_STATUS) == 0) {
+            LOG.error("{} Shader Validation Failed: {}", NAME, GL20.glGetProgramInfoLog(id));
         } else {
             LOG.info("{} Shader Validation Successful  ", NAME);
         }
     }
 
     public final void destroy() {
-        if (ID != 0) {
-            glDeleteProgram(ID);
+        if (id != 0) {
+            glDeleteProgram(id);
+            id = 0;
         }
     }
 
     public final void setUniform(final String name, final Matrix4f value) {
-        int loc = glGetUniformLocation(ID, name);
+        int loc = glGetUniformLocation(id, name);
         if (loc < 0) {
             throw new RuntimeException("Uniform Not Found: " + name);
         } else {
@@ -131,7 +198,7 @@ public class OGLShaderProgram {
      * @return the identifier assigned to this shader program by OpenGL.
      */
     public final int getId() {
-        return ID;
+        return id;
     }
 
     /**
@@ -0,0 +1,303 @@
+package net.cybertekt.render;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import net.cybertekt.asset.image.Image;
+import org.joml.Matrix4f;
+import static org.lwjgl.opengl.ARBVertexArrayObject.glBindVertexArray;
+import static org.lwjgl.opengl.ARBVertexArrayObject.glDeleteVertexArrays;
+import static org.lwjgl.opengl.ARBVertexArrayObject.glGenVertexArrays;
+import static org.lwjgl.opengl.GL11.GL_ALPHA;
+import static org.lwjgl.opengl.GL11.GL_BLEND;
+import static org.lwjgl.opengl.GL11.GL_FLOAT;
+import static org.lwjgl.opengl.GL11.GL_LINEAR;
+import static org.lwjgl.opengl.GL11.GL_LUMINANCE;
+import static org.lwjgl.opengl.GL11.GL_LUMINANCE_ALPHA;
+import static org.lwjgl.opengl.GL11.GL_ONE;
+import static org.lwjgl.opengl.GL11.GL_ONE_MINUS_SRC_ALPHA;
+import static org.lwjgl.opengl.GL11.GL_RGB;
+import static org.lwjgl.opengl.GL11.GL_RGBA;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_2D;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MAG_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_MIN_FILTER;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_S;
+import static org.lwjgl.opengl.GL11.GL_TEXTURE_WRAP_T;
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+import static org.lwjgl.opengl.GL11.GL_UNPACK_ALIGNMENT;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_BYTE;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
+import static org.lwjgl.opengl.GL11.GL_UNSIGNED_SHORT;
+import static org.lwjgl.opengl.GL11.glBindTexture;
+import static org.lwjgl.opengl.GL11.glBlendFunc;
+import static org.lwjgl.opengl.GL11.glDeleteTextures;
+import static org.lwjgl.opengl.GL11.glDisable;
+import static org.lwjgl.opengl.GL11.glDrawElements;
+import static org.lwjgl.opengl.GL11.glEnable;
+import static org.lwjgl.opengl.GL11.glGenTextures;
+import static org.lwjgl.opengl.GL11.glIsEnabled;
+import static org.lwjgl.opengl.GL11.glPixelStorei;
+import static org.lwjgl.opengl.GL11.glTexImage2D;
+import static org.lwjgl.opengl.GL11.glTexParameteri;
+import static org.lwjgl.opengl.GL12.GL_BGR;
+import static org.lwjgl.opengl.GL12.GL_BGRA;
+import static org.lwjgl.opengl.GL12.GL_CLAMP_TO_EDGE;
+import static org.lwjgl.opengl.GL13.GL_TEXTURE0;
+import static org.lwjgl.opengl.GL13.glActiveTexture;
+import static org.lwjgl.opengl.GL15.GL_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_ELEMENT_ARRAY_BUFFER;
+import static org.lwjgl.opengl.GL15.GL_STATIC_DRAW;
+import static org.lwjgl.opengl.GL15.GL_STREAM_DRAW;
+import static org.lwjgl.opengl.GL15.glBindBuffer;
+import static org.lwjgl.opengl.GL15.glBufferData;
+import static org.lwjgl.opengl.GL15.glBufferSubData;
+import static org.lwjgl.opengl.GL15.glDeleteBuffers;
+import static org.lwjgl.opengl.GL15.glGenBuffers;
+import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20.glGetAttribLocation;
+import static org.lwjgl.opengl.GL20.glGetUniformLocation;
+import static org.lwjgl.opengl.GL20.glUniform1i;
+import static org.lwjgl.opengl.GL20.glUniform4f;
+import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL20.glVertexAttribPointer;
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memAllocFloat;
+import static org.lwjgl.system.MemoryUtil.memAllocInt;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * OpenGL Text Renderer - (C) Cybertekt Software
+ *
+ * Draws a {@link TextBatch text batch} with the font shaders in a single draw
+ * call. The vertex buffer is allocated once at the capacity of the batch and
+ * is orphaned before each upload, so the driver can hand out fresh storage
+ * instead of waiting for the previous frame to finish reading it. The index
+ * buffer is written once, since the quad pattern never changes.
+ *
+ * <p>
+ * The page texture of the font is uploaded from its {@link Image image} when
+ * the renderer is constructed. The program must expose the
+ * <code>inPosition</code> and <code>inTexCoord</code> attributes and the
+ * <code>g_WorldViewProjectionMatrix</code> and <code>m_DistMap</code>
+ * uniforms; <code>m_Color</code> is set when the program was compiled with
+ * <code>HAS_COLOR</code>. Text renderers must only be used from the thread
+ * that owns the OpenGL context.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class OGLTextRenderer {
+
+    /**
+     * The size (in bytes) of a single vertex.
+     */
+    private static final int VERTEX_STRIDE = TextBatch.VERTEX_SIZE * Float.BYTES;
+
+    /**
+     * The batch drawn by this renderer.
+     */
+    private final TextBatch batch;
+
+    /**
+     * The font shader program.
+     */
+    private final OGLShaderProgram program;
+
+    /**
+     * Vertex Array Object Identifier.
+     */
+    private final int vertexArrayObject;
+
+    /**
+     * Streamed Vertex Buffer Object Identifier.
+     */
+    private final int vertexBufferId;
+
+    /**
+     * Static Index Buffer Object Identifier.
+     */
+    private final int indexBufferId;
+
+    /**
+     * Page Texture Identifier.
+     */
+    private final int textureId;
+
+    /**
+     * Off-heap staging buffer for vertex uploads.
+     */
+    private final FloatBuffer staging;
+
+    /**
+     * Uniform locations, -1 if the program does not use them.
+     */
+    private final int colorLocation, samplerLocation;
+
+    /**
+     * Constructs a new text renderer for a batch.
+     *
+     * @param batch the {@link TextBatch batch} to draw.
+     * @param program the font {@link OGLShaderProgram shader program}.
+     * @param page the page {@link Image image} of the batch font.
+     */
+    public OGLTextRenderer(final TextBatch batch, final OGLShaderProgram program, final Image page) {
+        this.batch = batch;
+        this.program = program;
+        this.staging = memAllocFloat(batch.getCapacity() * TextBatch.GLYPH_FLOATS);
+        this.colorLocation = glGetUniformLocation(program.getId(), "m_Color");
+        this.samplerLocation = glGetUniformLocation(program.getId(), "m_DistMap");
+
+        vertexArrayObject = glGenVertexArrays();
+        glBindVertexArray(vertexArrayObject);
+
+        /* Create Streamed Vertex Buffer */
+        vertexBufferId = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBufferId);
+        glBufferData(GL_ARRAY_BUFFER, (long) staging.capacity() * Float.BYTES, GL_STREAM_DRAW);
+        final int position = glGetAttribLocation(program.getId(), "inPosition");
+        final int texCoord = glGetAttribLocation(program.getId(), "inTexCoord");
+        if (position >= 0) {
+            glVertexAttribPointer(position, 2, GL_FLOAT, false, VERTEX_STRIDE, 0);
+            glEnableVertexAttribArray(position);
+        }
+        if (texCoord >= 0) {
+            glVertexAttribPointer(texCoord, 2, GL_FLOAT, false, VERTEX_STRIDE, 2 * Float.BYTES);
+            glEnableVertexAttribArray(texCoord);
+        }
+
+        /* Create Static Index Buffer (Binding Is Stored In The VAO) */
+        final IntBuffer indices = memAllocInt(batch.getCapacity() * TextBatch.GLYPH_INDICES);
+        indices.put(TextBatch.createIndices(batch.getCapacity())).flip();
+        indexBufferId = glGenBuffers();
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, indexBufferId);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, indices, GL_STATIC_DRAW);
+        memFree(indices);
+
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        textureId = upload(page);
+    }
+
+    /**
+     * Uploads the vertices of the batch and draws every glyph in it with
+     * premultiplied alpha blending.
+     *
+     * @param projection the world view projection matrix.
+     * @param r the red component of the text color.
+     * @param g the green component of the text color.
+     * @param b the blue component of the text color.
+     * @param a the alpha component of the text color.
+     */
+    public final void draw(final Matrix4f projection, final float r, final float g, final float b, final float a) {
+        final int count = batch.getGlyphCount();
+        if (count == 0) {
+            return;
+        }
+
+        /* Orphan And Refill The Vertex Buffer */
+        staging.clear();
+        staging.put(batch.getVertices(), 0, count * TextBatch.GLYPH_FLOATS).flip();
+        glBindBuffer(GL_ARRAY_BUFFER, vertexBufferId);
+        glBufferData(GL_ARRAY_BUFFER, (long) staging.capacity() * Float.BYTES, GL_STREAM_DRAW);
+        glBufferSubData(GL_ARRAY_BUFFER, 0, staging);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        glUseProgram(program.getId());
+        program.setUniform("g_WorldViewProjectionMatrix", projection);
+        if (colorLocation >= 0) {
+            glUniform4f(colorLocation, r, g, b, a);
+        }
+        if (samplerLocation >= 0) {
+            glUniform1i(samplerLocation, 0);
+        }
+        glActiveTexture(GL_TEXTURE0);
+        glBindTexture(GL_TEXTURE_2D, textureId);
+
+        final boolean blend = glIsEnabled(GL_BLEND);
+        glEnable(GL_BLEND);
+        glBlendFunc(GL_ONE, GL_ONE_MINUS_SRC_ALPHA);
+        glBindVertexArray(vertexArrayObject);
+        glDrawElements(GL_TRIANGLES, count * TextBatch.GLYPH_INDICES, GL_UNSIGNED_INT, 0);
+        glBindVertexArray(0);
+        if (!blend) {
+            glDisable(GL_BLEND);
+        }
+    }
+
+    /**
+     * Releases the buffers, texture and staging memory of this renderer. The
+     * shader program is not destroyed.
+     */
+    public final void destroy() {
+        glDeleteVertexArrays(vertexArrayObject);
+        glDeleteBuffers(vertexBufferId);
+        glDeleteBuffers(indexBufferId);
+        glDeleteTextures(textureId);
+        memFree(staging);
+    }
+
+    /**
+     * Returns the batch drawn by this renderer.
+     *
+     * @return the {@link TextBatch text batch}.
+     */
+    public final TextBatch getBatch() {
+        return batch;
+    }
+
+    /**
+     * Uploads a page image to a new linearly filtered texture.
+     */
+    private static int upload(final Image image) {
+        final int external, internal;
+        switch (image.getFormat()) {
+            case Alpha:
+                external = internal = GL_ALPHA;
+                break;
+            case LUM8:
+                external = internal = GL_LUMINANCE;
+                break;
+            case LUMA8:
+                external = internal = GL_LUMINANCE_ALPHA;
+                break;
+            case BGR:
+                external = GL_BGR;
+                internal = GL_RGB;
+                break;
+            case BGRA:
+                external = GL_BGRA;
+                internal = GL_RGBA;
+                break;
+            case RGB8:
+            case RGB16:
+                external = internal = GL_RGB;
+                break;
+            default:
+                external = internal = GL_RGBA;
+                break;
+        }
+        final int type = image.getFormat().getBytesPerPixel() > image.getFormat().getComponents() ? GL_UNSIGNED_SHORT : GL_UNSIGNED_BYTE;
+
+        final int id = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, id);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+
+        /* Image Data Is Heap Allocated - Copy It Off-Heap For The Upload */
+        final ByteBuffer data = image.getData().duplicate();
+        data.rewind();
+        final ByteBuffer pixels = data.isDirect() ? data : (ByteBuffer) memAlloc(data.remaining()).put(data).flip();
+        glTexImage2D(GL_TEXTURE_2D, 0, internal, image.getWidth(), image.getHeight(), 0, external, type, pixels);
+        if (pixels != data) {
+            memFree(pixels);
+        }
+        glBindTexture(GL_TEXTURE_2D, 0);
+        return id;
+    }
+}
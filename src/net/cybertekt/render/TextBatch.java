@@ -0,0 +1,333 @@
+package net.cybertekt.render;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.cybertekt.asset.font.BitmapFont;
+import net.cybertekt.asset.font.TextLayout;
+
+/**
+ * Text Batch - (C) Cybertekt Software
+ *
+ * Collects the glyph quads of every string drawn with one
+ * {@link BitmapFont font} during a frame into a single preallocated vertex
+ * array, so all text in the font is drawn with one upload and one draw call.
+ * Each glyph adds four vertices of {@link #VERTEX_SIZE} floats (x, y, u, v).
+ * The index pattern never changes, so it is generated once for the full
+ * capacity by {@link #createIndices(int)}.
+ *
+ * <p>
+ * Strings added by value are laid out once and kept in a small
+ * least-recently-used cache, so static labels cost only a copy of their quads
+ * each frame. Text built from changing values should be laid out by the
+ * caller, or it will cycle through the cache. Glyphs beyond the capacity of
+ * the batch are dropped and {@link #getDropped() counted}.
+ * </p>
+ *
+ * <p>
+ * The batch does no OpenGL calls and can be used without a context; the
+ * {@link OGLTextRenderer text renderer} uploads and draws it.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class TextBatch {
+
+    /**
+     * The number of floats per vertex: x, y, u, v.
+     */
+    public static final int VERTEX_SIZE = 4;
+
+    /**
+     * The number of floats per glyph.
+     */
+    public static final int GLYPH_FLOATS = VERTEX_SIZE * 4;
+
+    /**
+     * The number of indices per glyph.
+     */
+    public static final int GLYPH_INDICES = 6;
+
+    /**
+     * The default number of cached string layouts.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    /**
+     * The font every string in the batch is drawn with.
+     */
+    private final BitmapFont font;
+
+    /**
+     * The maximum number of glyphs per frame.
+     */
+    private final int capacity;
+
+    /**
+     * The vertices of the current frame.
+     */
+    private final float[] vertices;
+
+    /**
+     * Recently laid out strings, least recently used first.
+     */
+    private final LayoutCache layouts;
+
+    /**
+     * The number of glyphs in the current frame.
+     */
+    private int count;
+
+    /**
+     * The number of glyphs dropped since the batch began.
+     */
+    private int dropped;
+
+    /**
+     * Layout cache statistics.
+     */
+    private long hits, misses;
+
+    /**
+     * Indicates if the batch is between {@link #begin()} and {@link #end()}.
+     */
+    private boolean drawing;
+
+    /**
+     * Constructs a new text batch with the
+     * {@link #DEFAULT_CACHE_SIZE default layout cache size}.
+     *
+     * @param font the {@link BitmapFont font} of the batch.
+     * @param capacity the maximum number of glyphs per frame.
+     */
+    public TextBatch(final BitmapFont font, final int capacity) {
+        this(font, capacity, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructs a new text batch.
+     *
+     * @param font the {@link BitmapFont font} of the batch.
+     * @param capacity the maximum number of glyphs per frame.
+     * @param cacheSize the maximum number of cached string layouts, zero to
+     * disable caching.
+     */
+    public TextBatch(final BitmapFont font, final int capacity, final int cacheSize) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Text batch capacity must be positive.");
+        }
+        this.font = font;
+        this.capacity = capacity;
+        this.vertices = new float[capacity * GLYPH_FLOATS];
+        this.layouts = new LayoutCache(cacheSize);
+    }
+
+    /**
+     * Starts a new frame, discarding the glyphs of the previous one.
+     */
+    public final void begin() {
+        count = 0;
+        dropped = 0;
+        drawing = true;
+    }
+
+    /**
+     * Adds a string at a position, laying it out or reusing the cached
+     * layout of the same string.
+     *
+     * @param text the text to add.
+     * @param x the horizontal position of the top left of the text.
+     * @param y the vertical position of the top left of the text.
+     * @param scale the size of one font pixel.
+     * @return the layout of the text.
+     */
+    public final TextLayout add(final String text, final float x, final float y, final float scale) {
+        if (!drawing) {
+            throw new IllegalStateException("Text batch has not begun.");
+        }
+        TextLayout layout = layouts.get(text);
+        if (layout == null) {
+            misses++;
+            layout = font.layout(text);
+            layouts.put(text, layout);
+        } else {
+            hits++;
+        }
+        add(layout, x, y, scale);
+        return layout;
+    }
+
+    /**
+     * Adds a laid out string at a position.
+     *
+     * @param layout the {@link TextLayout layout} to add, which must use the
+     * font of this batch.
+     * @param x the horizontal position of the top left of the text.
+     * @param y the vertical position of the top left of the text.
+     * @param scale the size of one font pixel.
+     */
+    public final void add(final TextLayout layout, final float x, final float y, final float scale) {
+        if (!drawing) {
+            throw new IllegalStateException("Text batch has not begun.");
+        } else if (layout.getFont() != font) {
+            throw new IllegalArgumentException("Text was laid out with a different font.");
+        }
+        final float[] quads = layout.getQuads();
+        final int n = Math.min(layout.getQuadCount(), capacity - count);
+        dropped += layout.getQuadCount() - n;
+
+        int v = count * GLYPH_FLOATS;
+        for (int q = 0, end = n * TextLayout.QUAD_SIZE; q < end; q += TextLayout.QUAD_SIZE) {
+            final float x0 = x + quads[q] * scale, y0 = y + quads[q + 1] * scale;
+            final float x1 = x + quads[q + 2] * scale, y1 = y + quads[q + 3] * scale;
+            final float u0 = quads[q + 4], v0 = quads[q + 5], u1 = quads[q + 6], v1 = quads[q + 7];
+
+            /* Top Left, Bottom Left, Bottom Right, Top Right */
+            vertices[v] = x0;
+            vertices[v + 1] = y0;
+            vertices[v + 2] = u0;
+            vertices[v + 3] = v0;
+            vertices[v + 4] = x0;
+            vertices[v + 5] = y1;
+            vertices[v + 6] = u0;
+            vertices[v + 7] = v1;
+            vertices[v + 8] = x1;
+            vertices[v + 9] = y1;
+            vertices[v + 10] = u1;
+            vertices[v + 11] = v1;
+            vertices[v + 12] = x1;
+            vertices[v + 13] = y0;
+            vertices[v + 14] = u1;
+            vertices[v + 15] = v0;
+            v += GLYPH_FLOATS;
+        }
+        count += n;
+    }
+
+    /**
+     * Ends the frame. The vertices remain available until the next
+     * {@link #begin()}.
+     */
+    public final void end() {
+        drawing = false;
+    }
+
+    /**
+     * Returns the vertex array. Only the first
+     * <code>getGlyphCount() * GLYPH_FLOATS</code> floats belong to the current
+     * frame.
+     *
+     * @return the vertices of the batch.
+     */
+    public final float[] getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Returns the number of glyphs in the current frame.
+     *
+     * @return the glyph count.
+     */
+    public final int getGlyphCount() {
+        return count;
+    }
+
+    /**
+     * Returns the maximum number of glyphs per frame.
+     *
+     * @return the glyph capacity.
+     */
+    public final int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of glyphs dropped in the current frame because the
+     * batch was full.
+     *
+     * @return the number of dropped glyphs.
+     */
+    public final int getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Returns the font of the batch.
+     *
+     * @return the {@link BitmapFont font}.
+     */
+    public final BitmapFont getFont() {
+        return font;
+    }
+
+    /**
+     * Returns the number of strings whose layout was found in the cache.
+     *
+     * @return the number of layout cache hits.
+     */
+    public final long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of strings that had to be laid out.
+     *
+     * @return the number of layout cache misses.
+     */
+    public final long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Removes every cached layout.
+     */
+    public final void clearCache() {
+        layouts.clear();
+    }
+
+    /**
+     * Generates the indices of a batch: two triangles per glyph sharing the
+     * diagonal between the first and third vertex.
+     *
+     * @param capacity the number of glyphs.
+     * @return {@link #GLYPH_INDICES} indices per glyph.
+     */
+    public static int[] createIndices(final int capacity) {
+        final int[] indices = new int[capacity * GLYPH_INDICES];
+        for (int g = 0, i = 0; g < capacity; g++, i += GLYPH_INDICES) {
+            final int v = g * 4;
+            indices[i] = v;
+            indices[i + 1] = v + 1;
+            indices[i + 2] = v + 2;
+            indices[i + 3] = v + 2;
+            indices[i + 4] = v + 3;
+            indices[i + 5] = v;
+        }
+        return indices;
+    }
+
+    /**
+     * Layouts keyed by their string in access order, evicting the least
+     * recently used layout beyond a maximum size.
+     */
+    private static final class LayoutCache extends LinkedHashMap<String, TextLayout> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The maximum number of cached layouts.
+         */
+        private final int maxSize;
+
+        private LayoutCache(final int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, TextLayout> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -0,0 +1,642 @@
+package net.cybertekt.scene;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.cybertekt.math.AABB;
+import net.cybertekt.math.Frustum;
+
+/**
+ * Bounding Volume Hierarchy - (C) Cybertekt Software.
+ *
+ * <p>
+ * A binary tree of axis-aligned bounding boxes used to cull objects against a
+ * view {@link Frustum frustum}. Objects are identified by integer handles and
+ * their world space bounds are stored in a packed float array. The tree itself
+ * is stored in flat arrays in depth-first order: the left child of an internal
+ * node always directly follows its parent and the objects below any node form
+ * a contiguous range of the object order array, so a node that lies entirely
+ * inside the frustum is emitted with a single array copy.
+ * </p>
+ *
+ * <p>
+ * Adding or removing objects marks the tree for a rebuild (median split along
+ * the longest centroid axis) which is performed by the next {@link #update()}
+ * or cull. Moving an object with {@link #update(int, AABB)} only refits the
+ * boxes along the path from its leaf to the root, so the tree is suited to
+ * mostly static scenes with a moderate number of moving objects. Call
+ * {@link #rebuild()} periodically if objects move far from where the tree was
+ * built.
+ * </p>
+ *
+ * <p>
+ * Large trees are culled in parallel on the common ForkJoin pool. Culling
+ * tasks collect visible handles locally and reserve space in the shared result
+ * array with a single atomic add per task. The hierarchy must not be modified
+ * while a cull is in progress and is otherwise <b>NOT</b> thread-safe.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class BoundingVolumeHierarchy {
+
+    /**
+     * Default minimum number of objects before a cull is performed in
+     * parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 16384;
+
+    /**
+     * Maximum number of objects stored in a single leaf.
+     */
+    private static final int LEAF_SIZE = 8;
+
+    /**
+     * Subtrees with fewer objects than this are culled by a single task.
+     */
+    private static final int TASK_SIZE = 32768;
+
+    /**
+     * Object bounds, 6 floats (min xyz, max xyz) per handle.
+     */
+    private float[] objectBounds;
+
+    /**
+     * Indicates which handles are in use.
+     */
+    private boolean[] live;
+
+    /**
+     * Leaf node containing each handle or -1 if the handle has not been built
+     * into the tree.
+     */
+    private int[] leafOf;
+
+    /**
+     * Released handles available for reuse.
+     */
+    private int[] freeHandles;
+
+    /**
+     * Number of released handles available for reuse.
+     */
+    private int freeCount;
+
+    /**
+     * Highest handle ever issued plus one.
+     */
+    private int handleLimit;
+
+    /**
+     * Number of live objects.
+     */
+    private int objectCount;
+
+    /**
+     * Object handles in tree order; the objects below a node form a contiguous
+     * range of this array.
+     */
+    private int[] order = new int[0];
+
+    /**
+     * Node bounds, 6 floats (min xyz, max xyz) per node.
+     */
+    private float[] nodeBounds = new float[0];
+
+    /**
+     * Right child of an internal node or -1 for a leaf. The left child of an
+     * internal node is always the next node.
+     */
+    private int[] nodeRight = new int[0];
+
+    /**
+     * Parent of each node or -1 for the root.
+     */
+    private int[] nodeParent = new int[0];
+
+    /**
+     * First index into the order array of the objects below each node.
+     */
+    private int[] nodeStart = new int[0];
+
+    /**
+     * Number of objects below each node.
+     */
+    private int[] nodeSize = new int[0];
+
+    /**
+     * Indicates leaves queued for a refit.
+     */
+    private boolean[] nodeDirty = new boolean[0];
+
+    /**
+     * Number of nodes in the tree.
+     */
+    private int nodeCount;
+
+    /**
+     * Leaves queued for a refit.
+     */
+    private int[] dirtyLeaves = new int[16];
+
+    /**
+     * Number of leaves queued for a refit.
+     */
+    private int dirtyCount;
+
+    /**
+     * Indicates that objects were added or removed since the last build.
+     */
+    private boolean rebuild;
+
+    /**
+     * Object centroids used while building, 3 floats per handle.
+     */
+    private float[] centroids;
+
+    /**
+     * Minimum object count before culling in parallel, zero disables parallel
+     * culling.
+     */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Per-thread buffer used by parallel culling tasks.
+     */
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[TASK_SIZE]);
+
+    /**
+     * Constructs a new empty hierarchy.
+     */
+    public BoundingVolumeHierarchy() {
+        this(256);
+    }
+
+    /**
+     * Constructs a new empty hierarchy with room for the specified number of
+     * objects before its internal arrays need to grow.
+     *
+     * @param capacity the initial object capacity.
+     */
+    public BoundingVolumeHierarchy(final int capacity) {
+        final int c = Math.max(1, capacity);
+        objectBounds = new float[c * 6];
+        live = new boolean[c];
+        leafOf = new int[c];
+        freeHandles = new int[c];
+        centroids = new float[c * 3];
+    }
+
+    /**
+     * Adds an object to the hierarchy. The tree is rebuilt by the next update.
+     *
+     * @param bounds the world space bounds of the object.
+     * @return the handle of the new object.
+     */
+    public final int add(final AABB bounds) {
+        final int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (handleLimit == live.length) {
+                grow(live.length * 2);
+            }
+            handle = handleLimit++;
+        }
+        live[handle] = true;
+        leafOf[handle] = -1;
+        store(handle, bounds);
+        objectCount++;
+        rebuild = true;
+        return handle;
+    }
+
+    /**
+     * Removes an object from the hierarchy. The tree is rebuilt by the next
+     * update and the handle may be reused by a later {@link #add(AABB)}.
+     *
+     * @param handle the handle of the object to remove.
+     */
+    public final void remove(final int handle) {
+        check(handle);
+        live[handle] = false;
+        leafOf[handle] = -1;
+        freeHandles[freeCount++] = handle;
+        objectCount--;
+        rebuild = true;
+    }
+
+    /**
+     * Changes the bounds of an object. Unless the tree is already due to be
+     * rebuilt, the leaf containing the object is queued for a refit.
+     *
+     * @param handle the handle of the object.
+     * @param bounds the new world space bounds of the object.
+     */
+    public final void update(final int handle, final AABB bounds) {
+        check(handle);
+        store(handle, bounds);
+        final int leaf = leafOf[handle];
+        if (!rebuild && leaf >= 0 && !nodeDirty[leaf]) {
+            nodeDirty[leaf] = true;
+            if (dirtyCount == dirtyLeaves.length) {
+                dirtyLeaves = Arrays.copyOf(dirtyLeaves, dirtyCount * 2);
+            }
+            dirtyLeaves[dirtyCount++] = leaf;
+        }
+    }
+
+    /**
+     * Copies the bounds of an object into a destination bounding box.
+     *
+     * @param handle the handle of the object.
+     * @param dest the bounding box in which to store the bounds.
+     * @return the destination bounding box.
+     */
+    public final AABB getBounds(final int handle, final AABB dest) {
+        check(handle);
+        final int b = handle * 6;
+        return dest.set(objectBounds[b], objectBounds[b + 1], objectBounds[b + 2], objectBounds[b + 3], objectBounds[b + 4], objectBounds[b + 5]);
+    }
+
+    /**
+     * Brings the tree up to date by rebuilding it if objects were added or
+     * removed, or by refitting the nodes above moved objects.
+     */
+    public final void update() {
+        if (rebuild) {
+            rebuild();
+        } else if (dirtyCount > 0) {
+            refit();
+        }
+    }
+
+    /**
+     * Rebuilds the tree from the current object bounds.
+     */
+    public final void rebuild() {
+        rebuild = false;
+        for (int i = 0; i < dirtyCount; i++) {
+            nodeDirty[dirtyLeaves[i]] = false;
+        }
+        dirtyCount = 0;
+
+        /* Gather Live Objects And Their Centroids */
+        if (order.length < objectCount) {
+            order = new int[live.length];
+        }
+        int n = 0;
+        for (int h = 0; h < handleLimit; h++) {
+            if (live[h]) {
+                order[n++] = h;
+                final int b = h * 6, c = h * 3;
+                centroids[c] = (objectBounds[b] + objectBounds[b + 3]) * 0.5f;
+                centroids[c + 1] = (objectBounds[b + 1] + objectBounds[b + 4]) * 0.5f;
+                centroids[c + 2] = (objectBounds[b + 2] + objectBounds[b + 5]) * 0.5f;
+            }
+        }
+
+        /* A Median Split Tree Has At Most 2n/LEAF_SIZE * 2 Nodes */
+        final int maxNodes = Math.max(1, 4 * (n / LEAF_SIZE + 1));
+        if (nodeRight.length < maxNodes) {
+            nodeBounds = new float[maxNodes * 6];
+            nodeRight = new int[maxNodes];
+            nodeParent = new int[maxNodes];
+            nodeStart = new int[maxNodes];
+            nodeSize = new int[maxNodes];
+            nodeDirty = new boolean[maxNodes];
+        }
+        nodeCount = 0;
+        if (n > 0) {
+            build(0, n, -1);
+        }
+    }
+
+    /**
+     * Culls every object in the hierarchy against a frustum and stores the
+     * handles of the visible objects in the result array. The tree is brought
+     * up to date first.
+     *
+     * @param frustum the frustum to test against.
+     * @param result the array in which to store visible handles; must be able
+     * to hold {@link #getObjectCount()} handles.
+     * @return the number of visible handles stored in the result array.
+     */
+    public final int cull(final Frustum frustum, final int[] result) {
+        if (result.length < objectCount) {
+            throw new IllegalArgumentException("Result array too small: " + result.length + " < " + objectCount);
+        }
+        update();
+        if (nodeCount == 0) {
+            return 0;
+        }
+        if (parallelThreshold > 0 && objectCount >= parallelThreshold) {
+            final AtomicInteger count = new AtomicInteger();
+            ForkJoinPool.commonPool().invoke(new CullTask(0, frustum, result, count));
+            return count.get();
+        }
+        return cull(0, frustum, result, 0);
+    }
+
+    /**
+     * Returns the number of live objects.
+     *
+     * @return the number of objects in the hierarchy.
+     */
+    public final int getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * Returns the number of nodes in the tree as of the last build.
+     *
+     * @return the number of nodes.
+     */
+    public final int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Copies the bounds of the root node into a destination bounding box.
+     *
+     * @param dest the bounding box in which to store the bounds.
+     * @return the destination bounding box, empty if the tree is empty.
+     */
+    public final AABB getRootBounds(final AABB dest) {
+        if (nodeCount == 0) {
+            return dest.empty();
+        }
+        return dest.set(nodeBounds[0], nodeBounds[1], nodeBounds[2], nodeBounds[3], nodeBounds[4], nodeBounds[5]);
+    }
+
+    /**
+     * Sets the minimum number of objects before culling is performed in
+     * parallel.
+     *
+     * @param threshold the minimum object count, zero disables parallel
+     * culling.
+     */
+    public final void setParallelThreshold(final int threshold) {
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Recursively builds the subtree for the objects in the specified range of
+     * the order array and returns its root node.
+     */
+    private int build(final int start, final int end, final int parent) {
+        final int node = nodeCount++;
+        nodeParent[node] = parent;
+        nodeStart[node] = start;
+        nodeSize[node] = end - start;
+        nodeDirty[node] = false;
+
+        if (end - start <= LEAF_SIZE) {
+            nodeRight[node] = -1;
+            for (int i = start; i < end; i++) {
+                leafOf[order[i]] = node;
+            }
+            fitLeaf(node);
+            return node;
+        }
+
+        /* Split At The Median Centroid Along The Longest Centroid Axis */
+        float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int i = start; i < end; i++) {
+            final int c = order[i] * 3;
+            minX = Math.min(minX, centroids[c]);
+            maxX = Math.max(maxX, centroids[c]);
+            minY = Math.min(minY, centroids[c + 1]);
+            maxY = Math.max(maxY, centroids[c + 1]);
+            minZ = Math.min(minZ, centroids[c + 2]);
+            maxZ = Math.max(maxZ, centroids[c + 2]);
+        }
+        final float dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+        final int axis = dx >= dy && dx >= dz ? 0 : (dy >= dz ? 1 : 2);
+        final int mid = (start + end) >>> 1;
+        select(start, end - 1, mid, axis);
+
+        build(start, mid, node);
+        nodeRight[node] = build(mid, end, node);
+        fitInternal(node);
+        return node;
+    }
+
+    /**
+     * Partially sorts the order array so that the object at index k has the
+     * k-th smallest centroid along the axis (Hoare's selection algorithm).
+     */
+    private void select(int left, int right, final int k, final int axis) {
+        while (right > left) {
+            final float pivot = centroids[order[(left + right) >>> 1] * 3 + axis];
+            int i = left, j = right;
+            while (i <= j) {
+                while (centroids[order[i] * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (centroids[order[j] * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    final int t = order[i];
+                    order[i++] = order[j];
+                    order[j--] = t;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Refits the queued leaves and their ancestors. Each ancestor is
+     * recomputed from its children and propagation stops as soon as a node is
+     * unchanged. When most of the tree is dirty a single bottom-up pass is
+     * cheaper.
+     */
+    private void refit() {
+        if (dirtyCount > nodeCount / 8) {
+            for (int node = nodeCount - 1; node >= 0; node--) {
+                if (nodeRight[node] < 0) {
+                    fitLeaf(node);
+                } else {
+                    fitInternal(node);
+                }
+                nodeDirty[node] = false;
+            }
+        } else {
+            for (int i = 0; i < dirtyCount; i++) {
+                int node = dirtyLeaves[i];
+                nodeDirty[node] = false;
+                boolean changed = fitLeaf(node);
+                while (changed && (node = nodeParent[node]) >= 0) {
+                    changed = fitInternal(node);
+                }
+            }
+        }
+        dirtyCount = 0;
+    }
+
+    /**
+     * Recomputes the bounds of a leaf from its objects.
+     *
+     * @return true if the bounds of the leaf changed.
+     */
+    private boolean fitLeaf(final int node) {
+        float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int i = nodeStart[node], end = i + nodeSize[node]; i < end; i++) {
+            final int b = order[i] * 6;
+            minX = Math.min(minX, objectBounds[b]);
+            minY = Math.min(minY, objectBounds[b + 1]);
+            minZ = Math.min(minZ, objectBounds[b + 2]);
+            maxX = Math.max(maxX, objectBounds[b + 3]);
+            maxY = Math.max(maxY, objectBounds[b + 4]);
+            maxZ = Math.max(maxZ, objectBounds[b + 5]);
+        }
+        return setNode(node, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Recomputes the bounds of an internal node from its children.
+     *
+     * @return true if the bounds of the node changed.
+     */
+    private boolean fitInternal(final int node) {
+        final int l = (node + 1) * 6, r = nodeRight[node] * 6;
+        return setNode(node,
+                Math.min(nodeBounds[l], nodeBounds[r]),
+                Math.min(nodeBounds[l + 1], nodeBounds[r + 1]),
+                Math.min(nodeBounds[l + 2], nodeBounds[r + 2]),
+                Math.max(nodeBounds[l + 3], nodeBounds[r + 3]),
+                Math.max(nodeBounds[l + 4], nodeBounds[r + 4]),
+                Math.max(nodeBounds[l + 5], nodeBounds[r + 5]));
+    }
+
+    private boolean setNode(final int node, final float minX, final float minY, final float minZ, final float maxX, final float maxY, final float maxZ) {
+        final int b = node * 6;
+        final boolean changed = nodeBounds[b] != minX || nodeBounds[b + 1] != minY || nodeBounds[b + 2] != minZ
+                || nodeBounds[b + 3] != maxX || nodeBounds[b + 4] != maxY || nodeBounds[b + 5] != maxZ;
+        nodeBounds[b] = minX;
+        nodeBounds[b + 1] = minY;
+        nodeBounds[b + 2] = minZ;
+        nodeBounds[b + 3] = maxX;
+        nodeBounds[b + 4] = maxY;
+        nodeBounds[b + 5] = maxZ;
+        return changed;
+    }
+
+    /**
+     * Culls the subtree below a node and appends the visible handles to the
+     * output array starting at the specified position.
+     *
+     * @return the position following the last appended handle.
+     */
+    private int cull(final int root, final Frustum frustum, final int[] out, int pos) {
+        final int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            final int node = stack[--top];
+            final int b = node * 6;
+            final int result = frustum.test(nodeBounds[b], nodeBounds[b + 1], nodeBounds[b + 2], nodeBounds[b + 3], nodeBounds[b + 4], nodeBounds[b + 5]);
+            if (result == Frustum.OUTSIDE) {
+                continue;
+            }
+            if (result == Frustum.INSIDE) {
+                System.arraycopy(order, nodeStart[node], out, pos, nodeSize[node]);
+                pos += nodeSize[node];
+            } else if (nodeRight[node] < 0) {
+                for (int i = nodeStart[node], end = i + nodeSize[node]; i < end; i++) {
+                    final int o = order[i] * 6;
+                    if (frustum.test(objectBounds[o], objectBounds[o + 1], objectBounds[o + 2], objectBounds[o + 3], objectBounds[o + 4], objectBounds[o + 5]) != Frustum.OUTSIDE) {
+                        out[pos++] = order[i];
+                    }
+                }
+            } else {
+                stack[top++] = nodeRight[node];
+                stack[top++] = node + 1;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Parallel culling task. Large subtrees that intersect the frustum are
+     * split between child tasks; small subtrees are culled into a per-thread
+     * buffer that is then copied into the shared result array.
+     */
+    private final class CullTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int node;
+        private final Frustum frustum;
+        private final int[] result;
+        private final AtomicInteger count;
+
+        private CullTask(final int node, final Frustum frustum, final int[] result, final AtomicInteger count) {
+            this.node = node;
+            this.frustum = frustum;
+            this.result = result;
+            this.count = count;
+        }
+
+        @Override
+        protected void compute() {
+            final int size = nodeSize[node];
+            if (size <= TASK_SIZE || nodeRight[node] < 0) {
+                int[] scratch = SCRATCH.get();
+                if (scratch.length < size) {
+                    scratch = new int[size];
+                    SCRATCH.set(scratch);
+                }
+                final int visible = cull(node, frustum, scratch, 0);
+                if (visible > 0) {
+                    System.arraycopy(scratch, 0, result, count.getAndAdd(visible), visible);
+                }
+                return;
+            }
+            final int b = node * 6;
+            final int test = frustum.test(nodeBounds[b], nodeBounds[b + 1], nodeBounds[b + 2], nodeBounds[b + 3], nodeBounds[b + 4], nodeBounds[b + 5]);
+            if (test == Frustum.INSIDE) {
+                System.arraycopy(order, nodeStart[node], result, count.getAndAdd(size), size);
+            } else if (test == Frustum.INTERSECTS) {
+                invokeAll(new CullTask(node + 1, frustum, result, count), new CullTask(nodeRight[node], frustum, result, count));
+            }
+        }
+    }
+
+    private void store(final int handle, final AABB bounds) {
+        final int b = handle * 6;
+        objectBounds[b] = bounds.minX;
+        objectBounds[b + 1] = bounds.minY;
+        objectBounds[b + 2] = bounds.minZ;
+        objectBounds[b + 3] = bounds.maxX;
+        objectBounds[b + 4] = bounds.maxY;
+        objectBounds[b + 5] = bounds.maxZ;
+    }
+
+    private void check(final int handle) {
+        if (handle < 0 || handle >= handleLimit || !live[handle]) {
+            throw new IllegalArgumentException("Invalid object handle: " + handle);
+        }
+    }
+
+    private void grow(final int capacity) {
+        objectBounds = Arrays.copyOf(objectBounds, capacity * 6);
+        live = Arrays.copyOf(live, capacity);
+        leafOf = Arrays.copyOf(leafOf, capacity);
+        freeHandles = Arrays.copyOf(freeHandles, capacity);
+        centroids = Arrays.copyOf(centroids, capacity * 3);
+    }
+}
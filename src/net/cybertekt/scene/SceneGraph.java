@@ -0,0 +1,744 @@
+package net.cybertekt.scene;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import net.cybertekt.math.Transform;
+import org.joml.Matrix4f;
+import org.joml.Quaternionfc;
+import org.joml.Vector3fc;
+
+/**
+ * Scene Graph - (C) Cybertekt Software.
+ *
+ * <p>
+ * Stores a hierarchy of nodes and their transforms in structure-of-arrays
+ * form. The local translation, rotation, and scale of every node are kept in
+ * separate float arrays and the world matrix of every node is kept in a single
+ * packed float array (16 floats per node, column-major, ready for upload to
+ * OpenGL). Nodes are stored in breadth-first (depth) order so that a parent
+ * always precedes its children and every depth level forms a contiguous range
+ * of slots.
+ * </p>
+ *
+ * <p>
+ * Changing the local transform of a node marks it as dirty. During
+ * {@link #update()} the dirty state is propagated down the hierarchy so that
+ * only the world matrices of changed subtrees are recomputed. Updates do not
+ * allocate any objects unless the hierarchy has changed structurally or a
+ * level is large enough to be updated in parallel.
+ * </p>
+ *
+ * <p>
+ * Nodes are identified by stable integer handles returned by
+ * {@link #createNode(int)}. The internal slot of a node may change whenever
+ * the hierarchy is reordered. Scene graphs are <b>NOT</b> thread-safe.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class SceneGraph {
+
+    /**
+     * Parent handle used for nodes that do not have a parent.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * Default minimum number of nodes in a single depth level before that
+     * level is updated in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 8192;
+
+    /**
+     * Local translation components (per slot).
+     */
+    private float[] tx, ty, tz;
+
+    /**
+     * Local rotation quaternion components (per slot).
+     */
+    private float[] qx, qy, qz, qw;
+
+    /**
+     * Local scale components (per slot).
+     */
+    private float[] sx, sy, sz;
+
+    /**
+     * Packed world matrices, 16 floats per slot in column-major order.
+     */
+    private float[] world;
+
+    /**
+     * Parent slot of each slot or {@link #NONE}.
+     */
+    private int[] parent;
+
+    /**
+     * Depth of each slot within the hierarchy (roots have a depth of zero).
+     */
+    private int[] depth;
+
+    /**
+     * Indicates that the local transform of a slot has changed since the last
+     * update.
+     */
+    private boolean[] dirty;
+
+    /**
+     * The update frame in which the world matrix of each slot was last
+     * recomputed. A child must be recomputed when its parent was recomputed
+     * during the same frame.
+     */
+    private int[] stamp;
+
+    /**
+     * Indicates that a slot has been removed and will be discarded during the
+     * next reorder.
+     */
+    private boolean[] removed;
+
+    /**
+     * Maps each slot to the handle of the node stored in it.
+     */
+    private int[] idOf;
+
+    /**
+     * Maps each node handle to its current slot or {@link #NONE}.
+     */
+    private int[] slotOf;
+
+    /**
+     * Start slot of each depth level. Level {@code n} occupies the range
+     * [levelStart[n], levelStart[n + 1]).
+     */
+    private int[] levelStart = new int[2];
+
+    /**
+     * Number of depth levels in the hierarchy.
+     */
+    private int levels;
+
+    /**
+     * Number of occupied slots.
+     */
+    private int count;
+
+    /**
+     * Number of node handles issued (including released handles).
+     */
+    private int handles;
+
+    /**
+     * Released node handles available for reuse.
+     */
+    private int[] freeHandles = new int[16];
+
+    /**
+     * Number of released node handles.
+     */
+    private int freeHandleCount;
+
+    /**
+     * Indicates that the slots are no longer in depth order and must be
+     * reordered before the next update.
+     */
+    private boolean reorder;
+
+    /**
+     * The current update frame.
+     */
+    private int frame;
+
+    /**
+     * Minimum size of a depth level before it is updated in parallel, or zero
+     * to disable parallel updates.
+     */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Number of world matrices recomputed by the last update.
+     */
+    private int lastUpdated;
+
+    /**
+     * Constructs an empty scene graph with room for 256 nodes.
+     */
+    public SceneGraph() {
+        this(256);
+    }
+
+    /**
+     * Constructs an empty scene graph with room for the specified number of
+     * nodes. The graph grows automatically when more nodes are created.
+     *
+     * @param capacity the initial node capacity.
+     */
+    public SceneGraph(final int capacity) {
+        allocate(Math.max(capacity, 1));
+        slotOf = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Creates a new root node with an identity transform.
+     *
+     * @return the handle of the new node.
+     */
+    public final int createNode() {
+        return createNode(NONE);
+    }
+
+    /**
+     * Creates a new node with an identity transform attached to the specified
+     * parent node.
+     *
+     * @param parentNode the handle of the parent node or {@link #NONE}.
+     * @return the handle of the new node.
+     */
+    public final int createNode(final int parentNode) {
+        final int parentSlot = parentNode == NONE ? NONE : slot(parentNode);
+        if (count == idOf.length) {
+            allocate(count * 2);
+        }
+        final int id = freeHandleCount > 0 ? freeHandles[--freeHandleCount] : handles++;
+        if (id >= slotOf.length) {
+            slotOf = Arrays.copyOf(slotOf, slotOf.length * 2);
+        }
+
+        final int s = count++;
+        idOf[s] = id;
+        slotOf[id] = s;
+        parent[s] = parentSlot;
+        depth[s] = parentSlot == NONE ? 0 : depth[parentSlot] + 1;
+        removed[s] = false;
+        dirty[s] = true;
+        stamp[s] = frame - 1;
+        tx[s] = ty[s] = tz[s] = 0f;
+        qx[s] = qy[s] = qz[s] = 0f;
+        qw[s] = 1f;
+        sx[s] = sy[s] = sz[s] = 1f;
+
+        /* Extend The Level Ranges, Appending A Shallower Node Breaks The Level Ordering */
+        if (!reorder) {
+            if (depth[s] == levels) {
+                if (levels + 2 > levelStart.length) {
+                    levelStart = Arrays.copyOf(levelStart, levelStart.length * 2);
+                }
+                levelStart[levels + 1] = count;
+                levels++;
+            } else if (depth[s] == levels - 1) {
+                levelStart[levels] = count;
+            } else {
+                reorder = true;
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Attaches a node (and its subtree) to a new parent.
+     *
+     * @param node the handle of the node to move.
+     * @param parentNode the handle of the new parent node or {@link #NONE}.
+     */
+    public final void setParent(final int node, final int parentNode) {
+        final int s = slot(node);
+        final int p = parentNode == NONE ? NONE : slot(parentNode);
+        for (int a = p; a != NONE; a = parent[a]) {
+            if (a == s) {
+                throw new IllegalArgumentException("Node " + node + " cannot be attached to its own descendant " + parentNode);
+            }
+        }
+        parent[s] = p;
+        dirty[s] = true;
+        reorder = true;
+    }
+
+    /**
+     * Removes a node and all of its descendants. The handles of the removed
+     * nodes become invalid.
+     *
+     * @param node the handle of the node to remove.
+     */
+    public final void remove(final int node) {
+        removed[slot(node)] = true;
+        reorder = true;
+    }
+
+    /**
+     * Returns the handle of the parent of a node.
+     *
+     * @param node the handle of the node.
+     * @return the handle of the parent node or {@link #NONE}.
+     */
+    public final int getParent(final int node) {
+        final int p = parent[slot(node)];
+        return p == NONE ? NONE : idOf[p];
+    }
+
+    /**
+     * Sets the local translation of a node.
+     *
+     * @param node the handle of the node.
+     * @param x the x-axis translation.
+     * @param y the y-axis translation.
+     * @param z the z-axis translation.
+     */
+    public final void setTranslation(final int node, final float x, final float y, final float z) {
+        final int s = slot(node);
+        tx[s] = x;
+        ty[s] = y;
+        tz[s] = z;
+        dirty[s] = true;
+    }
+
+    /**
+     * Sets the local rotation of a node. The quaternion is expected to be
+     * normalized.
+     *
+     * @param node the handle of the node.
+     * @param x the x component of the rotation quaternion.
+     * @param y the y component of the rotation quaternion.
+     * @param z the z component of the rotation quaternion.
+     * @param w the w component of the rotation quaternion.
+     */
+    public final void setRotation(final int node, final float x, final float y, final float z, final float w) {
+        final int s = slot(node);
+        qx[s] = x;
+        qy[s] = y;
+        qz[s] = z;
+        qw[s] = w;
+        dirty[s] = true;
+    }
+
+    /**
+     * Sets the local scale of a node.
+     *
+     * @param node the handle of the node.
+     * @param x the x-axis scale.
+     * @param y the y-axis scale.
+     * @param z the z-axis scale.
+     */
+    public final void setScale(final int node, final float x, final float y, final float z) {
+        final int s = slot(node);
+        sx[s] = x;
+        sy[s] = y;
+        sz[s] = z;
+        dirty[s] = true;
+    }
+
+    /**
+     * Copies the translation, rotation, and scale of a {@link Transform} into
+     * the local transform of a node.
+     *
+     * @param node the handle of the node.
+     * @param local the transform to copy.
+     */
+    public final void setLocal(final int node, final Transform local) {
+        final Vector3fc t = local.getTranslation();
+        final Quaternionfc r = local.getRotation();
+        final Vector3fc sc = local.getScale();
+        final int s = slot(node);
+        tx[s] = t.x();
+        ty[s] = t.y();
+        tz[s] = t.z();
+        qx[s] = r.x();
+        qy[s] = r.y();
+        qz[s] = r.z();
+        qw[s] = r.w();
+        sx[s] = sc.x();
+        sy[s] = sc.y();
+        sz[s] = sc.z();
+        dirty[s] = true;
+    }
+
+    /**
+     * Copies the local transform of a node into a {@link Transform}.
+     *
+     * @param node the handle of the node.
+     * @param dest the transform in which to store the local transform.
+     * @return the destination transform.
+     */
+    public final Transform getLocal(final int node, final Transform dest) {
+        final int s = slot(node);
+        dest.setTranslation(tx[s], ty[s], tz[s]);
+        dest.setRotation(qx[s], qy[s], qz[s], qw[s]);
+        dest.setScale(sx[s], sy[s], sz[s]);
+        return dest;
+    }
+
+    /**
+     * Marks a node as dirty so that its world matrix (and the world matrices
+     * of its descendants) will be recomputed during the next update.
+     *
+     * @param node the handle of the node.
+     */
+    public final void markDirty(final int node) {
+        dirty[slot(node)] = true;
+    }
+
+    /**
+     * Recomputes the world matrices of every dirty node and its descendants.
+     *
+     * @return the number of world matrices that were recomputed.
+     */
+    public final int update() {
+        if (reorder) {
+            reorder();
+        }
+        frame++;
+        int updated = 0;
+        for (int level = 0; level < levels; level++) {
+            final int start = levelStart[level];
+            final int end = levelStart[level + 1];
+            if (parallelThreshold > 0 && end - start >= parallelThreshold) {
+                final LevelTask task = new LevelTask(start, end);
+                ForkJoinPool.commonPool().invoke(task);
+                updated += task.updated;
+            } else {
+                updated += updateRange(start, end);
+            }
+        }
+        lastUpdated = updated;
+        return updated;
+    }
+
+    /**
+     * Copies the world matrix of a node into a {@link Matrix4f}. The world
+     * matrix is only valid after an {@link #update()}.
+     *
+     * @param node the handle of the node.
+     * @param dest the matrix in which to store the world matrix.
+     * @return the destination matrix.
+     */
+    public final Matrix4f getWorldMatrix(final int node, final Matrix4f dest) {
+        return dest.set(world, slot(node) * 16);
+    }
+
+    /**
+     * Returns the packed world matrix array. The world matrix of a node begins
+     * at index {@code getSlot(node) * 16}. The returned array is replaced when
+     * the graph grows.
+     *
+     * @return the packed world matrices of every node.
+     */
+    public final float[] getWorldMatrices() {
+        return world;
+    }
+
+    /**
+     * Returns the current slot of a node. Slots change when the hierarchy is
+     * reordered, which happens during the first update after structural
+     * changes.
+     *
+     * @param node the handle of the node.
+     * @return the current slot of the node.
+     */
+    public final int getSlot(final int node) {
+        return slot(node);
+    }
+
+    /**
+     * Returns the number of nodes in this scene graph.
+     *
+     * @return the number of nodes.
+     */
+    public final int getNodeCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of world matrices recomputed by the last update.
+     *
+     * @return the number of world matrices recomputed by the last update.
+     */
+    public final int getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * Sets the minimum number of nodes in a depth level before that level is
+     * updated in parallel using the common fork-join pool. A value of zero
+     * disables parallel updates.
+     *
+     * @param threshold the minimum level size for parallel updates.
+     */
+    public final void setParallelThreshold(final int threshold) {
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Recomputes the world matrices of the dirty slots within a range. Every
+     * parent of the range must already be up to date.
+     */
+    private int updateRange(final int start, final int end) {
+        final int current = frame;
+        int updated = 0;
+        for (int s = start; s < end; s++) {
+            final int p = parent[s];
+            if (dirty[s] || (p != NONE && stamp[p] == current)) {
+                compose(s, p);
+                dirty[s] = false;
+                stamp[s] = current;
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Computes the world matrix of a slot as the world matrix of its parent
+     * multiplied by the local (translation * rotation * scale) matrix.
+     */
+    private void compose(final int s, final int p) {
+        final float x = qx[s], y = qy[s], z = qz[s], w = qw[s];
+        final float xx = x * x, yy = y * y, zz = z * z;
+        final float xy = x * y, xz = x * z, yz = y * z;
+        final float xw = x * w, yw = y * w, zw = z * w;
+        final float scaleX = sx[s], scaleY = sy[s], scaleZ = sz[s];
+
+        /* Local Matrix Columns (Rotation * Scale) */
+        final float l00 = (1f - 2f * (yy + zz)) * scaleX;
+        final float l01 = (2f * (xy + zw)) * scaleX;
+        final float l02 = (2f * (xz - yw)) * scaleX;
+        final float l10 = (2f * (xy - zw)) * scaleY;
+        final float l11 = (1f - 2f * (xx + zz)) * scaleY;
+        final float l12 = (2f * (yz + xw)) * scaleY;
+        final float l20 = (2f * (xz + yw)) * scaleZ;
+        final float l21 = (2f * (yz - xw)) * scaleZ;
+        final float l22 = (1f - 2f * (xx + yy)) * scaleZ;
+        final float l30 = tx[s], l31 = ty[s], l32 = tz[s];
+
+        final float[] m = world;
+        final int o = s * 16;
+        if (p == NONE) {
+            m[o] = l00;
+            m[o + 1] = l01;
+            m[o + 2] = l02;
+            m[o + 3] = 0f;
+            m[o + 4] = l10;
+            m[o + 5] = l11;
+            m[o + 6] = l12;
+            m[o + 7] = 0f;
+            m[o + 8] = l20;
+            m[o + 9] = l21;
+            m[o + 10] = l22;
+            m[o + 11] = 0f;
+            m[o + 12] = l30;
+            m[o + 13] = l31;
+            m[o + 14] = l32;
+            m[o + 15] = 1f;
+            return;
+        }
+
+        /* Affine Parent * Local */
+        final int po = p * 16;
+        final float p00 = m[po], p01 = m[po + 1], p02 = m[po + 2];
+        final float p10 = m[po + 4], p11 = m[po + 5], p12 = m[po + 6];
+        final float p20 = m[po + 8], p21 = m[po + 9], p22 = m[po + 10];
+        final float p30 = m[po + 12], p31 = m[po + 13], p32 = m[po + 14];
+        m[o] = p00 * l00 + p10 * l01 + p20 * l02;
+        m[o + 1] = p01 * l00 + p11 * l01 + p21 * l02;
+        m[o + 2] = p02 * l00 + p12 * l01 + p22 * l02;
+        m[o + 3] = 0f;
+        m[o + 4] = p00 * l10 + p10 * l11 + p20 * l12;
+        m[o + 5] = p01 * l10 + p11 * l11 + p21 * l12;
+        m[o + 6] = p02 * l10 + p12 * l11 + p22 * l12;
+        m[o + 7] = 0f;
+        m[o + 8] = p00 * l20 + p10 * l21 + p20 * l22;
+        m[o + 9] = p01 * l20 + p11 * l21 + p21 * l22;
+        m[o + 10] = p02 * l20 + p12 * l21 + p22 * l22;
+        m[o + 11] = 0f;
+        m[o + 12] = p00 * l30 + p10 * l31 + p20 * l32 + p30;
+        m[o + 13] = p01 * l30 + p11 * l31 + p21 * l32 + p31;
+        m[o + 14] = p02 * l30 + p12 * l31 + p22 * l32 + p32;
+        m[o + 15] = 1f;
+    }
+
+    /**
+     * Discards removed subtrees and sorts the remaining slots by depth using a
+     * stable counting sort. Every array is permuted into the new order and the
+     * level ranges are rebuilt.
+     */
+    private void reorder() {
+        final int n = count;
+
+        /* Resolve Removed Subtrees And Depths (Parents May Follow Children After Reparenting) */
+        final int[] newDepth = new int[n];
+        int maxDepth = 0;
+        for (int s = 0; s < n; s++) {
+            int d = 0;
+            boolean alive = !removed[s];
+            for (int a = parent[s]; a != NONE && alive; a = parent[a]) {
+                alive = !removed[a];
+                d++;
+            }
+            newDepth[s] = alive ? d : -1;
+            maxDepth = Math.max(maxDepth, d);
+        }
+
+        /* Counting Sort By Depth */
+        final int[] start = new int[maxDepth + 2];
+        for (int s = 0; s < n; s++) {
+            if (newDepth[s] >= 0) {
+                start[newDepth[s] + 1]++;
+            }
+        }
+        for (int d = 0; d <= maxDepth; d++) {
+            start[d + 1] += start[d];
+        }
+        final int alive = start[maxDepth + 1];
+        final int[] newSlot = new int[n];
+        final int[] cursor = Arrays.copyOf(start, start.length);
+        for (int s = 0; s < n; s++) {
+            if (newDepth[s] >= 0) {
+                newSlot[s] = cursor[newDepth[s]]++;
+            } else {
+                newSlot[s] = NONE;
+                slotOf[idOf[s]] = NONE;
+                releaseHandle(idOf[s]);
+            }
+        }
+
+        /* Permute Every Per-Slot Array */
+        tx = permute(tx, newSlot);
+        ty = permute(ty, newSlot);
+        tz = permute(tz, newSlot);
+        qx = permute(qx, newSlot);
+        qy = permute(qy, newSlot);
+        qz = permute(qz, newSlot);
+        qw = permute(qw, newSlot);
+        sx = permute(sx, newSlot);
+        sy = permute(sy, newSlot);
+        sz = permute(sz, newSlot);
+        final float[] newWorld = new float[world.length];
+        final int[] newParent = new int[parent.length];
+        final int[] newIdOf = new int[idOf.length];
+        final int[] newStamp = new int[stamp.length];
+        final boolean[] newDirty = new boolean[dirty.length];
+        for (int s = 0; s < n; s++) {
+            final int t = newSlot[s];
+            if (t != NONE) {
+                System.arraycopy(world, s * 16, newWorld, t * 16, 16);
+                newParent[t] = parent[s] == NONE ? NONE : newSlot[parent[s]];
+                newIdOf[t] = idOf[s];
+                newStamp[t] = stamp[s];
+                newDirty[t] = dirty[s] || newDepth[s] != depth[s];
+                slotOf[idOf[s]] = t;
+            }
+        }
+        world = newWorld;
+        parent = newParent;
+        idOf = newIdOf;
+        stamp = newStamp;
+        dirty = newDirty;
+        Arrays.fill(removed, false);
+        for (int s = 0; s < n; s++) {
+            if (newSlot[s] != NONE) {
+                depth[newSlot[s]] = newDepth[s];
+            }
+        }
+
+        count = alive;
+        levels = alive == 0 ? 0 : maxDepth + 1;
+        levelStart = start;
+        reorder = false;
+    }
+
+    /**
+     * Returns a copy of a per-slot array in the new slot order.
+     */
+    private static float[] permute(final float[] values, final int[] newSlot) {
+        final float[] result = new float[values.length];
+        for (int s = 0; s < newSlot.length; s++) {
+            if (newSlot[s] != NONE) {
+                result[newSlot[s]] = values[s];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a removed node handle to the pool of reusable handles.
+     */
+    private void releaseHandle(final int id) {
+        if (freeHandleCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeHandleCount * 2);
+        }
+        freeHandles[freeHandleCount++] = id;
+    }
+
+    /**
+     * Grows every per-slot array to the specified capacity.
+     */
+    private void allocate(final int capacity) {
+        tx = grow(tx, capacity);
+        ty = grow(ty, capacity);
+        tz = grow(tz, capacity);
+        qx = grow(qx, capacity);
+        qy = grow(qy, capacity);
+        qz = grow(qz, capacity);
+        qw = grow(qw, capacity);
+        sx = grow(sx, capacity);
+        sy = grow(sy, capacity);
+        sz = grow(sz, capacity);
+        world = grow(world, capacity * 16);
+        parent = parent == null ? new int[capacity] : Arrays.copyOf(parent, capacity);
+        depth = depth == null ? new int[capacity] : Arrays.copyOf(depth, capacity);
+        stamp = stamp == null ? new int[capacity] : Arrays.copyOf(stamp, capacity);
+        idOf = idOf == null ? new int[capacity] : Arrays.copyOf(idOf, capacity);
+        dirty = dirty == null ? new boolean[capacity] : Arrays.copyOf(dirty, capacity);
+        removed = removed == null ? new boolean[capacity] : Arrays.copyOf(removed, capacity);
+    }
+
+    /**
+     * Grows a float array to the specified length.
+     */
+    private static float[] grow(final float[] values, final int length) {
+        return values == null ? new float[length] : Arrays.copyOf(values, length);
+    }
+
+    /**
+     * Returns the slot of a node handle, validating the handle.
+     */
+    private int slot(final int node) {
+        final int s;
+        if (node < 0 || node >= handles || (s = slotOf[node]) == NONE || removed[s]) {
+            throw new IllegalArgumentException("Invalid scene graph node: " + node);
+        }
+        return s;
+    }
+
+    /**
+     * Fork-join task that updates a single depth level in parallel chunks.
+     */
+    private final class LevelTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int start, end;
+
+        private int updated;
+
+        LevelTask(final int start, final int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= parallelThreshold / 2) {
+                updated = updateRange(start, end);
+            } else {
+                final int mid = (start + end) >>> 1;
+                final LevelTask left = new LevelTask(start, mid);
+                final LevelTask right = new LevelTask(mid, end);
+                invokeAll(left, right);
+                updated = left.updated + right.updated;
+            }
+        }
+    }
+}
@@ -1,14 +1,52 @@
 package net.cybertekt.util;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Cached Thread Pool - (C) Cybertekt Software
+ *
+ * <p>
+ * Thread pool with a bounded task queue that grows from its core size up to
+ * its maximum size while the queue holds more than {@code spawnRatio} tasks
+ * per worker, and retires workers beyond the core size after they stay idle
+ * for the timeout. Core workers start with the first submission, so that
+ * {@link #threadCreated(Thread)} is never called from the constructor. Workers are spawned and retired with compare-and-set on
+ * the thread count, so the pool never exceeds its bounds without locking.
+ * </p>
+ *
+ * <p>
+ * When the queue is full a submission follows the {@link SubmitMode} of the
+ * pool or of the call: it blocks until there is room, runs the task on the
+ * submitting thread, drops the oldest queued task, or fails fast with a
+ * {@link RejectedExecutionException}. Tasks that are dropped or rejected are
+ * passed to {@link #taskRejected(Callable, SubmitMode)}.
+ * </p>
+ *
+ * <p>
+ * {@link #shutdown()} stops accepting tasks and lets the workers drain the
+ * queue, interrupting only idle workers; {@link #shutdownNow()} also removes
+ * the queued tasks and interrupts running ones.
+ * </p>
+ *
+ * <p>
+ * Queue wait and run times are passed to the task hooks and accumulated with
+ * the thread and task counts into the {@link Metrics} returned by
+ * {@link #getMetrics()}.
+ * </p>
  *
  * @author dal0119
  */
@@ -19,27 +57,68 @@ public class CachedThreadPool<T extends Callable> {
      */
     public static final Logger log = LoggerFactory.getLogger(CachedThreadPool.class);
 
-    private int coreThreadCount;
+    /**
+     * Behaviour of a submission when the task queue is full.
+     */
+    public enum SubmitMode {
+
+        /**
+         * Wait until the queue has room, or the pool shuts down.
+         */
+        BLOCK,
+        /**
+         * Run the task on the submitting thread.
+         */
+        CALLER_RUNS,
+        /**
+         * Drop the oldest queued task to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Reject the task with a {@link RejectedExecutionException}.
+         */
+        FAIL_FAST
+    }
+
+    private static final int RUNNING = 0, SHUTDOWN = 1, STOP = 2;
+
+    private final int coreThreadCount;
+
+    private final int maxThreadCount;
+
+    private final int spawnRatio;
 
-    private int maxThreadCount;
+    private final int queueCapacity;
 
-    private int spawnRatio;
+    private final long timeoutTime;
 
-    private long timeoutTime;
+    private final TimeUnit timeoutUnit;
 
-    private TimeUnit timeoutUnit;
+    private volatile SubmitMode submitMode = SubmitMode.BLOCK;
 
-    private final LinkedBlockingQueue<T> taskQue;
+    private final LinkedBlockingQueue<Entry<T>> taskQue;
 
     private final ThreadFactory threadFactory;
 
+    private final Set<Worker> workers;
+
     private final AtomicInteger totalThreads;
 
     private final AtomicInteger idleThreads;
 
-    private final AtomicInteger taskCount;
+    private final AtomicInteger state;
+
+    private final Object terminated = new Object();
+
+    private final LongAdder spawned = new LongAdder(), retired = new LongAdder();
+
+    private final LongAdder completed = new LongAdder(), failed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder(), dropped = new LongAdder(), callerRuns = new LongAdder();
+
+    private final LongAdder waitNanos = new LongAdder(), runNanos = new LongAdder();
 
-    private boolean shutdown;
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
 
     public CachedThreadPool() {
         this(0, 25, 2, Integer.MAX_VALUE, 1L, TimeUnit.SECONDS, new DefaultThreadFactory());
@@ -54,42 +133,131 @@ public class CachedThreadPool<T extends Callable> {
     }
 
     public CachedThreadPool(final int coreThreads, final int maxThreads, final int rate, final int maxQueSize, final long timeout, final TimeUnit timeUnit, final ThreadFactory factory) {
+        if (coreThreads < 0 || maxThreads <= 0 || coreThreads > maxThreads || rate <= 0 || maxQueSize <= 0 || timeout < 0) {
+            throw new IllegalArgumentException("Invalid thread pool configuration");
+        }
         coreThreadCount = coreThreads;
         maxThreadCount = maxThreads;
         spawnRatio = rate;
+        queueCapacity = maxQueSize;
         timeoutTime = timeout;
         timeoutUnit = timeUnit;
         taskQue = new LinkedBlockingQueue<>(maxQueSize);
         threadFactory = factory;
+        workers = ConcurrentHashMap.newKeySet();
         totalThreads = new AtomicInteger();
         idleThreads = new AtomicInteger();
-        taskCount = new AtomicInteger();
-        initCoreThreads();
+        state = new AtomicInteger(RUNNING);
     }
 
+    /**
+     * Submits tasks using the submit mode of the pool.
+     *
+     * @param tasks the tasks to run.
+     * @throws RejectedExecutionException if the pool has been shut down, or a
+     * task is rejected in {@link SubmitMode#FAIL_FAST} mode. Tasks before the
+     * rejected one remain queued.
+     */
+    @SafeVarargs
     public final void submit(final T... tasks) {
+        submit(submitMode, tasks);
+    }
+
+    /**
+     * Submits tasks, handling a full queue according to a submit mode.
+     *
+     * @param mode the behaviour when the queue is full.
+     * @param tasks the tasks to run.
+     * @throws RejectedExecutionException if the pool has been shut down, or a
+     * task is rejected in {@link SubmitMode#FAIL_FAST} mode. Tasks before the
+     * rejected one remain queued.
+     */
+    @SafeVarargs
+    public final void submit(final SubmitMode mode, final T... tasks) {
         for (final T task : tasks) {
-            taskQue.add(task);
+            enqueue(mode, task);
         }
-        taskCount.addAndGet(tasks.length);
-        while (taskCount.get() >= spawnRatio && totalThreads.get() < maxThreadCount) {
-            Thread t = threadFactory.newThread(new Worker(false));
-            threadCreated(t);
-            t.start();
-            taskCount.set(taskCount.get() - spawnRatio);
+    }
+
+    public final void setSubmitMode(final SubmitMode mode) {
+        if (mode == null) {
+            throw new NullPointerException("Submit mode cannot be null");
         }
+        submitMode = mode;
+    }
+
+    public final SubmitMode getSubmitMode() {
+        return submitMode;
     }
 
+    /**
+     * Called on the worker thread after a task completes.
+     *
+     * @param task the task.
+     */
     protected void taskCompleted(final T task) {
     }
 
+    /**
+     * Called on the worker thread after a task throws.
+     *
+     * @param task the task.
+     * @param e the exception thrown by the task.
+     */
     protected void taskFailed(final T task, final Exception e) {
     }
 
+    /**
+     * Called after a task completes with the time it spent queued and
+     * running. Calls {@link #taskCompleted(Callable)} by default.
+     *
+     * @param task the task.
+     * @param waitNanos the time between submission and the start of the task.
+     * @param runNanos the time the task ran.
+     */
+    protected void taskCompleted(final T task, final long waitNanos, final long runNanos) {
+        taskCompleted(task);
+    }
+
+    /**
+     * Called after a task throws with the time it spent queued and running.
+     * Calls {@link #taskFailed(Callable, Exception)} by default.
+     *
+     * @param task the task.
+     * @param e the exception thrown by the task.
+     * @param waitNanos the time between submission and the start of the task.
+     * @param runNanos the time the task ran.
+     */
+    protected void taskFailed(final T task, final Exception e, final long waitNanos, final long runNanos) {
+        taskFailed(task, e);
+    }
+
+    /**
+     * Called on the submitting thread for a task that is rejected or dropped
+     * from a full queue, or submitted after shutdown.
+     *
+     * @param task the task that will not run.
+     * @param mode the submit mode in effect.
+     */
+    protected void taskRejected(final T task, final SubmitMode mode) {
+    }
+
+    /**
+     * Called on the spawning thread before a worker thread starts.
+     *
+     * @param t the worker thread.
+     */
     protected void threadCreated(final Thread t) {
 
     }
 
+    /**
+     * Called on a worker thread as it exits.
+     *
+     * @param t the worker thread.
+     * @param reason the error that ended the worker, or null if it retired
+     * or the pool shut down.
+     */
     protected void threadDestroyed(final Thread t, final Exception reason) {
 
     }
@@ -106,66 +274,403 @@ public class CachedThreadPool<T extends Callable> {
         return idleThreads.get();
     }
 
-    private void initCoreThreads() {
-        for (int i = 0; i < coreThreadCount; i++) {
-            Thread t = threadFactory.newThread(new Worker(true));
-            t.start();
+    public final int queueDepth() {
+        return taskQue.size();
+    }
+
+    /**
+     * @return a snapshot of the live counters of the pool.
+     */
+    public final Metrics getMetrics() {
+        return new Metrics(this);
+    }
+
+    /**
+     * Stops accepting tasks and wakes idle workers, which drain the queue and
+     * exit. Running tasks are not interrupted.
+     */
+    public final void shutdown() {
+        advance(SHUTDOWN);
+        for (final Worker worker : workers) {
+            worker.interruptIfIdle();
+        }
+        signalTermination();
+    }
+
+    /**
+     * Stops accepting tasks, removes the queued tasks, and interrupts every
+     * worker.
+     *
+     * @return the tasks that were queued and will not run.
+     */
+    public final List<T> shutdownNow() {
+        advance(STOP);
+        final List<Entry<T>> drained = new ArrayList<>();
+        taskQue.drainTo(drained);
+        for (final Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        signalTermination();
+        final List<T> tasks = new ArrayList<>(drained.size());
+        for (final Entry<T> entry : drained) {
+            tasks.add(entry.task);
+        }
+        return tasks;
+    }
+
+    public final boolean isShutdown() {
+        return state.get() != RUNNING;
+    }
+
+    /**
+     * Waits for every worker to exit after a shutdown.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of the timeout.
+     * @return true if every worker has exited.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public final boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminated) {
+            while (state.get() == RUNNING || totalThreads.get() > 0) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(terminated, remaining);
+            }
+        }
+        return true;
+    }
+
+    private void enqueue(final SubmitMode mode, final T task) {
+        if (task == null) {
+            throw new NullPointerException("Task cannot be null");
+        }
+        if (state.get() != RUNNING) {
+            reject(task, mode, "Thread pool has been shut down");
+        }
+        final Entry<T> entry = new Entry<>(task);
+        if (!taskQue.offer(entry)) {
+            switch (mode) {
+                case BLOCK:
+                    try {
+                        while (!taskQue.offer(entry, 10, TimeUnit.MILLISECONDS)) {
+                            if (state.get() != RUNNING) {
+                                reject(task, mode, "Thread pool has been shut down");
+                            }
+                        }
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        reject(task, mode, "Interrupted while waiting for queue space");
+                    }
+                    break;
+                case CALLER_RUNS:
+                    callerRuns.increment();
+                    run(entry);
+                    return;
+                case DROP_OLDEST:
+                    while (!taskQue.offer(entry)) {
+                        final Entry<T> oldest = taskQue.poll();
+                        if (oldest != null) {
+                            dropped.increment();
+                            taskRejected(oldest.task, mode);
+                        }
+                    }
+                    break;
+                default:
+                    reject(task, mode, "Task queue is full (" + queueCapacity + " tasks)");
+            }
+        }
+
+        /* A Shutdown May Have Drained The Queue Before The Task Was Added */
+        if (state.get() != RUNNING && taskQue.remove(entry)) {
+            reject(task, mode, "Thread pool has been shut down");
+        }
+        grow();
+    }
+
+    private void reject(final T task, final SubmitMode mode, final String reason) {
+        rejected.increment();
+        taskRejected(task, mode);
+        throw new RejectedExecutionException(reason);
+    }
+
+    /**
+     * Spawns workers while the pool is below its core size, or below its
+     * maximum while the queue holds more than the spawn ratio of tasks per
+     * worker or holds any task while the pool has no workers.
+     */
+    private void grow() {
+        int total;
+        while ((total = totalThreads.get()) < maxThreadCount && state.get() != STOP) {
+            final int depth = taskQue.size();
+            if (total >= coreThreadCount && (depth == 0 || (total > 0 && depth <= spawnRatio * total))) {
+                return;
+            }
+            if (totalThreads.compareAndSet(total, total + 1)) {
+                startWorker();
+            }
+        }
+    }
+
+    /**
+     * Starts a worker for a thread count that has already been reserved.
+     */
+    private void startWorker() {
+        final Worker worker = new Worker();
+        try {
+            worker.thread = threadFactory.newThread(worker);
+            workers.add(worker);
+            spawned.increment();
+            threadCreated(worker.thread);
+            worker.thread.start();
+        } catch (final RuntimeException | Error e) {
+            workers.remove(worker);
+            totalThreads.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the thread count of a worker if the pool is above its core
+     * size.
+     */
+    private boolean tryRetire() {
+        int total;
+        while ((total = totalThreads.get()) > coreThreadCount) {
+            if (totalThreads.compareAndSet(total, total - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void advance(final int target) {
+        state.accumulateAndGet(target, Math::max);
+    }
+
+    private void signalTermination() {
+        synchronized (terminated) {
+            terminated.notifyAll();
+        }
+    }
+
+    private void run(final Entry<T> entry) {
+        final long start = System.nanoTime();
+        final long wait = start - entry.queued;
+        waitNanos.add(wait);
+        maxWaitNanos.accumulate(wait);
+        try {
+            entry.task.call();
+            final long time = System.nanoTime() - start;
+            runNanos.add(time);
+            completed.increment();
+            taskCompleted(entry.task, wait, time);
+        } catch (final Exception e) {
+            final long time = System.nanoTime() - start;
+            runNanos.add(time);
+            failed.increment();
+            taskFailed(entry.task, e, wait, time);
+        }
+    }
+
+    /**
+     * A queued task and the time it was submitted.
+     */
+    private static final class Entry<T> {
+
+        private final T task;
+
+        private final long queued = System.nanoTime();
+
+        private Entry(final T task) {
+            this.task = task;
         }
-        totalThreads.set(coreThreadCount);
     }
 
     private final class Worker implements Runnable {
 
-        private final boolean core;
+        /**
+         * Held while a task runs, so that a graceful shutdown only interrupts
+         * workers waiting for a task.
+         */
+        private final ReentrantLock running = new ReentrantLock();
+
+        private volatile Thread thread;
 
-        private int completed;
+        private int tasksRun;
 
-        public Worker(final boolean core) {
-            this.core = core;
+        private void interruptIfIdle() {
+            if (running.tryLock()) {
+                try {
+                    thread.interrupt();
+                } finally {
+                    running.unlock();
+                }
+            }
         }
 
         @Override
         public void run() {
-            while (!shutdown) {
-                try {
-                    boolean wasEmpty = taskQue.isEmpty();
-                    if (wasEmpty) {
-                        //onThreadSleep(Thread.currentThread());
+            Exception reason = null;
+            boolean counted = true;
+            try {
+                while (state.get() != STOP) {
+                    final Entry<T> entry;
+                    if (state.get() == SHUTDOWN) {
+                        entry = taskQue.poll();
+                        if (entry == null) {
+                            break;
+                        }
+                    } else {
                         idleThreads.incrementAndGet();
+                        try {
+                            entry = taskQue.poll(timeoutTime, timeoutUnit);
+                        } catch (final InterruptedException e) {
+                            /* Woken By A Shutdown */
+                            continue;
+                        } finally {
+                            idleThreads.decrementAndGet();
+                        }
+                        if (entry == null) {
+                            if (tryRetire()) {
+                                counted = false;
+                                break;
+                            }
+                            continue;
+                        }
                     }
-                    T task = core ? taskQue.take() : taskQue.poll(timeoutTime, timeoutUnit);
-                    if (task == null) {
-                        idleThreads.decrementAndGet();
-                        throw new InterruptedException("Thread Timed Out.");
-                    }
-                    if (wasEmpty) {
-                        //onThreadWake(Thread.currentThread());
-                        idleThreads.decrementAndGet();
-                    }
+                    running.lock();
                     try {
-                        task.call();
-                        completed++;
-                        taskCompleted(task);
-                    } catch (final Exception e) {
-                        completed++;
-                        taskFailed(task, e);
+                        /* Clear An Interrupt Meant To Wake An Idle Worker */
+                        if (state.get() != STOP) {
+                            Thread.interrupted();
+                        }
+                        CachedThreadPool.this.run(entry);
+                        tasksRun++;
+                    } finally {
+                        running.unlock();
                     }
-                } catch (final Exception e) {
+                }
+            } catch (final RuntimeException | Error e) {
+                reason = e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+                throw e;
+            } finally {
+                workers.remove(this);
+                if (counted) {
                     totalThreads.decrementAndGet();
-
-                    if (completed == 0) {
-                        log.info("Thread {} destroyed without completing any tasks.");
-                    }
-                    
-                    threadDestroyed(Thread.currentThread(), e);
-                    return;
+                }
+                retired.increment();
+                if (tasksRun == 0) {
+                    log.debug("Thread {} destroyed without completing any tasks.", thread.getName());
+                }
+                threadDestroyed(thread, reason);
+                if (state.get() != RUNNING) {
+                    signalTermination();
+                } else if (!taskQue.isEmpty()) {
+                    /* A Submission May Have Seen This Worker Before It Retired */
+                    grow();
                 }
             }
-            if (completed == 0) {
-                log.info("Thread {} destroyed without completing any tasks.");
-            }
-            totalThreads.decrementAndGet();
-            threadDestroyed(Thread.currentThread(), null);
+        }
+    }
+
+    /**
+     * Snapshot of the counters of a pool. Times are in nanoseconds.
+     */
+    public static final class Metrics {
+
+        private final int queueDepth, queueCapacity, totalThreads, idleThreads;
+
+        private final long spawnedThreads, retiredThreads;
+
+        private final long completedTasks, failedTasks, rejectedTasks, droppedTasks, callerRunTasks;
+
+        private final long totalWaitNanos, maxWaitNanos, totalRunNanos;
+
+        private Metrics(final CachedThreadPool<?> pool) {
+            queueDepth = pool.taskQue.size();
+            queueCapacity = pool.queueCapacity;
+            totalThreads = pool.totalThreads.get();
+            idleThreads = pool.idleThreads.get();
+            spawnedThreads = pool.spawned.sum();
+            retiredThreads = pool.retired.sum();
+            completedTasks = pool.completed.sum();
+            failedTasks = pool.failed.sum();
+            rejectedTasks = pool.rejected.sum();
+            droppedTasks = pool.dropped.sum();
+            callerRunTasks = pool.callerRuns.sum();
+            totalWaitNanos = pool.waitNanos.sum();
+            maxWaitNanos = pool.maxWaitNanos.get();
+            totalRunNanos = pool.runNanos.sum();
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public int getTotalThreads() {
+            return totalThreads;
+        }
+
+        public int getIdleThreads() {
+            return idleThreads;
+        }
+
+        public long getSpawnedThreads() {
+            return spawnedThreads;
+        }
+
+        public long getRetiredThreads() {
+            return retiredThreads;
+        }
+
+        public long getCompletedTasks() {
+            return completedTasks;
+        }
+
+        public long getFailedTasks() {
+            return failedTasks;
+        }
+
+        public long getRejectedTasks() {
+            return rejectedTasks;
+        }
+
+        public long getDroppedTasks() {
+            return droppedTasks;
+        }
+
+        public long getCallerRunTasks() {
+            return callerRunTasks;
+        }
+
+        public long getMaxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        public long getAverageWaitNanos() {
+            final long started = completedTasks + failedTasks;
+            return started == 0 ? 0 : totalWaitNanos / started;
+        }
+
+        public long getAverageRunNanos() {
+            final long started = completedTasks + failedTasks;
+            return started == 0 ? 0 : totalRunNanos / started;
+        }
+
+        @Override
+        public String toString() {
+            return "Queue [" + queueDepth + "/" + queueCapacity + "] - Threads [" + totalThreads + " total, " + idleThreads + " idle, "
+                    + spawnedThreads + " spawned, " + retiredThreads + " retired] - Tasks [" + completedTasks + " completed, " + failedTasks + " failed, "
+                    + rejectedTasks + " rejected, " + droppedTasks + " dropped, " + callerRunTasks + " caller runs] - Wait [avg "
+                    + getAverageWaitNanos() / 1000 + "us, max " + maxWaitNanos / 1000 + "us] - Run [avg " + getAverageRunNanos() / 1000 + "us]";
         }
     }
 
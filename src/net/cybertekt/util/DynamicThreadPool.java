@@ -1,18 +1,47 @@
 package net.cybertekt.util;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.Callable;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Dynamic Thread Pool - (C) Cybertekt Software
  *
- * Custom
+ * <p>
+ * Elastic work-stealing thread pool. Every worker owns a lock-free deque:
+ * tasks submitted from inside a running task are pushed onto the deque of the
+ * submitting worker and run last in, first out, while tasks submitted from
+ * other threads enter a shared submission queue. A worker without local work
+ * takes from the submission queue and then steals the oldest task of another
+ * worker, so no lock is held while tasks run and workers only contend when
+ * they are out of work.
+ * </p>
+ *
+ * <p>
+ * Idle workers park. A submission wakes the most recently parked worker, or
+ * spawns a new one when none is idle, the pool is below its maximum size, and
+ * either the submission queue holds more than {@code tasksPerThread} tasks for
+ * each running worker or the deque of the submitting worker holds more than
+ * {@code tasksPerThread} tasks. Workers beyond the core count retire after
+ * staying idle for the keep alive time.
+ * </p>
+ *
+ * <p>
+ * {@link #onTaskComplete(int, Callable)} and
+ * {@link #onTaskFail(Callable, Exception)} are called on the worker thread
+ * after each task.
+ * </p>
  *
  * @version 1.0.0
  * @since 1.0.0
@@ -25,159 +54,527 @@ public class DynamicThreadPool<T extends Callable> {
      */
     public static final Logger log = LoggerFactory.getLogger(DynamicThreadPool.class);
 
-    private int core;
+    /**
+     * Worker running on the current thread, if the thread belongs to a pool.
+     */
+    private static final ThreadLocal<DynamicThreadPool<?>.Worker> CURRENT = new ThreadLocal<>();
+
+    private final int core;
 
-    private int maxThreads;
+    private final int maxThreads;
 
-    private int tasksPerThread;
+    private final int tasksPerThread;
+
+    private final long keepAliveNanos;
 
     private volatile boolean shutdown;
 
     private volatile boolean paused;
 
-    private final LinkedBlockingQueue<T> taskQue;
+    /**
+     * Tasks submitted from threads outside the pool.
+     */
+    private final ConcurrentLinkedQueue<T> taskQue;
 
-    private final ThreadFactory threadFactory;
+    /**
+     * Approximate number of tasks in the submission queue.
+     */
+    private final AtomicInteger queued;
 
-    private final List<Thread> threads;
+    /**
+     * Parked workers, most recently parked first.
+     */
+    private final ConcurrentLinkedDeque<Worker> idle;
+
+    /**
+     * Running workers, indexed by slot so that thieves can scan them.
+     */
+    private final AtomicReferenceArray<Worker> workers;
+
+    private final ThreadFactory threadFactory;
 
     private final AtomicInteger totalThreads;
 
     private final AtomicInteger idleThreads;
 
+    private final AtomicInteger workerIds;
+
+    private final LongAdder completed;
+
+    private final LongAdder steals;
+
+    private final Object terminated = new Object();
+
     public DynamicThreadPool() {
         this(0, Runtime.getRuntime().availableProcessors(), 2, new DefaultThreadFactory());
     }
 
     public DynamicThreadPool(final int coreThreads, final int maxThreads, final int tasksPerThread, final ThreadFactory factory) {
+        this(coreThreads, maxThreads, tasksPerThread, 1L, TimeUnit.SECONDS, factory);
+    }
+
+    /**
+     * Constructs a pool and starts its core workers.
+     *
+     * @param coreThreads the number of workers that never retire.
+     * @param maxThreads the maximum number of workers.
+     * @param tasksPerThread the backlog per running worker above which a new
+     * worker is spawned.
+     * @param keepAlive how long a worker beyond the core count stays idle
+     * before it retires.
+     * @param unit the unit of the keep alive time.
+     * @param factory the factory creating worker threads.
+     */
+    public DynamicThreadPool(final int coreThreads, final int maxThreads, final int tasksPerThread, final long keepAlive, final TimeUnit unit, final ThreadFactory factory) {
+        if (coreThreads < 0 || maxThreads <= 0 || coreThreads > maxThreads || tasksPerThread <= 0 || keepAlive < 0) {
+            throw new IllegalArgumentException("Invalid thread pool configuration");
+        }
         this.core = coreThreads;
         this.maxThreads = maxThreads;
         this.tasksPerThread = tasksPerThread;
+        this.keepAliveNanos = unit.toNanos(keepAlive);
         this.threadFactory = factory;
-        this.taskQue = new LinkedBlockingQueue();
-        threads = new ArrayList<>();
-        totalThreads = new AtomicInteger(core);
-        idleThreads = new AtomicInteger();
+        this.taskQue = new ConcurrentLinkedQueue<>();
+        this.queued = new AtomicInteger();
+        this.idle = new ConcurrentLinkedDeque<>();
+        this.workers = new AtomicReferenceArray<>(maxThreads);
+        this.totalThreads = new AtomicInteger();
+        this.idleThreads = new AtomicInteger();
+        this.workerIds = new AtomicInteger();
+        this.completed = new LongAdder();
+        this.steals = new LongAdder();
         initCoreThreads();
     }
 
+    /**
+     * Submits a task. Called from a task running in this pool, the task is
+     * pushed onto the deque of the calling worker; otherwise it is added to
+     * the shared submission queue.
+     *
+     * @param task the task to run.
+     * @throws RejectedExecutionException if the pool has been shut down.
+     */
     public final void submit(final T task) {
-        synchronized (taskQue) {
-            taskQue.add(task);
-            taskQue.notify();
-            log.info("Task Submitted. Que Size is {}", taskQue.size());
-            while (!taskQue.isEmpty() && (taskQue.size() - idleThreads.get()) % tasksPerThread == 0) {
-                Thread t = threadFactory.newThread(new Worker(totalThreads.getAndIncrement(), true, taskQue.poll()));
-                threads.add(t);
-                t.start();
-            }
+        if (task == null) {
+            throw new NullPointerException("Task cannot be null");
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("Thread pool has been shut down");
+        }
+        final DynamicThreadPool<?>.Worker current = CURRENT.get();
+        if (current != null && current.pool() == this) {
+            /* The Slot Of A Running Worker Holds The Same Worker Typed For This Pool */
+            final Worker worker = workers.get(current.slot);
+            worker.deque.push(task);
+            signalWork(worker.deque.size() > tasksPerThread);
+        } else {
+            taskQue.offer(task);
+            final int backlog = queued.incrementAndGet();
+            signalWork(backlog > tasksPerThread * totalThreads.get());
         }
     }
 
     protected void onTaskComplete(final int id, final T task) {
-        log.info("Worked thread {} completed task {}", id, task);
+        log.debug("Worker thread {} completed task {}", id, task);
     }
 
     protected void onTaskFail(final T task, final Exception e) {
         log.warn("Task [{}] failed: {}", task, e.getLocalizedMessage());
     }
 
+    /**
+     * @return the number of running workers.
+     */
     public final int activeThreads() {
         return totalThreads.get();
     }
 
+    /**
+     * @return the number of parked workers.
+     */
+    public final int idleThreads() {
+        return idleThreads.get();
+    }
+
+    /**
+     * @return the approximate number of tasks waiting in the submission queue
+     * and the worker deques.
+     */
+    public final int queuedTasks() {
+        int count = Math.max(0, queued.get());
+        for (int i = 0; i < workers.length(); i++) {
+            final Worker worker = workers.get(i);
+            if (worker != null) {
+                count += worker.deque.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of tasks that have completed or failed.
+     */
+    public final long completedTasks() {
+        return completed.sum();
+    }
+
+    /**
+     * @return the number of tasks taken from the deque of another worker.
+     */
+    public final long stolenTasks() {
+        return steals.sum();
+    }
+
+    /**
+     * Pauses the pool, or resumes it if it is paused. Workers finish their
+     * current task and park until the pool is resumed; submissions are still
+     * accepted.
+     */
     public final void pause() {
         paused = !paused;
-        synchronized (taskQue) {
-            taskQue.notify();
+        if (!paused) {
+            unparkAll();
         }
     }
 
+    public final boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Stops accepting tasks. Queued tasks still run, after which the workers
+     * exit.
+     */
+    public final void shutdown() {
+        shutdown = true;
+        paused = false;
+        unparkAll();
+        synchronized (terminated) {
+            terminated.notifyAll();
+        }
+    }
+
+    public final boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Waits for every worker to exit after {@link #shutdown()}.
+     *
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of the timeout.
+     * @return true if every worker has exited.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public final boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminated) {
+            while (!shutdown || totalThreads.get() > 0) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(terminated, remaining);
+            }
+        }
+        return true;
+    }
+
     private void initCoreThreads() {
         for (int i = 0; i < core; i++) {
-            Thread t = threadFactory.newThread(new Worker(i, false));
-            threads.add(t);
-            t.start();
+            totalThreads.incrementAndGet();
+            startWorker(false);
         }
     }
 
-    private void updatePool() {
-        while (!taskQue.isEmpty() && (taskQue.size() - idleThreads.get()) % tasksPerThread == 0) {
-            Thread t = threadFactory.newThread(new Worker(totalThreads.getAndIncrement(), true, taskQue.poll()));
-            threads.add(t);
-            t.start();
+    /**
+     * Wakes a parked worker, or spawns one if none is parked and either the
+     * pool has no workers or the caller found a backlog above the spawn
+     * ratio.
+     */
+    private void signalWork(final boolean backlog) {
+        final Worker parked = idle.pollFirst();
+        if (parked != null) {
+            LockSupport.unpark(parked.thread);
+            return;
+        }
+        int total;
+        while ((total = totalThreads.get()) < maxThreads && (total == 0 || backlog)) {
+            if (totalThreads.compareAndSet(total, total + 1)) {
+                startWorker(true);
+                return;
+            }
         }
     }
 
+    /**
+     * Starts a worker for a thread count that has already been reserved.
+     */
+    private void startWorker(final boolean expires) {
+        final Worker worker = new Worker(workerIds.getAndIncrement(), expires);
+        try {
+            worker.thread = threadFactory.newThread(worker);
+            worker.thread.start();
+        } catch (final RuntimeException | Error e) {
+            totalThreads.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void unparkAll() {
+        for (int i = 0; i < workers.length(); i++) {
+            final Worker worker = workers.get(i);
+            if (worker != null && worker.thread != null) {
+                LockSupport.unpark(worker.thread);
+            }
+        }
+    }
+
+    /**
+     * Checks whether any task is waiting in the submission queue or in the
+     * deque of any worker.
+     */
+    private boolean hasWork() {
+        if (!taskQue.isEmpty()) {
+            return true;
+        }
+        for (int i = 0; i < workers.length(); i++) {
+            final Worker worker = workers.get(i);
+            if (worker != null && !worker.deque.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private final class Worker implements Runnable {
 
         private final int id;
 
         private final boolean expires;
 
-        private T currentTask;
+        private final WorkDeque<T> deque = new WorkDeque<>();
 
-        public Worker(final int id, final boolean expires) {
-            this(id, expires, null);
-        }
+        private volatile Thread thread;
+
+        private int slot = -1;
 
-        public Worker(final int id, final boolean expires, final T firstTask) {
+        public Worker(final int id, final boolean expires) {
             this.id = id;
             this.expires = expires;
-            this.currentTask = firstTask;
+        }
+
+        private DynamicThreadPool<T> pool() {
+            return DynamicThreadPool.this;
         }
 
         @Override
         public final void run() {
-            while (!shutdown) {
-                synchronized (taskQue) {
-                    if (!paused) {
-                        /* Poll for task if worker does not already have one */
-                        if (currentTask == null) {
-                        }
-
-                        if (currentTask != null) {
-                            try {
-                                currentTask.call();
-                                onTaskComplete(id, currentTask);
-                            } catch (final Exception e) {
-                                onTaskFail(currentTask, e);
-                            }
-                            currentTask = null;
-                        } else if (!expires) {
-                            try {
-                                log.info("Worker Thread {} is now waiting for work", id);
-                                idleThreads.incrementAndGet();
-                                taskQue.wait();
-                                idleThreads.decrementAndGet();
-                            } catch (final InterruptedException e) {
-                                /* TODO - HANDLE EXCEPTION */
-                                return;
-                            }
-                        } else {
-                            /* Allow thread to close gracefully */
-                            totalThreads.decrementAndGet();
-                            taskQue.notify();
-                            log.info("Worker Thread {} destroyed!", id);
-                            return;
-                        }
-                    } else {
-                        log.info("Worker thread {} paused!", id);
-                        idleThreads.incrementAndGet();
-                        while (paused) {
-                            try {
-                                taskQue.wait();
-                            } catch (final InterruptedException e) {
-
-                            }
-                        }
-                        log.info("Worker thread {} unpaused.", id);
-                        idleThreads.decrementAndGet();
+            thread = Thread.currentThread();
+            CURRENT.set(this);
+            register();
+            log.debug("Worker thread {} started", id);
+            try {
+                while (true) {
+                    if (paused && !shutdown) {
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    final T task = next();
+                    if (task != null) {
+                        execute(task);
+                    } else if (shutdown ? !hasWork() : !await()) {
+                        break;
                     }
                 }
+            } finally {
+                CURRENT.remove();
+                retire();
+            }
+        }
+
+        private void register() {
+            for (int i = 0;; i = (i + 1) % workers.length()) {
+                if (workers.get(i) == null && workers.compareAndSet(i, null, this)) {
+                    slot = i;
+                    return;
+                }
+            }
+        }
+
+        private void retire() {
+            /* Only The Owner Pushes To The Deque, So It Stays Empty Once Drained */
+            T task;
+            while ((task = deque.pop()) != null) {
+                execute(task);
             }
+            workers.set(slot, null);
             totalThreads.decrementAndGet();
-            log.info("Worker Thread {} has ended.", id);
+            log.debug("Worker thread {} retired", id);
+            if (shutdown) {
+                synchronized (terminated) {
+                    terminated.notifyAll();
+                }
+            } else if (hasWork()) {
+                /* A Submission May Have Found No Idle Worker While This One Was Retiring */
+                signalWork(false);
+            }
+        }
+
+        /**
+         * Takes the newest local task, then the oldest submitted task, then
+         * steals the oldest task of another worker.
+         */
+        private T next() {
+            T task = deque.pop();
+            if (task != null) {
+                return task;
+            }
+            task = taskQue.poll();
+            if (task != null) {
+                queued.decrementAndGet();
+                return task;
+            }
+            final int length = workers.length();
+            final int start = ThreadLocalRandom.current().nextInt(length);
+            for (int i = 0; i < length; i++) {
+                final Worker victim = workers.get((start + i) % length);
+                if (victim != null && victim != this) {
+                    task = victim.deque.steal();
+                    if (task != null) {
+                        steals.increment();
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void execute(final T task) {
+            try {
+                task.call();
+                completed.increment();
+                onTaskComplete(id, task);
+            } catch (final Exception e) {
+                completed.increment();
+                onTaskFail(task, e);
+            }
+        }
+
+        /**
+         * Parks until signalled or the keep alive time passes.
+         *
+         * @return false if the worker should retire.
+         */
+        private boolean await() {
+            idleThreads.incrementAndGet();
+            idle.addFirst(this);
+            try {
+                /* Recheck After Publishing So A Concurrent Submission Cannot Be Missed */
+                if (hasWork() || shutdown || paused) {
+                    return true;
+                }
+                final long start = System.nanoTime();
+                if (expires) {
+                    LockSupport.parkNanos(this, keepAliveNanos);
+                } else {
+                    LockSupport.park(this);
+                }
+                final boolean signalled = !idle.remove(this);
+                return signalled || !expires || System.nanoTime() - start < keepAliveNanos || hasWork() || shutdown;
+            } finally {
+                idle.remove(this);
+                idleThreads.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Chase-Lev work-stealing deque. The owning worker pushes and pops at the
+     * bottom without contention; other workers steal from the top with a
+     * single compare-and-set, which only races with the owner for the last
+     * task.
+     */
+    private static final class WorkDeque<E> {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private final AtomicLong top = new AtomicLong();
+
+        private volatile long bottom;
+
+        private volatile AtomicReferenceArray<E> array = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+        /**
+         * Pushes a task. Called only by the owner.
+         */
+        private void push(final E task) {
+            final long b = bottom;
+            AtomicReferenceArray<E> a = array;
+            if (b - top.get() >= a.length() - 1) {
+                a = grow(a, top.get(), b);
+            }
+            a.set((int) (b & (a.length() - 1)), task);
+            bottom = b + 1;
+        }
+
+        /**
+         * Pops the newest task. Called only by the owner.
+         */
+        private E pop() {
+            final long b = bottom - 1;
+            final AtomicReferenceArray<E> a = array;
+            bottom = b;
+            final long t = top.get();
+            if (t > b) {
+                bottom = b + 1;
+                return null;
+            }
+            final int index = (int) (b & (a.length() - 1));
+            E task = a.get(index);
+            if (t == b) {
+                /* Last Task - Race Any Thief For It */
+                if (!top.compareAndSet(t, t + 1)) {
+                    task = null;
+                }
+                bottom = b + 1;
+            }
+            if (task != null) {
+                a.lazySet(index, null);
+            }
+            return task;
+        }
+
+        /**
+         * Steals the oldest task, or returns null if the deque is empty or
+         * another thread took it first.
+         */
+        private E steal() {
+            final long t = top.get();
+            final long b = bottom;
+            if (t >= b) {
+                return null;
+            }
+            final AtomicReferenceArray<E> a = array;
+            final E task = a.get((int) (t & (a.length() - 1)));
+            return task != null && top.compareAndSet(t, t + 1) ? task : null;
+        }
+
+        private boolean isEmpty() {
+            return top.get() >= bottom;
+        }
+
+        private int size() {
+            return (int) Math.max(0, bottom - top.get());
+        }
+
+        private AtomicReferenceArray<E> grow(final AtomicReferenceArray<E> old, final long t, final long b) {
+            final AtomicReferenceArray<E> a = new AtomicReferenceArray<>(old.length() << 1);
+            for (long i = t; i < b; i++) {
+                a.set((int) (i & (a.length() - 1)), old.get((int) (i & (old.length() - 1))));
+            }
+            array = a;
+            return a;
         }
     }
 
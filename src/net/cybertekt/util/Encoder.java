@@ -1,22 +1,327 @@
 package net.cybertekt.util;
 
-import sun.misc.BASE64Encoder;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
 
 /**
+ * Encoder - (C) Cybertekt Software
  *
- * @author Vektor
+ * <p>
+ * Hexadecimal and Base64 encoding of binary data such as keys, hashes, and
+ * signatures. Hex digits are looked up in tables rather than formatted, and
+ * every method that writes into a caller supplied {@code char[]},
+ * {@code byte[]}, {@link StringBuilder}, or {@link ByteBuffer} target is
+ * allocation-free, so high volume logging and indexing can reuse buffers.
+ * Methods returning a {@link String} or array allocate only the result.
+ * </p>
+ *
+ * <p>
+ * Hex is encoded in lower case and decoded in either case. Base64 uses the
+ * standard alphabet with padding and no line breaks, through
+ * {@link java.util.Base64}.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
  */
-public class Encoder {
-    
+public final class Encoder {
+
+    /**
+     * Hex digit of each nibble.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Both hex digits of each byte value, high digit first.
+     */
+    private static final char[] HEX_PAIRS = new char[512];
+
+    /**
+     * Nibble value of each ASCII character, or -1 if it is not a hex digit.
+     */
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            HEX_PAIRS[i << 1] = HEX_DIGITS[i >>> 4];
+            HEX_PAIRS[i << 1 | 1] = HEX_DIGITS[i & 0x0F];
+        }
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            HEX_VALUES[HEX_DIGITS[i]] = (byte) i;
+            HEX_VALUES[Character.toUpperCase(HEX_DIGITS[i])] = (byte) i;
+        }
+    }
+
+    /**
+     * Encodes data as a hex string.
+     *
+     * @param data the data to encode.
+     * @return the lower case hex string, two characters per byte.
+     */
     public static String toHex(final byte[] data) {
-        StringBuilder hexKey = new StringBuilder();
-        for (int i = 0; i < data.length; ++i) {
-            hexKey.append(Integer.toHexString(0x0100 + (data[i] & 0x00FF)).substring(1));
+        final char[] hex = new char[data.length << 1];
+        toHex(data, 0, data.length, hex, 0);
+        return new String(hex);
+    }
+
+    /**
+     * Encodes a range of bytes as hex characters.
+     *
+     * @param src the data to encode.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     * @param dst the array receiving {@code 2 * length} characters.
+     * @param dstOffset the offset of the first character.
+     * @return the number of characters written.
+     */
+    public static int toHex(final byte[] src, final int offset, final int length, final char[] dst, final int dstOffset) {
+        int out = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            final int pair = (src[i] & 0xFF) << 1;
+            dst[out++] = HEX_PAIRS[pair];
+            dst[out++] = HEX_PAIRS[pair | 1];
+        }
+        return out - dstOffset;
+    }
+
+    /**
+     * Encodes a range of bytes as ASCII hex digits.
+     *
+     * @param src the data to encode.
+     * @param offset the offset of the first byte.
+     * @param length the number of bytes.
+     * @param dst the array receiving {@code 2 * length} ASCII digits.
+     * @param dstOffset the offset of the first digit.
+     * @return the number of bytes written.
+     */
+    public static int toHex(final byte[] src, final int offset, final int length, final byte[] dst, final int dstOffset) {
+        int out = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            final int pair = (src[i] & 0xFF) << 1;
+            dst[out++] = (byte) HEX_PAIRS[pair];
+            dst[out++] = (byte) HEX_PAIRS[pair | 1];
+        }
+        return out - dstOffset;
+    }
+
+    /**
+     * Encodes the remaining bytes of a buffer as ASCII hex digits. Both
+     * buffers are advanced.
+     *
+     * @param src the data to encode.
+     * @param dst the buffer receiving two ASCII digits per byte.
+     * @throws BufferOverflowException if the target is too small.
+     */
+    public static void toHex(final ByteBuffer src, final ByteBuffer dst) {
+        if (dst.remaining() < src.remaining() << 1) {
+            throw new BufferOverflowException();
+        }
+        while (src.hasRemaining()) {
+            final int pair = (src.get() & 0xFF) << 1;
+            dst.put((byte) HEX_PAIRS[pair]).put((byte) HEX_PAIRS[pair | 1]);
+        }
+    }
+
+    /**
+     * Appends data as hex to a builder, which does not allocate if the builder
+     * has enough capacity.
+     *
+     * @param builder the builder to append to.
+     * @param data the data to encode.
+     * @return the builder.
+     */
+    public static StringBuilder appendHex(final StringBuilder builder, final byte[] data) {
+        builder.ensureCapacity(builder.length() + (data.length << 1));
+        for (final byte b : data) {
+            final int pair = (b & 0xFF) << 1;
+            builder.append(HEX_PAIRS[pair]).append(HEX_PAIRS[pair | 1]);
+        }
+        return builder;
+    }
+
+    /**
+     * Decodes a hex string.
+     *
+     * @param hex the hex digits, in either case.
+     * @return the decoded data.
+     * @throws IllegalArgumentException if the length is odd or a character is
+     * not a hex digit.
+     */
+    public static byte[] fromHex(final CharSequence hex) {
+        if ((hex.length() & 1) != 0) {
+            throw new IllegalArgumentException("Hex string has an odd length: " + hex.length());
+        }
+        final byte[] data = new byte[hex.length() >>> 1];
+        fromHex(hex, 0, hex.length(), data, 0);
+        return data;
+    }
+
+    /**
+     * Decodes a range of hex characters.
+     *
+     * @param src the hex digits, in either case.
+     * @param offset the offset of the first digit.
+     * @param length the number of digits, which must be even.
+     * @param dst the array receiving {@code length / 2} bytes.
+     * @param dstOffset the offset of the first byte.
+     * @return the number of bytes written.
+     * @throws IllegalArgumentException if the length is odd or a character is
+     * not a hex digit.
+     */
+    public static int fromHex(final CharSequence src, final int offset, final int length, final byte[] dst, final int dstOffset) {
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("Hex length is odd: " + length);
+        }
+        int out = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i += 2) {
+            dst[out++] = (byte) (nibble(src.charAt(i), i) << 4 | nibble(src.charAt(i + 1), i + 1));
+        }
+        return out - dstOffset;
+    }
+
+    /**
+     * Decodes a range of hex characters.
+     *
+     * @param src the hex digits, in either case.
+     * @param offset the offset of the first digit.
+     * @param length the number of digits, which must be even.
+     * @param dst the array receiving {@code length / 2} bytes.
+     * @param dstOffset the offset of the first byte.
+     * @return the number of bytes written.
+     * @throws IllegalArgumentException if the length is odd or a character is
+     * not a hex digit.
+     */
+    public static int fromHex(final char[] src, final int offset, final int length, final byte[] dst, final int dstOffset) {
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("Hex length is odd: " + length);
+        }
+        int out = dstOffset;
+        for (int i = offset, end = offset + length; i < end; i += 2) {
+            dst[out++] = (byte) (nibble(src[i], i) << 4 | nibble(src[i + 1], i + 1));
         }
-        return hexKey.toString();
+        return out - dstOffset;
     }
-    
+
+    /**
+     * Decodes the remaining ASCII hex digits of a buffer. Both buffers are
+     * advanced.
+     *
+     * @param src the ASCII hex digits, in either case.
+     * @param dst the buffer receiving one byte per two digits.
+     * @throws IllegalArgumentException if the number of digits is odd or a
+     * byte is not a hex digit.
+     * @throws BufferOverflowException if the target is too small.
+     */
+    public static void fromHex(final ByteBuffer src, final ByteBuffer dst) {
+        if ((src.remaining() & 1) != 0) {
+            throw new IllegalArgumentException("Hex length is odd: " + src.remaining());
+        }
+        if (dst.remaining() < src.remaining() >>> 1) {
+            throw new BufferOverflowException();
+        }
+        while (src.hasRemaining()) {
+            final int position = src.position();
+            dst.put((byte) (nibble((char) (src.get() & 0xFF), position) << 4 | nibble((char) (src.get() & 0xFF), position + 1)));
+        }
+    }
+
+    /**
+     * Encodes data as a Base64 string.
+     *
+     * @param data the data to encode.
+     * @return the Base64 string without line breaks.
+     */
     public static String toBASE64(final byte[] data) {
-        return new BASE64Encoder().encode(data);
+        return BASE64_ENCODER.encodeToString(data);
+    }
+
+    /**
+     * Encodes data as Base64 into an array.
+     *
+     * @param src the data to encode.
+     * @param dst the array receiving at least
+     * {@link #getBASE64Length(int) getBASE64Length(src.length)} bytes.
+     * @return the number of bytes written.
+     * @throws IllegalArgumentException if the target is too small.
+     */
+    public static int toBASE64(final byte[] src, final byte[] dst) {
+        return BASE64_ENCODER.encode(src, dst);
+    }
+
+    /**
+     * Wraps a stream so that bytes written to it are Base64 encoded. Closing
+     * the returned stream writes the final padding and closes the target.
+     *
+     * @param out the stream receiving the encoded bytes.
+     * @return the encoding stream.
+     */
+    public static OutputStream toBASE64(final OutputStream out) {
+        return BASE64_ENCODER.wrap(out);
+    }
+
+    /**
+     * Decodes a Base64 string.
+     *
+     * @param base64 the Base64 string.
+     * @return the decoded data.
+     * @throws IllegalArgumentException if the string is not valid Base64.
+     */
+    public static byte[] fromBASE64(final String base64) {
+        return BASE64_DECODER.decode(base64);
+    }
+
+    /**
+     * Decodes Base64 into an array.
+     *
+     * @param src the Base64 bytes.
+     * @param dst the array receiving the decoded bytes, at least
+     * {@code 3 * src.length / 4} long.
+     * @return the number of bytes written.
+     * @throws IllegalArgumentException if the source is not valid Base64 or
+     * the target is too small.
+     */
+    public static int fromBASE64(final byte[] src, final byte[] dst) {
+        return BASE64_DECODER.decode(src, dst);
+    }
+
+    /**
+     * Wraps a stream so that Base64 read from it is decoded.
+     *
+     * @param in the stream supplying the encoded bytes.
+     * @return the decoding stream.
+     */
+    public static InputStream fromBASE64(final InputStream in) {
+        return BASE64_DECODER.wrap(in);
+    }
+
+    /**
+     * Returns the length of the padded Base64 encoding of a number of bytes.
+     *
+     * @param length the number of bytes.
+     * @return the number of Base64 characters.
+     */
+    public static int getBASE64Length(final int length) {
+        return (length + 2) / 3 * 4;
+    }
+
+    private static int nibble(final char c, final int index) {
+        final int value = c < 128 ? HEX_VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid hex digit '" + c + "' at index " + index);
+        }
+        return value;
+    }
+
+    private Encoder() {
     }
 }
@@ -45,6 +45,40 @@ public final class FastMath {
      */
     public static final float RAD_TO_DEG = 180f / 3.1415927f;
 
+    /**
+     * High part of PI used for range reduction. Has few enough significant
+     * bits that multiplying it by a quotient below 2^15 is exact.
+     */
+    private static final float PI_A = 3.140625f;
+
+    /**
+     * Middle part of PI used for range reduction (PI_A + PI_B + PI_C = PI).
+     */
+    private static final float PI_B = 9.67502593994140625E-4f;
+
+    /**
+     * Low part of PI used for range reduction (PI_A + PI_B + PI_C = PI).
+     */
+    private static final float PI_C = 1.509957990978376432E-7f;
+
+    /**
+     * Floating-point approximation of (1 / PI).
+     */
+    private static final float INV_PI = 0.31830988618f;
+
+    /**
+     * Adding and subtracting 1.5 * 2^23 rounds a float to the nearest integer
+     * without a branch or a conversion (valid for magnitudes below 2^22).
+     */
+    private static final float ROUND = 12582912f;
+
+    /**
+     * Largest magnitude accepted by {@link #fastSin(float)} and
+     * {@link #fastCos(float)}. Larger angles lose accuracy in range reduction
+     * and should use the exact functions.
+     */
+    public static final float FAST_TRIG_LIMIT = 32768f;
+
     /**
      * Calculates a floating-point approximation for the trigonometric sine of
      * the angle (in radians) that is provided by the caller of this method.
@@ -131,9 +165,10 @@ public final class FastMath {
     /**
      * Returns the smallest (closest to negative infinity) value that is greater
      * than or equal to the argument and is equal to a mathematical integer.
-     * This is currently a direct call to java.lang.Math#ceil(double) but is
-     * subject to change in the future if a more efficient method is discovered.
-     * Use of this over java.lang.Math() is strongly advised for this reason.
+     * Computed entirely in single precision by truncating to an integer; values
+     * with a magnitude of 2^23 or more are already integers and are returned
+     * unchanged along with infinite and NaN values. Unlike
+     * java.lang.Math#ceil(double), values in [-1, 0) return positive zero.
      *
      * @param value the value to round up.
      * @return the smallest value that is greater than or equal to the argument
@@ -141,17 +176,20 @@ public final class FastMath {
      * @see java.lang.Math#ceil(double)
      */
     public static final float ceil(final float value) {
-        return (float) Math.ceil(value);
+        if (!(Math.abs(value) < 8388608f)) {
+            return value;
+        }
+        final float t = (int) value;
+        return t < value ? t + 1f : t;
     }
 
     /**
      * Returns the largest (closest to positive infinity) value that is less
      * than or equal to the argument (value) and also equal to a mathematical
-     * integer. This is currently a direct call to java.lang.Math#floor(double)
-     * but is subject to change in the future if a more efficient method is
-     * discovered. Use of this over java.lang.Math() is strongly advised for
-     * this reason.
-     *
+     * integer. Computed entirely in single precision by truncating to an
+     * integer; values with a magnitude of 2^23 or more are already integers and
+     * are returned unchanged along with infinite and NaN values. Unlike
+     * java.lang.Math#floor(double), negative zero returns positive zero.
      *
      * @param value the value to round down.
      * @return the largest value that is less than or equal to the argument and
@@ -159,7 +197,11 @@ public final class FastMath {
      * @see java.lang.Math#floor(double)
      */
     public static final float floor(final float value) {
-        return (float) Math.floor(value);
+        if (!(Math.abs(value) < 8388608f)) {
+            return value;
+        }
+        final float t = (int) value;
+        return t > value ? t - 1f : t;
     }
 
     /**
@@ -213,4 +255,183 @@ public final class FastMath {
     public static final float round(final float value) {
         return (float) Math.round(value);
     }
+
+    /**
+     * Calculates a fast approximation of the trigonometric sine of an angle.
+     * The angle is reduced to [-PI/2, PI/2] using a three part PI and the sine
+     * of the remainder is evaluated as an 11th degree odd polynomial. The
+     * method does not branch which allows the batch variant to be
+     * auto-vectorized.
+     * <p />
+     * Maximum absolute error: <b>2.4e-7</b> for |radians| &lt;= PI and
+     * <b>5e-7</b> for |radians| &lt;= {@link #FAST_TRIG_LIMIT}. Results for
+     * larger angles are undefined.
+     *
+     * @param radians the angle in radians.
+     * @return the approximate sine of the angle.
+     * @see #sin(float)
+     */
+    public static final float fastSin(final float radians) {
+        final float k = (radians * INV_PI + ROUND) - ROUND;
+        final float r = ((radians - k * PI_A) - k * PI_B) - k * PI_C;
+        final float sign = 1 - (((int) k & 1) << 1);
+        return sign * sinPoly(r);
+    }
+
+    /**
+     * Calculates a fast approximation of the trigonometric cosine of an angle.
+     * The angle is reduced to [-PI/2, PI/2] around the nearest odd multiple of
+     * PI/2 and the sine polynomial of {@link #fastSin(float)} is evaluated for
+     * the remainder. The method does not branch.
+     * <p />
+     * Maximum absolute error: <b>2.4e-7</b> for |radians| &lt;= PI and
+     * <b>5e-7</b> for |radians| &lt;= {@link #FAST_TRIG_LIMIT}. Results for
+     * larger angles are undefined.
+     *
+     * @param radians the angle in radians.
+     * @return the approximate cosine of the angle.
+     * @see #cos(float)
+     */
+    public static final float fastCos(final float radians) {
+        final float n = ((radians * INV_PI - 0.5f) + ROUND) - ROUND;
+        final float m = n + 0.5f;
+        final float r = ((radians - m * PI_A) - m * PI_B) - m * PI_C;
+        final float sign = (((int) n & 1) << 1) - 1;
+        return sign * sinPoly(r);
+    }
+
+    /**
+     * Evaluates the sine polynomial for an angle in [-PI/2, PI/2].
+     */
+    private static float sinPoly(final float r) {
+        final float r2 = r * r;
+        return r + r * r2 * (-1.6666667e-1f + r2 * (8.3333333e-3f + r2 * (-1.9841270e-4f + r2 * (2.7557319e-6f + r2 * -2.5052108e-8f))));
+    }
+
+    /**
+     * Calculates a fast approximation of the angle theta from the conversion
+     * of rectangular coordinates (x, y) to polar coordinates (r, theta). The
+     * ratio of the smaller to the larger coordinate is evaluated with a 17th
+     * degree odd polynomial (Abramowitz &amp; Stegun 4.4.49) and the result is
+     * mapped to the correct octant.
+     * <p />
+     * Maximum absolute error: <b>4e-7</b> radians. Returns zero when both
+     * coordinates are zero.
+     *
+     * @param y axis coordinate.
+     * @param x axis coordinate.
+     * @return the approximate angle theta in [-PI, PI].
+     * @see #atan2(float, float)
+     */
+    public static final float fastAtan2(final float y, final float x) {
+        final float ax = Math.abs(x), ay = Math.abs(y);
+        final float max = Math.max(ax, ay);
+        if (max == 0f) {
+            return 0f;
+        }
+        final float z = Math.min(ax, ay) / max;
+        final float z2 = z * z;
+        float r = z * (1f + z2 * (-0.3333314528f + z2 * (0.1999355085f + z2 * (-0.1420889944f + z2 * (0.1065626393f + z2 * (-0.0752896400f + z2 * (0.0429096138f + z2 * (-0.0161657367f + z2 * 0.0028662257f))))))));
+        if (ay > ax) {
+            r = HALF_PI - r;
+        }
+        if (x < 0f) {
+            r = PI - r;
+        }
+        return y < 0f ? -r : r;
+    }
+
+    /**
+     * Calculates a fast approximation of the inverse square root (1 / sqrt) of
+     * a value using an integer estimate refined by two Newton-Raphson
+     * iterations.
+     * <p />
+     * Maximum relative error: <b>5e-6</b> for positive normal values. Results
+     * for zero, negative, denormal, infinite, and NaN values are undefined.
+     * On processors with a hardware square root instruction this is rarely
+     * faster than {@link #invSqrtExact(float)}; measure before preferring it.
+     *
+     * @param value the value of which to return the inverse square root.
+     * @return the approximate inverse square root of the value.
+     */
+    public static final float invSqrt(final float value) {
+        float y = Float.intBitsToFloat(0x5f375a86 - (Float.floatToRawIntBits(value) >> 1));
+        final float half = 0.5f * value;
+        y *= 1.5f - half * y * y;
+        y *= 1.5f - half * y * y;
+        return y;
+    }
+
+    /**
+     * Returns the exact inverse square root (1 / sqrt) of a value.
+     *
+     * @param value the value of which to return the inverse square root.
+     * @return the inverse square root of the value.
+     */
+    public static final float invSqrtExact(final float value) {
+        return (float) (1d / Math.sqrt(value));
+    }
+
+    /**
+     * Calculates the fast approximate sine of every angle in the input array
+     * and stores the results in the output array. The loop contains no
+     * branches or calls and is a candidate for auto-vectorization.
+     *
+     * @param in the angles in radians.
+     * @param out the array in which to store the sines (may be the input
+     * array).
+     * @see #fastSin(float)
+     */
+    public static final void fastSin(final float[] in, final float[] out) {
+        for (int i = 0; i < in.length; i++) {
+            final float x = in[i];
+            final float k = (x * INV_PI + ROUND) - ROUND;
+            final float r = ((x - k * PI_A) - k * PI_B) - k * PI_C;
+            final float r2 = r * r;
+            final float s = r + r * r2 * (-1.6666667e-1f + r2 * (8.3333333e-3f + r2 * (-1.9841270e-4f + r2 * (2.7557319e-6f + r2 * -2.5052108e-8f))));
+            out[i] = (1 - (((int) k & 1) << 1)) * s;
+        }
+    }
+
+    /**
+     * Calculates the fast approximate cosine of every angle in the input
+     * array and stores the results in the output array. The loop contains no
+     * branches or calls and is a candidate for auto-vectorization.
+     *
+     * @param in the angles in radians.
+     * @param out the array in which to store the cosines (may be the input
+     * array).
+     * @see #fastCos(float)
+     */
+    public static final void fastCos(final float[] in, final float[] out) {
+        for (int i = 0; i < in.length; i++) {
+            final float x = in[i];
+            final float n = ((x * INV_PI - 0.5f) + ROUND) - ROUND;
+            final float m = n + 0.5f;
+            final float r = ((x - m * PI_A) - m * PI_B) - m * PI_C;
+            final float r2 = r * r;
+            final float s = r + r * r2 * (-1.6666667e-1f + r2 * (8.3333333e-3f + r2 * (-1.9841270e-4f + r2 * (2.7557319e-6f + r2 * -2.5052108e-8f))));
+            out[i] = ((((int) n & 1) << 1) - 1) * s;
+        }
+    }
+
+    /**
+     * Calculates the fast approximate inverse square root of every value in
+     * the input array and stores the results in the output array. The loop
+     * contains no branches or calls and is a candidate for auto-vectorization.
+     *
+     * @param in the values.
+     * @param out the array in which to store the inverse square roots (may be
+     * the input array).
+     * @see #invSqrt(float)
+     */
+    public static final void invSqrt(final float[] in, final float[] out) {
+        for (int i = 0; i < in.length; i++) {
+            final float x = in[i];
+            float y = Float.intBitsToFloat(0x5f375a86 - (Float.floatToRawIntBits(x) >> 1));
+            y *= 1.5f - 0.5f * x * y * y;
+            y *= 1.5f - 0.5f * x * y * y;
+            out[i] = y;
+        }
+    }
 }
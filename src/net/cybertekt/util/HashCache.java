@@ -5,11 +5,18 @@ import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
+import java.util.AbstractSet;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Cache Map - (C) Cybertekt Software.
@@ -22,6 +29,25 @@ import java.util.concurrent.ConcurrentHashMap;
  * provided by the caller when constructing a cache.
  * </p>
  *
+ * <p>
+ * A {@link MapMode#Concurrent concurrent} cache is split into segments, each
+ * with its own map and reference queue, selected by the hash of the key, so
+ * that threads working on different keys neither share a map bin nor drain
+ * the same queue. {@link MapMode#Hash Hash} and
+ * {@link MapMode#Identity Identity} caches use a single segment and are not
+ * thread safe.
+ * </p>
+ *
+ * <p>
+ * Obsolete entries are removed as described by the {@link DrainMode}: either
+ * each operation removes at most {@link #DRAIN_LIMIT} obsolete entries of the
+ * segment it touches, or a shared background thread removes them as soon as
+ * the garbage collector enqueues them. Entries whose value has been collected
+ * are never returned, whether or not they have been removed yet. An
+ * {@link #setEvictionListener(Consumer) eviction listener} is notified of each
+ * entry removed because its value was collected.
+ * </p>
+ *
  * @author Andrew Vektor
  * @version 1.0.0
  * @since 1.0.0
@@ -31,6 +57,11 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class HashCache<Key, Value> {
 
+    /**
+     * SLF4J class logger for debugging.
+     */
+    public static final Logger log = LoggerFactory.getLogger(HashCache.class);
+
     /**
      * Determines when obsolete values will be removed from the cache.
      */
@@ -47,8 +78,11 @@ public class HashCache<Key, Value> {
          */
         Weak,
         /**
-         * Cached values are tracking with
-         * {@link java.lang.ref.PhantomReference phantom references}.
+         * Cached values are tracked with
+         * {@link java.lang.ref.PhantomReference phantom references}. Values
+         * are retrieved through a weak reference, so they are no longer
+         * returned once weakly reachable, but the entry is only removed once
+         * the value has been reclaimed, after any finalization.
          */
         Phantom;
     }
@@ -70,25 +104,66 @@ public class HashCache<Key, Value> {
          */
         Hash,
         /**
-         * Key-value pairs are internally stored using a
-         * {@link java.util.concurrent.ConcurrentHashMap concurrent hash map}.
+         * Key-value pairs are internally stored using segmented
+         * {@link java.util.concurrent.ConcurrentHashMap concurrent hash maps}.
          */
         Concurrent;
     }
 
     /**
-     * Internal {@link java.util.Map} that stores the cached key-value pairs.
-     * The {@link java.util.Map} type is determined by the
-     * {@link MapMode map mode} provided during construction of this cache.
+     * Determines which thread removes obsolete entries from the cache.
+     */
+    public static enum DrainMode {
+
+        /**
+         * Each operation removes at most {@link #DRAIN_LIMIT} obsolete entries
+         * from the segment it touches, on the calling thread.
+         */
+        Inline,
+        /**
+         * A single daemon thread shared by every cache removes obsolete
+         * entries. Requires the {@link MapMode#Concurrent Concurrent} map
+         * mode.
+         */
+        Background;
+    }
+
+    /**
+     * Maximum number of obsolete entries removed by a single operation in the
+     * {@link DrainMode#Inline Inline} drain mode.
+     */
+    public static final int DRAIN_LIMIT = 16;
+
+    /**
+     * Default number of segments of a {@link MapMode#Concurrent concurrent}
+     * cache.
      */
-    private final Map<Key, Reference<Value>> cache;
+    public static final int DEFAULT_SEGMENTS = 16;
 
     /**
-     * Queue in which obsolete values are enqueued for removal from the cache.
-     * The {@link java.lang.ref.ReferenceQueue queue} type is determined by the
-     * {@link CacheMode} provided during the construction of this cache.
+     * Queue shared by every cache in the {@link DrainMode#Background} drain
+     * mode, drained by the {@link #cleaner} thread.
      */
-    private final ReferenceQueue<? extends Value> queue = new ReferenceQueue<>();
+    private static final ReferenceQueue<Object> CLEANER_QUEUE = new ReferenceQueue<>();
+
+    /**
+     * Daemon thread draining the {@link #CLEANER_QUEUE}, started by the first
+     * cache that needs it.
+     */
+    private static Thread cleaner;
+
+    /**
+     * Segments storing the cached key-value pairs. The {@link java.util.Map}
+     * type of each segment is determined by the {@link MapMode map mode}
+     * provided during construction of this cache.
+     */
+    private final Segment[] segments;
+
+    /**
+     * Shift selecting a segment from the high bits of a mixed hash code, or
+     * -1 for a single segment.
+     */
+    private final int segmentShift;
 
     /**
      * Defines how each map value is cached and determines when cached values
@@ -103,6 +178,17 @@ public class HashCache<Key, Value> {
      */
     private final MapMode mapMode;
 
+    /**
+     * Determines which thread removes obsolete entries.
+     */
+    private final DrainMode drainMode;
+
+    /**
+     * Notified of the key of each entry removed because its value was
+     * collected, null if none is set.
+     */
+    private volatile Consumer<? super Key> evictionListener;
+
     /**
      * Constructs an empty CacheMap using the default
      * {@link CacheMode#Soft Soft} {@link CacheMode} and
@@ -136,7 +222,8 @@ public class HashCache<Key, Value> {
 
     /**
      * Constructs an empty cache with the specified {@link CacheMode} and
-     * {@link MapMode}.
+     * {@link MapMode}, draining obsolete entries
+     * {@link DrainMode#Inline inline}.
      *
      * @param cacheMode the {@link CacheMode} that determines how cached values
      * are tracked and when they will be discarded.
@@ -144,25 +231,64 @@ public class HashCache<Key, Value> {
      * stored, searched, and retrieved.
      */
     public HashCache(final CacheMode cacheMode, final MapMode mapMode) {
+        this(cacheMode, mapMode, DrainMode.Inline);
+    }
+
+    /**
+     * Constructs an empty cache with the specified {@link CacheMode},
+     * {@link MapMode}, and {@link DrainMode}, using
+     * {@link #DEFAULT_SEGMENTS} segments for a concurrent cache.
+     *
+     * @param cacheMode the {@link CacheMode} that determines how cached values
+     * are tracked and when they will be discarded.
+     * @param mapMode the {@link MapMode} that determines how cached values are
+     * stored, searched, and retrieved.
+     * @param drainMode the {@link DrainMode} that determines which thread
+     * removes obsolete entries.
+     */
+    public HashCache(final CacheMode cacheMode, final MapMode mapMode, final DrainMode drainMode) {
+        this(cacheMode, mapMode, drainMode, mapMode == MapMode.Concurrent ? DEFAULT_SEGMENTS : 1);
+    }
+
+    /**
+     * Constructs an empty cache with the specified {@link CacheMode},
+     * {@link MapMode}, {@link DrainMode}, and number of segments.
+     *
+     * @param cacheMode the {@link CacheMode} that determines how cached values
+     * are tracked and when they will be discarded.
+     * @param mapMode the {@link MapMode} that determines how cached values are
+     * stored, searched, and retrieved.
+     * @param drainMode the {@link DrainMode} that determines which thread
+     * removes obsolete entries.
+     * @param segments the number of segments, rounded up to a power of two.
+     * Must be 1 unless the map mode is {@link MapMode#Concurrent Concurrent}.
+     * @throws IllegalArgumentException if a non-concurrent cache is given
+     * several segments or the {@link DrainMode#Background Background} drain
+     * mode.
+     */
+    public HashCache(final CacheMode cacheMode, final MapMode mapMode, final DrainMode drainMode, final int segments) {
+        if (segments < 1 || segments > 1 << 16) {
+            throw new IllegalArgumentException("Segment count must be between 1 and 65536: " + segments);
+        }
+        if (mapMode != MapMode.Concurrent && (segments != 1 || drainMode == DrainMode.Background)) {
+            throw new IllegalArgumentException("Only concurrent caches support segments and background draining");
+        }
         this.cacheMode = cacheMode;
         this.mapMode = mapMode;
-        switch (this.mapMode) {
-            case Identity: {
-                cache = new IdentityHashMap<>();
-                break;
-            }
-            case Hash: {
-                cache = new HashMap<>();
-                break;
-            }
-            case Concurrent: {
-                cache = new ConcurrentHashMap<>();
-                break;
-            }
-            default: {
-                cache = new HashMap<>();
-                break;
-            }
+        this.drainMode = drainMode;
+        int count = 1;
+        while (count < segments) {
+            count <<= 1;
+        }
+        @SuppressWarnings("unchecked")
+        final Segment[] created = (Segment[]) new HashCache<?, ?>.Segment[count];
+        this.segments = created;
+        this.segmentShift = count == 1 ? -1 : 32 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment();
+        }
+        if (drainMode == DrainMode.Background) {
+            startCleaner();
         }
     }
 
@@ -177,11 +303,9 @@ public class HashCache<Key, Value> {
      * @return the key parameter for the purpose of call chaining.
      */
     public Key put(final Key key, final Value value) {
-        update();
-        Reference<Value> ref;
-        if ((ref = cache.put(key, createReference(key, value))) != null) {
-            ((CacheReference<Key>) ref).clearKey();
-        }
+        final Segment segment = segmentFor(key);
+        segment.drain(DRAIN_LIMIT);
+        segment.map.put(key, createReference(segment, key, value));
         return key;
     }
 
@@ -194,45 +318,118 @@ public class HashCache<Key, Value> {
      * the key does not exist within this cache.
      */
     public Value get(final Key key) {
-        update();
-        Reference<Value> ref;
-        return ((ref = cache.get(key)) != null) ? ref.get() : null;
+        final Segment segment = segmentFor(key);
+        segment.drain(DRAIN_LIMIT);
+        final CacheReference<Key, Value> ref = segment.map.get(key);
+        if (ref == null) {
+            return null;
+        }
+        final Value value = ref.getValue();
+        if (value == null && cacheMode != CacheMode.Phantom) {
+            /* Collected But Not Yet Drained - Phantom Entries Wait Until The Value Is Reclaimed */
+            if (segment.map.remove(key, ref)) {
+                evicted(key);
+            }
+        }
+        return value;
     }
 
     /**
-     * Polls the internal {@link java.lang.ref.ReferenceQueue} and removes all
-     * obsolete values from the cache. This method is called automatically
-     * before each operation performed on the cache map.
+     * Retrieves the cached value associated with the specified key, loading
+     * and caching it if the key is absent or its value has been collected.
+     * In a {@link MapMode#Concurrent concurrent} cache the check and the
+     * insertion are atomic, so concurrent callers for the same key run the
+     * loader once and receive the same value; the loader must not access this
+     * cache.
+     *
+     * @param key the key in which to retrieve the associated cached value.
+     * @param loader the function computing the value of an absent key.
+     * @return the cached or loaded value, or null if the loader returned null,
+     * in which case nothing is cached.
      */
-    public void update() {
-        for (Reference<? extends Value> ref = queue.poll(); ref != null; ref = queue.poll()) {
-            final Key key;
-            if ((key = ((CacheReference<Key>) ref).getKey()) != null) {
-                cache.remove(key);
+    public Value computeIfAbsent(final Key key, final Function<? super Key, ? extends Value> loader) {
+        final Segment segment = segmentFor(key);
+        segment.drain(DRAIN_LIMIT);
+        final CacheReference<Key, Value> ref = segment.map.get(key);
+        Value value = ref != null ? ref.getValue() : null;
+        if (value != null) {
+            return value;
+        }
+
+        /* Holds The Result Strongly So It Cannot Be Collected Before Returning */
+        final Object[] result = new Object[1];
+        final boolean[] collected = new boolean[1];
+        segment.map.compute(key, (k, old) -> {
+            final Value current = old != null ? old.getValue() : null;
+            if (current != null) {
+                result[0] = current;
+                return old;
             }
+            collected[0] = old != null;
+            final Value loaded = loader.apply(k);
+            result[0] = loaded;
+            return loaded == null ? null : createReference(segment, k, loaded);
+        });
+        if (collected[0]) {
+            evicted(key);
         }
+        @SuppressWarnings("unchecked")
+        final Value loaded = (Value) result[0];
+        return loaded;
     }
 
     /**
-     * Indicates if the provided key exists as an entry in this cache.
+     * Removes the specified key from this cache.
+     *
+     * @param key the key to remove.
+     * @return the value associated with the key, or null if the key was absent
+     * or its value had been collected.
+     */
+    public Value remove(final Key key) {
+        final Segment segment = segmentFor(key);
+        segment.drain(DRAIN_LIMIT);
+        final CacheReference<Key, Value> ref = segment.map.remove(key);
+        return ref != null ? ref.getValue() : null;
+    }
+
+    /**
+     * Polls the internal {@link java.lang.ref.ReferenceQueue reference queues}
+     * and removes all obsolete values from the cache. Operations remove a
+     * bounded number of obsolete entries automatically; this method removes
+     * every entry enqueued so far.
+     */
+    public void update() {
+        for (final Segment segment : segments) {
+            segment.drain(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Indicates if the provided key exists as an entry in this cache with a
+     * value that has not been collected.
      *
      * @param key the key to check for within the cache.
      * @return true if this cache contains the provided key or false if it does
      * not.
      */
     public final boolean containsKey(final Key key) {
-        update();
-        return cache.containsKey(key);
+        return get(key) != null;
     }
 
     /**
-     * Returns the current size of this cache.
+     * Returns the current size of this cache after removing every obsolete
+     * entry enqueued so far. Entries whose values have been collected but not
+     * yet enqueued by the garbage collector are still counted.
      *
      * @return the total number of key-value pairs currently within the cache.
      */
     public final int size() {
         update();
-        return cache.size();
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.map.size();
+        }
+        return size;
     }
 
     /**
@@ -242,7 +439,12 @@ public class HashCache<Key, Value> {
      */
     public final boolean isEmpty() {
         update();
-        return cache.isEmpty();
+        for (final Segment segment : segments) {
+            if (!segment.map.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -250,7 +452,9 @@ public class HashCache<Key, Value> {
      * method returns.
      */
     public final void clear() {
-        cache.clear();
+        for (final Segment segment : segments) {
+            segment.map.clear();
+        }
     }
 
     /**
@@ -266,7 +470,10 @@ public class HashCache<Key, Value> {
      * @return a set view of the keys contained in this cache.
      */
     public final Set<Key> keySet() {
-        return cache.keySet();
+        if (segments.length == 1) {
+            return segments[0].map.keySet();
+        }
+        return new KeySet();
     }
 
     /**
@@ -292,42 +499,257 @@ public class HashCache<Key, Value> {
         return mapMode;
     }
 
+    /**
+     * Indicates which thread removes obsolete entries. Cannot be changed after
+     * construction.
+     *
+     * @return the {@link DrainMode} as specified during the construction of
+     * this cache.
+     */
+    public final DrainMode getDrainMode() {
+        return drainMode;
+    }
+
+    /**
+     * Sets the listener notified of the key of each entry removed because its
+     * value was collected. Entries that are removed, replaced or cleared
+     * explicitly are not reported. The listener is called on the thread that
+     * removes the entry, which is the background cleaner in the
+     * {@link DrainMode#Background Background} drain mode, and should return
+     * quickly.
+     *
+     * @param listener the listener to notify, or null to remove it.
+     */
+    public final void setEvictionListener(final Consumer<? super Key> listener) {
+        evictionListener = listener;
+    }
+
+    /**
+     * Returns the number of segments of this cache.
+     *
+     * @return the number of segments, a power of two.
+     */
+    public final int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Selects the segment of a key from the high bits of its mixed hash code.
+     * The low bits are left to the map of the segment, which would otherwise
+     * only use the buckets matching its own index.
+     */
+    private Segment segmentFor(final Key key) {
+        if (segmentShift < 0) {
+            return segments[0];
+        }
+        return segments[(key.hashCode() * 0x9E3779B9) >>> segmentShift];
+    }
+
+    /**
+     * Notifies the {@link #evictionListener eviction listener} of an entry
+     * removed because its value was collected.
+     *
+     * @param key the key of the removed entry.
+     */
+    private void evicted(final Key key) {
+        final Consumer<? super Key> listener = evictionListener;
+        if (listener != null) {
+            try {
+                listener.accept(key);
+            } catch (final RuntimeException e) {
+                log.warn("Hash cache eviction listener failed: {}", e.getLocalizedMessage());
+            }
+        }
+    }
+
     /**
      * Constructs a {@link CacheReference} for the specified key and value. The
      * type of {@link CacheReference} returned is determined by the
-     * {@link CacheMode} specified during construction. Any references
-     * constructed using this method are automatically enqueued in the
-     * {@link CacheMap#queue cache queue}.
+     * {@link CacheMode} specified during construction. References are enqueued
+     * in the queue of their segment, or in the shared
+     * {@link #CLEANER_QUEUE cleaner queue} in the
+     * {@link DrainMode#Background Background} drain mode.
      *
+     * @param segment the segment storing the entry.
      * @param key the key associated with the cached value.
      * @param referent the cached value/referent.
      * @return a new {@link CacheReference} for the specified key and value.
      */
-    private Reference<Value> createReference(final Key key, final Value referent) {
+    private CacheReference<Key, Value> createReference(final Segment segment, final Key key, final Value referent) {
+        final ReferenceQueue<Object> queue = drainMode == DrainMode.Background ? CLEANER_QUEUE : segment.queue;
         switch (cacheMode) {
-            case Soft: {
-                return new SoftCacheReference(key, referent, queue);
-            }
             case Weak: {
-                return new WeakCacheReference(key, referent, queue);
+                return new WeakCacheReference(segment, key, referent, queue);
             }
             case Phantom: {
-                return new PhantomCacheReference(key, referent, queue);
+                return new PhantomCacheReference(segment, key, referent, queue);
             }
             default: {
-                return new SoftCacheReference(key, referent, queue);
+                return new SoftCacheReference(segment, key, referent, queue);
+            }
+        }
+    }
+
+    /**
+     * Starts the shared {@link #cleaner} thread if it is not running.
+     */
+    private static synchronized void startCleaner() {
+        if (cleaner != null) {
+            return;
+        }
+        cleaner = new Thread(() -> {
+            while (true) {
+                try {
+                    ((CacheReference<?, ?>) CLEANER_QUEUE.remove()).expunge();
+                } catch (final InterruptedException e) {
+                    log.warn("Hash cache cleaner interrupted - Background draining stopped");
+                    synchronized (HashCache.class) {
+                        cleaner = null;
+                    }
+                    return;
+                } catch (final RuntimeException e) {
+                    log.warn("Hash cache cleaner failed to remove an entry: {}", e.getLocalizedMessage());
+                }
+            }
+        }, "HashCache Cleaner");
+        cleaner.setDaemon(true);
+        cleaner.start();
+    }
+
+    /**
+     * Stripe of the cache with its own map and reference queue.
+     */
+    private final class Segment {
+
+        /**
+         * Map of this segment. The {@link java.util.Map} type is determined by
+         * the {@link MapMode map mode} of the cache.
+         */
+        private final Map<Key, CacheReference<Key, Value>> map;
+
+        /**
+         * Queue in which the references of this segment are enqueued in the
+         * {@link DrainMode#Inline Inline} drain mode.
+         */
+        private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+
+        private Segment() {
+            switch (mapMode) {
+                case Identity: {
+                    map = new IdentityHashMap<>();
+                    break;
+                }
+                case Concurrent: {
+                    map = new ConcurrentHashMap<>();
+                    break;
+                }
+                default: {
+                    map = new HashMap<>();
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Removes up to the specified number of obsolete entries from this
+         * segment.
+         *
+         * @param limit the maximum number of entries to remove.
+         */
+        private void drain(final int limit) {
+            if (drainMode == DrainMode.Background) {
+                return;
+            }
+            Reference<?> ref;
+            for (int i = 0; i < limit && (ref = queue.poll()) != null; i++) {
+                ((CacheReference<?, ?>) ref).expunge();
+            }
+        }
+
+        /**
+         * Removes an entry if it is still mapped to the specified reference,
+         * so that a replaced value does not remove its replacement.
+         */
+        private void expunge(final Key key, final CacheReference<Key, Value> ref) {
+            if (map.remove(key, ref)) {
+                evicted(key);
+            }
+        }
+    }
+
+    /**
+     * Key set spanning every segment.
+     */
+    private final class KeySet extends AbstractSet<Key> {
+
+        @Override
+        public Iterator<Key> iterator() {
+            return new Iterator<Key>() {
+
+                private int index;
+
+                private Iterator<Key> current = segments[0].map.keySet().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && index < segments.length - 1) {
+                        current = segments[++index].map.keySet().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public Key next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+
+                @Override
+                public void remove() {
+                    current.remove();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (final Segment segment : segments) {
+                size += segment.map.size();
             }
+            return size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(final Object key) {
+            return segmentFor((Key) key).map.containsKey(key);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean remove(final Object key) {
+            return segmentFor((Key) key).map.remove(key) != null;
+        }
+
+        @Override
+        public void clear() {
+            HashCache.this.clear();
         }
     }
 
     /**
      * Defines a reference to a cached value. Used to abstract away the three
      * types of cache references. Stores the key associated with the referenced
-     * value so that obsolete value can be removed from the cache.
+     * value and the segment storing it so that the obsolete value can be
+     * removed from the cache.
      *
      * @param <Key> the cache Key.
+     * @param <Value> the cached value.
      */
-    private interface CacheReference<Key> {
+    private interface CacheReference<Key, Value> {
 
         /**
          * Returns the key associated with the cached value/referent.
@@ -337,13 +759,17 @@ public class HashCache<Key, Value> {
         public Key getKey();
 
         /**
-         * Clears the key associated with the cached value/referent. This should
-         * be called whenever the referent is replaced in the cache (reloaded)
-         * or otherwise rendered obsolete. This will indicate that the cached
-         * value associated with the referent should not be removed when the
-         * referent is GC'd.
+         * Returns the cached value, or null if it has been collected.
+         *
+         * @return the cached value/referent.
+         */
+        public Value getValue();
+
+        /**
+         * Removes the entry of this reference from its segment, unless the key
+         * has since been mapped to another value.
          */
-        public void clearKey();
+        public void expunge();
     }
 
     /**
@@ -352,47 +778,47 @@ public class HashCache<Key, Value> {
      * cached values may not be purged from the cache until memory becomes
      * constrained.
      */
-    private class SoftCacheReference extends SoftReference<Value> implements CacheReference<Key> {
+    private final class SoftCacheReference extends SoftReference<Value> implements CacheReference<Key, Value> {
+
+        /**
+         * The segment storing this reference.
+         */
+        private final Segment segment;
 
         /**
          * The key associated with the cached value/referent.
          */
-        private Key key;
+        private final Key key;
 
         /**
          * Constructs a soft reference for the specified key-value pair to be
          * enqueued in the specified {@link java.lang.ref.ReferenceQueue}.
          *
+         * @param segment the segment storing the entry.
          * @param key the key associated with the cached value.
          * @param referent the cached value/referent.
          * @param queue the {@link java.lang.ref.ReferenceQueue} in which to
          * enqueue this reference.
          */
-        public SoftCacheReference(final Key key, final Value referent, final ReferenceQueue queue) {
+        private SoftCacheReference(final Segment segment, final Key key, final Value referent, final ReferenceQueue<Object> queue) {
             super(referent, queue);
+            this.segment = segment;
             this.key = key;
         }
 
-        /**
-         * Returns the key associated with the cached value/referent.
-         *
-         * @return the key associated with the cached value.
-         */
         @Override
         public final Key getKey() {
             return key;
         }
 
-        /**
-         * Clears the key associated with the cached value/referent. This should
-         * be called whenever the referent is replaced in the cache (reloaded)
-         * or otherwise rendered obsolete. This will indicate that the cached
-         * value associated with the referent should not be removed when the
-         * referent is GC'd.
-         */
         @Override
-        public final void clearKey() {
-            key = null;
+        public final Value getValue() {
+            return get();
+        }
+
+        @Override
+        public final void expunge() {
+            segment.expunge(key, this);
         }
     }
 
@@ -400,91 +826,102 @@ public class HashCache<Key, Value> {
      * References a weakly cached value which will be removed from the cache
      * when it has no remaining strong references.
      */
-    private class WeakCacheReference extends WeakReference<Value> implements CacheReference<Key> {
+    private final class WeakCacheReference extends WeakReference<Value> implements CacheReference<Key, Value> {
+
+        /**
+         * The segment storing this reference.
+         */
+        private final Segment segment;
 
         /**
          * The key associated with the cached value/referent.
          */
-        private Key key;
+        private final Key key;
 
         /**
          * Constructs a weak reference for the specified key-value pair to be
          * enqueued in the specified {@link java.lang.ref.ReferenceQueue}.
          *
+         * @param segment the segment storing the entry.
          * @param key the key associated with the cached value.
          * @param referent the cached value/referent.
          * @param queue the {@link java.lang.ref.ReferenceQueue} in which to
          * enqueue this reference.
          */
-        public WeakCacheReference(final Key key, final Value referent, final ReferenceQueue queue) {
+        private WeakCacheReference(final Segment segment, final Key key, final Value referent, final ReferenceQueue<Object> queue) {
             super(referent, queue);
+            this.segment = segment;
             this.key = key;
         }
 
-        /**
-         * Returns the key associated with the cached value/referent.
-         *
-         * @return the key associated with the cached value.
-         */
         @Override
         public final Key getKey() {
             return key;
         }
 
-        /**
-         * Clears the key associated with the cached value/referent. This should
-         * be called whenever the referent is replaced in the cache (reloaded)
-         * or otherwise rendered obsolete. This will indicate that the cached
-         * value associated with the referent should not be removed when the
-         * referent is GC'd.
-         */
         @Override
-        public final void clearKey() {
-            key = null;
+        public final Value getValue() {
+            return get();
+        }
+
+        @Override
+        public final void expunge() {
+            segment.expunge(key, this);
         }
     }
 
-    private class PhantomCacheReference extends PhantomReference<Value> implements CacheReference<Key> {
+    /**
+     * References a cached value which is removed from the cache once it has
+     * been reclaimed. A phantom reference cannot return its referent, so the
+     * value is retrieved through a separate weak reference.
+     */
+    private final class PhantomCacheReference extends PhantomReference<Value> implements CacheReference<Key, Value> {
+
+        /**
+         * The segment storing this reference.
+         */
+        private final Segment segment;
 
         /**
          * The key associated with the cached value/referent.
          */
-        private Key key;
+        private final Key key;
+
+        /**
+         * Weak reference through which the cached value is retrieved.
+         */
+        private final WeakReference<Value> lookup;
 
         /**
          * Constructs a phantom reference for the specified key-value pair to be
          * enqueued in the specified {@link java.lang.ref.ReferenceQueue}.
          *
+         * @param segment the segment storing the entry.
          * @param key the key associated with the cached value.
          * @param referent the cached value/referent.
          * @param queue the {@link java.lang.ref.ReferenceQueue} in which to
          * enqueue this reference.
          */
-        public PhantomCacheReference(final Key key, final Value referent, final ReferenceQueue queue) {
+        private PhantomCacheReference(final Segment segment, final Key key, final Value referent, final ReferenceQueue<Object> queue) {
             super(referent, queue);
+            this.segment = segment;
             this.key = key;
+            this.lookup = new WeakReference<>(referent);
         }
 
-        /**
-         * Returns the key associated with the cached value/referent.
-         *
-         * @return the key associated with the cached value.
-         */
         @Override
         public final Key getKey() {
             return key;
         }
 
-        /**
-         * Clears the key associated with the cached value/referent. This should
-         * be called whenever the referent is replaced in the cache (reloaded)
-         * or otherwise rendered obsolete. This will indicate that the cached
-         * value associated with the referent should not be removed when the
-         * referent is GC'd.
-         */
         @Override
-        public final void clearKey() {
-            key = null;
+        public final Value getValue() {
+            return lookup.get();
+        }
+
+        @Override
+        public final void expunge() {
+            segment.expunge(key, this);
         }
     }
 }
@@ -0,0 +1,140 @@
+package net.cybertekt.util;
+
+/**
+ * XXHash64 - (C) Cybertekt Software
+ *
+ * <p>
+ * The 64-bit xxHash function (XXH64). xxHash is a non-cryptographic hash that
+ * runs at close to memory bandwidth, which makes it suited to fingerprinting
+ * file content, such as finding identical assets in a content pack. It must
+ * not be used where an adversary chooses the input; use
+ * {@link net.cybertekt.crypto.SHA256} for that.
+ * </p>
+ *
+ * <p>
+ * Input is consumed in 32 byte stripes across four accumulators, and the
+ * remaining bytes are mixed in individually. Multi-byte values are read in
+ * little-endian order, so results match the reference implementation on every
+ * platform. All methods are static and allocation-free.
+ * </p>
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class XXHash64 {
+
+    /**
+     * The five primes of the XXH64 specification.
+     */
+    private static final long PRIME1 = 0x9E3779B185EBCA87L, PRIME2 = 0xC2B2AE3D27D4EB4FL, PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L, PRIME5 = 0x27D4EB2F165667C5L;
+
+    /**
+     * Static access only.
+     */
+    private XXHash64() {
+    }
+
+    /**
+     * Hashes an array with a seed of zero.
+     *
+     * @param data the data to hash.
+     * @return the 64-bit hash.
+     */
+    public static long hash(final byte[] data) {
+        return hash(data, 0, data.length, 0);
+    }
+
+    /**
+     * Hashes a range of an array.
+     *
+     * @param data the data to hash.
+     * @param offset the index of the first byte.
+     * @param length the number of bytes.
+     * @param seed the seed.
+     * @return the 64-bit hash.
+     */
+    public static long hash(final byte[] data, final int offset, final int length, final long seed) {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException("Invalid range [" + offset + ", " + length + "] for " + data.length + " bytes");
+        }
+        final int end = offset + length;
+        int p = offset;
+        long h;
+
+        /* Stripes Of 32 Bytes */
+        if (length >= 32) {
+            long v1 = seed + PRIME1 + PRIME2, v2 = seed + PRIME2, v3 = seed, v4 = seed - PRIME1;
+            for (final int limit = end - 32; p <= limit; p += 32) {
+                v1 = round(v1, getLong(data, p));
+                v2 = round(v2, getLong(data, p + 8));
+                v3 = round(v3, getLong(data, p + 16));
+                v4 = round(v4, getLong(data, p + 24));
+            }
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = merge(h, v1);
+            h = merge(h, v2);
+            h = merge(h, v3);
+            h = merge(h, v4);
+        } else {
+            h = seed + PRIME5;
+        }
+        h += length;
+
+        /* Remaining Bytes */
+        for (; p + 8 <= end; p += 8) {
+            h ^= round(0, getLong(data, p));
+            h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+        }
+        if (p + 4 <= end) {
+            h ^= (getInt(data, p) & 0xFFFFFFFFL) * PRIME1;
+            h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+            p += 4;
+        }
+        for (; p < end; p++) {
+            h ^= (data[p] & 0xFFL) * PRIME5;
+            h = Long.rotateLeft(h, 11) * PRIME1;
+        }
+
+        /* Avalanche */
+        h ^= h >>> 33;
+        h *= PRIME2;
+        h ^= h >>> 29;
+        h *= PRIME3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    /**
+     * Mixes one lane of input into an accumulator.
+     */
+    private static long round(long acc, final long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    /**
+     * Merges an accumulator into the hash after the stripes.
+     */
+    private static long merge(long h, final long v) {
+        h ^= round(0, v);
+        return h * PRIME1 + PRIME4;
+    }
+
+    /**
+     * Reads a little-endian long.
+     */
+    private static long getLong(final byte[] b, final int i) {
+        return (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24
+                | (b[i + 4] & 0xFFL) << 32 | (b[i + 5] & 0xFFL) << 40 | (b[i + 6] & 0xFFL) << 48 | (b[i + 7] & 0xFFL) << 56;
+    }
+
+    /**
+     * Reads a little-endian int.
+     */
+    private static int getInt(final byte[] b, final int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,76 @@
+package net.cybertekt;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Checks - (C) Cybertekt Software
+ *
+ * Assertion and helpers shared by the test harnesses. Unlike the assert
+ * statement, a check is evaluated whether or not assertions are enabled, and a
+ * failed check stops the harness with the description of the expectation that
+ * was not met.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public final class Checks {
+
+    /**
+     * Throws an exception if a condition does not hold.
+     *
+     * @param condition the condition expected to be true.
+     * @param description the description of the expectation.
+     * @throws IllegalStateException if the condition is false.
+     */
+    public static void check(final boolean condition, final String description) {
+        if (!condition) {
+            throw new IllegalStateException("Check failed: " + description);
+        }
+    }
+
+    /**
+     * Polls a condition every millisecond until it holds or a timeout elapses.
+     *
+     * @param condition the condition to wait for.
+     * @param timeoutMs the longest time to wait in milliseconds.
+     * @return true if the condition holds, false if the timeout elapsed.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public static boolean waitFor(final BooleanSupplier condition, final long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes a directory along with everything in it.
+     *
+     * @param dir the directory to delete.
+     * @throws IOException if a file or directory cannot be deleted.
+     */
+    public static void delete(final Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (final Path path : stream) {
+                if (Files.isDirectory(path)) {
+                    delete(path);
+                } else {
+                    Files.delete(path);
+                }
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private Checks() {
+    }
+}
@@ -0,0 +1,210 @@
+package net.cybertekt.asset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.asset.image.Image;
+import net.cybertekt.asset.image.ImageLoader;
+import net.cybertekt.util.XXHash64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asset Deduplication Unit Test - (C) Cybertekt Software
+ *
+ * Checks the xxHash fingerprints against reference values, then copies a
+ * texture to several paths under the assets directory and checks that the
+ * manifest groups the copies, that content hashes separate files whose
+ * fingerprints collide, that the asset manager decodes one image for all of
+ * them, that each path holds a reference to it, that a forced reload keeps a
+ * copy in its group, and that invalidating or clearing one path releases only
+ * that path. Must be run from the project directory.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class AssetDeduplicationTest {
+
+    public static final Logger log = LoggerFactory.getLogger(AssetDeduplicationTest.class);
+
+    private Path dir;
+
+    private String prefix;
+
+    private AssetManifest manifest;
+
+    public static void main(final String[] args) throws Exception {
+        AssetDeduplicationTest app = new AssetDeduplicationTest();
+        app.testFingerprint();
+        app.dir = Files.createTempDirectory(Paths.get(AssetManager.rootDir, "Textures"), "dedup");
+        app.prefix = "Textures/" + app.dir.getFileName() + "/";
+        try {
+            app.testManifest();
+            app.testSharing();
+            app.testEviction();
+            app.testDisabled();
+        } finally {
+            AssetManager.setDeduplication(false);
+            AssetManager.setManifest(null);
+            AssetManager.clear();
+            for (final Path file : Files.newDirectoryStream(app.dir)) {
+                Files.delete(file);
+            }
+            Files.delete(app.dir);
+        }
+        log.info("All asset deduplication tests passed.");
+    }
+
+    public void testFingerprint() {
+        check(XXHash64.hash(new byte[0]) == 0xEF46DB3751D8E999L, "Empty input");
+        check(XXHash64.hash("a".getBytes()) == 0xD24EC4F1A98C6E5BL, "Single byte");
+        check(XXHash64.hash("abc".getBytes()) == 0x44BC2CF5AD770999L, "Short input");
+        final byte[] text = "Nobody inspects the spammish repetition".getBytes();
+        check(XXHash64.hash(text) == 0xFBCEA83C8A378BF1L, "Input longer than a stripe");
+        check(XXHash64.hash(text, 0, text.length, 20141025) == 0xCE06936136852706L, "Seeded input");
+
+        /* Ranges Hash Like Copies */
+        final byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        final byte[] padded = new byte[data.length + 5];
+        System.arraycopy(data, 0, padded, 3, data.length);
+        check(XXHash64.hash(data, 0, 100, 12345) == 0x4F2E446AB943E539L, "Seeded range");
+        check(XXHash64.hash(padded, 3, data.length, 0) == XXHash64.hash(data), "Offsets do not change the hash");
+        try {
+            XXHash64.hash(data, 990, 11, 0);
+            check(false, "Ranges past the end are rejected");
+        } catch (final IndexOutOfBoundsException e) {
+            /* Expected */
+        }
+        log.info("Fingerprint passed.");
+    }
+
+    public void testManifest() throws IOException {
+        final Path texture = Paths.get(AssetManager.rootDir, "Textures/PNG/RGBA08.png");
+        for (final String name : new String[]{"A.png", "B.png", "C.png"}) {
+            Files.copy(texture, dir.resolve(name));
+        }
+        Files.copy(Paths.get(AssetManager.rootDir, "Textures/PNG/RGB08.png"), dir.resolve("D.png"));
+        Files.copy(texture, dir.resolve("E.bin"));
+
+        final Map<String, String> assets = new LinkedHashMap<>();
+        for (final String name : new String[]{"A", "B", "C", "D"}) {
+            assets.put("Copies." + name, prefix + name + ".png");
+        }
+        assets.put("Copies.E", prefix + "E.bin");
+        assets.put("Copies.Alias", prefix + "D.png");
+        manifest = AssetManifest.wrap(AssetManifest.compile(assets, (path) -> Paths.get(AssetManager.rootDir, path), false));
+
+        final int a = manifest.getId("Copies.A");
+        check(manifest.getFingerprint(a) == XXHash64.hash(Files.readAllBytes(texture)), "Fingerprints are compiled");
+        check(manifest.getContentGroup(a) == a, "The first copy leads its group");
+        check(manifest.getContentGroup(manifest.getId("Copies.B")) == a && manifest.getContentGroup(manifest.getId("Copies.C")) == a, "Copies share a group");
+        check(manifest.getContentGroup(manifest.getId("Copies.D")) < 0, "Unique content has no group");
+        check(manifest.getContentGroup(manifest.getId("Copies.E")) < 0, "Identical content of another type is not grouped");
+        check(manifest.getContentGroup(manifest.getId("Copies.Alias")) < 0, "Ids of the same path are not grouped");
+        check(manifest.getIndex(key("D.png")) == manifest.getId("Copies.D") && manifest.getIndex(key("F.png")) < 0, "Keys resolve to their first entry");
+
+        /* Hashes Separate Colliding Fingerprints */
+        final byte[] content = Files.readAllBytes(texture);
+        content[content.length - 1] ^= 1;
+        Files.write(dir.resolve("F.png"), content);
+        final Map<String, String> collision = new LinkedHashMap<>();
+        collision.put("Collision.A", prefix + "A.png");
+        collision.put("Collision.F", prefix + "F.png");
+        for (final boolean hashes : new boolean[]{false, true}) {
+            final byte[] compiled = AssetManifest.compile(collision, (path) -> Paths.get(AssetManager.rootDir, path), hashes);
+            forge(compiled, XXHash64.hash(content), manifest.getFingerprint(a));
+            final AssetManifest forged = AssetManifest.wrap(compiled);
+            check(forged.getFingerprint(1) == forged.getFingerprint(0), "Fingerprints are forged to collide");
+            check((forged.getContentGroup(1) == 0) == !hashes, hashes ? "Differing hashes are not grouped" : "Colliding fingerprints are grouped without hashes");
+        }
+        log.info("Manifest passed.");
+    }
+
+    public void testSharing() {
+        AssetManager.registerLoader(ImageLoader.class, AssetType.getType("PNG"));
+        AssetManager.setManifest(manifest);
+        AssetManager.setDeduplication(true);
+        AssetManager.reset();
+
+        final Image a = AssetManager.get(Image.class, "Copies.A");
+        check(AssetManager.get(Image.class, "Copies.B") == a, "Copies share one decoded image");
+        check(AssetManager.load("Copies.C") == key("C.png") && AssetManager.get(Image.class, "Copies.C") == a, "Loaded copies are served the shared image");
+        check(a.getKey() == key("A.png"), "The shared image keeps the key it was decoded for");
+        check(AssetManager.getShared() == 2 && AssetManager.getLoaded() == 1, "Only the first copy is decoded");
+        check(AssetManager.getReferences(key("B.png")) == 3, "Every copy holds a reference");
+        check(AssetManager.get(Image.class, "Copies.D") != a && AssetManager.getReferences(key("D.png")) == 0, "Unique content is not shared");
+
+        /* Forced Reloads Keep Copies In Their Group */
+        AssetManager.clear();
+        AssetManager.load(key("B.png"), true);
+        while (AssetManager.isLoading()) {
+            /* Let The Loader Thread Cache The Reloaded Image */
+            Thread.yield();
+        }
+        final Image b = AssetManager.get(Image.class, "Copies.B");
+        check(AssetManager.get(Image.class, "Copies.A") == b && AssetManager.get(Image.class, "Copies.C") == b, "Reloaded copies are shared again");
+        check(AssetManager.getReferences(key("A.png")) == 3, "Every copy holds the reloaded image");
+        log.info("Sharing passed.");
+    }
+
+    public void testEviction() {
+        final Image a = AssetManager.get(Image.class, "Copies.A");
+
+        /* Changed Files Leave Their Group */
+        AssetManager.invalidate(Collections.singleton(key("B.png")));
+        check(AssetManager.getReferences(key("A.png")) == 2, "Invalidating a copy releases its reference");
+        final Image b = AssetManager.get(Image.class, "Copies.B");
+        check(b != a && AssetManager.getReferences(key("B.png")) == 0, "Changed copies are decoded on their own");
+        check(AssetManager.get(Image.class, "Copies.C") == a, "Other copies keep the shared image");
+
+        /* Releasing Every Holder Drops The Group */
+        AssetManager.invalidate(Collections.singleton(key("A.png")));
+        check(AssetManager.getReferences(key("C.png")) == 1, "The last copy still holds the image");
+        AssetManager.clear();
+        check(AssetManager.getReferences(key("C.png")) == 0, "Clearing the cache releases every reference");
+        final Image c = AssetManager.get(Image.class, "Copies.C");
+        check(c != a && c.getKey() == key("C.png"), "Evicted images are not handed out again");
+        check(AssetManager.get(Image.class, "Copies.A") != c, "Changed copies stay out of their group");
+        log.info("Eviction passed.");
+    }
+
+    public void testDisabled() {
+        AssetManager.setManifest(manifest);
+        AssetManager.setDeduplication(false);
+        AssetManager.clear();
+        final Image a = AssetManager.get(Image.class, "Copies.A");
+        check(AssetManager.get(Image.class, "Copies.C") != a && AssetManager.getReferences(key("A.png")) == 0, "Copies are decoded separately when disabled");
+        log.info("Disabled passed.");
+    }
+
+    /**
+     * Replaces the only occurrence of a big-endian fingerprint in a compiled
+     * manifest.
+     */
+    private static void forge(final byte[] compiled, final long fingerprint, final long replacement) {
+        final ByteBuffer buffer = ByteBuffer.wrap(compiled);
+        int found = -1;
+        for (int i = 0; i + Long.BYTES <= compiled.length; i++) {
+            if (buffer.getLong(i) == fingerprint) {
+                check(found < 0, "Fingerprint occurs once");
+                found = i;
+            }
+        }
+        check(found >= 0, "Fingerprint is compiled");
+        buffer.putLong(found, replacement);
+    }
+
+    private AssetKey key(final String name) {
+        return AssetKey.getKey(prefix + name);
+    }
+}
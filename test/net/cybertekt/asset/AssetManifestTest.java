@@ -0,0 +1,218 @@
+package net.cybertekt.asset;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.asset.image.Image;
+import net.cybertekt.asset.image.ImageLoader;
+import net.cybertekt.crypto.SHA256;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asset Manifest Unit Test - (C) Cybertekt Software
+ *
+ * Compiles the shipped <code>Assets.xml</code> with content hashes, maps the
+ * result and checks every entry against the files on disk. Checks that ids
+ * resolve from any character sequence, that near misses do not, that a large
+ * manifest resolves every id, and that duplicate ids, missing files and
+ * corrupt manifests are reported. Then installs the manifest in the asset
+ * manager, loads an image by id and checks that id lookups allocate nothing.
+ * Must be run from the project directory.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class AssetManifestTest {
+
+    public static final Logger log = LoggerFactory.getLogger(AssetManifestTest.class);
+
+    private static final int HEADER_TYPE_OFFSET = 32;
+
+    private Path dir;
+
+    private AssetManifest manifest;
+
+    public static void main(final String[] args) throws Exception {
+        AssetManifestTest app = new AssetManifestTest();
+        app.dir = Files.createTempDirectory("asset-manifest");
+        try {
+            app.testCompile();
+            app.testLookup();
+            app.testLargeManifest();
+            app.testErrors();
+            app.testAssetManager();
+            app.testAllocation();
+        } finally {
+            for (final Path file : Files.newDirectoryStream(app.dir)) {
+                Files.delete(file);
+            }
+            Files.delete(app.dir);
+        }
+        log.info("All asset manifest tests passed.");
+    }
+
+    public void testCompile() throws IOException {
+        final Path xml = Paths.get(AssetManager.rootDir, "Assets.xml");
+        final Path bin = dir.resolve("Assets.bin");
+        check(AssetManifest.compile(xml, bin, true) == 22, "Every listed asset is compiled");
+        manifest = AssetManifest.open(bin);
+        check(manifest.size() == 22 && manifest.hasHashes(), "Manifest is mapped with hashes");
+        if (Files.getFileStore(bin).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            final Path plainFile = Files.write(dir.resolve("Permissions.bin"), new byte[0]);
+            check(Files.getPosixFilePermissions(bin).equals(Files.getPosixFilePermissions(plainFile)), "Manifest has the permissions of a new file");
+            Files.delete(plainFile);
+        }
+
+        /* Every Entry Matches The File On Disk */
+        final Map<String, String> assets = AssetManifest.parse(xml);
+        for (final Map.Entry<String, String> asset : assets.entrySet()) {
+            final int id = manifest.getId(asset.getKey());
+            check(id >= 0 && manifest.getName(id).equals(asset.getKey()), "Id resolves: " + asset.getKey());
+            final AssetKey key = manifest.getKey(id);
+            check(key == AssetKey.getKey(asset.getValue()), "Key is resolved once: " + asset.getKey());
+            check(manifest.getType(id) == key.getType(), "Type code matches the extension: " + asset.getKey());
+            final byte[] data = Files.readAllBytes(Paths.get(key.getAbsolutePath()));
+            check(manifest.getSize(id) == data.length, "File size is recorded: " + asset.getKey());
+            check(Arrays.equals(manifest.getHash(id), SHA256.hash(data)), "Content hash is recorded: " + asset.getKey());
+        }
+        check(manifest.getType(manifest.getId("Textures.RGBA08")) == AssetType.getType("PNG"), "Types resolve to shared asset types");
+
+        /* Hashes Are Optional */
+        AssetManifest.compile(xml, bin, false);
+        final AssetManifest plain = AssetManifest.open(bin);
+        check(!plain.hasHashes() && plain.getHash(0) == null && plain.size() == 22, "Manifests compile without hashes");
+        log.info("Compiled {} assets into {} bytes.", manifest.size(), Files.size(bin));
+    }
+
+    public void testLookup() {
+        check(manifest.getKey("Textures.RGBA08").getPath().equals("Textures/PNG/RGBA08.png"), "Grouped ids resolve to paths");
+        check(manifest.getKey(new StringBuilder("Fonts.").append("Ubuntu")) == AssetKey.getKey("Interface/Fonts/ubuntu/font.fnt"), "Any character sequence resolves");
+        check(manifest.getId("Textures.RGBA0") < 0 && manifest.getId("Textures.RGBA080") < 0, "Near misses do not resolve");
+        check(manifest.getId("textures.rgba08") < 0 && manifest.getId("") < 0, "Ids are case sensitive");
+        check(manifest.getKey("Textures/PNG/RGBA08.png") == null, "Paths are not ids");
+        log.info("Lookup passed.");
+    }
+
+    public void testLargeManifest() throws IOException {
+        final Path file = Files.write(dir.resolve("data.bin"), new byte[]{1, 2, 3});
+        final Map<String, String> assets = new LinkedHashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            assets.put("Group" + (i % 7) + ".Asset" + i, "Generated/" + i + ".bin");
+        }
+        final AssetManifest large = AssetManifest.wrap(AssetManifest.compile(assets, (path) -> file, false));
+        check(large.size() == 5000, "Large manifest is compiled");
+        for (final Map.Entry<String, String> asset : assets.entrySet()) {
+            final int id = large.getId(asset.getKey());
+            check(id >= 0 && large.getKey(id).getPath().equals(asset.getValue()) && large.getSize(id) == 3, "Id resolves in a large manifest: " + asset.getKey());
+        }
+        check(large.getId("Group0.Asset5000") < 0, "Missing ids miss in a large manifest");
+        log.info("Large manifest passed.");
+    }
+
+    public void testErrors() throws IOException {
+        final Path xml = dir.resolve("Bad.xml");
+        Files.write(xml, "<asset-manifest><assets name=\"A\"><asset id=\"X\" path=\"x.png\"/><asset id=\"X\" path=\"y.png\"/></assets></asset-manifest>".getBytes());
+        expectFailure(() -> AssetManifest.compile(xml, dir.resolve("Bad.bin"), false), "Duplicate ids");
+        Files.write(xml, "<asset-manifest><assets name=\"A\"><asset id=\"X\" path=\"missing.png\"/></assets></asset-manifest>".getBytes());
+        expectFailure(() -> AssetManifest.compile(xml, dir.resolve("Bad.bin"), false), "Missing files");
+        Files.write(xml, "<asset-manifest><assets name=\"A\">".getBytes());
+        expectFailure(() -> AssetManifest.compile(xml, dir.resolve("Bad.bin"), false), "Malformed XML");
+        check(!Files.exists(dir.resolve("Bad.bin")), "Failed compiles write nothing");
+
+        final Map<String, String> assets = new LinkedHashMap<>();
+        assets.put("A.X", "x.png");
+        final byte[] data = AssetManifest.compile(assets, (path) -> xml, true);
+        expectFailure(() -> AssetManifest.wrap(Arrays.copyOf(data, data.length - 1)), "Truncated manifest");
+        expectFailure(() -> AssetManifest.wrap(new byte[64]), "Missing magic number");
+        final byte[] version = data.clone();
+        version[5] = 9;
+        expectFailure(() -> AssetManifest.wrap(version), "Unknown version");
+        final byte[] strings = data.clone();
+        strings[HEADER_TYPE_OFFSET] = 0x7F;
+        expectFailure(() -> AssetManifest.wrap(strings), "Strings out of range");
+        log.info("Errors passed.");
+    }
+
+    public void testAssetManager() {
+        AssetManager.registerLoader(ImageLoader.class, AssetType.getType("PNG"));
+        AssetManager.setManifest(manifest);
+        try {
+            final Image image = AssetManager.get(Image.class, "Textures.RGBA08");
+            check(image.getKey() == AssetKey.getKey("Textures/PNG/RGBA08.png"), "Assets load by id");
+            check(AssetManager.get(Image.class, manifest.getId("Textures.RGBA08")) == image, "Assets load by index");
+            check(AssetManager.get(Image.class, "Textures/PNG/RGBA08.png") == image, "Paths still load");
+            check(AssetManager.load("Textures.Grayscale") == AssetKey.getKey("Textures/PNG/Grayscale.png"), "Ids are accepted when loading");
+        } finally {
+            AssetManager.setManifest(null);
+        }
+        try {
+            AssetManager.get(Image.class, 0);
+            check(false, "Index lookups require a manifest");
+        } catch (final IllegalStateException e) {
+            /* Expected */
+        }
+        log.info("Asset manager passed.");
+    }
+
+    public void testAllocation() {
+        final String[] ids = {"Textures.RGBA08", "Fonts.Ubuntu", "Shaders.FontVertex", "Textures.Missing"};
+        final String[] paths = {"Textures/PNG/RGBA08.png", "Interface/Fonts/ubuntu/font.fnt", "Shaders/font.vert", "Textures/PNG/Missing.png"};
+        final int iterations = 1000000;
+        int found = 0;
+        for (int i = 0; i < iterations; i++) {
+            found += manifest.getId(ids[i & 3]) >= 0 ? 1 : 0;
+        }
+
+        /* Id Lookups */
+        final long bytes = allocated();
+        long time = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            found += manifest.getId(ids[i & 3]) >= 0 ? 1 : 0;
+        }
+        time = System.nanoTime() - time;
+        final long used = allocated() - bytes;
+        check(found == iterations / 2 * 3, "Lookups resolve");
+        check(bytes < 0 || used < 1024, "Id lookups allocate nothing: " + used + " bytes");
+
+        /* Path Interning */
+        long interned = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            found += AssetKey.getKey(paths[i & 3]) != null ? 1 : 0;
+        }
+        interned = System.nanoTime() - interned;
+        log.info("Id lookup {}ns, path interning {}ns, {} bytes allocated by {} id lookups.", time / iterations, interned / iterations, used, iterations);
+    }
+
+    private static long allocated() {
+        try {
+            final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (final ClassCastException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Action {
+
+        void run() throws IOException;
+    }
+
+    private static void expectFailure(final Action action, final String description) {
+        try {
+            action.run();
+            check(false, description + " are reported");
+        } catch (final IOException e) {
+            log.debug("{}: {}", description, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package net.cybertekt.asset;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.asset.AssetMetrics.Histogram;
+import net.cybertekt.asset.AssetMetrics.TypeMetrics;
+import net.cybertekt.asset.image.Image;
+import net.cybertekt.asset.image.ImageLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asset Metrics Unit Test - (C) Cybertekt Software
+ *
+ * Checks the histogram buckets and percentile estimates, then loads images
+ * inline and on the loader threads and checks the recorded loads, bytes read,
+ * queue waits, hits, misses, invalidations, failures and fallbacks, the number
+ * of cached images, that nothing is recorded while disabled, and that
+ * snapshots are logged by {@link AssetManager#update()}. Finally times queued loads of a trivial loader
+ * with metrics enabled, and with metrics disabled but the clock read where the
+ * metrics read it, reports what recording a load costs, and checks that it
+ * costs less than the clocked load itself and allocates no more than the stream
+ * it reads through. Must be run from the project directory.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class AssetMetricsTest {
+
+    public static final Logger log = LoggerFactory.getLogger(AssetMetricsTest.class);
+
+    private static final AssetType PNG = AssetType.getType("PNG");
+
+    public static void main(final String[] args) throws Exception {
+        AssetMetricsTest app = new AssetMetricsTest();
+        AssetManager.registerLoader(ImageLoader.class, PNG);
+        try {
+            app.testHistogram();
+            app.testLoads();
+            app.testFailures();
+            app.testDisabled();
+            app.benchmark();
+        } finally {
+            AssetManager.getMetrics().setEnabled(false);
+            AssetManager.getMetrics().setLogInterval(0, TimeUnit.SECONDS);
+        }
+        log.info("All asset metrics tests passed.");
+    }
+
+    public void testHistogram() {
+        check(AssetMetrics.bucket(0) == 0 && AssetMetrics.bucket(1) == 1 && AssetMetrics.bucket(2) == 2 && AssetMetrics.bucket(3) == 2, "Small durations");
+        check(AssetMetrics.bucket(1024) == 11 && AssetMetrics.bucket(1023) == 10, "Bucket boundaries are powers of two");
+        check(AssetMetrics.bucket(Long.MAX_VALUE) == AssetMetrics.BUCKETS - 1, "Long durations share the last bucket");
+
+        final AssetMetrics metrics = new AssetMetrics();
+        metrics.setEnabled(true);
+        final AssetMetrics.Recorder recorder = metrics.recorder(PNG);
+        for (int i = 1; i <= 100; i++) {
+            recorder.record(-1, 1000, i * 1000, 10);
+        }
+        final TypeMetrics png = metrics.getSnapshot().get(PNG);
+        final Histogram decode = png.getDecode();
+        check(png.getLoads() == 100 && png.getBytesRead() == 1000 && png.getWait().getCount() == 0, "Loads are counted");
+        check(decode.getCount() == 100 && decode.getMaxNanos() == 100000 && decode.getMeanNanos() == 50500, "Totals are exact");
+        check(png.getIO().getPercentileNanos(50) == 1000 && png.getIO().getPercentileNanos(99) == 1000, "Percentiles never exceed the longest duration");
+        check(decode.getPercentileNanos(50) == 65535 && decode.getPercentileNanos(10) == 16383, "Percentiles are bucket upper bounds");
+        check(decode.getPercentileNanos(0) == 1023 && decode.getPercentileNanos(100) == 100000, "Extreme percentiles");
+        check(metrics.getSnapshot().getTotal().getLoads() == 100, "Totals combine every type");
+        metrics.reset();
+        check(metrics.getSnapshot().getTypes().isEmpty() && metrics.getSnapshot().getTotal().getDecode().getCount() == 0, "Reset discards every value");
+        log.info("Histogram passed - {}", png);
+    }
+
+    public void testLoads() throws Exception {
+        final AssetMetrics metrics = AssetManager.getMetrics();
+        AssetManager.restart();
+        metrics.setEnabled(true);
+
+        /* Inline Loads Are Not Queued */
+        final Image inline = AssetManager.get(Image.class, "Textures/PNG/RGBA08.png");
+        check(AssetManager.get(Image.class, "Textures/PNG/RGBA08.png") == inline, "Cached images are returned");
+        TypeMetrics png = metrics.getSnapshot().get(PNG);
+        check(png.getLoads() == 1 && png.getHits() == 1 && png.getMisses() == 1 && png.getHitRatio() == 0.5, "Hits and misses are counted");
+        check(png.getBytesRead() == Files.size(Paths.get(AssetManager.rootDir, "Textures/PNG/RGBA08.png")), "Bytes read are counted");
+        check(png.getWait().getCount() == 0 && png.getIO().getCount() == 1 && png.getDecode().getCount() == 1, "Inline loads are timed");
+
+        /* Queued Loads */
+        final AssetKey[] keys = AssetManager.load("Textures/PNG/RGB08.png", "Textures/PNG/Grayscale.png", "Textures/PNG/LUM8.png");
+        for (final AssetKey key : keys) {
+            AssetManager.get(key);
+        }
+        png = metrics.getSnapshot().get(PNG);
+        check(png.getLoads() == 4 && png.getWait().getCount() == 3 && png.getDecode().getCount() == 4, "Queued loads are timed");
+        check(png.getDecode().getPercentileNanos(50) > 0 && png.getIO().getMaxNanos() > 0, "Durations are recorded");
+        check(png.getHits() == 1 && png.getMisses() == 4, "Retrieving a queued load is not counted again: " + png);
+        check(AssetManager.getCacheSize(PNG) == 4, "Cached images are counted");
+
+        /* Invalidation */
+        AssetManager.invalidate(Collections.singleton(keys[0]));
+        check(metrics.getSnapshot().get(PNG).getInvalidations() == 1, "Invalidated entries are counted");
+        check(AssetManager.getCacheSize(PNG) == 3, "Invalidated images leave the count");
+
+        /* Periodic Logging */
+        metrics.setLogInterval(1, TimeUnit.NANOSECONDS);
+        AssetManager.update();
+        metrics.setLogInterval(0, TimeUnit.NANOSECONDS);
+        log.info("Loads passed.");
+    }
+
+    public void testFailures() {
+        final AssetMetrics metrics = AssetManager.getMetrics();
+        AssetManager.restart();
+        metrics.setEnabled(true);
+        final Image fallback = AssetManager.get(Image.class, "Textures/PNG/LUMA8.png");
+        AssetManager.setFallback(fallback, PNG);
+        check(AssetManager.get(Image.class, "Textures/PNG/Missing.png") == fallback, "Missing files are replaced by the fallback");
+        check(AssetManager.get(Image.class, "Textures/PNG/Bad.png") == fallback, "Corrupt files are replaced by the fallback");
+        final TypeMetrics png = metrics.getSnapshot().get(PNG);
+        check(png.getFailures() == 2 && png.getFallbacks() == 2 && png.getLoads() == 1, "Failures and fallbacks are counted: " + png);
+        log.info("Failures passed.");
+    }
+
+    public void testDisabled() {
+        final AssetMetrics metrics = AssetManager.getMetrics();
+        AssetManager.restart();
+        metrics.setEnabled(false);
+        AssetManager.get(Image.class, "Textures/PNG/RGBA16.png");
+        AssetManager.get(Image.class, "Textures/PNG/RGBA16.png");
+        check(metrics.getSnapshot().getTypes().isEmpty(), "Nothing is recorded while disabled");
+        log.info("Disabled passed.");
+    }
+
+    public void benchmark() throws Exception {
+        final AssetMetrics metrics = new AssetMetrics();
+        metrics.setEnabled(true);
+        final TrivialLoader loader = new TrivialLoader(false), clocked = new TrivialLoader(true);
+        final AssetKey key = AssetKey.getKey("Textures/PNG/Benchmark.png");
+        final ByteArrayInputStream stream = new ByteArrayInputStream(new byte[64]);
+        final int iterations = 2000, rounds = 2500;
+
+        /* Best Of Several Rounds Of Each Path */
+        long disabled = Long.MAX_VALUE, baseline = Long.MAX_VALUE, enabled = Long.MAX_VALUE, allocation = 0, sum = 0;
+        int round = 0;
+        for (; round < rounds; round++) {
+            long time = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                stream.reset();
+                loader.newTask(key, stream).call();
+            }
+            disabled = Math.min(disabled, System.nanoTime() - time);
+
+            /* Queued, Started, Finished And Two Around The Read */
+            long bytes = allocated();
+            time = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                stream.reset();
+                final long queued = System.nanoTime(), start = System.nanoTime();
+                clocked.newTask(key, stream).call();
+                sum += System.nanoTime() - start + queued;
+            }
+            baseline = Math.min(baseline, System.nanoTime() - time);
+            final long baselineBytes = allocated() - bytes;
+
+            bytes = allocated();
+            time = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                stream.reset();
+                metrics.newTask(loader, key, stream).call();
+            }
+            enabled = Math.min(enabled, System.nanoTime() - time);
+            allocation = (allocated() - bytes - baselineBytes) / iterations;
+        }
+
+        final long overhead = (enabled - baseline) / iterations;
+        final TypeMetrics png = metrics.getSnapshot().get(PNG);
+        check(png.getLoads() == (long) iterations * round && png.getBytesRead() == png.getLoads() * 16 && sum + clocked.nanos != 0, "Every load is recorded");
+        check(enabled - baseline < baseline, "Recording a load costs less than the load itself: " + overhead + "ns of " + baseline / iterations + "ns");
+        check(allocation <= 64, "Recording a load only allocates the stream it reads through: " + allocation + " bytes");
+        log.info("Recording a load takes {}ns, {}ns with its clock reads, and allocates {} bytes.", overhead, (enabled - disabled) / iterations, allocation);
+    }
+
+    private static long allocated() {
+        try {
+            final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        } catch (final ClassCastException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Loader reading a few bytes of each file without decoding them, and
+     * optionally reading the clock around each read.
+     */
+    private static final class TrivialLoader extends AssetLoader {
+
+        private final byte[] buffer = new byte[16];
+
+        private final boolean clocked;
+
+        private long nanos;
+
+        private TrivialLoader(final boolean clocked) {
+            this.clocked = clocked;
+        }
+
+        @Override
+        public AssetTask newTask(final AssetKey key, final InputStream stream) {
+            return new AssetTask(key, stream) {
+                @Override
+                public Asset load() {
+                    try {
+                        final long start = clocked ? System.nanoTime() : 0;
+                        input.read(buffer);
+                        if (clocked) {
+                            nanos += System.nanoTime() - start;
+                        }
+                    } catch (final IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package net.cybertekt.asset;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import static net.cybertekt.Checks.check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asset Watcher Unit Test - (C) Cybertekt Software
+ *
+ * Watches a temporary directory and checks that a file written several times
+ * in quick succession is reported once, that changes to several files in one
+ * burst arrive as one batch, that files in directories created after the
+ * watcher started are reported, that deletions are reported, and that a
+ * stopped watcher reports nothing. Then checks that the dependency graph
+ * follows includes transitively and that the asset manager invalidates a
+ * changed file together with the assets built from it.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class AssetWatcherTest {
+
+    public static final Logger log = LoggerFactory.getLogger(AssetWatcherTest.class);
+
+    private static final long DEBOUNCE = 200;
+
+    private final BlockingQueue<Set<String>> batches = new LinkedBlockingQueue<>();
+
+    private Path dir;
+
+    public static void main(final String[] args) throws Exception {
+        AssetWatcherTest app = new AssetWatcherTest();
+        app.dir = Files.createTempDirectory("asset-watcher");
+        try {
+            app.testWatcher();
+        } finally {
+            app.deleteDir();
+        }
+        app.testDependencies();
+        app.testInvalidate();
+        log.info("All asset watcher tests passed.");
+    }
+
+    public void testWatcher() throws Exception {
+        Files.createDirectories(dir.resolve("Shaders/Common"));
+        Files.write(dir.resolve("Shaders/lit.frag"), "void main() {}".getBytes());
+        final AssetWatcher watcher = new AssetWatcher(dir, DEBOUNCE, TimeUnit.MILLISECONDS, batches::add);
+        watcher.start();
+        check(watcher.isRunning(), "Watcher is running");
+
+        /* Repeated Saves Are Debounced Into One Change */
+        for (int i = 0; i < 5; i++) {
+            Files.write(dir.resolve("Shaders/Common/light.glsl"), ("// " + i).getBytes());
+            Thread.sleep(DEBOUNCE / 5);
+        }
+        long time = System.nanoTime();
+        Set<String> batch = next();
+        time = (System.nanoTime() - time) / 1000000 + DEBOUNCE / 5;
+        check(batch.equals(Collections.singleton("Shaders/Common/light.glsl")), "Repeated saves are reported once: " + batch);
+        check(batches.poll(DEBOUNCE * 2, TimeUnit.MILLISECONDS) == null, "No further batch follows");
+        log.info("Debounced batch arrived {}ms after the last write.", time);
+
+        /* Several Files In One Burst */
+        Files.write(dir.resolve("Shaders/lit.frag"), "void main() { }".getBytes());
+        Files.write(dir.resolve("Shaders/lit.vert"), "void main() {}".getBytes());
+        batch = next();
+        check(batch.equals(new HashSet<>(Arrays.asList("Shaders/lit.frag", "Shaders/lit.vert"))), "A burst arrives as one batch: " + batch);
+
+        /* New Directories Are Watched */
+        Files.createDirectories(dir.resolve("Shaders/New"));
+        Files.write(dir.resolve("Shaders/New/fog.glsl"), "// fog".getBytes());
+        batch = next();
+        check(batch.contains("Shaders/New/fog.glsl") && !batch.contains("Shaders/New"), "Files in new directories are reported: " + batch);
+        Files.write(dir.resolve("Shaders/New/fog.glsl"), "// fog 2".getBytes());
+        check(next().equals(Collections.singleton("Shaders/New/fog.glsl")), "Changes in new directories are reported");
+
+        /* Deletions */
+        Files.delete(dir.resolve("Shaders/lit.vert"));
+        check(next().equals(Collections.singleton("Shaders/lit.vert")), "Deletions are reported");
+
+        watcher.stop();
+        check(!watcher.isRunning(), "Watcher is stopped");
+        Files.write(dir.resolve("Shaders/lit.frag"), "// stopped".getBytes());
+        check(batches.poll(DEBOUNCE * 3, TimeUnit.MILLISECONDS) == null, "Stopped watcher reports nothing");
+        log.info("Watcher passed.");
+    }
+
+    public void testDependencies() {
+        final AssetKey lit = AssetKey.getKey("Shaders/lit.frag"), flat = AssetKey.getKey("Shaders/flat.frag");
+        final AssetKey light = AssetKey.getKey("Shaders/Common/light.glsl"), math = AssetKey.getKey("Shaders/Common/math.glsl");
+        final AssetDependencies graph = new AssetDependencies();
+        graph.set(lit, Arrays.asList(light));
+        graph.set(light, Arrays.asList(math));
+        graph.set(flat, Arrays.asList(math));
+
+        check(graph.getAffected(Collections.singleton(math)).equals(new HashSet<>(Arrays.asList(math, light, lit, flat))), "Dependencies are followed transitively");
+        check(graph.getAffected(Collections.singleton(light)).equals(new HashSet<>(Arrays.asList(light, lit))), "Only dependents are affected");
+        check(graph.getAffected(Collections.singleton(lit)).equals(Collections.singleton(lit)), "Unrelated changes affect only themselves");
+
+        /* Reloading Replaces Dependencies */
+        graph.set(lit, Arrays.asList(math));
+        check(!graph.getAffected(Collections.singleton(light)).contains(lit) && graph.getDependents(math).contains(lit), "Reloaded dependencies replace the old ones");
+        graph.remove(flat);
+        check(!graph.getAffected(Collections.singleton(math)).contains(flat) && graph.size() == 2, "Removed assets are no longer affected");
+
+        /* Cycles Terminate */
+        graph.set(math, Arrays.asList(lit));
+        check(graph.getAffected(Collections.singleton(math)).size() == 3, "Cycles terminate");
+        log.info("Dependencies passed.");
+    }
+
+    public void testInvalidate() {
+        final AssetType type = AssetType.getType("WTEST");
+        final AssetKey shader = AssetKey.getKey("Shaders/watched.wtest"), include = AssetKey.getKey("Shaders/Common/watched.glsl");
+        final Asset fallback = new Asset(AssetKey.getKey("Shaders/fallback.wtest")) {
+        };
+        AssetManager.setFallback(fallback, type);
+        AssetManager.load(shader);
+        check(AssetManager.getCacheSize(type) == 1, "Asset is cached");
+
+        AssetManager.getDependencies().set(shader, Collections.singleton(include));
+        final Set<AssetKey> affected = AssetManager.invalidate(Collections.singleton(include));
+        check(affected.equals(new HashSet<>(Arrays.asList(include, shader))), "Dependents are invalidated: " + affected);
+        check(AssetManager.getCacheSize(type) == 0, "Invalidated asset leaves the cache");
+        check(AssetManager.update().isEmpty(), "Update without changes does nothing");
+        AssetManager.getDependencies().remove(shader);
+        log.info("Invalidate passed.");
+    }
+
+    private Set<String> next() throws InterruptedException {
+        final Set<String> batch = batches.poll(10, TimeUnit.SECONDS);
+        check(batch != null, "A batch arrives");
+        return batch;
+    }
+
+    private void deleteDir() throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path d, final IOException e) throws IOException {
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,241 @@
+package net.cybertekt.asset;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.asset.AssetManager.AssetInitializationException;
+import net.cybertekt.asset.font.BitmapFont;
+import net.cybertekt.asset.font.FontLoader;
+import net.cybertekt.asset.font.TextLayout;
+import net.cybertekt.render.TextBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Font Unit Test - (C) Cybertekt Software
+ *
+ * Loads every shipped font through the asset manager and checks its metrics
+ * against the descriptor, then parses a text format descriptor with a glyph
+ * outside the direct index and checks that malformed and multi-page
+ * descriptors, and glyph or kerning counts that do not fit the descriptor, are
+ * reported. Checks that layouts apply offsets, kerning, new lines and the
+ * fallback glyph, and that a batch transforms quads, reuses cached layouts
+ * and drops glyphs beyond its capacity. Finally benchmarks layout and quad
+ * generation. Must be run from the project directory and requires no OpenGL
+ * context.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class FontTest {
+
+    public static final Logger log = LoggerFactory.getLogger(FontTest.class);
+
+    private static final String[] FONTS = {"intro", "lobster", "myriad", "neutron", "pt-serif", "ubuntu"};
+
+    private static final String TEXT_FONT = "info face=\"Test Font\" size=-16 bold=0 padding=0,0,0,0\n"
+            + "common lineHeight=20 base=16 scaleW=64 scaleH=32 pages=1 packed=0\n"
+            + "page id=0 file=\"test.png\"\n"
+            + "chars count=3\n"
+            + "char id=65   x=0     y=0     width=10    height=12    xoffset=1     yoffset=2     xadvance=11    page=0  chnl=15\n"
+            + "char id=32   x=0     y=0     width=0     height=0     xoffset=0     yoffset=0     xadvance=5     page=0  chnl=15\n"
+            + "char id=8364 x=10    y=16    width=8     height=12    xoffset=0     yoffset=-2    xadvance=9     page=0  chnl=15\n"
+            + "kernings count=1\n"
+            + "kerning first=65  second=8364 amount=-2\n";
+
+    private BitmapFont ubuntu;
+
+    public static void main(final String[] args) {
+        FontTest app = new FontTest();
+        app.testLoading();
+        app.testTextFormat();
+        app.testErrors();
+        app.testLayout();
+        app.testBatch();
+        app.testBenchmark();
+        log.info("All font tests passed.");
+    }
+
+    public void testLoading() {
+        AssetManager.registerLoader(FontLoader.class, AssetType.getType("FNT"));
+        final String[] paths = new String[FONTS.length];
+        for (int i = 0; i < FONTS.length; i++) {
+            paths[i] = "Interface/Fonts/" + FONTS[i] + "/font.fnt";
+        }
+        final BitmapFont[] fonts = AssetManager.get(BitmapFont.class, paths);
+        for (int i = 0; i < fonts.length; i++) {
+            check(fonts[i] != null && fonts[i].getPageCount() == 1, "Font " + FONTS[i] + " is loaded");
+            check(fonts[i].getPageKey(0).getPath().equals("Interface/Fonts/" + FONTS[i] + "/font.png"), "Pages resolve next to the descriptor");
+            log.info("Loaded {}", fonts[i]);
+        }
+        check(fonts[4].getGlyphCount() == 96 && fonts[4].getKerningCount() == 635, "pt-serif glyph and kerning counts");
+        ubuntu = fonts[5];
+        check(ubuntu.getGlyphCount() == 81 && ubuntu.getKerningCount() == 1140, "ubuntu glyph and kerning counts");
+        check(ubuntu.getSize() == 72 && ubuntu.getLineHeight() == 81 && ubuntu.getBase() == 56, "ubuntu common metrics");
+
+        /* Glyph 'A' - x=43 y=451 width=54 height=53 xoffset=5 yoffset=6 xadvance=52 */
+        final int a = ubuntu.getGlyph('A');
+        check(a >= 0 && ubuntu.getCodePoint(a) == 'A', "Glyph A is found");
+        check(ubuntu.getMetric(a, BitmapFont.X_OFFSET) == 5 && ubuntu.getMetric(a, BitmapFont.Y_OFFSET) == 6, "Glyph A offsets");
+        check(ubuntu.getMetric(a, BitmapFont.WIDTH) == 54 && ubuntu.getMetric(a, BitmapFont.HEIGHT) == 53 && ubuntu.getMetric(a, BitmapFont.ADVANCE) == 52, "Glyph A size");
+        check(ubuntu.getMetric(a, BitmapFont.U0) == 43 / 512f && ubuntu.getMetric(a, BitmapFont.V1) == 504 / 512f, "Glyph A texture coordinates");
+        check(ubuntu.getKerning(a, 'V') == -5 && ubuntu.getKerning(ubuntu.getGlyph('V'), 'A') == -5, "Kerning pairs");
+        check(ubuntu.getKerning(a, 'A') == 3 && ubuntu.getKerning(a, 'B') == 0, "Pairs without kerning");
+        check(ubuntu.getGlyph(0x4E2D) == -1 && ubuntu.getGlyphOrFallback(0x4E2D) == ubuntu.getGlyph('?'), "Missing glyphs fall back to '?'");
+        log.info("Loading passed.");
+    }
+
+    public void testTextFormat() {
+        final BitmapFont font = parse(TEXT_FONT);
+        check(font.getFace().equals("Test Font") && font.getSize() == 16, "Quoted values and negative sizes");
+        check(font.getPageKey(0).getPath().equals("Fonts/test.png"), "Page resolves next to the descriptor");
+        check(font.getGlyphCount() == 3 && font.getKerningCount() == 1, "Text format glyph and kerning counts");
+        final int euro = font.getGlyph(0x20AC);
+        check(euro >= 0 && font.getMetric(euro, BitmapFont.Y_OFFSET) == -2, "Glyphs beyond the direct index are found");
+        check(font.getMetric(euro, BitmapFont.U0) == 10 / 64f && font.getMetric(euro, BitmapFont.V0) == 0.5f, "Texture coordinates are normalized");
+        check(font.getKerning(font.getGlyph('A'), 0x20AC) == -2, "Kerning to glyphs beyond the direct index");
+        check(font.getGlyphOrFallback('?') == font.getGlyph(' '), "Fonts without '?' fall back to a space");
+        log.info("Text format passed.");
+    }
+
+    public void testErrors() {
+        expectFailure("info face=x\nchar id=65 x=0 y=0 width=1 height=1 xoffset=0 yoffset=0 xadvance=1 page=0\n", "Missing common tag");
+        expectFailure(TEXT_FONT.replace("xadvance=11", "xadvance=1x"), "Malformed number");
+        expectFailure(TEXT_FONT.replace("page id=0", "page id=1"), "Page out of range");
+        expectFailure(TEXT_FONT.replace("pages=1", "pages=2").replace("page id=0 file=\"test.png\"", "page id=0 file=\"a.png\"\npage id=1 file=\"b.png\""), "Multiple pages");
+        expectFailure(TEXT_FONT.replace("first=65", "first=65 second"), "Missing kerning attribute");
+        expectFailure(TEXT_FONT.replace("page=0  chnl=15\nchar id=32", "page=3  chnl=15\nchar id=32"), "Glyph page out of range");
+        expectFailure(TEXT_FONT.replace("chars count=3", "chars count=-1"), "Negative glyph count");
+        expectFailure(TEXT_FONT.replace("chars count=3", "chars count=429496730"), "Overflowing glyph count");
+        expectFailure(TEXT_FONT.replace("chars count=3", "chars count=1000"), "Glyph count beyond the descriptor");
+        expectFailure(TEXT_FONT.replace("kernings count=1", "kernings count=1000000"), "Kerning count beyond the descriptor");
+        log.info("Errors passed.");
+    }
+
+    public void testLayout() {
+        final BitmapFont font = parse(TEXT_FONT);
+        TextLayout layout = font.layout("A€");
+        check(layout.getQuadCount() == 2 && layout.getWidth() == 18 && layout.getHeight() == 20, "Kerning is applied: " + layout.getWidth());
+        final float[] q = layout.getQuads();
+        check(q[0] == 1 && q[1] == 2 && q[2] == 11 && q[3] == 14, "First quad is offset");
+        check(q[8] == 9 && q[9] == -2 && q[10] == 17 && q[11] == 10, "Second quad follows the kerned advance");
+
+        layout = font.layout("A A\nA\r\n\t");
+        check(layout.getQuadCount() == 3, "Whitespace has no quads");
+        check(layout.getLineCount() == 3 && layout.getHeight() == 60 && layout.getWidth() == 27, "Lines are measured: " + layout.getWidth());
+        check(layout.getQuads()[2 * TextLayout.QUAD_SIZE + 1] == 22, "New lines advance by the line height");
+        check(font.layout("").getQuadCount() == 0 && font.layout("").getWidth() == 0, "Empty text");
+
+        /* Shipped Font */
+        layout = ubuntu.layout("AV");
+        check(layout.getWidth() == 99 && layout.getQuads()[TextLayout.QUAD_SIZE] == 52, "Shipped kerning is applied");
+        check(ubuntu.layout("中").getWidth() == 33, "Missing glyphs are laid out as '?'");
+        log.info("Layout passed.");
+    }
+
+    public void testBatch() {
+        final BitmapFont font = parse(TEXT_FONT);
+        final TextBatch batch = new TextBatch(font, 4);
+        try {
+            batch.add("A", 0, 0, 1);
+            check(false, "Adding before begin is rejected");
+        } catch (final IllegalStateException e) {
+            /* Expected */
+        }
+
+        batch.begin();
+        final TextLayout first = batch.add("A€", 10, 100, 2);
+        check(batch.add("A€", 0, 0, 1) == first && batch.getHits() == 1 && batch.getMisses() == 1, "Layouts are cached per string");
+        check(batch.getGlyphCount() == 4 && batch.getDropped() == 0, "Glyphs are batched");
+
+        /* Top Left, Bottom Left, Bottom Right, Top Right Of The First Glyph */
+        final float[] v = batch.getVertices();
+        check(Arrays.equals(Arrays.copyOf(v, TextBatch.GLYPH_FLOATS), new float[]{12, 104, 0, 0, 12, 128, 0, 0.375f, 32, 128, 10 / 64f, 0.375f, 32, 104, 10 / 64f, 0}), "Vertices are positioned and scaled");
+        batch.add(font.layout("AAA"), 0, 0, 1);
+        check(batch.getGlyphCount() == 4 && batch.getDropped() == 3, "Glyphs beyond the capacity are dropped");
+        try {
+            batch.add(ubuntu.layout("A"), 0, 0, 1);
+            check(false, "Layouts of other fonts are rejected");
+        } catch (final IllegalArgumentException e) {
+            /* Expected */
+        }
+        batch.end();
+
+        batch.begin();
+        check(batch.getGlyphCount() == 0 && batch.getDropped() == 0, "Begin starts a new frame");
+        batch.end();
+        check(Arrays.equals(TextBatch.createIndices(2), new int[]{0, 1, 2, 2, 3, 0, 4, 5, 6, 6, 7, 4}), "Indices form two triangles per glyph");
+
+        /* Least Recently Used Layouts Are Evicted */
+        final TextBatch small = new TextBatch(font, 16, 2);
+        small.begin();
+        small.add("A", 0, 0, 1);
+        small.add("AA", 0, 0, 1);
+        small.add("A", 0, 0, 1);
+        small.add("AAA", 0, 0, 1);
+        small.add("A", 0, 0, 1);
+        small.add("AA", 0, 0, 1);
+        small.end();
+        check(small.getHits() == 2 && small.getMisses() == 4, "Least recently used layouts are evicted");
+        log.info("Batch passed.");
+    }
+
+    public void testBenchmark() {
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < 2000) {
+            builder.append("The quick brown fox jumps over the lazy dog. AVATAR WAVE To Ty 0123456789\n");
+        }
+        final String paragraph = builder.toString();
+        final int iterations = 2000;
+
+        /* Layout */
+        int glyphs = 0;
+        for (int i = 0; i < iterations / 4; i++) {
+            glyphs += ubuntu.layout(paragraph).getQuadCount();
+        }
+        long time = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            glyphs += ubuntu.layout(paragraph).getQuadCount();
+        }
+        time = System.nanoTime() - time;
+        check(glyphs > 0, "Paragraph has glyphs");
+        final TextLayout layout = ubuntu.layout(paragraph);
+        log.info("Layout: {} characters in {}us, {}ns per glyph.", paragraph.length(), time / iterations / 1000, time / ((long) iterations * layout.getQuadCount()));
+
+        /* Quad Generation */
+        final TextBatch batch = new TextBatch(ubuntu, 16384);
+        final String[] labels = {"Score: 1200", "Health", "Ammo 30 / 90", "Press E To Interact", "Wave 7"};
+        time = 0;
+        for (int frame = 0; frame < iterations + iterations / 4; frame++) {
+            final long start = System.nanoTime();
+            batch.begin();
+            for (int i = 0; i < 5; i++) {
+                batch.add(layout, 0, i * 1000, 0.25f);
+            }
+            for (final String label : labels) {
+                batch.add(label, 10, 10, 0.5f);
+            }
+            batch.end();
+            if (frame >= iterations / 4) {
+                time += System.nanoTime() - start;
+            }
+        }
+        check(batch.getDropped() == 0 && batch.getMisses() == labels.length, "Labels are laid out once");
+        log.info("Quads: {} glyphs per frame in {}us, {}ns per glyph.", batch.getGlyphCount(), time / iterations / 1000, time / ((long) iterations * batch.getGlyphCount()));
+    }
+
+    private static BitmapFont parse(final String descriptor) {
+        return FontLoader.parse(AssetKey.getKey("Fonts/test.fnt"), new ByteArrayInputStream(descriptor.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void expectFailure(final String descriptor, final String description) {
+        try {
+            parse(descriptor);
+            check(false, description + " is reported");
+        } catch (final AssetInitializationException e) {
+            log.debug("{}: {}", description, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package net.cybertekt.asset;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.asset.AssetManager.AssetInitializationException;
+import net.cybertekt.asset.shader.OGLShader;
+import net.cybertekt.asset.shader.ShaderPreprocessor;
+import net.cybertekt.render.OGLProgramCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shader Preprocessor Unit Test - (C) Cybertekt Software
+ *
+ * Expands includes from an in-memory set of files and checks that relative and
+ * absolute paths resolve, that shared headers are expanded once, that cycles
+ * and malformed directives are reported, and that <code>#line</code>
+ * directives keep the original line numbers. Then checks that definitions are
+ * injected after the <code>#version</code> directive in a stable order, that
+ * variants are shared, and that program keys depend on the sources, stages and
+ * definitions but not on the order they are given in. Requires no OpenGL
+ * context.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class ShaderPreprocessorTest {
+
+    public static final Logger log = LoggerFactory.getLogger(ShaderPreprocessorTest.class);
+
+    private final Map<String, String> files = new HashMap<>();
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private final ShaderPreprocessor preprocessor = new ShaderPreprocessor((path) -> {
+        reads.incrementAndGet();
+        final String source = files.get(path);
+        if (source == null) {
+            throw new AssetInitializationException(AssetKey.getKey(path), "Missing " + path);
+        }
+        return source;
+    });
+
+    public static void main(final String[] args) {
+        ShaderPreprocessorTest app = new ShaderPreprocessorTest();
+        app.testIncludes();
+        app.testErrors();
+        app.testDefines();
+        app.testHashing();
+        log.info("All shader preprocessor tests passed.");
+    }
+
+    public ShaderPreprocessorTest() {
+        files.put("Shaders/Common/light.glsl", "#pragma once\n#include \"math.glsl\"\nvec3 light(vec3 n) { return n * PI; }");
+        files.put("Shaders/Common/math.glsl", "#define PI 3.14159\n");
+        files.put("Shaders/Lib/fog.glsl", "#include \"../Common/math.glsl\"\nfloat fog(float d) { return d; }");
+        files.put("Shaders/cycle_a.glsl", "#include \"cycle_b.glsl\"");
+        files.put("Shaders/cycle_b.glsl", "#include \"cycle_a.glsl\"");
+    }
+
+    public void testIncludes() {
+        final String main = "#version 330 core\n"
+                + "#include \"Common/light.glsl\"\n"
+                + "#include \"/Shaders/Lib/fog.glsl\"\n"
+                + "#include <Common/light.glsl>\n"
+                + "void main() {}\n";
+        ShaderPreprocessor.Result result = preprocessor.process("Shaders/lit.frag", main);
+        final String out = result.getSource();
+
+        check(out.startsWith("#version 330 core\n"), "Version directive stays first");
+        check(result.getFiles().size() == 4, "Each file is expanded once: " + result.getFiles());
+        check(result.getFiles().get(0).equals("Shaders/lit.frag") && result.getFiles().get(2).equals("Shaders/Common/math.glsl"), "Files are listed in source string order");
+        check(result.getFiles().contains("Shaders/Lib/fog.glsl"), "Absolute includes resolve from the asset root");
+        check(count(out, "#define PI") == 1 && count(out, "vec3 light") == 1, "Shared headers are not repeated");
+        check(!out.contains("#include") && !out.contains("#pragma once"), "Directives are consumed");
+        check(out.contains("#line 1 1\n") && out.contains("#line 3 0\n") && out.contains("#line 5 0\n"), "Line directives restore the including file's line numbers:\n" + out);
+        check(out.endsWith("void main() {}\n"), "Trailing source is preserved");
+        check(reads.get() == 3, "Each include is read once: " + reads.get());
+
+        /* Sources Without Includes Pass Through Unchanged */
+        final String plain = "#version 330 core\r\nvoid main() {}";
+        check(preprocessor.process("Shaders/plain.vert", plain).getSource().equals("#version 330 core\nvoid main() {}"), "Plain source is unchanged apart from line endings");
+        log.info("Includes passed.");
+    }
+
+    public void testErrors() {
+        expectFailure("#include \"cycle_a.glsl\"", "cycle");
+        expectFailure("#include \"missing.glsl\"", "Missing");
+        expectFailure("#include missing.glsl", "malformed");
+        expectFailure("#version 330\n#version 330", "#version");
+        log.info("Errors passed.");
+    }
+
+    public void testDefines() {
+        final String source = "// Header\n#version 330 core\nvoid main() {}\n";
+        final Map<String, String> defines = new LinkedHashMap<>();
+        defines.put("SKINNED", "");
+        defines.put("LIGHTS", "4");
+        final String out = ShaderPreprocessor.define(source, defines);
+        check(out.equals("// Header\n#version 330 core\n#define LIGHTS 4\n#define SKINNED\n#line 3\nvoid main() {}\n"), "Definitions follow the version directive in key order:\n" + out);
+
+        check(ShaderPreprocessor.define("void main() {}", defines).startsWith("#define LIGHTS 4\n#define SKINNED\n#line 1\nvoid main() {}"), "Definitions lead sources without a version directive");
+        check(ShaderPreprocessor.define("#version 330", defines).equals("#version 330\n#define LIGHTS 4\n#define SKINNED\n#line 2\n"), "Version directive on the last line");
+        check(ShaderPreprocessor.define(source, null) == source && ShaderPreprocessor.define(source, new HashMap<>()) == source, "No definitions leaves the source alone");
+        log.info("Defines passed.");
+    }
+
+    public void testHashing() {
+        final OGLShader vert = new OGLShader(AssetKey.getKey("Shaders/lit.vert"), OGLShader.Type.Vertex, "#version 330 core\nvoid main() {}\n");
+        final OGLShader frag = new OGLShader(AssetKey.getKey("Shaders/lit.frag"), OGLShader.Type.Fragment, "#version 330 core\nvoid main() {}\n");
+        final OGLShader copy = new OGLShader(AssetKey.getKey("Shaders/copy.vert"), OGLShader.Type.Vertex, vert.getSource());
+
+        check(vert.getHash().length() == 64 && vert.getHash().equals(ShaderPreprocessor.hash(vert.getSource())), "Shaders hash their source");
+        check(vert.getHash().equals(copy.getHash()) && vert.getHash().equals(frag.getHash()), "Identical source hashes identically");
+
+        final Map<String, String> a = new LinkedHashMap<>(), b = new LinkedHashMap<>(), c = new HashMap<>();
+        a.put("LIGHTS", "4");
+        a.put("FOG", "");
+        b.put("FOG", "");
+        b.put("LIGHTS", "4");
+        c.put("LIGHTS", "8");
+
+        check(vert.getVariant(a) == vert.getVariant(b), "Variants are shared regardless of definition order");
+        check(vert.getVariant(a) != vert.getVariant(c) && !vert.getVariant(a).getHash().equals(vert.getVariant(c).getHash()), "Different definitions give different variants");
+        check(vert.getVariant(null) == vert && vert.getVariant(a).getDefines().equals(b), "Empty definitions return the shader itself");
+        check(!vert.getVariant(a).isCompiled(), "Variants are not compiled on creation");
+        try {
+            vert.getVariant(a).getVariant(c);
+            check(false, "Variants of variants are rejected");
+        } catch (final UnsupportedOperationException e) {
+            /* Expected */
+        }
+
+        final String key = OGLProgramCache.getKey(a, vert, frag);
+        check(key.equals(OGLProgramCache.getKey(b, frag, vert)), "Program keys ignore definition and stage order");
+        check(key.equals(OGLProgramCache.getKey(a, copy, frag)), "Programs with identical sources share a key");
+        check(!key.equals(OGLProgramCache.getKey(c, vert, frag)), "Program keys depend on the definitions");
+        check(!key.equals(OGLProgramCache.getKey(a, vert, vert)), "Program keys depend on the stage of each source");
+        check(!OGLProgramCache.getKey(null, vert, frag).equals(key), "Program keys differ with and without definitions");
+
+        /* Time Hashing A Realistic Shader */
+        final StringBuilder large = new StringBuilder("#version 330 core\n");
+        for (int i = 0; i < 2000; i++) {
+            large.append("uniform vec4 value").append(i).append(";\n");
+        }
+        final OGLShader big = new OGLShader(AssetKey.getKey("Shaders/big.frag"), OGLShader.Type.Fragment, large.toString());
+        long time = System.nanoTime();
+        for (int i = 0; i < 1000; i++) {
+            c.put("LIGHTS", Integer.toString(i));
+            big.getVariant(c);
+        }
+        log.info("Hashing passed - 1000 variants of a {}KB shader in {}ms.", large.length() / 1024, (System.nanoTime() - time) / 1000000);
+    }
+
+    private void expectFailure(final String source, final String message) {
+        try {
+            preprocessor.process("Shaders/broken.frag", source);
+            check(false, "Expected failure: " + message);
+        } catch (final AssetInitializationException e) {
+            check(e.getMessage().contains(message), "Failure mentions " + message + ": " + e.getMessage());
+        }
+    }
+
+    private static int count(final String text, final String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
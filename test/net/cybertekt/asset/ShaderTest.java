@@ -1,5 +1,6 @@
  package net.cybertekt.asset;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import net.cybertekt.app.BasicApplication;
@@ -7,20 +8,16 @@ import net.cybertekt.asset.shader.OGLShader;
 import net.cybertekt.display.Display;
 import net.cybertekt.exception.OGLException;
 import net.cybertekt.mesh.Mesh;
+import net.cybertekt.mesh.MeshBuffer;
+import net.cybertekt.render.OGLProgramCache;
 import net.cybertekt.render.OGLShaderProgram;
 import net.cybertekt.render.Renderer;
-import static org.lwjgl.opengl.ARBVertexArrayObject.glBindVertexArray;
 import static org.lwjgl.opengl.GL11.GL_COLOR_BUFFER_BIT;
 import static org.lwjgl.opengl.GL11.GL_DEPTH_BUFFER_BIT;
 import static org.lwjgl.opengl.GL11.GL_DEPTH_TEST;
-import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
-import static org.lwjgl.opengl.GL11.GL_UNSIGNED_INT;
 import static org.lwjgl.opengl.GL11.glClear;
 import static org.lwjgl.opengl.GL11.glClearColor;
-import static org.lwjgl.opengl.GL11.glDrawElements;
 import static org.lwjgl.opengl.GL11.glEnable;
-import static org.lwjgl.opengl.GL20.glDisableVertexAttribArray;
-import static org.lwjgl.opengl.GL20.glEnableVertexAttribArray;
 import static org.lwjgl.opengl.GL20.glUseProgram;
 
 /**
@@ -58,6 +55,10 @@ public class ShaderTest extends BasicApplication implements Renderer {
         0, 1, 3, 3, 1, 2
     };
     
+    private final OGLProgramCache programs = new OGLProgramCache();
+
+    private MeshBuffer meshBuffer;
+    
     private Mesh quad;
 
     public static void main(final String[] args) {
@@ -78,9 +79,9 @@ public class ShaderTest extends BasicApplication implements Renderer {
         
         try {
             /* Load OpenGL Shader Programs */
-            shaders.put("Solid", (new OGLShaderProgram("Solid", AssetManager.get(OGLShader.class, "Shaders/solid.vert", "Shaders/solid.frag"))));
-            shaders.put("Textured", (new OGLShaderProgram("Textured", AssetManager.get(OGLShader.class, "Shaders/textured.vert", "Shaders/textured.frag"))));
-            shaders.put("Font", (new OGLShaderProgram("Font", AssetManager.get(OGLShader.class, "Shaders/font.vert", "Shaders/font.frag"))));
+            shaders.put("Solid", programs.get("Solid", AssetManager.get(OGLShader.class, "Shaders/solid.vert", "Shaders/solid.frag")));
+            shaders.put("Textured", programs.get("Textured", AssetManager.get(OGLShader.class, "Shaders/textured.vert", "Shaders/textured.frag")));
+            shaders.put("Font", programs.get("Font", AssetManager.get(OGLShader.class, "Shaders/font.vert", "Shaders/font.frag")));
             
             
             /* Validate Shaders (For Debugging Purposes Only - Validation is not required for a shader to function) */
@@ -91,12 +92,27 @@ public class ShaderTest extends BasicApplication implements Renderer {
         } catch (OGLException e) {
             log.error(e.getMessage());
         }
+
+        /* Rebuild Shader Programs When Their Sources Change */
+        AssetManager.addReloadListener(programs::reload);
+        try {
+            AssetManager.watch();
+        } catch (IOException e) {
+            log.warn("Unable to watch assets - {}", e.getMessage());
+        }
         
         long after = System.nanoTime();
         
         /* Log the number and total time required to initialize the shader programs */
         log.info("{} shader(s) loaded in {}ms", shaders.size(), (after - time) / 1000000);
-        quad = new Mesh(vertices, colors, indices);
+        
+        /* Allocate The Quad From A Shared Mesh Buffer */
+        meshBuffer = new MeshBuffer(1024, 4096);
+        try {
+            quad = meshBuffer.allocate(vertices, colors, indices);
+        } catch (OGLException e) {
+            log.error(e.getMessage());
+        }
     }
     
     @Override
@@ -118,22 +134,14 @@ public class ShaderTest extends BasicApplication implements Renderer {
         /* Bind the Shader */
         glUseProgram(shaders.get("Solid").getId());
         
-        /* Bind The Vertex Attribute Array */
-        glBindVertexArray(quad.getVertexArrayId());
-        
-        /* Enable Vertex Position and Color Attribute Arrays */
-        glEnableVertexAttribArray(0); //Vertex Position Attribute In Solid Shader.
-        glEnableVertexAttribArray(1); //Vertex Color Attribute In Solid Shader.
+        /* Bind The Shared Vertex Array (Position and Color Attributes Are Enabled By The Buffer) */
+        meshBuffer.bind();
         
         /* Render The Quad */
-        glDrawElements(GL_TRIANGLES, quad.getVertexCount(), GL_UNSIGNED_INT, 0);
-        
-        /* Disable Vertex Position and Color Attribute Arrays */
-        glDisableVertexAttribArray(0); //Vertex Position Attribute In Solid Shader.
-        glDisableVertexAttribArray(1); //Vertex Color Attribute In Solid Shader.
+        quad.draw();
         
-        /* Unbind The Vertex Attribute Array */
-        glBindVertexArray(0);
+        /* Unbind The Vertex Array */
+        meshBuffer.unbind();
         
         /* Unbind The Shader Program */
         glUseProgram(0);
@@ -142,6 +150,8 @@ public class ShaderTest extends BasicApplication implements Renderer {
     @Override
     public final void destroy() {
         quad.destroy();
+        meshBuffer.destroy();
+        programs.destroy();
     }
     
     @Override
@@ -0,0 +1,278 @@
+package net.cybertekt.blocksmith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import static net.cybertekt.Checks.delete;
+import net.cybertekt.blockchain.Block;
+import net.cybertekt.blockchain.BlockCodec;
+import net.cybertekt.blockchain.BlockLog;
+import net.cybertekt.blockchain.BlockVerifier;
+import net.cybertekt.blockchain.Transaction;
+import net.cybertekt.crypto.SHA256;
+import net.cybertekt.crypto.SignatureAlgorithm;
+import net.cybertekt.crypto.SigningKeyPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Block Codec Unit Test - (C) Cybertekt Software
+ *
+ * Checks that varints and blocks round trip through the {@link BlockCodec},
+ * that non-canonical and truncated encodings are rejected, that blocks signed
+ * before the signed message was versioned keep their format and verify, and
+ * that a {@link BlockCodec.BlockView} over a {@link BlockLog} segment agrees
+ * with the decoded block on every field, hash, and signature. Then compares the
+ * encoded size and encode and decode throughput of the codec with Java
+ * serialization, and times hashing blocks in place through a view.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class BlockCodecTest {
+
+    public static final Logger log = LoggerFactory.getLogger(BlockCodecTest.class);
+
+    private final Random rng = new Random(38);
+
+    public static void main(final String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        BlockCodecTest app = new BlockCodecTest();
+        SigningKeyPair key = SignatureAlgorithm.ECDSA_P256.generate();
+        app.testVarints();
+        List<Block> blocks = app.blocks(key, 200);
+        app.testRoundTrip(blocks);
+        app.testCanonical(blocks.get(1));
+        app.testLegacy(key, blocks.get(1));
+        app.testViews(key, blocks);
+        app.benchmark(app.blocks(key, 1000), count);
+        log.info("All block codec tests passed.");
+    }
+
+    public void testVarints() {
+        ByteBuffer buffer = ByteBuffer.allocate(BlockCodec.MAX_VARINT_SIZE);
+        for (final int value : new int[]{0, 1, 127, 128, 16383, 16384, (1 << 21) - 1, 1 << 21, (1 << 28) - 1, 1 << 28, Integer.MAX_VALUE}) {
+            buffer.clear();
+            BlockCodec.putVarint(buffer, value);
+            check(buffer.position() == BlockCodec.varintSize(value), "Varint size matches for " + value);
+            buffer.flip();
+            check(BlockCodec.getVarint(buffer) == value && !buffer.hasRemaining(), "Varint round trips for " + value);
+        }
+        for (final byte[] bad : new byte[][]{{(byte) 0x80}, {(byte) 0x81, 0x00}, {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x08}, {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01}}) {
+            try {
+                BlockCodec.getVarint(ByteBuffer.wrap(bad));
+                check(false, "Malformed varint " + Arrays.toString(bad) + " is rejected");
+            } catch (final IllegalArgumentException e) {
+                /* Expected */
+            }
+        }
+        log.info("Varints passed.");
+    }
+
+    public void testRoundTrip(final List<Block> blocks) {
+        for (final Block block : blocks) {
+            byte[] encoded = BlockCodec.encode(block);
+            check(encoded.length == BlockCodec.getEncodedSize(block), "Encoded size is exact");
+            Block decoded = BlockCodec.decode(encoded);
+            check(sameFields(block, decoded), "Block round trips");
+            check(Arrays.equals(BlockCodec.encode(decoded), encoded), "Re-encoding gives the same bytes");
+            check(Arrays.equals(block.getHash(), decoded.getHash()), "Hash survives the round trip");
+        }
+        Block empty = new Block(new byte[0], new byte[0], new byte[0]);
+        check(BlockCodec.encode(empty).length == BlockCodec.MIN_SIZE && sameFields(empty, BlockCodec.decode(BlockCodec.encode(empty))), "Empty block round trips");
+        log.info("Round trip passed.");
+    }
+
+    public void testCanonical(final Block block) {
+        byte[] encoded = BlockCodec.encode(block);
+        check(BlockCodec.check(ByteBuffer.wrap(encoded), 0, encoded.length) == encoded.length, "Valid encoding passes the check");
+
+        byte[] version = encoded.clone();
+        version[0] = 2;
+        byte[] flags = encoded.clone();
+        flags[1] |= 4;
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+
+        /* Pad The Public Key Length Varint To A Non-Minimal Form */
+        ByteBuffer padded = ByteBuffer.allocate(encoded.length + 1);
+        padded.put(encoded, 0, 2).put((byte) (encoded[2] | 0x80)).put((byte) 0).put(encoded, 3, encoded.length - 3);
+        for (final byte[] bad : new byte[][]{version, flags, trailing, truncated, padded.array()}) {
+            try {
+                BlockCodec.decode(bad);
+                check(false, "Non-canonical encoding is rejected");
+            } catch (final IllegalArgumentException e) {
+                /* Expected */
+            }
+        }
+        log.info("Canonical encoding passed.");
+    }
+
+    public void testLegacy(final SigningKeyPair key, final Block chained) throws Exception {
+        byte[] data = new byte[100];
+        rng.nextBytes(data);
+        byte[] fields = ByteBuffer.allocate(2 * SHA256.SIZE + chained.getData().length).put(chained.getPrevHash()).put(chained.getMerkleRoot()).put(chained.getData()).array();
+        Block unversioned = new Block(key.getPublic(), data, key.sign(data));
+        check(!unversioned.verify(), "A signature over the bare data does not verify a current block");
+        BlockCodec.BlockView view = new BlockCodec.BlockView();
+        Signature sig = key.getAlgorithm().getSignature();
+        BlockVerifier verifier = new BlockVerifier();
+        for (final Block block : new Block[]{unversioned, new Block(chained.getPrevHash(), chained.getMerkleRoot(), key.getPublic(), chained.getData(), key.sign(fields))}) {
+
+            /* Mark The Encoding As Signed Before The Message Was Versioned */
+            byte[] encoded = BlockCodec.encode(block);
+            encoded[1] |= 2;
+            Block legacy = BlockCodec.decode(encoded);
+            check(legacy.getSignedVersion() == 0 && sameFields(block, legacy) && Arrays.equals(BlockCodec.encode(legacy), encoded), "Legacy blocks round trip");
+            check(Arrays.equals(legacy.getHash(), block.getHash()), "The signed format does not change the hash");
+            check(legacy.verify() && verifier.verify(legacy), "Legacy signatures verify against the fields alone");
+            check(Arrays.equals(deserialize(serialize(legacy)).getSignedBytes(), legacy.getSignedBytes()), "Serialized blocks keep their signed format");
+            sig.initVerify(key.getAlgorithm().decode(legacy.getPublicKey()));
+            view.wrap(ByteBuffer.wrap(encoded), 0).updateSigned(sig);
+            check(view.verifySignature(sig), "Legacy signatures verify from the encoded bytes");
+        }
+        log.info("Legacy signatures passed.");
+    }
+
+    public void testViews(final SigningKeyPair key, final List<Block> blocks) throws Exception {
+        Path dir = Files.createTempDirectory("codec");
+        try (BlockLog blockLog = new BlockLog(dir)) {
+            for (final Block block : blocks) {
+                blockLog.append(block);
+            }
+            BlockCodec.BlockView view = new BlockCodec.BlockView();
+            MessageDigest digest = SHA256.digest();
+            byte[] hash = new byte[SHA256.SIZE];
+            Signature sig = key.getAlgorithm().getSignature();
+            for (int id = 0; id < blocks.size(); id++) {
+                Block block = blocks.get(id);
+                blockLog.view(id, view);
+                check(sameFields(block, view.toBlock(id)) && view.toBlock(id).getId() == id, "View materializes the stored block");
+                check(view.isChained() == block.isChained() && view.getEncodedSize() == BlockCodec.getEncodedSize(block), "View header matches the block");
+                view.hash(digest, hash, 0);
+                check(Arrays.equals(hash, block.getHash()), "View hash matches the block hash");
+                check(view.isPrevHash(block.getPrevHash()) == block.isChained(), "View compares the previous hash");
+                ByteBuffer data = view.getData();
+                byte[] copy = new byte[data.remaining()];
+                data.get(copy);
+                check(Arrays.equals(copy, block.getData()), "View data matches the block data");
+
+                sig.initVerify(key.getAlgorithm().decode(block.getPublicKey()));
+                view.updateSigned(sig);
+                check(view.verifySignature(sig), "Signature verifies from the mapped bytes");
+            }
+        } finally {
+            delete(dir);
+        }
+        log.info("Views passed.");
+    }
+
+    public void benchmark(final List<Block> blocks, final int count) throws IOException, ClassNotFoundException {
+        long codecBytes = 0, javaBytes = 0;
+        for (final Block block : blocks) {
+            codecBytes += BlockCodec.getEncodedSize(block);
+            javaBytes += serialize(block).length;
+        }
+        log.info("Average encoded size - Codec [{} bytes] - Java Serialization [{} bytes]", codecBytes / blocks.size(), javaBytes / blocks.size());
+
+        final ByteBuffer buffer = ByteBuffer.allocateDirect((int) (codecBytes / blocks.size() * 4 + 1024));
+        final byte[][] serialized = new byte[blocks.size()][];
+        for (int i = 0; i < blocks.size(); i++) {
+            serialized[i] = serialize(blocks.get(i));
+        }
+        final BlockCodec.BlockView view = new BlockCodec.BlockView();
+        final MessageDigest digest = SHA256.digest();
+        final byte[] hash = new byte[SHA256.SIZE];
+        for (int pass = 0; pass < 3; pass++) {
+            long time = System.nanoTime();
+            long sink = 0;
+            for (int i = 0; i < count; i++) {
+                buffer.clear();
+                BlockCodec.encode(blocks.get(i % blocks.size()), buffer);
+                buffer.flip();
+                sink += BlockCodec.decode(buffer, i).getData().length;
+            }
+            long codec = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                buffer.clear();
+                BlockCodec.encode(blocks.get(i % blocks.size()), buffer);
+                view.wrap(buffer, 0).hash(digest, hash, 0);
+                sink += hash[0];
+            }
+            long flyweight = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = serialize(blocks.get(i % blocks.size()));
+                sink += deserialize(bytes).getData().length;
+            }
+            long java = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                sink += deserialize(serialized[i % serialized.length]).getData().length;
+            }
+            long javaDecode = System.nanoTime() - time;
+            log.info("Pass {} - {} blocks - Codec Encode+Decode [{}ms] - Codec Encode+View Hash [{}ms] - Java Serialize+Deserialize [{}ms] - Java Deserialize [{}ms] ({})",
+                    pass, count, codec / 1000000, flyweight / 1000000, java / 1000000, javaDecode / 1000000, sink & 1);
+        }
+    }
+
+    private List<Block> blocks(final SigningKeyPair key, final int count) throws Exception {
+        List<Block> blocks = new ArrayList<>(count);
+        byte[] prev = Block.GENESIS_HASH;
+        for (int i = 0; i < count; i++) {
+            if (i % 10 == 0) {
+                byte[] data = new byte[rng.nextInt(300)];
+                rng.nextBytes(data);
+                blocks.add(Block.create(data, key));
+                continue;
+            }
+            List<Transaction> transactions = new ArrayList<>();
+            for (int t = rng.nextInt(8) + 1; t > 0; t--) {
+                byte[] data = new byte[rng.nextInt(200)], signature = new byte[64];
+                rng.nextBytes(data);
+                rng.nextBytes(signature);
+                transactions.add(new Transaction(key.getPublic(), "transfer".getBytes(), data, signature));
+            }
+            Block block = Block.create(prev, transactions, key);
+            blocks.add(block);
+            prev = block.getHash();
+        }
+        return blocks;
+    }
+
+    private static boolean sameFields(final Block a, final Block b) {
+        return Arrays.equals(a.getPrevHash(), b.getPrevHash()) && Arrays.equals(a.getMerkleRoot(), b.getMerkleRoot())
+                && Arrays.equals(a.getPublicKey(), b.getPublicKey()) && Arrays.equals(a.getData(), b.getData()) && Arrays.equals(a.getSignature(), b.getSignature());
+    }
+
+    private static byte[] serialize(final Block block) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(block);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Block deserialize(final byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Block) in.readObject();
+        }
+    }
+}
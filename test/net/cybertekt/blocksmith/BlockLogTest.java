@@ -0,0 +1,231 @@
+package net.cybertekt.blocksmith;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import static net.cybertekt.Checks.check;
+import static net.cybertekt.Checks.delete;
+import net.cybertekt.blockchain.Block;
+import net.cybertekt.blockchain.BlockLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Block Log Unit Test - (C) Cybertekt Software
+ *
+ * Appends blocks to a {@link BlockLog} in a temporary directory, reads them
+ * back before and after reopening the log, damages the tail of the last
+ * segment to check that recovery truncates it, and measures append, sync, and
+ * read throughput. The comparison against ObjectDB is part of
+ * {@link BlockchainTest} since it requires the ObjectDB runtime.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class BlockLogTest {
+
+    public static final Logger log = LoggerFactory.getLogger(BlockLogTest.class);
+
+    private static final int SEGMENT_SIZE = 256 * 1024;
+
+    private final Random rng = new Random(33);
+
+    public static void main(final String[] args) throws Exception {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        BlockLogTest app = new BlockLogTest();
+        Path dir = Files.createTempDirectory("blocklog");
+        try {
+            app.testAppendAndReopen(dir.resolve("reopen"), count);
+            app.testTornTail(dir.resolve("torn"));
+            app.testGroupCommit(dir.resolve("commit"));
+            app.testThroughput(dir.resolve("throughput"), count);
+        } finally {
+            delete(dir);
+        }
+        log.info("All block log tests passed.");
+    }
+
+    public void testAppendAndReopen(final Path dir, final int count) throws IOException {
+        List<Block> blocks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            blocks.add(randomBlock());
+        }
+        try (BlockLog blockLog = new BlockLog(dir, SEGMENT_SIZE, BlockLog.DEFAULT_FLUSH_INTERVAL)) {
+            for (int i = 0; i < count; i++) {
+                check(blockLog.append(blocks.get(i)) == i, "Block ids are sequential");
+            }
+            check(blockLog.size() == count, "Log contains every appended block");
+            compare(blockLog, blocks);
+            check(segments(dir).size() > 1, "Log rolls over to new segments");
+        }
+        try (BlockLog blockLog = new BlockLog(dir, SEGMENT_SIZE, BlockLog.DEFAULT_FLUSH_INTERVAL)) {
+            check(blockLog.size() == count, "Reopened log contains every block");
+            compare(blockLog, blocks);
+            Block next = randomBlock();
+            check(blockLog.append(next) == count, "Appends continue after the last block");
+            check(Arrays.equals(blockLog.get(count).getData(), next.getData()), "Block appended after reopening is readable");
+        }
+        try (BlockLog blockLog = new BlockLog(dir, SEGMENT_SIZE, BlockLog.DEFAULT_FLUSH_INTERVAL)) {
+            blockLog.get(count + 1);
+            check(false, "Reading past the end of the log fails");
+        } catch (final IndexOutOfBoundsException e) {
+            /* Expected */
+        }
+        log.info("Append and reopen passed with {} blocks in {} segments.", count + 1, segments(dir).size());
+    }
+
+    public void testTornTail(final Path dir) throws IOException {
+        final int count = 1000;
+        List<Block> blocks = new ArrayList<>(count);
+        try (BlockLog blockLog = new BlockLog(dir, SEGMENT_SIZE, BlockLog.DEFAULT_FLUSH_INTERVAL)) {
+            for (int i = 0; i < count; i++) {
+                blocks.add(randomBlock());
+                blockLog.append(blocks.get(i));
+            }
+        }
+        final Path last = segments(dir).get(segments(dir).size() - 1);
+        final long end = lastNonZero(last);
+
+        /* Garbage After The Last Record Is Ignored */
+        try (RandomAccessFile file = new RandomAccessFile(last.toFile(), "rw")) {
+            byte[] garbage = new byte[64];
+            rng.nextBytes(garbage);
+            file.seek(end + 1);
+            file.write(garbage);
+        }
+        try (BlockLog blockLog = new BlockLog(dir, SEGMENT_SIZE, BlockLog.DEFAULT_FLUSH_INTERVAL)) {
+            check(blockLog.size() == count, "Garbage after the last record is discarded");
+        }
+
+        /* A Corrupt Last Record Is Dropped */
+        try (RandomAccessFile file = new RandomAccessFile(last.toFile(), "rw")) {
+            file.seek(end - 5);
+            file.write(file.read() ^ 0xFF);
+        }
+        try (BlockLog blockLog = new BlockLog(dir, SEGMENT_SIZE, BlockLog.DEFAULT_FLUSH_INTERVAL)) {
+            check(blockLog.size() == count - 1, "A record with a bad CRC is truncated");
+            compare(blockLog, blocks.subList(0, count - 1));
+            blockLog.append(blocks.get(count - 1));
+        }
+
+        /* A Partially Written Last Record Is Dropped */
+        try (RandomAccessFile file = new RandomAccessFile(last.toFile(), "rw")) {
+            file.setLength(lastNonZero(last) - 10);
+        }
+        try (BlockLog blockLog = new BlockLog(dir, SEGMENT_SIZE, BlockLog.DEFAULT_FLUSH_INTERVAL)) {
+            check(blockLog.size() == count - 1, "A partially written record is truncated");
+            compare(blockLog, blocks.subList(0, count - 1));
+        }
+        log.info("Torn tail recovery passed.");
+    }
+
+    public void testGroupCommit(final Path dir) throws Exception {
+        final int writers = 4, commits = 250;
+        try (BlockLog blockLog = new BlockLog(dir, SEGMENT_SIZE, BlockLog.DEFAULT_FLUSH_INTERVAL)) {
+            final AtomicLong failures = new AtomicLong();
+            final Block block = randomBlock();
+            Thread[] threads = new Thread[writers];
+            long time = System.nanoTime();
+            for (int t = 0; t < writers; t++) {
+                threads[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < commits; i++) {
+                            blockLog.append(block);
+                            blockLog.sync();
+                        }
+                    } catch (final IOException e) {
+                        failures.incrementAndGet();
+                    }
+                });
+                threads[t].start();
+            }
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            time = System.nanoTime() - time;
+            check(failures.get() == 0, "Concurrent commits succeed");
+            check(blockLog.size() == writers * commits, "Every committed block is in the log");
+            check(blockLog.getFlushCount() <= writers * commits, "No more forces than commits");
+            log.info("Group commit - {} commits from {} writers in {} forces [{}ms, {} commits/s]", writers * commits, writers, blockLog.getFlushCount(), time / 1000000, (long) (writers * commits * 1e9 / time));
+        }
+    }
+
+    public void testThroughput(final Path dir, final int count) throws IOException {
+        Block block = randomBlock();
+        try (BlockLog blockLog = new BlockLog(dir)) {
+            for (int pass = 0; pass < 2; pass++) {
+                long time = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    blockLog.append(block);
+                }
+                blockLog.sync();
+                long append = System.nanoTime() - time;
+
+                time = System.nanoTime();
+                long bytes = 0;
+                for (int i = 0; i < count; i++) {
+                    bytes += blockLog.get(rng.nextInt((int) blockLog.size())).getData().length;
+                }
+                long read = System.nanoTime() - time;
+
+                time = System.nanoTime();
+                for (int i = 0; i < 100; i++) {
+                    blockLog.append(block);
+                    blockLog.sync();
+                }
+                long sync = System.nanoTime() - time;
+                log.info("Pass {} - Append {} blocks/s - Random Read {} blocks/s ({} bytes) - Append And Sync {} blocks/s", pass, (long) (count * 1e9 / append), (long) (count * 1e9 / read), bytes, (long) (100 * 1e9 / sync));
+            }
+        }
+    }
+
+    private Block randomBlock() {
+        byte[] publicKey = new byte[94], data = new byte[16 + rng.nextInt(200)], signature = new byte[64];
+        rng.nextBytes(publicKey);
+        rng.nextBytes(data);
+        rng.nextBytes(signature);
+        signature[signature.length - 1] = 1;
+        return new Block(publicKey, data, signature);
+    }
+
+    private static void compare(final BlockLog blockLog, final List<Block> blocks) {
+        for (int i = 0; i < blocks.size(); i++) {
+            Block stored = blockLog.get(i);
+            check(stored.getId() == i, "Stored block " + i + " has its id");
+            check(Arrays.equals(stored.getPublicKey(), blocks.get(i).getPublicKey())
+                    && Arrays.equals(stored.getData(), blocks.get(i).getData())
+                    && Arrays.equals(stored.getSignature(), blocks.get(i).getSignature()), "Stored block " + i + " matches");
+        }
+    }
+
+    private static List<Path> segments(final Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + BlockLog.EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Returns the offset of the last non-zero byte in a file, which is the
+     * last byte of the last record since every signature ends with a one.
+     */
+    private static long lastNonZero(final Path file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        int i = bytes.length - 1;
+        while (i >= 0 && bytes[i] == 0) {
+            i--;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,78 @@
+package net.cybertekt.blocksmith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.blockchain.Block;
+import net.cybertekt.blockchain.BlockVerifier;
+import net.cybertekt.crypto.RSAKeyPair;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Block Verifier Unit Test - (C) Cybertekt Software
+ *
+ * Signs a batch of in-memory blocks with a small set of keys, corrupts some of
+ * them, and checks that the parallel {@link BlockVerifier} agrees with serial
+ * {@link Block#verify()} calls. Throughput of both is reported. Does not
+ * require a database.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class BlockVerifierTest {
+
+    public static final Logger log = LoggerFactory.getLogger(BlockVerifierTest.class);
+
+    public static void main(final String[] args) throws CryptoException {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final Random rng = new Random(32);
+
+        /* Sign Blocks With A Handful Of Keys */
+        RSAKeyPair[] keys = new RSAKeyPair[8];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = RSAKeyPair.generate(1024);
+        }
+        List<Block> blocks = new ArrayList<>(count);
+        int corrupted = 0;
+        for (int i = 0; i < count; i++) {
+            RSAKeyPair key = keys[rng.nextInt(keys.length)];
+            byte[] data = ("Transaction " + i).getBytes();
+            byte[] signature = key.sign(Block.getSignedBytes(data));
+            if (i % 97 == 0) {
+                signature[rng.nextInt(signature.length)] ^= 1;
+                corrupted++;
+            }
+            blocks.add(new Block(i % 501 == 0 ? new byte[]{1, 2, 3} : key.getPublic(), data, signature));
+        }
+
+        /* Serial Baseline */
+        long time = System.nanoTime();
+        boolean[] expected = new boolean[count];
+        int valid = 0;
+        for (int i = 0; i < count; i++) {
+            expected[i] = blocks.get(i).verify();
+            valid += expected[i] ? 1 : 0;
+        }
+        time = System.nanoTime() - time;
+        log.info("Serial - Verified {} of {} Blocks [{}ms, {} blocks/s]", valid, count, time / 1000000, (long) (count * 1e9 / time));
+
+        /* Parallel Batch Verification */
+        BlockVerifier verifier = new BlockVerifier();
+        for (int pass = 0; pass < 3; pass++) {
+            BlockVerifier.Result result = verifier.verify(blocks);
+            log.info("Batch - {}", result);
+            check(result.getValidCount() == valid, "Batch verification finds the same number of valid blocks");
+            for (int i = 0; i < count; i++) {
+                check(result.isValid(i) == expected[i], "Block " + i + " has the same result");
+            }
+            check(pass == 0 || result.getKeyCacheMisses() == 0, "Keys are decoded once");
+        }
+        check(count - valid >= corrupted, "Corrupted blocks are rejected");
+        check(verifier.getKeyCacheSize() == keys.length + 1, "One cache entry per distinct key");
+        log.info("All block verifier tests passed.");
+    }
+}
@@ -0,0 +1,281 @@
+package net.cybertekt.blocksmith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import static net.cybertekt.Checks.check;
+import static net.cybertekt.Checks.delete;
+import net.cybertekt.blockchain.Block;
+import net.cybertekt.blockchain.BlockLog;
+import net.cybertekt.blockchain.Blockchain;
+import net.cybertekt.blockchain.BlockchainNode;
+import net.cybertekt.blockchain.Mempool;
+import net.cybertekt.blockchain.Transaction;
+import net.cybertekt.crypto.SignatureAlgorithm;
+import net.cybertekt.crypto.SigningKeyPair;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Blockchain Node Unit Test - (C) Cybertekt Software
+ *
+ * Checks that the {@link Mempool} rejects duplicates and overflow and drains
+ * its ring of slots in order as it wraps around, that a
+ * {@link BlockchainNode} cuts blocks by size and by time, rejects invalid
+ * signatures, answers key and range queries from consistent snapshots, and
+ * rebuilds its index when reopened. Then runs an in-process load generator:
+ * producer threads submit transactions as fast as the node accepts them while
+ * reader threads query snapshots and the node is flushed, and the ingest and
+ * query rates are reported. Arguments are the number of producers, transactions per producer,
+ * and readers.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class BlockchainNodeTest {
+
+    public static final Logger log = LoggerFactory.getLogger(BlockchainNodeTest.class);
+
+    private static final byte[] TYPE = "transfer".getBytes();
+
+    public static void main(final String[] args) throws CryptoException, IOException, InterruptedException {
+        final int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        final int perProducer = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        final int readers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        SigningKeyPair nodeKey = SignatureAlgorithm.ECDSA_P256.generate();
+        testMempool();
+        testNode(nodeKey);
+        testLoad(nodeKey, producers, perProducer, readers);
+        log.info("All blockchain node tests passed.");
+    }
+
+    public static void testMempool() {
+        Random rng = new Random(37);
+        Mempool mempool = new Mempool(2);
+        Transaction a = unsigned(rng, new byte[94]), b = unsigned(rng, new byte[94]), c = unsigned(rng, new byte[94]);
+        check(mempool.offer(a) == 1, "First transaction is accepted");
+        check(mempool.offer(a) == 0 && mempool.getDuplicateCount() == 1, "Pending duplicate is rejected");
+        check(mempool.offer(b) == 2, "Second transaction is accepted");
+        check(mempool.offer(c) == 0 && mempool.getFullCount() == 1, "Full pool rejects offers");
+        List<Transaction> drained = new ArrayList<>();
+        check(mempool.drain(10, drained) == 2 && drained.get(0) == a && drained.get(1) == b, "Drained in arrival order");
+        check(mempool.size() == 0 && mempool.offer(a) == 1, "Drained transaction can be offered again");
+        check(mempool.offer(a) == 0 && mempool.size() == 1, "Rejected offers are not counted as pending");
+        check(mempool.getAcceptedCount() == 3 && mempool.getDrainedCount() == 2, "Accepted and drained transactions are counted");
+
+        /* Slots Are Reused */
+        Mempool ring = new Mempool(3);
+        for (int i = 0; i < 50; i++) {
+            Transaction first = unsigned(rng, new byte[94]), second = unsigned(rng, new byte[94]);
+            check(ring.offer(first) >= 1 && ring.offer(second) >= 2, "Transactions are accepted after the ring wraps");
+            drained.clear();
+            check(ring.drain(1, drained) == 1 && drained.get(0) == first && ring.drain(1, drained) == 1 && drained.get(1) == second, "Wrapped transactions are drained in order");
+        }
+        check(ring.size() == 0 && ring.getDrainedCount() == 100, "Every wrapped transaction is drained");
+        log.info("Mempool passed.");
+    }
+
+    public static void testNode(final SigningKeyPair nodeKey) throws CryptoException, IOException, InterruptedException {
+        SigningKeyPair[] users = new SigningKeyPair[3];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = SignatureAlgorithm.ECDSA_P256.generate();
+        }
+        Path dir = Files.createTempDirectory("node");
+        try {
+            List<List<Transaction>> submitted = new ArrayList<>();
+            long size;
+            try (BlockLog blockLog = new BlockLog(dir)) {
+                BlockchainNode node = new BlockchainNode(new Blockchain("test", blockLog), nodeKey, 64, 20, 1024, true);
+                BlockchainNode.Snapshot empty = node.getSnapshot();
+
+                /* Submit Signed Transactions */
+                for (final SigningKeyPair user : users) {
+                    submitted.add(new ArrayList<>());
+                }
+                for (int i = 0; i < 100; i++) {
+                    for (int u = 0; u < users.length; u++) {
+                        Transaction transaction = Transaction.sign(users[u], TYPE, ("User " + u + " Transaction " + i).getBytes());
+                        check(node.submit(transaction), "Signed transaction is accepted");
+                        submitted.get(u).add(transaction);
+                    }
+                }
+                Transaction forged = new Transaction(users[0].getPublic(), TYPE, "forged".getBytes(), new byte[64]);
+                check(!node.submit(forged), "Transaction with an invalid signature is rejected");
+                BlockchainNode.Snapshot partial = node.getSnapshot();
+                node.flush();
+                BlockchainNode.Snapshot snapshot = node.getSnapshot();
+
+                /* Snapshots Are Isolated */
+                check(empty.size() == 0 && empty.getTransactionCount(users[0].getPublic()) == 0, "Snapshot taken before any block sees none");
+                check(snapshot.size() >= 300 / 64, "Blocks were cut by size");
+                long visible = 0;
+                for (final SigningKeyPair user : users) {
+                    visible += partial.getTransactionCount(user.getPublic());
+                }
+                check(visible == partial.getBlocks(0, partial.size()).mapToLong(block -> block.getTransactions().size()).sum(), "Index agrees with the blocks visible to a snapshot");
+
+                /* Key Queries */
+                for (int u = 0; u < users.length; u++) {
+                    List<Transaction> found = snapshot.getTransactions(users[u].getPublic(), Integer.MAX_VALUE);
+                    check(found.size() == 100 && snapshot.getTransactionCount(users[u].getPublic()) == 100, "Every transaction of a key is indexed");
+                    for (int i = 0; i < found.size(); i++) {
+                        check(Arrays.equals(found.get(i).getHash(), submitted.get(u).get(i).getHash()), "Transactions of a key are returned in order");
+                    }
+                    check(snapshot.getTransactions(users[u].getPublic(), 10).size() == 10, "Query limit is applied");
+                    long[] ids = snapshot.getBlockIds(users[u].getPublic());
+                    for (int i = 1; i < ids.length; i++) {
+                        check(ids[i - 1] < ids[i], "Block ids are ascending and distinct");
+                    }
+                }
+                check(snapshot.getTransactionCount(new byte[]{1, 2, 3}) == 0, "Unknown key has no transactions");
+
+                /* Range Queries And Links */
+                check(snapshot.getBlocks(0, Long.MAX_VALUE).count() == snapshot.size(), "Range is clamped to the snapshot");
+                check(snapshot.getBlocks(1, 3).mapToLong(Block::getId).sum() == 3, "Range returns the requested blocks");
+                check(node.getChain().verifyLinks(0, snapshot.size(), true) == -1, "Built chain is intact");
+                check(snapshot.getBlock(snapshot.size() - 1).verify(), "Blocks are signed by the node");
+
+                /* A Single Transaction Is Cut By Time */
+                size = snapshot.size();
+                check(node.submit(Transaction.sign(users[0], TYPE, "Late".getBytes())), "Late transaction is accepted");
+                long deadline = System.currentTimeMillis() + 5000;
+                while (node.getSnapshot().size() == size && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(5);
+                }
+                check(node.getSnapshot().size() == size + 1, "Block was cut after the delay");
+                check(node.getSnapshot().getBlock(size).getTransactions().size() == 1, "Timed block holds the single transaction");
+                size++;
+                node.close();
+                try {
+                    node.submit(forged);
+                    check(false, "Closed node rejects submissions");
+                } catch (final IllegalStateException e) {
+                    /* Expected */
+                }
+            }
+
+            /* Index Is Rebuilt When Reopened */
+            try (BlockLog blockLog = new BlockLog(dir)) {
+                BlockchainNode node = new BlockchainNode(new Blockchain("test", blockLog), nodeKey);
+                BlockchainNode.Snapshot snapshot = node.getSnapshot();
+                check(snapshot.size() == size, "Reopened node sees every block");
+                check(snapshot.getTransactionCount(users[0].getPublic()) == 101, "Reopened index counts every transaction");
+                check(snapshot.getTransactionCount(users[1].getPublic()) == 100, "Reopened index counts every transaction of each key");
+                node.close();
+            }
+        } finally {
+            delete(dir);
+        }
+        log.info("Node passed.");
+    }
+
+    public static void testLoad(final SigningKeyPair nodeKey, final int producers, final int perProducer, final int readers) throws IOException, InterruptedException {
+        final byte[][] keys = new byte[64][];
+        final Random rng = new Random(37);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new byte[94];
+            rng.nextBytes(keys[i]);
+        }
+        Path dir = Files.createTempDirectory("load");
+        try (BlockLog blockLog = new BlockLog(dir)) {
+            final BlockchainNode node = new BlockchainNode(new Blockchain("load", blockLog), nodeKey, BlockchainNode.DEFAULT_BATCH_SIZE, 50, Mempool.DEFAULT_CAPACITY, false);
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final LongAdder queries = new LongAdder(), retries = new LongAdder();
+            final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+            /* Readers Query Snapshots Until Ingest Finishes */
+            List<Thread> threads = new ArrayList<>();
+            for (int r = 0; r < readers; r++) {
+                threads.add(new Thread(() -> {
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    try {
+                        while (running.get()) {
+                            BlockchainNode.Snapshot snapshot = node.getSnapshot();
+                            byte[] key = keys[random.nextInt(keys.length)];
+                            int count = snapshot.getTransactionCount(key);
+                            check(snapshot.getTransactions(key, 16).size() == Math.min(16, count), "Query is consistent with its snapshot");
+                            snapshot.getBlocks(Math.max(0, snapshot.size() - 4), snapshot.size()).count();
+                            queries.increment();
+                        }
+                    } catch (final RuntimeException e) {
+                        failure.set(e);
+                    }
+                }, "Reader " + r));
+            }
+            List<Thread> producerThreads = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                final int seed = p;
+                producerThreads.add(new Thread(() -> {
+                    final Random random = new Random(seed);
+                    for (int i = 0; i < perProducer; i++) {
+                        Transaction transaction = unsigned(random, keys[random.nextInt(keys.length)]);
+                        while (!node.submit(transaction)) {
+                            retries.increment();
+                            Thread.yield();
+                        }
+                    }
+                }, "Producer " + p));
+            }
+
+            long time = System.nanoTime();
+            threads.forEach(Thread::start);
+            producerThreads.forEach(Thread::start);
+
+            /* Flushes Return While Producers Keep Submitting */
+            for (int f = 0; f < 5; f++) {
+                long accepted = node.getMempool().getAcceptedCount();
+                node.flush();
+                BlockchainNode.Snapshot flushed = node.getSnapshot();
+                long committed = 0;
+                for (final byte[] key : keys) {
+                    committed += flushed.getTransactionCount(key);
+                }
+                check(committed >= accepted, "Flush commits every transaction accepted before it");
+            }
+            for (final Thread thread : producerThreads) {
+                thread.join();
+            }
+            node.flush();
+            long ingest = System.nanoTime() - time;
+            running.set(false);
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            long elapsed = System.nanoTime() - time;
+
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            BlockchainNode.Snapshot snapshot = node.getSnapshot();
+            long total = (long) producers * perProducer, indexed = 0;
+            for (final byte[] key : keys) {
+                indexed += snapshot.getTransactionCount(key);
+            }
+            check(indexed == total, "Every submitted transaction is indexed");
+            check(snapshot.getBlocks(0, snapshot.size()).noneMatch(block -> block.getTransactions().isEmpty()), "No empty block is cut");
+            check(node.getChain().verifyLinks(0, snapshot.size(), false) == -1, "Loaded chain is intact");
+            log.info("Load - {} producers, {} readers - Ingested {} transactions in {} blocks [{}ms, {} tx/s, {} full mempool retries] - {} queries [{} queries/s] - {} processors",
+                    producers, readers, total, snapshot.size(), ingest / 1000000, total * 1000000000L / ingest, retries.sum(), queries.sum(), queries.sum() * 1000000000L / elapsed, Runtime.getRuntime().availableProcessors());
+            node.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static Transaction unsigned(final Random rng, final byte[] publicKey) {
+        byte[] data = new byte[64], signature = new byte[64];
+        rng.nextBytes(data);
+        rng.nextBytes(signature);
+        return new Transaction(publicKey, TYPE, data, signature);
+    }
+}
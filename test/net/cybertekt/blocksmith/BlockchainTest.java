@@ -5,13 +5,21 @@
  */
 package net.cybertekt.blocksmith;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
-import javax.persistence.TypedQuery;
+import static net.cybertekt.Checks.delete;
 import net.cybertekt.app.Application;
 import net.cybertekt.blockchain.Block;
-import net.cybertekt.crypto.RSAKeyPair;
+import net.cybertekt.blockchain.BlockLog;
+import net.cybertekt.blockchain.BlockVerifier;
+import net.cybertekt.blockchain.Blockchain;
+import net.cybertekt.blockchain.VerificationPipeline;
+import net.cybertekt.crypto.SignatureAlgorithm;
+import net.cybertekt.crypto.SigningKeyPair;
 import net.cybertekt.exception.CryptoException;
 
 /**
@@ -38,14 +46,14 @@ public class BlockchainTest extends Application {
         EntityManager eM = emf.createEntityManager();
 
         try {
-            /* Create an RSA key pair */
-            RSAKeyPair key = RSAKeyPair.generate(512);
+            /* Create an ECDSA P-256 key pair */
+            SigningKeyPair key = SignatureAlgorithm.ECDSA_P256.generate();
 
             /* Create Transaction Data */
             byte[] data = "This is a transaction".getBytes();
 
             /* Sign Transaction Data */
-            byte[] signature = key.sign(data);
+            byte[] signature = key.sign(Block.getSignedBytes(data));
 
             /* Create A Valid Block */
             Block test = new Block(key.getPublic(), data, signature);
@@ -59,18 +67,42 @@ public class BlockchainTest extends Application {
             log.info("Total Blocks: {}", blocks);
             
             /* Verify All Blocks */
-            int verified = 0;
-            long time = System.nanoTime();
+            VerificationPipeline.Result result = new VerificationPipeline(new BlockVerifier()).verify(Blockchain.paged(eM, Blockchain.DEFAULT_CHUNK_SIZE));
             
-            for (Block b : eM.createQuery("SELECT b FROM Block b", Block.class).getResultList()) {
-                if (b.verify()) {
-                    verified++;
+            log.info("{}", result);
+
+            /* Compare Committing Blocks One At A Time To A Temporary Database Against The Block Log */
+            final int count = 1000;
+            final Path db = Files.createTempDirectory("blockchain");
+            final EntityManagerFactory benchmarkFactory = Persistence.createEntityManagerFactory(db.resolve("benchmark.odb").toString());
+            final EntityManager benchmark = benchmarkFactory.createEntityManager();
+            long time = System.nanoTime(), objectdb;
+            try {
+                for (int i = 0; i < count; i++) {
+                    benchmark.getTransaction().begin();
+                    benchmark.persist(new Block(key.getPublic(), data, signature));
+                    benchmark.getTransaction().commit();
                 }
+                objectdb = System.nanoTime() - time;
+            } finally {
+                benchmark.close();
+                benchmarkFactory.close();
             }
-            
-            log.info("Verified {} of {} Blocks [{}ms]", verified, blocks, (System.nanoTime() - time) / 1000000);
+            delete(db);
+
+            Path dir = Files.createTempDirectory("blocklog");
+            try (BlockLog blockLog = new BlockLog(dir)) {
+                time = System.nanoTime();
+                for (int i = 0; i < count; i++) {
+                    blockLog.append(test);
+                    blockLog.sync();
+                }
+                long appended = System.nanoTime() - time;
+                log.info("Commit {} Blocks - ObjectDB [{}ms] - Block Log [{}ms]", count, objectdb / 1000000, appended / 1000000);
+            }
+            delete(dir);
 
-        } catch (final CryptoException e) {
+        } catch (final CryptoException | IOException e) {
             log.error("{}: {}", e.getClass().getName(), e.getMessage());
         }
 
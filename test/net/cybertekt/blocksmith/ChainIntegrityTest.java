@@ -0,0 +1,145 @@
+package net.cybertekt.blocksmith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static net.cybertekt.Checks.check;
+import static net.cybertekt.Checks.delete;
+import net.cybertekt.blockchain.Block;
+import net.cybertekt.blockchain.BlockLog;
+import net.cybertekt.blockchain.BlockVerifier;
+import net.cybertekt.blockchain.Blockchain;
+import net.cybertekt.blockchain.MerkleTree;
+import net.cybertekt.blockchain.Transaction;
+import net.cybertekt.blockchain.VerificationPipeline;
+import net.cybertekt.crypto.RSAKeyPair;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chain Integrity Unit Test - (C) Cybertekt Software
+ *
+ * Builds a hash-linked {@link Blockchain} of transaction batches in a
+ * temporary {@link BlockLog}, checks that link verification and incremental
+ * signature verification accept it, that only new blocks are re-verified, and
+ * that broken links, altered transactions, bad signatures, and signatures
+ * replayed between chained and unchained blocks are caught.
+ * Compares the cost of following the hash links, checking Merkle roots, and
+ * checking signatures over the whole chain.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class ChainIntegrityTest {
+
+    public static final Logger log = LoggerFactory.getLogger(ChainIntegrityTest.class);
+
+    private static final int TRANSACTIONS = 20;
+
+    public static void main(final String[] args) throws CryptoException, IOException {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        RSAKeyPair key = RSAKeyPair.generate(1024);
+        VerificationPipeline pipeline = new VerificationPipeline(new BlockVerifier());
+        Path dir = Files.createTempDirectory("chain");
+        try {
+            byte[] head;
+            try (BlockLog blockLog = new BlockLog(dir)) {
+                Blockchain chain = new Blockchain("test", blockLog);
+                check(Arrays.equals(chain.getHeadHash(), Block.GENESIS_HASH), "An empty chain starts at the genesis hash");
+
+                /* Build And Verify The Chain */
+                for (int i = 0; i < count; i++) {
+                    chain.append(key, transactions(key, i));
+                }
+                check(chain.verifyLinks(0, count, true) == -1, "Every link and Merkle root is intact");
+                check(chain.verifyNew(pipeline), "Every signature is valid");
+                check(chain.getVerifiedCount() == count, "Verified blocks are recorded");
+
+                long time = System.nanoTime();
+                chain.verifyLinks(0, count, false);
+                long links = System.nanoTime() - time;
+                time = System.nanoTime();
+                chain.verifyLinks(0, count, true);
+                long roots = System.nanoTime() - time;
+                time = System.nanoTime();
+                VerificationPipeline.Result result = pipeline.verify(chain.iterator());
+                long signatures = System.nanoTime() - time;
+                check(result.isAllValid(), "Full signature check passes");
+                log.info("{} blocks of {} transactions - Hash Links [{}ms] - Links And Merkle Roots [{}ms] - Signatures [{}ms]", count, TRANSACTIONS, links / 1000000, roots / 1000000, signatures / 1000000);
+
+                /* Only New Blocks Are Verified Again */
+                for (int i = 0; i < 10; i++) {
+                    chain.append(key, transactions(key, count + i));
+                }
+                time = System.nanoTime();
+                check(chain.verifyNew(pipeline), "New blocks verify");
+                log.info("Incremental check of 10 new blocks [{}ms]", (System.nanoTime() - time) / 1000000);
+                check(chain.getVerifiedCount() == count + 10, "Only the new blocks were added to the verified count");
+
+                /* Inclusion Proof Against A Block's Merkle Root */
+                Block block = blockLog.get(count / 2);
+                List<Transaction> batch = block.getTransactions();
+                Transaction included = batch.get(TRANSACTIONS / 2);
+                MerkleTree.Proof proof = new MerkleTree(batch).getProof(TRANSACTIONS / 2);
+                check(MerkleTree.verify(included.getHash(), proof, block.getMerkleRoot()), "Transaction is proven to be in its block");
+                check(included.verify(), "Decoded transaction signature is valid");
+                head = chain.getHeadHash();
+            }
+
+            /* Head Hash Is Restored When Reopened */
+            try (BlockLog blockLog = new BlockLog(dir)) {
+                Blockchain chain = new Blockchain("test", blockLog);
+                check(Arrays.equals(chain.getHeadHash(), head), "Reopened chain has the same head");
+                final long size = chain.size();
+
+                /* A Block That Does Not Link To The Head Is Caught */
+                Block unlinked = Block.create(Block.GENESIS_HASH, transactions(key, -1), key);
+                blockLog.append(unlinked);
+                check(chain.verifyLinks(0, size + 1, false) == size, "Broken link is found");
+                check(!chain.verifyNew(pipeline), "Chain with a broken link fails");
+            }
+            try (BlockLog blockLog = new BlockLog(dir)) {
+                Blockchain chain = new Blockchain("test", blockLog);
+                final long size = chain.size();
+                byte[] prev = blockLog.get(size - 2).getHash();
+
+                /* Transactions That Do Not Match The Merkle Root Are Caught */
+                Block honest = Block.create(prev, transactions(key, -2), key);
+                List<Transaction> altered = new ArrayList<>(honest.getTransactions());
+                altered.set(0, Transaction.sign(key, "transfer".getBytes(), "altered".getBytes()));
+                Block forged = new Block(prev, honest.getMerkleRoot(), key.getPublic(), Transaction.encodeAll(altered), honest.getSignature());
+                check(!forged.isMerkleRootValid(), "Altered transactions do not match the Merkle root");
+                check(honest.isMerkleRootValid() && honest.verify(), "Honest block is valid");
+
+                /* A Bad Signature Is Caught Once The Links Are Fine */
+                byte[] signature = honest.getSignature().clone();
+                signature[7] ^= 1;
+                Block badSignature = new Block(prev, honest.getMerkleRoot(), honest.getPublicKey(), honest.getData(), signature);
+                check(badSignature.isMerkleRootValid() && !badSignature.verify(), "Block with a bad signature has intact hashes");
+
+                /* Signatures Do Not Carry Over Between Chained And Unchained Blocks */
+                Block replayed = new Block(key.getPublic(), honest.getSignedBytes(), honest.getSignature());
+                check(!replayed.verify() && !new BlockVerifier().verify(replayed), "Chained signature does not verify an unchained block");
+                Block unchained = Block.create(honest.getSignedBytes(), key);
+                check(unchained.verify() && !new Block(prev, honest.getMerkleRoot(), key.getPublic(), honest.getData(), unchained.getSignature()).verify(), "Unchained signature does not verify a chained block");
+            }
+        } finally {
+            delete(dir);
+        }
+        log.info("All chain integrity tests passed.");
+    }
+
+    private static List<Transaction> transactions(final RSAKeyPair key, final int block) throws CryptoException {
+        List<Transaction> transactions = new ArrayList<>(TRANSACTIONS);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            transactions.add(new Transaction(key.getPublic(), "transfer".getBytes(), ("Block " + block + " Transaction " + i).getBytes(), new byte[128]));
+        }
+        transactions.set(TRANSACTIONS / 2, Transaction.sign(key, "transfer".getBytes(), ("Block " + block + " Signed").getBytes()));
+        return transactions;
+    }
+}
@@ -0,0 +1,111 @@
+package net.cybertekt.blocksmith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.blockchain.MerkleTree;
+import net.cybertekt.blockchain.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merkle Tree Unit Test - (C) Cybertekt Software
+ *
+ * Checks the inclusion proof of every leaf for trees of many sizes, that
+ * tampered proofs and leaves are rejected, that a batch can not share a root
+ * with the same batch plus a duplicated last transaction, and that parallel
+ * and sequential hashing agree. Reports the time to build a large tree both
+ * ways.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class MerkleTreeTest {
+
+    public static final Logger log = LoggerFactory.getLogger(MerkleTreeTest.class);
+
+    private final Random rng = new Random(35);
+
+    public static void main(final String[] args) {
+        MerkleTreeTest app = new MerkleTreeTest();
+        app.testProofs();
+        app.testDuplicateLeaf();
+        app.testParallel(args.length > 0 ? Integer.parseInt(args[0]) : 200000);
+        log.info("All Merkle tree tests passed.");
+    }
+
+    public void testProofs() {
+        check(Arrays.equals(new MerkleTree(new ArrayList<>()).getRoot(), MerkleTree.EMPTY_ROOT), "An empty tree has the empty root");
+        for (int size = 1; size <= 70; size++) {
+            List<Transaction> transactions = transactions(size);
+            MerkleTree tree = new MerkleTree(transactions);
+            byte[] root = tree.getRoot();
+            int height = 32 - Integer.numberOfLeadingZeros(size - 1);
+            for (int i = 0; i < size; i++) {
+                MerkleTree.Proof proof = tree.getProof(i);
+                check(proof.getLength() <= height, "Proof length is at most the tree height");
+                check(MerkleTree.verify(transactions.get(i).getHash(), proof, root), "Leaf " + i + " of " + size + " is included");
+                check(!MerkleTree.verify(transactions.get((i + 1) % size).getHash(), proof, root) || size == 1, "Another leaf does not match the proof");
+                byte[] tampered = root.clone();
+                tampered[rng.nextInt(tampered.length)] ^= 1;
+                check(!MerkleTree.verify(transactions.get(i).getHash(), proof, tampered), "A different root is rejected");
+            }
+            if (size == 1) {
+                check(Arrays.equals(root, transactions.get(0).getHash()), "A single leaf is its own root");
+            }
+        }
+        log.info("Proofs passed.");
+    }
+
+    public void testDuplicateLeaf() {
+        List<Transaction> transactions = transactions(5);
+        List<Transaction> duplicated = new ArrayList<>(transactions);
+        duplicated.add(transactions.get(4));
+        check(!Arrays.equals(MerkleTree.root(transactions), MerkleTree.root(duplicated)), "Duplicating the last leaf changes the root");
+        List<Transaction> swapped = new ArrayList<>(transactions);
+        swapped.set(0, transactions.get(1));
+        swapped.set(1, transactions.get(0));
+        check(!Arrays.equals(MerkleTree.root(transactions), MerkleTree.root(swapped)), "Reordering leaves changes the root");
+    }
+
+    public void testParallel(final int size) {
+        List<Transaction> transactions = transactions(size);
+        for (int pass = 0; pass < 3; pass++) {
+            long time = System.nanoTime();
+            byte[] sequential = new MerkleTree(transactions(transactions), 0).getRoot();
+            long serial = System.nanoTime() - time;
+            time = System.nanoTime();
+            MerkleTree tree = new MerkleTree(transactions(transactions));
+            long parallel = System.nanoTime() - time;
+            check(Arrays.equals(sequential, tree.getRoot()), "Parallel and sequential roots match");
+            check(MerkleTree.verify(transactions.get(size / 3).getHash(), tree.getProof(size / 3), tree.getRoot()), "Proof from a large tree verifies");
+            log.info("Pass {} - {} transactions - Sequential [{}ms] - Parallel [{}ms] - {} processors", pass, size, serial / 1000000, parallel / 1000000, Runtime.getRuntime().availableProcessors());
+        }
+    }
+
+    /**
+     * Copies a batch so that the cached transaction hashes are recomputed.
+     */
+    private static List<Transaction> transactions(final List<Transaction> transactions) {
+        List<Transaction> copy = new ArrayList<>(transactions.size());
+        for (final Transaction t : transactions) {
+            copy.add(new Transaction(t.getPublicKey(), t.getType(), t.getData(), t.getSignature()));
+        }
+        return copy;
+    }
+
+    private List<Transaction> transactions(final int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] publicKey = new byte[94], data = new byte[32 + rng.nextInt(64)], signature = new byte[128];
+            rng.nextBytes(publicKey);
+            rng.nextBytes(data);
+            rng.nextBytes(signature);
+            transactions.add(new Transaction(publicKey, "transfer".getBytes(), data, signature));
+        }
+        return transactions;
+    }
+}
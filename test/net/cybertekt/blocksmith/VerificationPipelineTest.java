@@ -0,0 +1,144 @@
+package net.cybertekt.blocksmith;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import static net.cybertekt.Checks.delete;
+import net.cybertekt.blockchain.Block;
+import net.cybertekt.blockchain.BlockLog;
+import net.cybertekt.blockchain.BlockVerifier;
+import net.cybertekt.blockchain.Blockchain;
+import net.cybertekt.blockchain.VerificationPipeline;
+import net.cybertekt.crypto.RSAKeyPair;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Verification Pipeline Unit Test - (C) Cybertekt Software
+ *
+ * Generates a chain in a temporary {@link BlockLog}, streams it through the
+ * {@link VerificationPipeline} and a parallel {@link Blockchain} stream, and
+ * checks that both find exactly the blocks that were signed incorrectly. The
+ * chain length defaults to ten million blocks for benchmarking and can be
+ * passed as the first argument for a quicker run. Peak heap usage is sampled
+ * to show that memory does not grow with the chain.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class VerificationPipelineTest {
+
+    public static final Logger log = LoggerFactory.getLogger(VerificationPipelineTest.class);
+
+    /**
+     * Number of distinct signed blocks repeated to build the chain.
+     */
+    private static final int DISTINCT = 1000;
+
+    public static void main(final String[] args) throws CryptoException, IOException, InterruptedException {
+        final long count = args.length > 0 ? Long.parseLong(args[0]) : 10000000;
+        final Random rng = new Random(34);
+
+        /* Sign A Set Of Blocks, Corrupting Every 97th Signature */
+        RSAKeyPair[] keys = new RSAKeyPair[8];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = RSAKeyPair.generate(1024);
+        }
+        Block[] distinct = new Block[DISTINCT];
+        boolean[] corrupt = new boolean[DISTINCT];
+        for (int i = 0; i < DISTINCT; i++) {
+            RSAKeyPair key = keys[rng.nextInt(keys.length)];
+            byte[] data = ("Transaction " + i).getBytes();
+            byte[] signature = key.sign(Block.getSignedBytes(data));
+            if (i % 97 == 0) {
+                signature[rng.nextInt(signature.length)] ^= 1;
+                corrupt[i] = true;
+            }
+            distinct[i] = new Block(key.getPublic(), data, signature);
+        }
+
+        Path dir = Files.createTempDirectory("pipeline");
+        try (BlockLog blockLog = new BlockLog(dir)) {
+            /* Generate The Chain */
+            long time = System.nanoTime();
+            long expectedInvalid = 0;
+            for (long i = 0; i < count; i++) {
+                blockLog.append(distinct[(int) (i % DISTINCT)]);
+                expectedInvalid += corrupt[(int) (i % DISTINCT)] ? 1 : 0;
+            }
+            blockLog.sync();
+            log.info("Generated {} blocks [{}ms]", count, (System.nanoTime() - time) / 1000000);
+
+            Blockchain chain = new Blockchain("test", blockLog);
+            check(chain.size() == count, "Chain contains every generated block");
+
+            /* Backpressured Pipeline */
+            HeapSampler heap = new HeapSampler();
+            VerificationPipeline.Result result = new VerificationPipeline(new BlockVerifier()).verify(chain.iterator());
+            log.info("Pipeline - {} - peak heap {}MB", result, heap.finish() / (1024 * 1024));
+            check(result.getBlockCount() == count, "Pipeline verifies every block");
+            check(result.getInvalidCount() == expectedInvalid, "Pipeline finds every corrupt block");
+            long[] ids = result.getInvalidIds();
+            Arrays.sort(ids);
+            for (int i = 0; i < ids.length; i++) {
+                check(corrupt[(int) (ids[i] % DISTINCT)], "Block " + ids[i] + " is corrupt");
+            }
+            check(ids.length == Math.min(expectedInvalid, VerificationPipeline.MAX_INVALID_IDS), "Invalid ids are recorded up to the limit");
+
+            /* Parallel Stream Over The Spliterator */
+            heap = new HeapSampler();
+            BlockVerifier verifier = new BlockVerifier();
+            time = System.nanoTime();
+            long valid = chain.parallelStream().filter(verifier::verify).count();
+            time = System.nanoTime() - time;
+            log.info("Parallel Stream - Verified {} of {} Blocks [{}ms, {} blocks/s] - peak heap {}MB", valid, count, time / 1000000, (long) (count * 1e9 / time), heap.finish() / (1024 * 1024));
+            check(valid == count - expectedInvalid, "Parallel stream finds the same valid blocks");
+
+            /* Sequential Stream Preserves Order */
+            long[] next = new long[1];
+            chain.stream().limit(DISTINCT * 2).forEach(block -> check(block.getId() == next[0]++, "Blocks stream in id order"));
+        } finally {
+            delete(dir);
+        }
+        log.info("All verification pipeline tests passed.");
+    }
+
+    /**
+     * Samples used heap memory in the background and reports the peak.
+     */
+    private static final class HeapSampler extends Thread {
+
+        private volatile boolean running = true;
+        private long peak;
+
+        private HeapSampler() {
+            setDaemon(true);
+            System.gc();
+            start();
+        }
+
+        @Override
+        public void run() {
+            Runtime runtime = Runtime.getRuntime();
+            while (running) {
+                peak = Math.max(peak, runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(5);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private long finish() throws InterruptedException {
+            running = false;
+            join();
+            return peak;
+        }
+    }
+}
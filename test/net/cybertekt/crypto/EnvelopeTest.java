@@ -0,0 +1,308 @@
+package net.cybertekt.crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Envelope Unit Test - (C) Cybertekt Software
+ *
+ * Checks that envelopes round trip payloads of every size around the chunk
+ * boundaries, including payloads far larger than the RSA key, and that
+ * modified, truncated, extended, or reordered envelopes and envelopes for
+ * another key are rejected. Then streams a large payload through the
+ * encrypting and decrypting streams without holding it in memory, and
+ * compares envelope throughput with raw RSA over key-sized blocks.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class EnvelopeTest {
+
+    public static final Logger log = LoggerFactory.getLogger(EnvelopeTest.class);
+
+    private static final int CHUNK = 1024;
+
+    private final Random rng = new Random(40);
+
+    public static void main(final String[] args) throws Exception {
+        final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        EnvelopeTest app = new EnvelopeTest();
+        RSAKeyPair key = RSAKeyPair.generate(RSAKeyPair.DEFAULT_KEY_SIZE);
+        app.testRoundTrip(key);
+        app.testTampering(key);
+        app.testStreaming(key, megabytes);
+        app.benchmark(key);
+        log.info("All envelope tests passed.");
+    }
+
+    public void testRoundTrip(final RSAKeyPair key) throws Exception {
+        for (final int length : new int[]{0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK, 3 * CHUNK + 7}) {
+            byte[] data = random(length);
+            byte[] envelope = seal(key, data, CHUNK);
+            check(envelope.length == Envelope.getEncryptedSize(length, CHUNK, RSAKeyPair.DEFAULT_KEY_SIZE / 8), "Envelope size is predicted for " + length + " bytes");
+            check(Arrays.equals(open(key, envelope), data), "Envelope round trips " + length + " bytes");
+        }
+        byte[] large = random(1024 * 1024);
+        check(Arrays.equals(key.decryptEnvelope(key.encryptEnvelope(large)), large), "Payload larger than the key round trips");
+        check(Arrays.equals(key.decryptEnvelope(RSAKeyPair.encryptEnvelope(key.getPublic(), large)), large), "Envelope for an encoded key round trips");
+        check(!Arrays.equals(key.encryptEnvelope(large), key.encryptEnvelope(large)), "Every envelope uses a new key");
+        try {
+            key.encrypt(large);
+            check(false, "Raw RSA rejects payloads larger than the key");
+        } catch (final CryptoException e) {
+            /* Expected */
+        }
+        log.info("Round trip passed.");
+    }
+
+    public void testTampering(final RSAKeyPair key) throws Exception {
+        byte[] data = random(4 * CHUNK + 100);
+        byte[] envelope = seal(key, data, CHUNK);
+        int header = envelope.length - (data.length + 5 * Envelope.TAG_SIZE);
+        int sealed = CHUNK + Envelope.TAG_SIZE;
+
+        byte[] flipped = envelope.clone();
+        flipped[header + sealed + 10] ^= 1;
+        byte[] tag = envelope.clone();
+        tag[envelope.length - 1] ^= 1;
+        byte[] wrapped = envelope.clone();
+        wrapped[20] ^= 1;
+        byte[] prefix = envelope.clone();
+        prefix[header - 1] ^= 1;
+        byte[] chunkSize = envelope.clone();
+        chunkSize[4] ^= 1;
+
+        /* Drop The Final Chunk So The Envelope Ends On A Chunk Boundary */
+        byte[] dropped = Arrays.copyOf(envelope, header + 4 * sealed);
+        byte[] truncated = Arrays.copyOf(envelope, envelope.length - 1);
+        byte[] extended = Arrays.copyOf(envelope, envelope.length + 1);
+
+        /* Swap The First Two Chunks */
+        byte[] reordered = envelope.clone();
+        System.arraycopy(envelope, header, reordered, header + sealed, sealed);
+        System.arraycopy(envelope, header + sealed, reordered, header, sealed);
+
+        String[] names = {"Modified ciphertext", "Modified tag", "Modified wrapped key", "Modified nonce prefix", "Modified chunk size", "Dropped final chunk", "Truncated envelope", "Extended envelope", "Reordered chunks"};
+        byte[][] bad = {flipped, tag, wrapped, prefix, chunkSize, dropped, truncated, extended, reordered};
+        for (int i = 0; i < bad.length; i++) {
+            try {
+                open(key, bad[i]);
+                check(false, names[i] + " is rejected");
+            } catch (final IOException e) {
+                /* Expected */
+            }
+        }
+
+        /* Plaintext Must Not Be Released Before Its Chunk Is Authenticated */
+        try (InputStream in = key.decrypt(new ByteArrayInputStream(flipped))) {
+            byte[] buffer = new byte[CHUNK];
+            check(in.read(buffer) == CHUNK && Arrays.equals(buffer, Arrays.copyOf(data, CHUNK)), "Chunk before the modified one is released");
+            in.read(buffer);
+            check(false, "Modified chunk is not released");
+        } catch (final IOException e) {
+            /* Expected */
+        }
+
+        RSAKeyPair other = RSAKeyPair.generate(RSAKeyPair.DEFAULT_KEY_SIZE);
+        try {
+            other.decryptEnvelope(envelope);
+            check(false, "Envelope for another key is rejected");
+        } catch (final CryptoException e) {
+            /* Expected */
+        }
+        log.info("Tampering passed.");
+    }
+
+    public void testStreaming(final RSAKeyPair key, final int megabytes) throws IOException {
+        final long length = megabytes * 1024L * 1024L;
+        final PipeBuffer pipe = new PipeBuffer();
+        final byte[] buffer = new byte[8192];
+        final Random source = new Random(1), expected = new Random(1);
+        final byte[] compare = new byte[buffer.length];
+        long written = 0, read = 0, time = System.nanoTime(), encryptTime = 0;
+
+        /* Encrypt And Decrypt Concurrently Through A Bounded Buffer, Closing The Output To Write The Last Chunk */
+        final OutputStream out = key.encrypt(pipe);
+        try (InputStream in = key.decrypt(pipe.input())) {
+            encryptTime -= System.nanoTime();
+            while (written < length) {
+                source.nextBytes(buffer);
+                int count = (int) Math.min(buffer.length, length - written);
+                out.write(buffer, 0, count);
+                written += count;
+                if (pipe.size() > 4 * Envelope.DEFAULT_CHUNK_SIZE) {
+                    encryptTime += System.nanoTime();
+                    read += drain(in, pipe, expected, compare, buffer, false);
+                    encryptTime -= System.nanoTime();
+                }
+            }
+            out.close();
+            encryptTime += System.nanoTime();
+            read += drain(in, pipe, expected, compare, buffer, true);
+        }
+        time = System.nanoTime() - time;
+        check(read == length, "Every streamed byte is decrypted");
+        check(pipe.peak < 8 * Envelope.DEFAULT_CHUNK_SIZE, "Streaming buffers a bounded number of chunks");
+        log.info("Streamed {}MB - Total [{}ms] - Peak Buffered [{}KB] - Encrypt [{} MB/s]", megabytes, time / 1000000, pipe.peak / 1024, rate(length, encryptTime));
+        log.info("Streaming passed.");
+    }
+
+    public void benchmark(final RSAKeyPair key) throws Exception {
+        final int rsaBlock = RSAKeyPair.DEFAULT_KEY_SIZE / 8 - 11;
+        final byte[] payload = random(4 * 1024 * 1024), block = random(rsaBlock);
+        final int blocks = 2000;
+        for (int pass = 0; pass < 3; pass++) {
+            long time = System.nanoTime();
+            byte[] envelope = key.encryptEnvelope(payload);
+            long encrypt = System.nanoTime() - time;
+            time = System.nanoTime();
+            byte[] opened = key.decryptEnvelope(envelope);
+            long decrypt = System.nanoTime() - time;
+            check(opened.length == payload.length, "Benchmark envelope round trips");
+
+            byte[][] rsa = new byte[blocks / 10][];
+            time = System.nanoTime();
+            for (int i = 0; i < blocks; i++) {
+                rsa[i % rsa.length] = key.encrypt(block);
+            }
+            long rsaEncrypt = System.nanoTime() - time;
+            time = System.nanoTime();
+            for (int i = 0; i < rsa.length; i++) {
+                key.decrypt(rsa[i]);
+            }
+            long rsaDecrypt = (System.nanoTime() - time) * (blocks / rsa.length);
+            long rsaBytes = (long) blocks * rsaBlock;
+            log.info("Pass {} - Envelope {}MB Encrypt [{} MB/s] Decrypt [{} MB/s] - Raw RSA {} Byte Blocks Encrypt [{} KB/s] Decrypt [{} KB/s]",
+                    pass, payload.length >> 20, rate(payload.length, encrypt), rate(payload.length, decrypt), rsaBlock, rate(rsaBytes * 1000, rsaEncrypt), rate(rsaBytes * 1000, rsaDecrypt));
+        }
+
+        /* Small Messages Are Dominated By Wrapping The Key */
+        final byte[] message = random(256);
+        final int messages = 500;
+        long time = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            key.encryptEnvelope(message);
+        }
+        long encrypt = System.nanoTime() - time;
+        log.info("{} Envelopes of {} bytes - Encrypt [{} per second]", messages, message.length, messages * 1000000000L / encrypt);
+    }
+
+    /**
+     * Reads the decrypted bytes that are available without blocking on data
+     * that has not been encrypted yet and compares them with the source.
+     */
+    private static long drain(final InputStream in, final PipeBuffer pipe, final Random expected, final byte[] compare, final byte[] buffer, final boolean all) throws IOException {
+        long total = 0;
+        while (all || pipe.size() > Envelope.DEFAULT_CHUNK_SIZE + Envelope.TAG_SIZE + 1) {
+            int read = in.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            expected.nextBytes(compare);
+            if (read != compare.length) {
+                /* The Decrypted Stream Is Read In Whole Buffers Until The End */
+                check(all && Arrays.equals(Arrays.copyOf(buffer, read), Arrays.copyOf(compare, read)), "Final streamed bytes match");
+            } else {
+                check(Arrays.equals(buffer, compare), "Streamed bytes match");
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static byte[] seal(final RSAKeyPair key, final byte[] data, final int chunkSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = Envelope.encrypt(SignatureAlgorithm.RSA.decode(key.getPublic()), bytes, chunkSize)) {
+            out.write(data);
+        } catch (final CryptoException e) {
+            throw new IOException(e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] open(final RSAKeyPair key, final byte[] envelope) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = key.decrypt(new ByteArrayInputStream(envelope))) {
+            byte[] buffer = new byte[333];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                bytes.write(buffer, 0, read);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] random(final int length) {
+        byte[] data = new byte[length];
+        rng.nextBytes(data);
+        return data;
+    }
+
+    private static long rate(final long bytes, final long nanos) {
+        return bytes * 1000L / Math.max(1, nanos);
+    }
+
+    /**
+     * Single threaded pipe holding the envelope bytes written but not yet
+     * read, tracking the most it ever held.
+     */
+    private static final class PipeBuffer extends OutputStream {
+
+        private byte[] bytes = new byte[1024 * 1024];
+        private int start, end, peak;
+
+        @Override
+        public void write(final int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            if (end + len > bytes.length) {
+                System.arraycopy(bytes, start, bytes, 0, end - start);
+                end -= start;
+                start = 0;
+                if (end + len > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, end + len));
+                }
+            }
+            System.arraycopy(b, off, bytes, end, len);
+            end += len;
+            peak = Math.max(peak, size());
+        }
+
+        private int size() {
+            return end - start;
+        }
+
+        private InputStream input() {
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return start == end ? -1 : bytes[start++] & 0xFF;
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) {
+                    if (start == end) {
+                        return -1;
+                    }
+                    final int count = Math.min(len, end - start);
+                    System.arraycopy(bytes, start, b, off, count);
+                    start += count;
+                    return count;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package net.cybertekt.crypto;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.exception.CryptoException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Signature Unit Test - (C) Cybertekt Software
+ *
+ * For every {@link SignatureAlgorithm} provided by the runtime, checks that
+ * signatures verify through the key pair and through the encoded public key,
+ * that the algorithm is detected from the encoded key, and that tampered data,
+ * tampered signatures, keys of other algorithms, and EC keys over curves other
+ * than P-256 are rejected. Reports key
+ * generation time and sign and verify throughput so the algorithms can be
+ * compared on the same machine.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class SignatureTest {
+
+    public static final Logger log = LoggerFactory.getLogger(SignatureTest.class);
+
+    private static final int WARMUP = 200;
+
+    private final Random rng = new Random(36);
+
+    public static void main(final String[] args) throws Exception {
+        final int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        SignatureTest app = new SignatureTest();
+        SigningKeyPair previous = null;
+        for (final SignatureAlgorithm algorithm : SignatureAlgorithm.values()) {
+            if (!algorithm.isAvailable()) {
+                log.info("{} is not available on Java {} - Skipped", algorithm, System.getProperty("java.version"));
+                continue;
+            }
+            SigningKeyPair key = app.testCorrectness(algorithm, previous);
+            app.benchmark(key, iterations);
+            previous = key;
+        }
+        check(SignatureAlgorithm.detect(new byte[]{0x30, 0x03, 0x30, 0x01}) == null, "Truncated key is not detected");
+        check(SignatureAlgorithm.detect(new byte[0]) == null, "Empty key is not detected");
+        app.testCurve();
+        log.info("All signature tests passed.");
+    }
+
+    public SigningKeyPair testCorrectness(final SignatureAlgorithm algorithm, final SigningKeyPair other) throws CryptoException {
+        long time = System.nanoTime();
+        SigningKeyPair key = algorithm.generate();
+        log.info("{} Key Generated [{}ms] - Public Key {} bytes", algorithm, (System.nanoTime() - time) / 1000000, key.getPublic().length);
+        check(key.getAlgorithm() == algorithm, "Key pair reports its algorithm");
+        check(SignatureAlgorithm.detect(key.getPublic()) == algorithm, "Algorithm is detected from the encoded key");
+        check(SignatureAlgorithm.of(algorithm.decode(key.getPublic())) == algorithm, "Algorithm is known from the decoded key");
+
+        byte[] data = new byte[256];
+        rng.nextBytes(data);
+        byte[] signature = key.sign(data);
+        check(key.verify(data, signature), "Key pair verifies its signature");
+        check(SignatureAlgorithm.verify(key.getPublic(), data, signature), "Encoded key verifies the signature");
+
+        byte[] tampered = data.clone();
+        tampered[rng.nextInt(tampered.length)] ^= 1;
+        check(!key.verify(tampered, signature), "Tampered data is rejected");
+        check(!SignatureAlgorithm.verify(key.getPublic(), tampered, signature), "Tampered data is rejected by the encoded key");
+        byte[] badSignature = signature.clone();
+        badSignature[badSignature.length / 2] ^= 1;
+        check(!SignatureAlgorithm.verify(key.getPublic(), data, badSignature), "Tampered signature is rejected");
+        if (other != null) {
+            check(!SignatureAlgorithm.verify(other.getPublic(), data, signature), "Key of another algorithm is rejected");
+        }
+        log.info("{} Signature {} bytes - Correctness passed.", algorithm, signature.length);
+        return key;
+    }
+
+    public void testCurve() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp384r1"));
+        KeyPair key = generator.generateKeyPair();
+        byte[] data = new byte[256];
+        rng.nextBytes(data);
+        Signature sig = Signature.getInstance(SignatureAlgorithm.ECDSA_P256.getSignatureAlgorithm());
+        sig.initSign(key.getPrivate());
+        sig.update(data);
+        byte[] signature = sig.sign();
+        byte[] encoded = key.getPublic().getEncoded();
+        check(SignatureAlgorithm.detect(encoded) == SignatureAlgorithm.ECDSA_P256, "Keys over other curves are detected as EC keys");
+        try {
+            SignatureAlgorithm.ECDSA_P256.decode(encoded);
+            check(false, "Keys over other curves are not decoded");
+        } catch (final CryptoException e) {
+            /* Expected */
+        }
+        check(!SignatureAlgorithm.verify(encoded, data, signature), "Signatures of keys over other curves are rejected");
+        log.info("Curve passed.");
+    }
+
+    public void benchmark(final SigningKeyPair key, final int iterations) throws CryptoException {
+        final byte[][] data = new byte[64][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new byte[256];
+            rng.nextBytes(data[i]);
+        }
+        final byte[][] signatures = new byte[data.length][];
+        final SignatureAlgorithm algorithm = key.getAlgorithm();
+        final PublicKey publicKey = algorithm.decode(key.getPublic());
+
+        /* Warm Up */
+        for (int i = 0; i < WARMUP; i++) {
+            signatures[i % data.length] = key.sign(data[i % data.length]);
+            algorithm.verify(publicKey, data[i % data.length], signatures[i % data.length]);
+        }
+
+        /* Sign Throughput */
+        long time = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            signatures[i % data.length] = key.sign(data[i % data.length]);
+        }
+        final long sign = System.nanoTime() - time;
+
+        /* Verify Throughput */
+        int valid = 0;
+        time = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            valid += algorithm.verify(publicKey, data[i % data.length], signatures[i % data.length]) ? 1 : 0;
+        }
+        final long verify = System.nanoTime() - time;
+        check(valid == iterations, "Every benchmarked signature verifies");
+        log.info("{} - {} iterations - Sign [{} ops/s] - Verify [{} ops/s]", algorithm, iterations, iterations * 1000000000L / sign, iterations * 1000000000L / verify);
+    }
+}
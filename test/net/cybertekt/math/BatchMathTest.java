@@ -0,0 +1,230 @@
+package net.cybertekt.math;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batch Math Unit Test - (C) Cybertekt Software
+ *
+ * Verifies every {@link BatchMath} kernel against the equivalent per-object
+ * JOML, {@link AABB}, and {@link Frustum} calls and compares their throughput.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class BatchMathTest {
+
+    public static final Logger log = LoggerFactory.getLogger(BatchMathTest.class);
+
+    private static final int COUNT = 100000;
+
+    private final Random rng = new Random(31);
+
+    private final Matrix4f matrix = new Matrix4f().perspective(1f, 1.5f, 0.1f, 100f).lookAt(1f, 2f, 3f, 0f, 0f, 0f, 0f, 1f, 0f);
+
+    private final Matrix4f affine = new Matrix4f().translationRotateScale(1f, -2f, 3f, 0.1f, 0.7f, -0.2f, 0.68f, 2f, 0.5f, 1.5f).normalize3x3();
+
+    public static void main(final String[] args) {
+        BatchMathTest app = new BatchMathTest();
+        for (int pass = 0; pass < 2; pass++) {
+            app.testPositions(pass);
+            app.testVectors(pass);
+            app.testMatrices(pass);
+            app.testAABBs(pass);
+            app.testSpheres(pass);
+        }
+        log.info("All batch math tests passed.");
+    }
+
+    public void testPositions(final int pass) {
+        float[] in = random(COUNT * 3, 100f);
+        float[] out = new float[in.length];
+        float[] x = new float[COUNT], y = new float[COUNT], z = new float[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            x[i] = in[i * 3];
+            y[i] = in[i * 3 + 1];
+            z[i] = in[i * 3 + 2];
+        }
+
+        Vector3f v = new Vector3f();
+        float[] expected = new float[in.length];
+        long joml = best(() -> {
+            for (int i = 0; i < COUNT; i++) {
+                affine.transformPosition(v.set(in[i * 3], in[i * 3 + 1], in[i * 3 + 2]));
+                expected[i * 3] = v.x;
+                expected[i * 3 + 1] = v.y;
+                expected[i * 3 + 2] = v.z;
+            }
+        });
+
+        long packed = best(() -> BatchMath.transformPositions(affine, in, 0, out, 0, COUNT));
+        compare(expected, out, "Interleaved positions");
+
+        float[] outX = new float[COUNT], outY = new float[COUNT], outZ = new float[COUNT];
+        long soa = best(() -> BatchMath.transformPositions(affine, x, y, z, outX, outY, outZ, COUNT));
+        for (int i = 0; i < COUNT; i++) {
+            out[i * 3] = outX[i];
+            out[i * 3 + 1] = outY[i];
+            out[i * 3 + 2] = outZ[i];
+        }
+        compare(expected, out, "Structure of arrays positions");
+
+        FloatBuffer buffer = FloatBuffer.wrap(in);
+        FloatBuffer result = FloatBuffer.allocate(in.length);
+        BatchMath.transformPositions(affine, buffer, 0, result, 0, COUNT);
+        compare(expected, result.array(), "Float buffer positions");
+        report(pass, "mat4 x vec3", joml, packed, soa);
+    }
+
+    public void testVectors(final int pass) {
+        float[] in = random(COUNT * 4, 10f);
+        float[] out = new float[in.length];
+        float[] expected = new float[in.length];
+        Vector4f v = new Vector4f();
+        long joml = best(() -> {
+            for (int i = 0; i < COUNT; i++) {
+                matrix.transform(v.set(in[i * 4], in[i * 4 + 1], in[i * 4 + 2], in[i * 4 + 3]));
+                expected[i * 4] = v.x;
+                expected[i * 4 + 1] = v.y;
+                expected[i * 4 + 2] = v.z;
+                expected[i * 4 + 3] = v.w;
+            }
+        });
+        long batch = best(() -> BatchMath.transformVectors(matrix, in, 0, out, 0, COUNT));
+        compare(expected, out, "Four component vectors");
+        report(pass, "mat4 x vec4", joml, batch, -1);
+    }
+
+    public void testMatrices(final int pass) {
+        final int count = COUNT / 10;
+        float[] left = new float[count * 16];
+        float[] right = new float[count * 16];
+        Matrix4f a = new Matrix4f(), b = new Matrix4f();
+        for (int i = 0; i < count; i++) {
+            a.translationRotateScale(rng.nextFloat(), rng.nextFloat(), rng.nextFloat(), 0f, 0f, 0.38f, 0.92f, 1f + rng.nextFloat(), 1f, 1f).get(left, i * 16);
+            b.translationRotateScale(rng.nextFloat(), rng.nextFloat(), rng.nextFloat(), 0.38f, 0f, 0f, 0.92f, 1f, 1f, 1f + rng.nextFloat()).get(right, i * 16);
+        }
+        float[] expected = new float[left.length];
+        float[] out = new float[left.length];
+
+        long joml = best(() -> {
+            for (int i = 0; i < count; i++) {
+                a.set(left, i * 16).mul(b.set(right, i * 16)).get(expected, i * 16);
+            }
+        });
+        long batch = best(() -> BatchMath.mul(left, 0, right, 0, out, 0, count));
+        compare(expected, out, "Matrix pairs");
+
+        for (int i = 0; i < count; i++) {
+            new Matrix4f(matrix).mul(b.set(right, i * 16)).get(expected, i * 16);
+        }
+        long shared = best(() -> BatchMath.mul(matrix, right, 0, out, 0, count));
+        compare(expected, out, "Shared left-hand matrix");
+        report(pass, "mat4 x mat4", joml, batch, shared);
+    }
+
+    public void testAABBs(final int pass) {
+        float[] matrices = new float[COUNT * 16];
+        float[] boxes = new float[COUNT * 6];
+        Matrix4f m = new Matrix4f();
+        for (int i = 0; i < COUNT; i++) {
+            m.translationRotateScale(rng.nextFloat() * 100f, rng.nextFloat() * 100f, 0f, 0f, 0.6f, 0f, 0.8f, 1f + rng.nextFloat(), 1f, 1f).get(matrices, i * 16);
+            float x = rng.nextFloat(), y = rng.nextFloat(), z = rng.nextFloat();
+            boxes[i * 6] = x - 1f;
+            boxes[i * 6 + 1] = y - 2f;
+            boxes[i * 6 + 2] = z - 3f;
+            boxes[i * 6 + 3] = x + 1f;
+            boxes[i * 6 + 4] = y + 2f;
+            boxes[i * 6 + 5] = z + 3f;
+        }
+        float[] expected = new float[boxes.length];
+        float[] out = new float[boxes.length];
+        AABB box = new AABB();
+        long object = best(() -> {
+            for (int i = 0; i < COUNT; i++) {
+                int b = i * 6;
+                box.set(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]).transform(m.set(matrices, i * 16), box);
+                expected[b] = box.minX;
+                expected[b + 1] = box.minY;
+                expected[b + 2] = box.minZ;
+                expected[b + 3] = box.maxX;
+                expected[b + 4] = box.maxY;
+                expected[b + 5] = box.maxZ;
+            }
+        });
+        long batch = best(() -> BatchMath.transformAABBs(matrices, 0, boxes, 0, out, 0, COUNT));
+        compare(expected, out, "Bounding boxes");
+        report(pass, "AABB transform", object, batch, -1);
+    }
+
+    public void testSpheres(final int pass) {
+        Frustum frustum = new Frustum(matrix);
+        float[] x = random(COUNT, 40f), y = random(COUNT, 40f), z = random(COUNT, 40f), r = new float[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            r[i] = rng.nextFloat() * 2f;
+        }
+        int[] expected = new int[COUNT];
+        int[] found = new int[1];
+        long object = best(() -> {
+            found[0] = 0;
+            for (int i = 0; i < COUNT; i++) {
+                if (frustum.test(x[i], y[i], z[i], r[i]) != Frustum.OUTSIDE) {
+                    expected[found[0]++] = i;
+                }
+            }
+        });
+
+        int[] visible = new int[COUNT];
+        long batch = best(() -> BatchMath.cullSpheres(frustum.getPlanes(), x, y, z, r, visible, COUNT));
+        int count = BatchMath.cullSpheres(frustum.getPlanes(), x, y, z, r, visible, COUNT);
+        check(count == found[0], "Sphere cull finds the same number of spheres: " + count + " vs " + found[0]);
+        for (int i = 0; i < count; i++) {
+            check(visible[i] == expected[i], "Sphere cull finds the same spheres");
+        }
+
+        float[] scratch = new float[COUNT];
+        BatchMath.planeDistances(0f, 1f, 0f, -1f, x, y, z, r, scratch, COUNT);
+        check(scratch[7] == y[7] - 1f - r[7], "Plane distances subtract the radius");
+        report(pass, "Sphere cull", object, batch, -1);
+    }
+
+    private void report(final int pass, final String kernel, final long object, final long batch, final long soa) {
+        log.info("Pass {} - {} x {} - Per Object [{}us] - Batch [{}us]{}", pass, kernel, COUNT, object / 1000, batch / 1000, soa < 0 ? "" : " - Variant [" + soa / 1000 + "us]");
+    }
+
+    /**
+     * Runs a task several times and returns the fastest run in nanoseconds.
+     */
+    private static long best(final Runnable task) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long time = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - time);
+        }
+        return best;
+    }
+
+    private float[] random(final int length, final float scale) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (rng.nextFloat() - 0.5f) * scale;
+        }
+        return values;
+    }
+
+    private static void compare(final float[] expected, final float[] actual, final String description) {
+        for (int i = 0; i < expected.length; i++) {
+            if (Math.abs(expected[i] - actual[i]) > 1e-4f * Math.max(1f, Math.abs(expected[i]))) {
+                throw new IllegalStateException("Check failed: " + description + " differ at " + i + " (" + expected[i] + " vs " + actual[i] + ")");
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package net.cybertekt.math;
+
+import java.lang.management.ManagementFactory;
+import static net.cybertekt.Checks.check;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transform Unit Test - (C) Cybertekt Software
+ *
+ * Verifies the cached transform matrix and the destination variants of the
+ * {@link Transform} operations, then runs a simulated frame loop and measures
+ * the number of bytes allocated by the current thread to confirm that the
+ * per-frame transform work does not allocate.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class TransformTest {
+
+    public static final Logger log = LoggerFactory.getLogger(TransformTest.class);
+
+    public static void main(final String[] args) {
+        TransformTest app = new TransformTest();
+        app.testCachedMatrix();
+        app.testOperations();
+        app.testFrameAllocation(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        log.info("All transform tests passed.");
+    }
+
+    public void testCachedMatrix() {
+        Vector3f location = new Vector3f(1f, 2f, 3f);
+        Transform t = new Transform(location, new Quaternionf().rotateXYZ(0.4f, -0.3f, 1.2f), new Vector3f(2f, 3f, 4f));
+        location.set(9f, 9f, 9f);
+        check(t.getTranslation().x() == 1f, "Constructor copies its arguments");
+
+        Matrix4fc cached = t.getTransformMatrix();
+        Matrix4f expected = new Matrix4f(t.getTranslationMatrix()).mul(t.getRotationMatrix()).mul(t.getScaleMatrix());
+        check(equals(expected, cached), "Cached matrix equals T * R * S");
+        check(!t.isDirty() && t.getTransformMatrix() == cached, "Matrix is reused while clean");
+
+        t.setTranslation(5f, 0f, 0f);
+        check(t.isDirty(), "Setters invalidate the cached matrix");
+        check(t.getTransformMatrix().m30() == 5f, "Matrix is rebuilt after a change");
+        log.info("Cached matrix passed.");
+    }
+
+    public void testOperations() {
+        Transform parent = new Transform(new Vector3f(1f, -2f, 3f), new Quaternionf().rotateXYZ(0.2f, 0.9f, -0.4f), new Vector3f(2f, 2f, 2f));
+        Transform child = new Transform(new Vector3f(-3f, 1f, 0.5f), new Quaternionf().rotateXYZ(1.0f, 0.1f, 0.3f), new Vector3f(0.5f, 1f, 1.5f));
+        Matrix4f expected = new Matrix4f(parent.getTransformMatrix()).mul(child.getTransformMatrix());
+
+        Transform world = child.combine(parent, new Transform());
+        check(equals(expected, world.getTransformMatrix()), "Combined transform matches the matrix product");
+        check(equals(new Transform(child).combine(parent).getTransformMatrix(), world.getTransformMatrix()), "Local and destination combine agree");
+
+        Transform sum = new Transform();
+        check(child.add(parent, sum) == sum, "Destination add returns the destination");
+        check(equals(sum.getTransformMatrix(), child.add(parent).getTransformMatrix()), "Destination add matches allocating add");
+        check(equals(new Transform(child).addLocal(parent).getTransformMatrix(), sum.getTransformMatrix()), "Local add matches destination add");
+
+        Transform product = child.mult(parent, new Transform());
+        check(equals(product.getTransformMatrix(), child.mult(parent).getTransformMatrix()), "Destination mult matches allocating mult");
+        check(equals(new Transform(child).multLocal(parent).getTransformMatrix(), product.getTransformMatrix()), "Local mult matches destination mult");
+        log.info("Operations passed.");
+    }
+
+    /**
+     * Updates a small hierarchy of transforms once per simulated frame and
+     * reports the bytes allocated by the calling thread. The loop is run once
+     * to warm up (and compile) before it is measured.
+     */
+    public void testFrameAllocation(final int frames) {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        final Transform[] local = new Transform[64];
+        final Transform[] world = new Transform[64];
+        final Matrix4f[] matrices = new Matrix4f[64];
+        for (int i = 0; i < local.length; i++) {
+            local[i] = new Transform(new Vector3f(i, 0f, 0f));
+            world[i] = new Transform();
+            matrices[i] = new Matrix4f();
+        }
+
+        frames(local, world, matrices, frames / 10);
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long time = System.nanoTime();
+        float checksum = frames(local, world, matrices, frames);
+        time = System.nanoTime() - time;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+        log.info("{} frames x {} transforms - {} bytes allocated, {}ns per frame (checksum {})", frames, local.length, allocated, time / frames, checksum);
+        check(allocated < 1024, "Per-frame transform updates do not allocate: " + allocated + " bytes");
+    }
+
+    private static float frames(final Transform[] local, final Transform[] world, final Matrix4f[] matrices, final int frames) {
+        float checksum = 0f;
+        for (int frame = 0; frame < frames; frame++) {
+            local[0].setRotation(0f, (float) Math.sin(frame * 0.001), 0f, (float) Math.cos(frame * 0.001));
+            world[0].set(local[0]);
+            for (int i = 1; i < local.length; i++) {
+                local[i].combine(world[i - 1], world[i]);
+                world[i].getTransformMatrix(matrices[i]);
+            }
+            checksum += matrices[local.length - 1].m30();
+        }
+        return checksum;
+    }
+
+    private static boolean equals(final Matrix4fc a, final Matrix4fc b) {
+        float[] x = a.get(new float[16]);
+        float[] y = b.get(new float[16]);
+        for (int i = 0; i < 16; i++) {
+            if (Math.abs(x[i] - y[i]) > 1e-4f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,126 @@
+package net.cybertekt.mesh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.mesh.BufferAllocator.Allocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffer Allocator Unit Test - (C) Cybertekt Software
+ *
+ * Exercises the mesh buffer sub-allocation bookkeeping without an OpenGL
+ * context: best-fit allocation, coalescing, fragmentation and compaction. A
+ * shadow int[] array stands in for GPU memory so that compaction moves can be
+ * verified.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class BufferAllocatorTest {
+
+    public static final Logger log = LoggerFactory.getLogger(BufferAllocatorTest.class);
+
+    public static void main(final String[] args) {
+        BufferAllocatorTest app = new BufferAllocatorTest();
+        app.testCoalescing();
+        app.testFragmentationAndCompaction();
+        app.testRandomChurn();
+        log.info("All buffer allocator tests passed.");
+    }
+
+    public void testCoalescing() {
+        BufferAllocator allocator = new BufferAllocator(100);
+        Allocation a = allocator.allocate(10);
+        Allocation b = allocator.allocate(20);
+        Allocation c = allocator.allocate(30);
+        check(a.getOffset() == 0 && b.getOffset() == 10 && c.getOffset() == 30, "Sequential allocations are contiguous");
+
+        allocator.free(b);
+        check(allocator.getFreeBlockCount() == 2, "Freeing a middle block leaves a hole");
+
+        allocator.free(a);
+        check(allocator.getFreeBlockCount() == 2 && allocator.getLargestFreeBlock() == 40, "Adjacent free blocks coalesce");
+
+        allocator.free(c);
+        check(allocator.getFreeBlockCount() == 1 && allocator.getLargestFreeBlock() == 100, "All blocks coalesce back into one");
+
+        Allocation small = allocator.allocate(5);
+        allocator.allocate(50);
+        allocator.free(small);
+        Allocation fit = allocator.allocate(5);
+        check(fit.getOffset() == 0, "Best-fit reuses the exactly sized hole");
+        log.info("Coalescing passed.");
+    }
+
+    public void testFragmentationAndCompaction() {
+        final int[] memory = new int[64];
+        BufferAllocator allocator = new BufferAllocator(memory.length);
+        List<Allocation> live = new ArrayList<>();
+
+        /* Fill With 16 Blocks Of 4 And Free Every Other Block */
+        for (int i = 0; i < 16; i++) {
+            Allocation a = allocator.allocate(4);
+            fill(memory, a, i);
+            live.add(a);
+        }
+        for (int i = 0; i < 16; i += 2) {
+            allocator.free(live.get(i));
+        }
+        check(allocator.getFree() == 32, "Half of the buffer is free");
+        check(allocator.allocate(8) == null, "Fragmented free space cannot satisfy a larger block");
+        check(allocator.getFragmentation() > 0.8f, "Fragmentation is reported: " + allocator.getFragmentation());
+
+        int moved = allocator.compact((from, to, size) -> System.arraycopy(memory, from, memory, to, size));
+        check(moved == 8, "Every surviving block after the first hole is moved: " + moved);
+        check(allocator.getFragmentation() == 0f && allocator.getLargestFreeBlock() == 32, "Compaction leaves a single free block");
+        for (int i = 1; i < 16; i += 2) {
+            Allocation a = live.get(i);
+            for (int j = 0; j < a.getSize(); j++) {
+                check(memory[a.getOffset() + j] == i, "Block " + i + " data follows its relocated offset");
+            }
+        }
+        check(allocator.allocate(32) != null, "Compacted space satisfies the larger block");
+        check(allocator.compact((from, to, size) -> {
+            throw new IllegalStateException("Nothing should move");
+        }) == 0, "A full allocator does not move anything");
+        log.info("Fragmentation and compaction passed.");
+    }
+
+    public void testRandomChurn() {
+        Random rng = new Random(26);
+        BufferAllocator allocator = new BufferAllocator(1 << 16);
+        List<Allocation> live = new ArrayList<>();
+        long time = System.nanoTime();
+        int failures = 0;
+        for (int i = 0; i < 200000; i++) {
+            if (!live.isEmpty() && rng.nextBoolean()) {
+                allocator.free(live.remove(rng.nextInt(live.size())));
+            } else {
+                Allocation a = allocator.allocate(1 + rng.nextInt(256));
+                if (a == null) {
+                    failures++;
+                    allocator.compact((from, to, size) -> {
+                    });
+                } else {
+                    live.add(a);
+                }
+            }
+        }
+        int used = 0;
+        for (final Allocation a : live) {
+            used += a.getSize();
+        }
+        check(used == allocator.getUsed(), "Used element count matches live allocations");
+        log.info("Random churn passed - {} live allocations, {} failed requests, fragmentation {} [{}ms]", live.size(), failures, allocator.getFragmentation(), (System.nanoTime() - time) / 1000000);
+    }
+
+    private static void fill(final int[] memory, final Allocation a, final int value) {
+        for (int i = 0; i < a.getSize(); i++) {
+            memory[a.getOffset() + i] = value;
+        }
+    }
+}
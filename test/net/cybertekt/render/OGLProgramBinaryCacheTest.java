@@ -0,0 +1,236 @@
+package net.cybertekt.render;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.asset.AssetKey;
+import net.cybertekt.asset.shader.OGLShader;
+import net.cybertekt.render.OGLProgramBinaryCache.Binary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OGL Program Binary Cache Unit Test - (C) Cybertekt Software
+ *
+ * Drives the binary cache through a stubbed OpenGL backend in a temporary
+ * directory. Checks that stored programs are restored with the same format
+ * and data, that a different program key or driver misses, that corrupt,
+ * truncated, mismatched and driver-rejected entries are deleted and reported
+ * as misses, that an unsupported driver never stores, and that invalidation
+ * and clearing remove entries. Then checks that a program cache restores a
+ * stored program without compiling it. Requires no GPU.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class OGLProgramBinaryCacheTest {
+
+    public static final Logger log = LoggerFactory.getLogger(OGLProgramBinaryCacheTest.class);
+
+    private final StubBackend backend = new StubBackend();
+
+    private Path dir;
+
+    public static void main(final String[] args) throws Exception {
+        OGLProgramBinaryCacheTest app = new OGLProgramBinaryCacheTest();
+        app.dir = Files.createTempDirectory("program-binaries");
+        try {
+            app.testStoreAndLoad();
+            app.testInvalidation();
+            app.testCorruption();
+            app.testUnsupported();
+            app.testProgramCache();
+        } finally {
+            app.deleteDir();
+        }
+        log.info("All program binary cache tests passed.");
+    }
+
+    public void testStoreAndLoad() throws IOException {
+        final OGLProgramBinaryCache cache = new OGLProgramBinaryCache(dir, backend);
+        check(cache.load("A") == 0 && cache.getMisses() == 1, "Empty cache misses");
+
+        backend.link(7, new Binary(0x1234, bytes(4096, 1)));
+        cache.prepare(7);
+        check(backend.retrievable.contains(7), "Programs are marked retrievable before linking");
+        check(cache.store("A", 7) && Files.exists(cache.getFile("A")), "Linked program is stored");
+        check(files() == 1, "No temporary files are left behind");
+
+        final int restored = cache.load("A");
+        check(restored != 0 && cache.getHits() == 1, "Stored program is restored");
+        check(backend.loaded.get(restored).getFormat() == 0x1234 && Arrays.equals(backend.loaded.get(restored).getData(), bytes(4096, 1)), "Restored binary matches the stored one");
+        check(cache.load("B") == 0, "A different program key misses");
+
+        /* Replace An Existing Entry */
+        backend.link(8, new Binary(0x1234, bytes(100, 2)));
+        check(cache.store("A", 8), "Entry is replaced");
+        check(Arrays.equals(backend.loaded.get(cache.load("A")).getData(), bytes(100, 2)), "Replaced entry is restored");
+
+        /* Entries Are Keyed By Driver */
+        final OGLProgramBinaryCache updated = new OGLProgramBinaryCache(dir, new StubBackend("Vendor | Renderer | 4.6.1"));
+        check(!updated.getFile("A").equals(cache.getFile("A")), "Driver is part of the entry name");
+        check(updated.load("A") == 0 && updated.getRejected() == 0, "Updated driver misses");
+        check(cache.load("A") != 0, "Entries for the original driver remain");
+        log.info("Store and load passed.");
+    }
+
+    public void testInvalidation() throws IOException {
+        final OGLProgramBinaryCache cache = new OGLProgramBinaryCache(dir, backend);
+        backend.link(9, new Binary(1, bytes(64, 3)));
+        cache.store("C", 9);
+        cache.store("D", 9);
+        cache.invalidate("C");
+        check(!Files.exists(cache.getFile("C")) && Files.exists(cache.getFile("D")), "Invalidation removes one entry");
+        cache.clear();
+        check(files() == 0, "Clearing removes every entry");
+        log.info("Invalidation passed.");
+    }
+
+    public void testCorruption() throws IOException {
+        final OGLProgramBinaryCache cache = new OGLProgramBinaryCache(dir, backend);
+        backend.link(10, new Binary(1, bytes(256, 4)));
+
+        /* Flipped Byte In The Binary */
+        cache.store("E", 10);
+        byte[] entry = Files.readAllBytes(cache.getFile("E"));
+        entry[entry.length - 100] ^= 1;
+        Files.write(cache.getFile("E"), entry);
+        check(cache.load("E") == 0 && cache.getRejected() == 1 && !Files.exists(cache.getFile("E")), "Corrupt entry is deleted");
+
+        /* Truncated Entry */
+        cache.store("E", 10);
+        entry = Files.readAllBytes(cache.getFile("E"));
+        Files.write(cache.getFile("E"), Arrays.copyOf(entry, entry.length / 2));
+        check(cache.load("E") == 0 && cache.getRejected() == 2, "Truncated entry is rejected");
+
+        /* Entry Stored Under The Wrong Name */
+        cache.store("F", 10);
+        Files.copy(cache.getFile("F"), cache.getFile("G"));
+        check(cache.load("G") == 0 && cache.getRejected() == 3 && cache.load("F") != 0, "Entry for a different key is rejected");
+
+        /* Driver Refuses The Binary */
+        backend.reject = true;
+        check(cache.load("F") == 0 && cache.getRejected() == 4 && !Files.exists(cache.getFile("F")), "Binary rejected by the driver is deleted");
+        backend.reject = false;
+        cache.clear();
+        log.info("Corruption passed.");
+    }
+
+    public void testUnsupported() throws IOException {
+        final StubBackend unsupported = new StubBackend();
+        unsupported.supported = false;
+        final OGLProgramBinaryCache cache = new OGLProgramBinaryCache(dir, unsupported);
+        unsupported.link(11, new Binary(1, bytes(16, 5)));
+        cache.prepare(11);
+        check(unsupported.retrievable.isEmpty(), "Unsupported drivers are not asked for retrievable programs");
+        check(!cache.store("H", 11) && cache.load("H") == 0 && files() == 0, "Unsupported drivers never store");
+        log.info("Unsupported passed.");
+    }
+
+    public void testProgramCache() throws Exception {
+        final OGLShader vert = new OGLShader(AssetKey.getKey("Shaders/cached.vert"), OGLShader.Type.Vertex, "#version 330 core\nvoid main() {}\n");
+        final OGLShader frag = new OGLShader(AssetKey.getKey("Shaders/cached.frag"), OGLShader.Type.Fragment, "#version 330 core\nout vec4 c;\nvoid main() { c = vec4(1); }\n");
+        final Map<String, String> defines = Collections.singletonMap("LIGHTS", "2");
+
+        final OGLProgramBinaryCache binaries = new OGLProgramBinaryCache(dir, backend);
+        backend.link(12, new Binary(1, bytes(512, 6)));
+        binaries.store(OGLProgramCache.getKey(defines, vert, frag), 12);
+
+        final OGLProgramCache programs = new OGLProgramCache();
+        programs.setBinaryCache(binaries);
+        final OGLShaderProgram program = programs.get("Cached", defines, frag, vert);
+        check(backend.loaded.containsKey(program.getId()) && binaries.getHits() == 1, "Program is restored from its binary");
+        check(!vert.getVariant(defines).isCompiled() && programs.getShaderCount() == 0, "Restored programs compile no shaders");
+        check(programs.get("Cached", defines, vert, frag) == program && programs.getHits() == 1 && programs.getMisses() == 1, "Restored program is cached in memory");
+        log.info("Program cache passed.");
+    }
+
+    private int files() throws IOException {
+        int count = 0;
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (final Path file : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void deleteDir() throws IOException {
+        try (final DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (final Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private static byte[] bytes(final int length, final int seed) {
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    /**
+     * Records linked programs and loaded binaries in place of OpenGL.
+     */
+    private static final class StubBackend implements OGLProgramBinaryCache.Backend {
+
+        private final String driver;
+        private final Map<Integer, Binary> linked = new HashMap<>(), loaded = new HashMap<>();
+        private final Set<Integer> retrievable = new HashSet<>();
+        private boolean supported = true, reject;
+        private int nextId = 1000;
+
+        private StubBackend() {
+            this("Vendor | Renderer | 4.6.0");
+        }
+
+        private StubBackend(final String driver) {
+            this.driver = driver;
+        }
+
+        private void link(final int program, final Binary binary) {
+            linked.put(program, binary);
+        }
+
+        @Override
+        public String getDriver() {
+            return driver;
+        }
+
+        @Override
+        public boolean isSupported() {
+            return supported;
+        }
+
+        @Override
+        public void setRetrievable(final int program) {
+            retrievable.add(program);
+        }
+
+        @Override
+        public Binary getBinary(final int program) {
+            return linked.get(program);
+        }
+
+        @Override
+        public int loadBinary(final Binary binary) {
+            if (reject) {
+                return 0;
+            }
+            loaded.put(++nextId, binary);
+            return nextId;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package net.cybertekt.scene;
+
+import java.util.Arrays;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.math.AABB;
+import net.cybertekt.math.BoundingSphere;
+import net.cybertekt.math.Frustum;
+import net.cybertekt.math.Transform;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Culling Unit Test - (C) Cybertekt Software
+ *
+ * Verifies bounding volume transforms and frustum tests, checks that the
+ * {@link BoundingVolumeHierarchy} returns exactly the objects found by a
+ * brute-force test after builds, refits, and removals, and measures culling
+ * throughput at 10k, 100k, and 1M objects.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class CullingTest {
+
+    public static final Logger log = LoggerFactory.getLogger(CullingTest.class);
+
+    /* World space extent of the randomly placed test objects */
+    private static final float WORLD = 1000f;
+
+    private final Random rng = new Random(29);
+
+    public static void main(final String[] args) {
+        CullingTest app = new CullingTest();
+        app.testBoundingVolumes();
+        app.testFrustum();
+        app.testHierarchy();
+        for (final int count : new int[]{10000, 100000, 1000000}) {
+            app.testThroughput(count);
+        }
+        log.info("All culling tests passed.");
+    }
+
+    public void testBoundingVolumes() {
+        Transform t = new Transform(new Vector3f(10f, -5f, 2f), new Quaternionf().rotateXYZ(0.5f, 1.1f, -0.7f), new Vector3f(2f, 0.5f, 3f));
+        AABB box = new AABB(-1f, -2f, -3f, 4f, 5f, 6f);
+        AABB transformed = box.transform(t, new AABB());
+
+        /* Brute Force: Transform All Eight Corners */
+        AABB expected = new AABB();
+        Vector3f corner = new Vector3f();
+        for (int i = 0; i < 8; i++) {
+            corner.set((i & 1) == 0 ? box.minX : box.maxX, (i & 2) == 0 ? box.minY : box.maxY, (i & 4) == 0 ? box.minZ : box.maxZ);
+            t.getTransformMatrix().transformPosition(corner);
+            expected.merge(corner.x, corner.y, corner.z);
+        }
+        check(close(expected.minX, transformed.minX) && close(expected.maxY, transformed.maxY) && close(expected.maxZ, transformed.maxZ), "Transformed box matches transformed corners\n" + expected + "\n" + transformed);
+
+        float[] vertices = {-1f, 0f, 0f, 1f, 0f, 0f, 0f, 2f, 0f, 0f, 0f, -1f};
+        AABB meshBox = new AABB().set(vertices, 0, 4, 3);
+        BoundingSphere sphere = new BoundingSphere().set(vertices, 0, 4, 3, meshBox);
+        check(meshBox.minY == 0f && meshBox.maxY == 2f && meshBox.minZ == -1f, "Box encloses the vertex positions");
+        check(sphere.y == 1f && sphere.z == -0.5f && close(sphere.radius, 1.5f), "Sphere encloses the vertex positions: " + sphere);
+
+        BoundingSphere moved = sphere.transform(t, new BoundingSphere());
+        check(close(moved.radius, sphere.radius * 3f), "Sphere radius uses the largest scale");
+        log.info("Bounding volumes passed.");
+    }
+
+    public void testFrustum() {
+        Frustum frustum = new Frustum(camera());
+        check(frustum.test(-1f, -1f, -101f, 1f, 1f, -99f) == Frustum.INSIDE, "Box in front of the camera is inside");
+        check(frustum.test(-1f, -1f, 99f, 1f, 1f, 101f) == Frustum.OUTSIDE, "Box behind the camera is outside");
+        check(frustum.test(-1f, -1f, -2000f, 1f, 1f, -100f) == Frustum.INTERSECTS, "Box crossing the far plane intersects");
+        check(frustum.test(0f, 0f, -50f, 1f) == Frustum.INSIDE && frustum.test(0f, 0f, 50f, 1f) == Frustum.OUTSIDE, "Sphere tests agree with box tests");
+        log.info("Frustum passed.");
+    }
+
+    public void testHierarchy() {
+        BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(16);
+        Frustum frustum = new Frustum(camera());
+        int count = 20000;
+        int[] handles = new int[count];
+        AABB box = new AABB();
+        for (int i = 0; i < count; i++) {
+            handles[i] = bvh.add(randomBox(box));
+        }
+        int[] result = new int[count];
+        compare(bvh, frustum, result, "built tree");
+
+        /* Move A Tenth Of The Objects And Refit */
+        for (int i = 0; i < count; i += 10) {
+            bvh.update(handles[i], randomBox(box));
+        }
+        compare(bvh, frustum, result, "refit tree");
+
+        /* Move Everything (Full Refit) */
+        for (int i = 0; i < count; i++) {
+            bvh.update(handles[i], randomBox(box));
+        }
+        compare(bvh, frustum, result, "fully refit tree");
+
+        /* Remove Half Of The Objects */
+        for (int i = 0; i < count; i += 2) {
+            bvh.remove(handles[i]);
+        }
+        compare(bvh, frustum, result, "rebuilt tree");
+        check(bvh.getObjectCount() == count / 2, "Removed objects are not counted");
+        check(bvh.add(box) % 2 == 0, "Removed handles are reused");
+
+        /* Parallel Culling Returns The Same Set */
+        bvh.setParallelThreshold(1);
+        compare(bvh, frustum, result, "parallel cull");
+        log.info("Hierarchy passed.");
+    }
+
+    public void testThroughput(final int count) {
+        BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(count);
+        AABB box = new AABB();
+        for (int i = 0; i < count; i++) {
+            bvh.add(randomBox(box));
+        }
+        long time = System.nanoTime();
+        bvh.update();
+        long build = System.nanoTime() - time;
+
+        int[] result = new int[count];
+        Matrix4f camera = new Matrix4f();
+        Frustum frustum = new Frustum();
+        int iterations = Math.max(10, 10000000 / count);
+        for (final int threshold : new int[]{0, 1}) {
+            bvh.setParallelThreshold(threshold);
+            int visible = 0;
+            for (int i = 0; i < iterations; i++) {
+                visible += bvh.cull(frustum.set(orbit(camera, i)), result);
+            }
+            time = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                visible += bvh.cull(frustum.set(orbit(camera, i)), result);
+            }
+            long elapsed = (System.nanoTime() - time) / iterations;
+            log.info("{} objects ({}) - Build [{}ms] - Cull [{}us] - {} Mobjects/s - {} visible", count, threshold == 0 ? "Sequential" : "Parallel", build / 1000000, elapsed / 1000, count * 1000L / Math.max(1, elapsed), visible / (2 * iterations));
+        }
+
+        /* Brute Force Baseline */
+        AABB[] boxes = new AABB[count];
+        for (int i = 0; i < count; i++) {
+            boxes[i] = new AABB();
+        }
+        for (int i = 0; i < count; i++) {
+            bvh.getBounds(i, boxes[i]);
+        }
+        time = System.nanoTime();
+        int visible = 0;
+        for (int i = 0; i < iterations; i++) {
+            frustum.set(orbit(camera, i));
+            for (final AABB b : boxes) {
+                if (frustum.test(b) != Frustum.OUTSIDE) {
+                    visible++;
+                }
+            }
+        }
+        long elapsed = (System.nanoTime() - time) / iterations;
+        log.info("{} objects (Brute Force) - Cull [{}us] - {} Mobjects/s - {} visible", count, elapsed / 1000, count * 1000L / Math.max(1, elapsed), visible / iterations);
+    }
+
+    private void compare(final BoundingVolumeHierarchy bvh, final Frustum frustum, final int[] result, final String description) {
+        int visible = bvh.cull(frustum, result);
+        int[] actual = Arrays.copyOf(result, visible);
+        Arrays.sort(actual);
+
+        int[] expected = new int[bvh.getObjectCount()];
+        int found = 0;
+        AABB box = new AABB();
+        for (int h = 0; found < expected.length && h < expected.length * 4; h++) {
+            try {
+                bvh.getBounds(h, box);
+            } catch (final IllegalArgumentException e) {
+                continue;
+            }
+            if (frustum.test(box) != Frustum.OUTSIDE) {
+                expected[found++] = h;
+            }
+        }
+        check(Arrays.equals(Arrays.copyOf(expected, found), actual), "Culling the " + description + " matches brute force (" + visible + " vs " + found + ")");
+    }
+
+    private AABB randomBox(final AABB dest) {
+        float x = (rng.nextFloat() - 0.5f) * WORLD, y = (rng.nextFloat() - 0.5f) * WORLD, z = (rng.nextFloat() - 0.5f) * WORLD;
+        float size = 0.5f + rng.nextFloat() * 4f;
+        return dest.set(x - size, y - size, z - size, x + size, y + size, z + size);
+    }
+
+    private static Matrix4f camera() {
+        return new Matrix4f().perspective((float) Math.toRadians(60), 16f / 9f, 0.1f, 1000f).lookAt(0f, 0f, 0f, 0f, 0f, -1f, 0f, 1f, 0f);
+    }
+
+    private static Matrix4f orbit(final Matrix4f dest, final int frame) {
+        float angle = frame * 0.01f;
+        return dest.setPerspective((float) Math.toRadians(60), 16f / 9f, 0.1f, WORLD).lookAt(0f, 0f, 0f, (float) Math.sin(angle), 0f, (float) Math.cos(angle), 0f, 1f, 0f);
+    }
+
+    private static boolean close(final float a, final float b) {
+        return Math.abs(a - b) < 1e-4f * Math.max(1f, Math.abs(a));
+    }
+}
@@ -0,0 +1,158 @@
+package net.cybertekt.scene;
+
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import net.cybertekt.math.Transform;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scene Graph Unit Test - (C) Cybertekt Software
+ *
+ * Verifies the world matrices produced by the {@link SceneGraph} against JOML,
+ * checks that dirty flags only recompute changed subtrees, and measures the
+ * update speed of a large hierarchy with and without parallel level updates.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class SceneGraphTest {
+
+    public static final Logger log = LoggerFactory.getLogger(SceneGraphTest.class);
+
+    public static void main(final String[] args) {
+        SceneGraphTest app = new SceneGraphTest();
+        app.testWorldMatrices();
+        app.testDirtyPropagation();
+        app.testStructuralChanges();
+        app.testUpdateSpeed(args.length > 0 ? Integer.parseInt(args[0]) : 1000000);
+        log.info("All scene graph tests passed.");
+    }
+
+    public void testWorldMatrices() {
+        SceneGraph graph = new SceneGraph(4);
+        Transform parentLocal = new Transform(new Vector3f(1f, 2f, 3f), new Quaternionf().rotateXYZ(0.3f, 0.7f, -0.2f), new Vector3f(2f, 1f, 0.5f));
+        Transform childLocal = new Transform(new Vector3f(-4f, 0.5f, 2f), new Quaternionf().rotateXYZ(-1.1f, 0.2f, 0.9f), new Vector3f(1.5f, 1.5f, 1.5f));
+
+        int parent = graph.createNode();
+        int child = graph.createNode(parent);
+        graph.setLocal(parent, parentLocal);
+        graph.setLocal(child, childLocal);
+        graph.update();
+
+        Matrix4f expected = new Matrix4f(parentLocal.getTransformMatrix()).mul(childLocal.getTransformMatrix());
+        Matrix4f actual = graph.getWorldMatrix(child, new Matrix4f());
+        check(equals(expected, actual), "Child world matrix matches JOML\n" + expected + "\n" + actual);
+        check(equals(parentLocal.getTransformMatrix(), graph.getWorldMatrix(parent, new Matrix4f())), "Root world matrix matches its local matrix");
+        log.info("World matrices passed.");
+    }
+
+    public void testDirtyPropagation() {
+        SceneGraph graph = new SceneGraph();
+        int root = graph.createNode();
+        int a = graph.createNode(root);
+        int b = graph.createNode(root);
+        int a1 = graph.createNode(a);
+        int a2 = graph.createNode(a);
+        int b1 = graph.createNode(b);
+
+        check(graph.update() == 6, "Every new node is computed once");
+        check(graph.update() == 0, "Nothing is recomputed when nothing changed");
+
+        graph.setTranslation(a, 1f, 0f, 0f);
+        check(graph.update() == 3, "Only the changed subtree is recomputed");
+
+        graph.setScale(b1, 2f, 2f, 2f);
+        check(graph.update() == 1, "Only the changed leaf is recomputed");
+
+        graph.setRotation(root, 0f, 0f, 0.7071068f, 0.7071068f);
+        check(graph.update() == 6, "Changing the root recomputes everything");
+
+        Matrix4f m = graph.getWorldMatrix(a1, new Matrix4f());
+        check(Math.abs(m.m31() - 1f) < 1e-5f && Math.abs(m.m30()) < 1e-5f, "Rotated parent translation propagates to grandchildren: " + m.m30() + ", " + m.m31());
+        check(graph.getParent(a2) == a, "Parent handles are preserved");
+        log.info("Dirty propagation passed.");
+    }
+
+    public void testStructuralChanges() {
+        SceneGraph graph = new SceneGraph(2);
+        int rootA = graph.createNode();
+        int rootB = graph.createNode();
+        int child = graph.createNode(rootA);
+        int grandchild = graph.createNode(child);
+        graph.setTranslation(rootA, 1f, 0f, 0f);
+        graph.setTranslation(rootB, 0f, 10f, 0f);
+        graph.setTranslation(grandchild, 0f, 0f, 5f);
+        graph.update();
+
+        /* Late Root Breaks The Level Order And Forces A Reorder */
+        int late = graph.createNode();
+        graph.setParent(child, rootB);
+        graph.update();
+        Matrix4f m = graph.getWorldMatrix(grandchild, new Matrix4f());
+        check(m.m30() == 0f && m.m31() == 10f && m.m32() == 5f, "Reparented subtree follows its new parent");
+        check(graph.getSlot(late) < graph.getSlot(child), "Nodes are stored in depth order");
+
+        graph.remove(child);
+        graph.update();
+        check(graph.getNodeCount() == 3, "Removing a node removes its subtree");
+        try {
+            graph.getSlot(grandchild);
+            check(false, "Removed handles are rejected");
+        } catch (final IllegalArgumentException e) {
+        }
+        int reused = graph.createNode(late);
+        check(reused == child || reused == grandchild, "Removed handles are reused");
+        log.info("Structural changes passed.");
+    }
+
+    public void testUpdateSpeed(final int nodes) {
+        Random rng = new Random(27);
+        SceneGraph graph = new SceneGraph(nodes);
+        int[] handles = new int[nodes];
+        handles[0] = graph.createNode();
+        for (int i = 1; i < nodes; i++) {
+            handles[i] = graph.createNode(handles[rng.nextInt(Math.min(i, 1 + i / 8))]);
+            graph.setTranslation(handles[i], rng.nextFloat(), rng.nextFloat(), rng.nextFloat());
+        }
+        graph.update();
+
+        for (final int threshold : new int[]{0, SceneGraph.DEFAULT_PARALLEL_THRESHOLD}) {
+            graph.setParallelThreshold(threshold);
+            for (int warmup = 0; warmup < 20; warmup++) {
+                graph.markDirty(handles[0]);
+                graph.update();
+            }
+            long time = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                graph.markDirty(handles[0]);
+                graph.update();
+            }
+            long full = (System.nanoTime() - time) / 20;
+
+            time = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                graph.setTranslation(handles[nodes - 1 - i], 1f, 1f, 1f);
+                graph.update();
+            }
+            long sparse = (System.nanoTime() - time) / 20;
+            log.info("{} nodes ({}) - Full Update [{}us] - Sparse Update [{}us]", nodes, threshold == 0 ? "Sequential" : "Parallel", full / 1000, sparse / 1000);
+        }
+    }
+
+    private static boolean equals(final Matrix4fc a, final Matrix4fc b) {
+        float[] x = a.get(new float[16]);
+        float[] y = b.get(new float[16]);
+        for (int i = 0; i < 16; i++) {
+            if (Math.abs(x[i] - y[i]) > 1e-4f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,262 @@
+package net.cybertekt.util;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static net.cybertekt.Checks.check;
+import static net.cybertekt.Checks.waitFor;
+import net.cybertekt.util.CachedThreadPool.SubmitMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cached Thread Pool Unit Test - (C) Cybertekt Software
+ *
+ * Fills the bounded queue of a pool whose workers are held on a latch and
+ * checks each {@link SubmitMode}: blocking submitters wait for room, caller
+ * runs executes on the submitting thread, drop oldest evicts the head of the
+ * queue, and fail fast rejects. Then checks that concurrent submitters never
+ * push the pool past its maximum size, that idle workers retire to the core
+ * size, that graceful shutdown drains the queue without interrupting running
+ * tasks while immediate shutdown returns the queued tasks, and that the
+ * metrics and hooks agree with what ran.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class CachedThreadPoolTest {
+
+    public static final Logger log = LoggerFactory.getLogger(CachedThreadPoolTest.class);
+
+    public static void main(final String[] args) throws Exception {
+        CachedThreadPoolTest app = new CachedThreadPoolTest();
+        app.testSubmitModes();
+        app.testBounds();
+        app.testShutdown();
+        app.testShutdownNow();
+        app.testHooks();
+        log.info("All cached thread pool tests passed.");
+    }
+
+    public void testSubmitModes() throws Exception {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final AtomicInteger ran = new AtomicInteger();
+        final TrackingPool pool = new TrackingPool(1, 1, 4);
+        final Callable<Void> held = () -> {
+            gate.await();
+            ran.incrementAndGet();
+            return null;
+        };
+
+        /* Occupy The Only Worker, Then Fill The Queue */
+        pool.submit(held);
+        check(waitFor(() -> pool.activeThreads() == 1 && pool.queueDepth() == 0, 5000), "Worker takes the first task");
+        for (int i = 0; i < 4; i++) {
+            pool.submit(SubmitMode.FAIL_FAST, held);
+        }
+        check(pool.queueDepth() == 4, "Queue is full");
+
+        try {
+            pool.submit(SubmitMode.FAIL_FAST, held);
+            check(false, "Fail fast rejects when the queue is full");
+        } catch (final RejectedExecutionException e) {
+            /* Expected */
+        }
+
+        final Thread[] caller = new Thread[1];
+        pool.submit(SubmitMode.CALLER_RUNS, () -> {
+            caller[0] = Thread.currentThread();
+            return null;
+        });
+        check(caller[0] == Thread.currentThread(), "Caller runs executes on the submitting thread");
+
+        final Callable<Void> newest = () -> {
+            ran.addAndGet(100);
+            return null;
+        };
+        pool.submit(SubmitMode.DROP_OLDEST, newest);
+        check(pool.queueDepth() == 4 && pool.rejectedTasks.get() == 2, "Drop oldest evicts one queued task");
+
+        final AtomicInteger blocked = new AtomicInteger();
+        Thread submitter = new Thread(() -> {
+            pool.submit(SubmitMode.BLOCK, held);
+            blocked.incrementAndGet();
+        });
+        submitter.start();
+        Thread.sleep(100);
+        check(blocked.get() == 0 && submitter.isAlive(), "Blocking submission waits for room");
+
+        gate.countDown();
+        submitter.join(5000);
+        check(blocked.get() == 1, "Blocking submission completes once there is room");
+        check(waitFor(() -> ran.get() == 1 + 3 + 100 + 1, 5000), "Every accepted task runs");
+
+        CachedThreadPool.Metrics metrics = pool.getMetrics();
+        check(metrics.getRejectedTasks() == 1 && metrics.getDroppedTasks() == 1 && metrics.getCallerRunTasks() == 1, "Metrics count each submit mode: " + metrics);
+        check(metrics.getCompletedTasks() == 7 && metrics.getMaxWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(100), "Metrics record completions and queue waits: " + metrics);
+        shutdown(pool);
+        log.info("Submit modes passed - {}", metrics);
+    }
+
+    public void testBounds() throws Exception {
+        final TrackingPool pool = new TrackingPool(1, 4, 1000, 100L);
+        final AtomicInteger running = new AtomicInteger(), peak = new AtomicInteger();
+        final Callable<Void> task = () -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(1);
+            running.decrementAndGet();
+            return null;
+        };
+        Thread[] submitters = new Thread[8];
+        for (int s = 0; s < submitters.length; s++) {
+            submitters[s] = new Thread(() -> {
+                for (int i = 0; i < 250; i++) {
+                    pool.submit(SubmitMode.BLOCK, task);
+                }
+            });
+            submitters[s].start();
+        }
+        for (final Thread submitter : submitters) {
+            submitter.join();
+        }
+        check(waitFor(() -> pool.getMetrics().getCompletedTasks() == 2000, 30000), "Every task completes");
+        check(peak.get() <= 4 && pool.created.get() - pool.destroyed.get() <= 4, "Pool never exceeds its maximum size: " + peak.get());
+        check(pool.getMetrics().getSpawnedThreads() > 1, "Pool grows under load");
+        check(waitFor(() -> pool.totalThreads() == 1, 5000), "Idle workers retire to the core size");
+        CachedThreadPool.Metrics metrics = pool.getMetrics();
+        check(metrics.getSpawnedThreads() - metrics.getRetiredThreads() == 1, "Spawned and retired counts agree: " + metrics);
+        check(metrics.getSpawnedThreads() == pool.created.get() && metrics.getRetiredThreads() == pool.destroyed.get(), "Thread hooks match the metrics");
+        shutdown(pool);
+        log.info("Bounds passed - peak of {} running - {}", peak.get(), metrics);
+    }
+
+    public void testShutdown() throws Exception {
+        final TrackingPool pool = new TrackingPool(2, 2, 1000);
+        final AtomicInteger ran = new AtomicInteger(), interrupted = new AtomicInteger();
+        for (int i = 0; i < 500; i++) {
+            pool.submit(() -> {
+                try {
+                    Thread.sleep(1);
+                } catch (final InterruptedException e) {
+                    interrupted.incrementAndGet();
+                }
+                ran.incrementAndGet();
+                return null;
+            });
+        }
+        pool.shutdown();
+        try {
+            pool.submit(() -> null);
+            check(false, "Submission after shutdown is rejected");
+        } catch (final RejectedExecutionException e) {
+            /* Expected */
+        }
+        check(pool.awaitTermination(10, TimeUnit.SECONDS), "Workers exit after draining");
+        check(ran.get() == 500 && interrupted.get() == 0, "Graceful shutdown drains without interrupting tasks");
+        check(pool.totalThreads() == 0, "No workers remain");
+        log.info("Shutdown passed.");
+    }
+
+    public void testShutdownNow() throws Exception {
+        final TrackingPool pool = new TrackingPool(1, 1, 1000);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger interrupted = new AtomicInteger();
+        pool.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (final InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+            return null;
+        });
+        started.await();
+        for (int i = 0; i < 100; i++) {
+            pool.submit(() -> null);
+        }
+        List<Callable<Void>> remaining = pool.shutdownNow();
+        check(remaining.size() == 100, "Immediate shutdown returns the queued tasks");
+        check(pool.awaitTermination(5, TimeUnit.SECONDS), "Workers exit after immediate shutdown");
+        check(interrupted.get() == 1, "Immediate shutdown interrupts running tasks");
+        log.info("Shutdown now passed.");
+    }
+
+    public void testHooks() throws Exception {
+        final TrackingPool pool = new TrackingPool(2, 2, 100);
+        for (int i = 0; i < 100; i++) {
+            final boolean fail = i % 5 == 0;
+            pool.submit(() -> {
+                if (fail) {
+                    throw new IllegalStateException("Expected");
+                }
+                return null;
+            });
+        }
+        check(waitFor(() -> pool.completedTasks.get() + pool.failedTasks.get() == 100, 5000), "Every task reaches a hook");
+        CachedThreadPool.Metrics metrics = pool.getMetrics();
+        check(pool.completedTasks.get() == 80 && pool.failedTasks.get() == 20, "Hooks separate completed and failed tasks");
+        check(metrics.getCompletedTasks() == 80 && metrics.getFailedTasks() == 20 && metrics.getAverageRunNanos() >= 0, "Metrics match the hooks: " + metrics);
+        check(pool.legacyCompleted.get() == 80, "Timed hooks forward to the original hooks");
+        shutdown(pool);
+        log.info("Hooks passed.");
+    }
+
+    private static void shutdown(final CachedThreadPool<?> pool) throws InterruptedException {
+        pool.shutdown();
+        check(pool.awaitTermination(10, TimeUnit.SECONDS), "Pool terminates");
+    }
+
+    /**
+     * Counts every hook call.
+     */
+    private static final class TrackingPool extends CachedThreadPool<Callable<Void>> {
+
+        private final AtomicInteger created = new AtomicInteger(), destroyed = new AtomicInteger();
+        private final AtomicInteger completedTasks = new AtomicInteger(), failedTasks = new AtomicInteger();
+        private final AtomicInteger rejectedTasks = new AtomicInteger(), legacyCompleted = new AtomicInteger();
+
+        private TrackingPool(final int core, final int max, final int queue) {
+            this(core, max, queue, 1000L);
+        }
+
+        private TrackingPool(final int core, final int max, final int queue, final long timeoutMs) {
+            super(core, max, 1, queue, timeoutMs, TimeUnit.MILLISECONDS, Thread::new);
+        }
+
+        @Override
+        protected void taskCompleted(final Callable<Void> task) {
+            legacyCompleted.incrementAndGet();
+        }
+
+        @Override
+        protected void taskCompleted(final Callable<Void> task, final long waitNanos, final long runNanos) {
+            check(waitNanos >= 0 && runNanos >= 0, "Times are not negative");
+            completedTasks.incrementAndGet();
+            super.taskCompleted(task, waitNanos, runNanos);
+        }
+
+        @Override
+        protected void taskFailed(final Callable<Void> task, final Exception e, final long waitNanos, final long runNanos) {
+            failedTasks.incrementAndGet();
+        }
+
+        @Override
+        protected void taskRejected(final Callable<Void> task, final SubmitMode mode) {
+            rejectedTasks.incrementAndGet();
+        }
+
+        @Override
+        protected void threadCreated(final Thread t) {
+            created.incrementAndGet();
+        }
+
+        @Override
+        protected void threadDestroyed(final Thread t, final Exception reason) {
+            destroyed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package net.cybertekt.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import static net.cybertekt.Checks.check;
+import static net.cybertekt.Checks.waitFor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dynamic Thread Pool Unit Test - (C) Cybertekt Software
+ *
+ * Checks that every submitted task runs exactly once, whether submitted from
+ * outside the pool or from inside running tasks, that the completion and
+ * failure hooks are called, that the pool grows under load and shrinks back to
+ * its core size, and that pausing and shutting down hold and drain queued
+ * tasks. Then compares throughput for many small independent tasks and for
+ * recursive fan-out with {@link ForkJoinPool} and a fixed
+ * {@link ThreadPoolExecutor} sharing one queue.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class DynamicThreadPoolTest {
+
+    public static final Logger log = LoggerFactory.getLogger(DynamicThreadPoolTest.class);
+
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    public static void main(final String[] args) throws Exception {
+        final int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        DynamicThreadPoolTest app = new DynamicThreadPoolTest();
+        app.testExactlyOnce();
+        app.testNested();
+        app.testHooks();
+        app.testElastic();
+        app.testPause();
+        app.testShutdown();
+        app.benchmark(tasks);
+        log.info("All dynamic thread pool tests passed.");
+    }
+
+    public void testExactlyOnce() throws Exception {
+        final int count = 200000;
+        final AtomicIntegerArray runs = new AtomicIntegerArray(count);
+        final DynamicThreadPool<Callable<Void>> pool = new DynamicThreadPool<>(0, THREADS * 2, 2, 1L, TimeUnit.SECONDS, Thread::new);
+
+        /* Submit From Several Threads At Once */
+        Thread[] submitters = new Thread[4];
+        for (int s = 0; s < submitters.length; s++) {
+            final int first = s;
+            submitters[s] = new Thread(() -> {
+                for (int i = first; i < count; i += submitters.length) {
+                    final int index = i;
+                    pool.submit(() -> {
+                        runs.incrementAndGet(index);
+                        return null;
+                    });
+                }
+            });
+            submitters[s].start();
+        }
+        for (final Thread submitter : submitters) {
+            submitter.join();
+        }
+        check(waitFor(() -> pool.completedTasks() == count, 30000), "Every task completes");
+        for (int i = 0; i < count; i++) {
+            check(runs.get(i) == 1, "Task " + i + " ran exactly once");
+        }
+        check(pool.activeThreads() <= THREADS * 2, "Pool stays within its maximum size");
+        shutdown(pool);
+        log.info("Exactly once passed - {} workers, {} stolen.", THREADS * 2, pool.stolenTasks());
+    }
+
+    public void testNested() throws Exception {
+        final DynamicThreadPool<Callable<Void>> pool = new DynamicThreadPool<>(1, THREADS, 2, 1L, TimeUnit.SECONDS, Thread::new);
+        final AtomicInteger leaves = new AtomicInteger();
+        final int depth = 16;
+        pool.submit(new Fork(pool, depth, leaves));
+        check(waitFor(() -> pool.completedTasks() == (2L << depth) - 1, 30000), "Every nested task completes");
+        check(leaves.get() == 1 << depth, "Every leaf ran once");
+        shutdown(pool);
+        log.info("Nested passed - {} tasks, {} stolen.", pool.completedTasks(), pool.stolenTasks());
+    }
+
+    public void testHooks() throws Exception {
+        final AtomicInteger completed = new AtomicInteger(), failed = new AtomicInteger();
+        final DynamicThreadPool<Callable<Void>> pool = new DynamicThreadPool<Callable<Void>>(1, 2, 2, Thread::new) {
+            @Override
+            protected void onTaskComplete(final int id, final Callable<Void> task) {
+                completed.incrementAndGet();
+            }
+
+            @Override
+            protected void onTaskFail(final Callable<Void> task, final Exception e) {
+                check(e.getMessage().equals("Expected"), "Failure hook receives the exception");
+                failed.incrementAndGet();
+            }
+        };
+        for (int i = 0; i < 1000; i++) {
+            final boolean fail = i % 4 == 0;
+            pool.submit(() -> {
+                if (fail) {
+                    throw new IllegalStateException("Expected");
+                }
+                return null;
+            });
+        }
+        check(waitFor(() -> completed.get() + failed.get() == 1000, 10000), "Every task reaches a hook");
+        check(completed.get() == 750 && failed.get() == 250, "Hooks separate completed and failed tasks");
+        shutdown(pool);
+        log.info("Hooks passed.");
+    }
+
+    public void testElastic() throws Exception {
+        final DynamicThreadPool<Callable<Void>> pool = new DynamicThreadPool<>(1, 4, 1, 100L, TimeUnit.MILLISECONDS, Thread::new);
+        final AtomicInteger peak = new AtomicInteger();
+        for (int i = 0; i < 40; i++) {
+            pool.submit(() -> {
+                peak.accumulateAndGet(pool.activeThreads(), Math::max);
+                Thread.sleep(10);
+                return null;
+            });
+        }
+        check(waitFor(() -> pool.completedTasks() == 40, 10000), "Blocking tasks complete");
+        check(peak.get() > 1 && peak.get() <= 4, "Pool grows under load within its maximum: " + peak.get());
+        check(waitFor(() -> pool.activeThreads() == 1, 5000), "Pool shrinks back to its core size");
+
+        /* A Retired Pool Still Accepts Work */
+        pool.submit(() -> null);
+        check(waitFor(() -> pool.completedTasks() == 41, 5000), "Task after shrinking completes");
+        shutdown(pool);
+        log.info("Elastic passed - peak of {} workers.", peak.get());
+    }
+
+    public void testPause() throws Exception {
+        final DynamicThreadPool<Callable<Void>> pool = new DynamicThreadPool<>(2, 2, 2, Thread::new);
+        pool.pause();
+        check(pool.isPaused(), "Pool is paused");
+        for (int i = 0; i < 100; i++) {
+            pool.submit(() -> null);
+        }
+        Thread.sleep(100);
+        check(pool.completedTasks() == 0, "Paused pool runs no tasks");
+        pool.pause();
+        check(waitFor(() -> pool.completedTasks() == 100, 5000), "Resumed pool runs the held tasks");
+        shutdown(pool);
+        log.info("Pause passed.");
+    }
+
+    public void testShutdown() throws Exception {
+        final DynamicThreadPool<Callable<Void>> pool = new DynamicThreadPool<>(1, THREADS, 2, Thread::new);
+        final AtomicInteger ran = new AtomicInteger();
+        for (int i = 0; i < 10000; i++) {
+            pool.submit(() -> {
+                ran.incrementAndGet();
+                return null;
+            });
+        }
+        pool.shutdown();
+        check(pool.awaitTermination(10, TimeUnit.SECONDS), "Workers exit after shutdown");
+        check(ran.get() == 10000, "Queued tasks drain before the workers exit");
+        check(pool.activeThreads() == 0, "No workers remain");
+        try {
+            pool.submit(() -> null);
+            check(false, "Submission after shutdown is rejected");
+        } catch (final RejectedExecutionException e) {
+            /* Expected */
+        }
+        log.info("Shutdown passed.");
+    }
+
+    public void benchmark(final int tasks) throws Exception {
+        final int depth = 31 - Integer.numberOfLeadingZeros(tasks);
+        for (int pass = 0; pass < 3; pass++) {
+            /* Small Independent Tasks Submitted From Outside The Pool */
+            final DynamicThreadPool<Callable<Void>> pool = new DynamicThreadPool<>(THREADS, THREADS, 2, Thread::new);
+            CountDownLatch done = new CountDownLatch(tasks);
+            long time = System.nanoTime();
+            for (int i = 0; i < tasks; i++) {
+                pool.submit(() -> {
+                    done.countDown();
+                    return null;
+                });
+            }
+            done.await();
+            long dynamic = System.nanoTime() - time;
+
+            final ForkJoinPool forkJoin = new ForkJoinPool(THREADS);
+            CountDownLatch fjDone = new CountDownLatch(tasks);
+            time = System.nanoTime();
+            for (int i = 0; i < tasks; i++) {
+                forkJoin.execute(fjDone::countDown);
+            }
+            fjDone.await();
+            long fj = System.nanoTime() - time;
+
+            final ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(THREADS);
+            CountDownLatch exDone = new CountDownLatch(tasks);
+            time = System.nanoTime();
+            for (int i = 0; i < tasks; i++) {
+                executor.execute(exDone::countDown);
+            }
+            exDone.await();
+            long shared = System.nanoTime() - time;
+            log.info("Pass {} - {} external tasks - DynamicThreadPool [{}ms] - ForkJoinPool [{}ms] - ThreadPoolExecutor [{}ms]",
+                    pass, tasks, dynamic / 1000000, fj / 1000000, shared / 1000000);
+
+            /* Recursive Fan-Out From Inside The Pool */
+            AtomicInteger leaves = new AtomicInteger();
+            time = System.nanoTime();
+            final long before = pool.completedTasks();
+            pool.submit(new Fork(pool, depth, leaves));
+            check(waitFor(() -> pool.completedTasks() - before == (2L << depth) - 1, 60000), "Fan-out completes");
+            long dynamicFork = System.nanoTime() - time;
+
+            CountDownLatch fjLeaves = new CountDownLatch(1 << depth);
+            time = System.nanoTime();
+            forkJoin.execute(new ForkAction(depth, fjLeaves));
+            fjLeaves.await();
+            long fjFork = System.nanoTime() - time;
+            log.info("Pass {} - {} fan-out tasks - DynamicThreadPool [{}ms, {} stolen] - ForkJoinPool [{}ms]",
+                    pass, (2L << depth) - 1, dynamicFork / 1000000, pool.stolenTasks(), fjFork / 1000000);
+
+            shutdown(pool);
+            forkJoin.shutdown();
+            executor.shutdown();
+        }
+    }
+
+    private static void shutdown(final DynamicThreadPool<?> pool) throws InterruptedException {
+        pool.shutdown();
+        check(pool.awaitTermination(10, TimeUnit.SECONDS), "Pool terminates");
+    }
+
+    /**
+     * Splits into two subtasks submitted to the pool until the depth reaches
+     * zero.
+     */
+    private static final class Fork implements Callable<Void> {
+
+        private final DynamicThreadPool<Callable<Void>> pool;
+        private final int depth;
+        private final AtomicInteger leaves;
+
+        private Fork(final DynamicThreadPool<Callable<Void>> pool, final int depth, final AtomicInteger leaves) {
+            this.pool = pool;
+            this.depth = depth;
+            this.leaves = leaves;
+        }
+
+        @Override
+        public Void call() {
+            if (depth == 0) {
+                leaves.incrementAndGet();
+            } else {
+                pool.submit(new Fork(pool, depth - 1, leaves));
+                pool.submit(new Fork(pool, depth - 1, leaves));
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The same fan-out as {@link Fork} for a {@link ForkJoinPool}.
+     */
+    private static final class ForkAction extends java.util.concurrent.RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int depth;
+        private final CountDownLatch leaves;
+
+        private ForkAction(final int depth, final CountDownLatch leaves) {
+            this.depth = depth;
+            this.leaves = leaves;
+        }
+
+        @Override
+        protected void compute() {
+            if (depth == 0) {
+                leaves.countDown();
+            } else {
+                new ForkAction(depth - 1, leaves).fork();
+                new ForkAction(depth - 1, leaves).fork();
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package net.cybertekt.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encoder Unit Test - (C) Cybertekt Software
+ *
+ * Checks hex and Base64 encoding against reference implementations for every
+ * byte value and many lengths, that invalid input is rejected, and that the
+ * streaming Base64 wrappers round trip data written in uneven chunks. Then
+ * uses the per-thread allocation counter of the JVM to show that encoding
+ * into preallocated targets allocates nothing, and compares hex throughput
+ * with the previous per-byte string formatting.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class EncoderTest {
+
+    public static final Logger log = LoggerFactory.getLogger(EncoderTest.class);
+
+    private static final int OPERATIONS = 200000;
+
+    private final Random rng = new Random(39);
+
+    public static void main(final String[] args) throws IOException {
+        EncoderTest app = new EncoderTest();
+        app.testHex();
+        app.testInvalidHex();
+        app.testBase64();
+        app.testStreams();
+        app.testAllocation();
+        app.testSpeed();
+        log.info("All encoder tests passed.");
+    }
+
+    public void testHex() {
+        byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+        }
+        check(Encoder.toHex(all).equals(referenceHex(all)), "Every byte value matches the reference");
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            rng.nextBytes(data);
+            String hex = Encoder.toHex(data);
+            check(hex.equals(referenceHex(data)), "Hex matches the reference");
+            check(Arrays.equals(Encoder.fromHex(hex), data), "Hex round trips");
+            check(Arrays.equals(Encoder.fromHex(hex.toUpperCase()), data), "Upper case hex decodes");
+
+            char[] chars = new char[length * 2 + 3];
+            check(Encoder.toHex(data, 0, length, chars, 3) == length * 2, "Character count is returned");
+            byte[] decoded = new byte[length + 1];
+            check(Encoder.fromHex(chars, 3, length * 2, decoded, 1) == length && Arrays.equals(Arrays.copyOfRange(decoded, 1, length + 1), data), "Character array round trips at an offset");
+
+            byte[] ascii = new byte[length * 2];
+            Encoder.toHex(data, 0, length, ascii, 0);
+            check(new String(ascii).equals(hex), "ASCII digits match");
+
+            ByteBuffer src = ByteBuffer.wrap(data), dst = ByteBuffer.allocateDirect(length * 2);
+            Encoder.toHex(src, dst);
+            dst.flip();
+            ByteBuffer back = ByteBuffer.allocate(length);
+            Encoder.fromHex(dst, back);
+            check(!src.hasRemaining() && !dst.hasRemaining() && Arrays.equals(back.array(), data), "Buffers round trip");
+            check(Encoder.appendHex(new StringBuilder("0x"), data).toString().equals("0x" + hex), "Appended hex matches");
+        }
+        log.info("Hex passed.");
+    }
+
+    public void testInvalidHex() {
+        for (final String bad : new String[]{"0", "abc", "zz", "0g", "\u00e900", "12 4"}) {
+            try {
+                Encoder.fromHex(bad);
+                check(false, "Invalid hex \"" + bad + "\" is rejected");
+            } catch (final IllegalArgumentException e) {
+                /* Expected */
+            }
+        }
+        log.info("Invalid hex passed.");
+    }
+
+    public void testBase64() {
+        for (int length = 0; length < 100; length++) {
+            byte[] data = new byte[length];
+            rng.nextBytes(data);
+            String base64 = Encoder.toBASE64(data);
+            check(base64.equals(Base64.getEncoder().encodeToString(data)), "Base64 matches java.util.Base64");
+            check(base64.length() == Encoder.getBASE64Length(length), "Base64 length is predicted");
+            check(Arrays.equals(Encoder.fromBASE64(base64), data), "Base64 round trips");
+            byte[] encoded = new byte[Encoder.getBASE64Length(length)];
+            check(Encoder.toBASE64(data, encoded) == encoded.length, "Base64 fills the target");
+            byte[] decoded = new byte[length];
+            check(Encoder.fromBASE64(encoded, decoded) == length && Arrays.equals(decoded, data), "Base64 arrays round trip");
+        }
+        log.info("Base64 passed.");
+    }
+
+    public void testStreams() throws IOException {
+        byte[] data = new byte[100000];
+        rng.nextBytes(data);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        try (OutputStream out = Encoder.toBASE64(encoded)) {
+            for (int offset = 0; offset < data.length;) {
+                int chunk = Math.min(data.length - offset, 1 + rng.nextInt(1000));
+                out.write(data, offset, chunk);
+                offset += chunk;
+            }
+        }
+        check(new String(encoded.toByteArray()).equals(Encoder.toBASE64(data)), "Streamed encoding matches");
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (InputStream in = Encoder.fromBASE64(new ByteArrayInputStream(encoded.toByteArray()))) {
+            byte[] buffer = new byte[777];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                decoded.write(buffer, 0, read);
+            }
+        }
+        check(Arrays.equals(decoded.toByteArray(), data), "Streamed decoding round trips");
+        log.info("Streams passed.");
+    }
+
+    public void testAllocation() {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            log.info("Allocation counting is not supported - Skipped");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        final long thread = Thread.currentThread().getId();
+        final byte[] data = new byte[64];
+        rng.nextBytes(data);
+        final char[] chars = new char[128];
+        final byte[] ascii = new byte[128], decoded = new byte[64], base64 = new byte[Encoder.getBASE64Length(64)];
+        final ByteBuffer src = ByteBuffer.allocateDirect(64), dst = ByteBuffer.allocateDirect(128);
+        final StringBuilder builder = new StringBuilder(128);
+        src.put(data).flip();
+
+        final Runnable[] operations = {
+            () -> Encoder.toHex(data, 0, data.length, chars, 0),
+            () -> Encoder.toHex(data, 0, data.length, ascii, 0),
+            () -> Encoder.fromHex(chars, 0, chars.length, decoded, 0),
+            () -> {
+                src.rewind();
+                dst.clear();
+                Encoder.toHex(src, dst);
+            },
+            () -> {
+                builder.setLength(0);
+                Encoder.appendHex(builder, data);
+            },
+            () -> Encoder.toBASE64(data, base64),
+            () -> Encoder.fromBASE64(base64, decoded)
+        };
+        final String[] names = {"toHex char[]", "toHex byte[]", "fromHex char[]", "toHex ByteBuffer", "appendHex", "toBASE64 byte[]", "fromBASE64 byte[]"};
+        for (int op = 0; op < operations.length; op++) {
+            for (int i = 0; i < OPERATIONS; i++) {
+                operations[op].run();
+            }
+            long before = threads.getThreadAllocatedBytes(thread);
+            long overhead = threads.getThreadAllocatedBytes(thread) - before;
+            before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < OPERATIONS; i++) {
+                operations[op].run();
+            }
+            long allocated = threads.getThreadAllocatedBytes(thread) - before - overhead;
+            log.info("{} - {} bytes allocated over {} operations", names[op], allocated, OPERATIONS);
+            check(allocated < OPERATIONS / 100, names[op] + " does not allocate per operation");
+        }
+        check(Arrays.equals(decoded, data), "Decoded data survived the allocation test");
+        log.info("Allocation passed.");
+    }
+
+    public void testSpeed() {
+        final byte[][] keys = new byte[256][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new byte[91];
+            rng.nextBytes(keys[i]);
+        }
+        final char[] chars = new char[182];
+        for (int pass = 0; pass < 3; pass++) {
+            long sink = 0;
+            long time = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink += referenceHex(keys[i & 255]).length();
+            }
+            long reference = System.nanoTime() - time;
+            time = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink += Encoder.toHex(keys[i & 255]).length();
+            }
+            long string = System.nanoTime() - time;
+            time = System.nanoTime();
+            for (int i = 0; i < OPERATIONS; i++) {
+                sink += Encoder.toHex(keys[i & 255], 0, 91, chars, 0);
+            }
+            long array = System.nanoTime() - time;
+            log.info("Pass {} - {} keys of 91 bytes - Per-Byte Strings [{}ms] - toHex String [{}ms] - toHex char[] [{}ms] ({})", pass, OPERATIONS, reference / 1000000, string / 1000000, array / 1000000, sink & 1);
+        }
+    }
+
+    /**
+     * The previous implementation, which formats each byte as a string.
+     */
+    private static String referenceHex(final byte[] data) {
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < data.length; ++i) {
+            hex.append(Integer.toHexString(0x0100 + (data[i] & 0x00FF)).substring(1));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,206 @@
+package net.cybertekt.util;
+
+import java.util.Random;
+import static net.cybertekt.Checks.check;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fast Math Unit Test - (C) Cybertekt Software
+ *
+ * Measures the maximum error of the {@link FastMath} approximations against
+ * java.lang.Math and fails if any exceeds its documented bound, verifies that
+ * the single precision floor and ceil match java.lang.Math, and then compares
+ * the throughput of the exact, fast, and batched functions.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class FastMathTest {
+
+    public static final Logger log = LoggerFactory.getLogger(FastMathTest.class);
+
+    private static final int SAMPLES = 4000000;
+
+    public static void main(final String[] args) {
+        FastMathTest app = new FastMathTest();
+        app.testTrigAccuracy();
+        app.testAtan2Accuracy();
+        app.testInvSqrtAccuracy();
+        app.testFloorCeil();
+        app.testBatch();
+        app.testSpeed();
+        log.info("All fast math tests passed.");
+    }
+
+    public void testTrigAccuracy() {
+        float sinSmall = 0f, cosSmall = 0f, sinLarge = 0f, cosLarge = 0f;
+        for (int i = 0; i <= SAMPLES; i++) {
+            final float small = -FastMath.PI + 2f * FastMath.PI * i / SAMPLES;
+            final float large = -FastMath.FAST_TRIG_LIMIT + 2f * FastMath.FAST_TRIG_LIMIT * i / SAMPLES;
+            sinSmall = Math.max(sinSmall, (float) Math.abs(FastMath.fastSin(small) - Math.sin(small)));
+            cosSmall = Math.max(cosSmall, (float) Math.abs(FastMath.fastCos(small) - Math.cos(small)));
+            sinLarge = Math.max(sinLarge, (float) Math.abs(FastMath.fastSin(large) - Math.sin(large)));
+            cosLarge = Math.max(cosLarge, (float) Math.abs(FastMath.fastCos(large) - Math.cos(large)));
+        }
+        log.info("fastSin max error {} (|x| <= PI), {} (|x| <= {})", sinSmall, sinLarge, FastMath.FAST_TRIG_LIMIT);
+        log.info("fastCos max error {} (|x| <= PI), {} (|x| <= {})", cosSmall, cosLarge, FastMath.FAST_TRIG_LIMIT);
+        check(sinSmall <= 2.4e-7f && cosSmall <= 2.4e-7f, "Sine and cosine are within 2.4e-7 for |x| <= PI");
+        check(sinLarge <= 5e-7f && cosLarge <= 5e-7f, "Sine and cosine are within 5e-7 for |x| <= FAST_TRIG_LIMIT");
+    }
+
+    public void testAtan2Accuracy() {
+        Random rng = new Random(30);
+        float max = 0f;
+        for (int i = 0; i < SAMPLES; i++) {
+            final float y = (rng.nextFloat() - 0.5f) * (i % 2 == 0 ? 2f : 2000f);
+            final float x = (rng.nextFloat() - 0.5f) * (i % 3 == 0 ? 2f : 2000f);
+            max = Math.max(max, (float) Math.abs(FastMath.fastAtan2(y, x) - Math.atan2(y, x)));
+        }
+        for (final float[] axis : new float[][]{{0f, 1f}, {1f, 0f}, {0f, -1f}, {-1f, 0f}, {1f, 1f}, {-1f, -1f}}) {
+            max = Math.max(max, (float) Math.abs(FastMath.fastAtan2(axis[0], axis[1]) - Math.atan2(axis[0], axis[1])));
+        }
+        log.info("fastAtan2 max error {}", max);
+        check(max <= 4e-7f, "Arctangent is within 4e-7");
+        check(FastMath.fastAtan2(0f, 0f) == 0f, "Arctangent of the origin is zero");
+    }
+
+    public void testInvSqrtAccuracy() {
+        float max = 0f;
+        for (int i = 0; i < SAMPLES; i++) {
+            final float x = Float.intBitsToFloat(Float.floatToRawIntBits(Float.MIN_NORMAL) + (int) ((long) i * (Float.floatToRawIntBits(Float.MAX_VALUE) - Float.floatToRawIntBits(Float.MIN_NORMAL)) / SAMPLES));
+            final double exact = 1d / Math.sqrt(x);
+            max = Math.max(max, (float) (Math.abs(FastMath.invSqrt(x) - exact) / exact));
+        }
+        log.info("invSqrt max relative error {}", max);
+        check(max <= 5e-6f, "Inverse square root is within a relative error of 5e-6");
+        check(FastMath.invSqrtExact(4f) == 0.5f, "Exact inverse square root is exact");
+    }
+
+    public void testFloorCeil() {
+        Random rng = new Random(30);
+        for (int i = 0; i < SAMPLES; i++) {
+            final float x = i % 4 == 0 ? Float.intBitsToFloat(rng.nextInt()) : (rng.nextFloat() - 0.5f) * (1 << (i % 30));
+            if (Float.isNaN(x)) {
+                check(Float.isNaN(FastMath.floor(x)) && Float.isNaN(FastMath.ceil(x)), "NaN is returned unchanged");
+                continue;
+            }
+            check(FastMath.floor(x) == (float) Math.floor(x), "floor(" + x + ") = " + FastMath.floor(x));
+            check(FastMath.ceil(x) == (float) Math.ceil(x), "ceil(" + x + ") = " + FastMath.ceil(x));
+        }
+        check(FastMath.floor(-0.5f) == -1f && FastMath.ceil(-0.5f) == 0f && FastMath.floor(3f) == 3f, "Boundary values round correctly");
+        check(FastMath.floor(Float.NEGATIVE_INFINITY) == Float.NEGATIVE_INFINITY, "Infinity is returned unchanged");
+        log.info("Floor and ceil passed.");
+    }
+
+    public void testBatch() {
+        Random rng = new Random(30);
+        float[] in = new float[10007];
+        float[] out = new float[in.length];
+        for (int i = 0; i < in.length; i++) {
+            in[i] = (rng.nextFloat() - 0.5f) * 200f;
+        }
+        FastMath.fastSin(in, out);
+        for (int i = 0; i < in.length; i++) {
+            check(out[i] == FastMath.fastSin(in[i]), "Batch sine matches scalar sine");
+        }
+        FastMath.fastCos(in, out);
+        for (int i = 0; i < in.length; i++) {
+            check(out[i] == FastMath.fastCos(in[i]), "Batch cosine matches scalar cosine");
+        }
+        for (int i = 0; i < in.length; i++) {
+            in[i] = Math.abs(in[i]) + 1e-3f;
+        }
+        FastMath.invSqrt(in, out);
+        for (int i = 0; i < in.length; i++) {
+            check(out[i] == FastMath.invSqrt(in[i]), "Batch inverse square root matches scalar");
+        }
+        log.info("Batch variants passed.");
+    }
+
+    /**
+     * Rough throughput comparison. Each variant is run several times so that
+     * the reported figure is from compiled code; results are accumulated into
+     * a checksum so the loops can not be eliminated.
+     */
+    public void testSpeed() {
+        final float[] in = new float[4096];
+        final float[] out = new float[in.length];
+        Random rng = new Random(30);
+        for (int i = 0; i < in.length; i++) {
+            in[i] = (rng.nextFloat() - 0.5f) * 100f;
+        }
+        final int rounds = 2000;
+        float checksum = 0f;
+        for (int pass = 0; pass < 3; pass++) {
+            long time = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < in.length; i++) {
+                    out[i] = FastMath.sin(in[i]);
+                }
+                checksum += out[r & 4095];
+            }
+            long exact = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < in.length; i++) {
+                    out[i] = FastMath.fastSin(in[i]);
+                }
+                checksum += out[r & 4095];
+            }
+            long fast = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                FastMath.fastSin(in, out);
+                checksum += out[r & 4095];
+            }
+            long batch = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < in.length; i++) {
+                    out[i] = FastMath.atan2(in[i], in[4095 - i]);
+                }
+                checksum += out[r & 4095];
+            }
+            long atan2 = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < in.length; i++) {
+                    out[i] = FastMath.fastAtan2(in[i], in[4095 - i]);
+                }
+                checksum += out[r & 4095];
+            }
+            long fastAtan2 = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < in.length; i++) {
+                    out[i] = FastMath.invSqrtExact(Math.abs(in[i]));
+                }
+                checksum += out[r & 4095];
+            }
+            long invSqrt = System.nanoTime() - time;
+
+            time = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                for (int i = 0; i < in.length; i++) {
+                    out[i] = FastMath.invSqrt(Math.abs(in[i]));
+                }
+                checksum += out[r & 4095];
+            }
+            long fastInvSqrt = System.nanoTime() - time;
+
+            final double n = (double) rounds * in.length;
+            log.info("Pass {} (ns/op) - sin {} fastSin {} fastSin[] {} - atan2 {} fastAtan2 {} - invSqrtExact {} invSqrt {}", pass,
+                    String.format("%.2f", exact / n), String.format("%.2f", fast / n), String.format("%.2f", batch / n),
+                    String.format("%.2f", atan2 / n), String.format("%.2f", fastAtan2 / n),
+                    String.format("%.2f", invSqrt / n), String.format("%.2f", fastInvSqrt / n));
+        }
+        log.debug("Checksum {}", checksum);
+    }
+}
@@ -0,0 +1,332 @@
+package net.cybertekt.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import static net.cybertekt.Checks.check;
+import static net.cybertekt.Checks.waitFor;
+import net.cybertekt.util.HashCache.CacheMode;
+import net.cybertekt.util.HashCache.DrainMode;
+import net.cybertekt.util.HashCache.MapMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hash Cache Unit Test - (C) Cybertekt Software
+ *
+ * Checks every combination of {@link CacheMode} and {@link MapMode} for basic
+ * map behaviour, that weakly and phantom cached values disappear once
+ * collected while replaced values survive the collection of their
+ * predecessors, that only collected entries are reported as evicted, that
+ * phantom cached values can be retrieved, that inline
+ * draining removes a bounded number of entries per operation while the
+ * background cleaner drains without any operation, and that
+ * {@link HashCache#computeIfAbsent} loads a contended key once. Then times
+ * the first read after a collection with the previous single-queue
+ * implementation, which drains the whole queue on that read, and measures a
+ * read-mostly workload that churns weakly cached values at 1 to 32 threads
+ * against the previous implementation and a plain {@link ConcurrentHashMap}.
+ *
+ * @version 1.0.0
+ * @since 1.0.0
+ * @author Andrew Vektor
+ */
+public class HashCacheTest {
+
+    public static final Logger log = LoggerFactory.getLogger(HashCacheTest.class);
+
+    private static final int KEYS = 1 << 16;
+
+    public static void main(final String[] args) throws Exception {
+        final int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        HashCacheTest app = new HashCacheTest();
+        app.testModes();
+        app.testCollection();
+        app.testBoundedDrain();
+        app.testBackgroundDrain();
+        app.testComputeIfAbsent();
+        app.benchmarkDrainPause();
+        app.benchmark(operations);
+        log.info("All hash cache tests passed.");
+    }
+
+    public void testModes() {
+        for (final CacheMode cacheMode : CacheMode.values()) {
+            for (final MapMode mapMode : MapMode.values()) {
+                HashCache<String, Object> cache = new HashCache<>(cacheMode, mapMode);
+                List<Object> values = new ArrayList<>();
+                for (int i = 0; i < 1000; i++) {
+                    String key = ("key" + i).intern();
+                    Object value = new Object();
+                    values.add(value);
+                    check(cache.put(key, value) == key, "Put returns the key");
+                }
+                String name = cacheMode + "/" + mapMode;
+                check(cache.size() == 1000 && !cache.isEmpty() && cache.keySet().size() == 1000, name + " holds every entry");
+                for (int i = 0; i < 1000; i++) {
+                    String key = ("key" + i).intern();
+                    check(cache.get(key) == values.get(i) && cache.containsKey(key), name + " returns the cached value");
+                }
+                check(cache.remove("key0") == values.get(0) && !cache.containsKey("key0") && cache.size() == 999, name + " removes a key");
+                check(cache.keySet().remove("key1") && cache.get("key1") == null, name + " removes through the key set");
+                check(cache.computeIfAbsent("key2", k -> new Object()) == values.get(2), name + " computeIfAbsent returns a cached value");
+                Object loaded = cache.computeIfAbsent("new", k -> new Object());
+                check(loaded != null && cache.get("new") == loaded, name + " computeIfAbsent caches a loaded value");
+                check(cache.computeIfAbsent("none", k -> null) == null && !cache.containsKey("none"), name + " null loads are not cached");
+                cache.clear();
+                check(cache.isEmpty() && cache.get("key3") == null, name + " clears");
+            }
+        }
+        log.info("Modes passed.");
+    }
+
+    public void testCollection() throws Exception {
+        for (final CacheMode mode : new CacheMode[]{CacheMode.Weak, CacheMode.Phantom}) {
+            for (final MapMode mapMode : MapMode.values()) {
+                HashCache<Integer, Object> cache = new HashCache<>(mode, mapMode);
+                AtomicInteger evicted = new AtomicInteger();
+                cache.setEvictionListener((key) -> evicted.incrementAndGet());
+                Object kept = new Object(), replacement = new Object();
+                for (int i = 0; i < 1000; i++) {
+                    cache.put(i, new Object());
+                }
+                cache.put(-1, kept);
+                cache.put(-2, new Object());
+                cache.put(-2, replacement);
+                String name = mode + "/" + mapMode;
+                check(waitFor(() -> {
+                    System.gc();
+                    return cache.size() == 2;
+                }, 10000), name + " removes collected values: " + cache.size());
+                check(cache.get(-1) == kept && cache.get(-2) == replacement, name + " keeps reachable and replaced values");
+                check(evicted.get() == 1000, name + " reports each collected entry once: " + evicted.get());
+            }
+        }
+        log.info("Collection passed.");
+    }
+
+    public void testBoundedDrain() throws Exception {
+        HashCache<Integer, Object> cache = new HashCache<>(CacheMode.Weak, MapMode.Concurrent, DrainMode.Inline, 1);
+        Object kept = new Object();
+        cache.put(-1, kept);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, new Object());
+        }
+        /* Allow The Reference Handler To Enqueue The Collected Values */
+        System.gc();
+        Thread.sleep(200);
+        int before = cache.keySet().size();
+        cache.get(-1);
+        int removed = before - cache.keySet().size();
+        check(removed <= HashCache.DRAIN_LIMIT, "A single operation removes a bounded number of entries: " + removed);
+        check(waitFor(() -> {
+            System.gc();
+            cache.update();
+            return cache.keySet().size() == 1;
+        }, 10000), "Update removes every enqueued entry");
+        log.info("Bounded drain passed - {} removed by one get.", removed);
+    }
+
+    public void testBackgroundDrain() throws Exception {
+        for (final CacheMode mode : new CacheMode[]{CacheMode.Weak, CacheMode.Phantom}) {
+            HashCache<Integer, Object> cache = new HashCache<>(mode, MapMode.Concurrent, DrainMode.Background);
+            for (int i = 0; i < 10000; i++) {
+                cache.put(i, new Object());
+            }
+            /* The Key Set Size Does Not Drain, So Only The Cleaner Can Remove Entries */
+            check(waitFor(() -> {
+                System.gc();
+                return cache.keySet().size() == 0;
+            }, 10000), mode + " background cleaner removes collected values");
+        }
+        try {
+            new HashCache<>(CacheMode.Weak, MapMode.Hash, DrainMode.Background);
+            check(false, "Background draining requires a concurrent map");
+        } catch (final IllegalArgumentException e) {
+            /* Expected */
+        }
+        log.info("Background drain passed.");
+    }
+
+    public void testComputeIfAbsent() throws Exception {
+        final HashCache<Integer, Object> cache = new HashCache<>(CacheMode.Soft, MapMode.Concurrent);
+        final AtomicInteger loads = new AtomicInteger();
+        final int threads = 16, keys = 1000;
+        final Object[][] seen = new Object[threads][keys];
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                for (int k = 0; k < keys; k++) {
+                    seen[id][k] = cache.computeIfAbsent(k, key -> {
+                        loads.incrementAndGet();
+                        return new Object();
+                    });
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        check(loads.get() == keys, "Each key is loaded once: " + loads.get());
+        for (int k = 0; k < keys; k++) {
+            for (int t = 1; t < threads; t++) {
+                check(seen[t][k] == seen[0][k], "Every caller receives the same value");
+            }
+        }
+        log.info("Compute if absent passed.");
+    }
+
+    public void benchmarkDrainPause() throws Exception {
+        final int entries = 500000;
+        for (int pass = 0; pass < 3; pass++) {
+            final LegacyCache<Integer, Object> legacy = new LegacyCache<>();
+            final HashCache<Integer, Object> cache = new HashCache<>(CacheMode.Weak, MapMode.Concurrent);
+            for (int i = 0; i < entries; i++) {
+                legacy.put(i, new Object());
+                cache.put(i, new Object());
+            }
+            /* Let The Collector Enqueue Every Value, Then Time The Next Read */
+            System.gc();
+            Thread.sleep(500);
+            long time = System.nanoTime();
+            legacy.get(-1);
+            long legacyPause = System.nanoTime() - time;
+            time = System.nanoTime();
+            cache.get(-1);
+            long cachePause = System.nanoTime() - time;
+            log.info("Pass {} - First get after {} values are collected - Previous [{}us] - Bounded Drain [{}us]", pass, entries, legacyPause / 1000, cachePause / 1000);
+        }
+    }
+
+    public void benchmark(final int operations) throws Exception {
+        final Integer[] keys = new Integer[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = i;
+        }
+        log.info("{} operations per run, 90% get and 10% put of new weakly cached values, {} keys, {} CPUs",
+                operations, KEYS, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= 32; threads <<= 1) {
+            final LegacyCache<Integer, Object> legacy = new LegacyCache<>();
+            final HashCache<Integer, Object> single = new HashCache<>(CacheMode.Weak, MapMode.Concurrent, DrainMode.Inline, 1);
+            final HashCache<Integer, Object> striped = new HashCache<>(CacheMode.Weak, MapMode.Concurrent, DrainMode.Inline);
+            final HashCache<Integer, Object> background = new HashCache<>(CacheMode.Weak, MapMode.Concurrent, DrainMode.Background);
+            final Map<Integer, Object> map = new ConcurrentHashMap<>();
+            long legacyTime = run(threads, operations, keys, legacy::get, legacy::put);
+            long singleTime = run(threads, operations, keys, single::get, single::put);
+            long stripedTime = run(threads, operations, keys, striped::get, striped::put);
+            long backgroundTime = run(threads, operations, keys, background::get, background::put);
+            long mapTime = run(threads, operations, keys, map::get, map::put);
+            log.info("{} threads - Mops/s - Previous [{}] - 1 Segment [{}] - {} Segments [{}] - Background [{}] - ConcurrentHashMap [{}]",
+                    threads, mops(operations, legacyTime), mops(operations, singleTime), striped.getSegmentCount(), mops(operations, stripedTime),
+                    mops(operations, backgroundTime), mops(operations, mapTime));
+        }
+    }
+
+    /**
+     * Runs the operations split evenly across the threads and returns the
+     * elapsed time.
+     */
+    private static long run(final int threads, final int operations, final Integer[] keys,
+            final java.util.function.Function<Integer, Object> get, final java.util.function.BiFunction<Integer, Object, ?> put) throws InterruptedException {
+        for (final Integer key : keys) {
+            put.apply(key, new Object());
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] workers = new Thread[threads];
+        final int each = operations / threads;
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                final ThreadLocalRandom rng = ThreadLocalRandom.current();
+                long sink = 0;
+                try {
+                    start.await();
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < each; i++) {
+                    final Integer key = keys[rng.nextInt(KEYS)];
+                    if (rng.nextInt(10) == 0) {
+                        put.apply(key, new Object());
+                    } else if (get.apply(key) != null) {
+                        sink++;
+                    }
+                }
+                if (sink < 0) {
+                    log.info("Unreachable");
+                }
+            });
+            workers[t].start();
+        }
+        final long time = System.nanoTime();
+        start.countDown();
+        for (final Thread worker : workers) {
+            worker.join();
+        }
+        return System.nanoTime() - time;
+    }
+
+    private static String mops(final int operations, final long nanos) {
+        return String.format("%.2f", operations * 1000.0 / nanos);
+    }
+
+    /**
+     * The previous concurrent implementation, which drains one shared queue
+     * completely before every operation.
+     */
+    private static final class LegacyCache<K, V> {
+
+        private final Map<K, Entry<K, V>> cache = new ConcurrentHashMap<>();
+
+        private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+        private Object put(final K key, final V value) {
+            update();
+            Entry<K, V> ref;
+            if ((ref = cache.put(key, new Entry<>(key, value, queue))) != null) {
+                ref.key = null;
+            }
+            return key;
+        }
+
+        private V get(final K key) {
+            update();
+            Entry<K, V> ref;
+            return ((ref = cache.get(key)) != null) ? ref.get() : null;
+        }
+
+        private void update() {
+            for (Reference<? extends V> ref = queue.poll(); ref != null; ref = queue.poll()) {
+                final Object key;
+                if ((key = ((Entry<?, ?>) ref).key) != null) {
+                    cache.remove(key);
+                }
+            }
+        }
+
+        private static final class Entry<K, V> extends WeakReference<V> {
+
+            private K key;
+
+            private Entry(final K key, final V value, final ReferenceQueue<V> queue) {
+                super(value, queue);
+                this.key = key;
+            }
+        }
+    }
+}